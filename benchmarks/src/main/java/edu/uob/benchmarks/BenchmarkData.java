@@ -0,0 +1,84 @@
+package edu.uob.benchmarks;
+
+import edu.uob.database.DBManager;
+import edu.uob.database.DBMetadata;
+import edu.uob.database.Table;
+import edu.uob.utils.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/** Synthetic, seeded data shared by the benchmarks so that every run measures the same tables. */
+public final class BenchmarkData {
+    public static final long SEED = 42L;
+    public static final List<String> PEOPLE_ATTRIBUTES = List.of("id", "name", "age", "email", "city");
+    public static final String[] CITIES = {"Bristol", "Bath", "Leeds", "York", "Cardiff", "London", "Glasgow",
+            "Belfast", "Oxford", "Exeter", "Durham", "Norwich", "Brighton", "Dundee", "Truro", "Ely"};
+    private static final String[] FIRST_NAMES = {"Simon", "Sion", "Rob", "Chris", "Alice", "Bob", "Harry", "Ada",
+            "Grace", "Alan", "Edsger", "Barbara", "Donald", "Ken", "Dennis", "Margaret"};
+
+    private BenchmarkData() {}
+
+    public static HashMap<String, String> person(Random random, int index) {
+        HashMap<String, String> record = new HashMap<>();
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + index;
+        record.put("name", name);
+        record.put("age", Integer.toString(18 + random.nextInt(70)));
+        record.put("email", name.toLowerCase() + "@example.com");
+        record.put("city", CITIES[random.nextInt(CITIES.length)]);
+        return record;
+    }
+
+    public static Table peopleTable(int rows) {
+        Table table = new Table(new DBMetadata.Table("people", "id", 1,
+                new Utils.CaseInsensitiveArrayList<>(PEOPLE_ATTRIBUTES)));
+        Random random = new Random(SEED);
+        for (int i = 0; i < rows; i++) table.addRecord(person(random, i));
+        return table;
+    }
+
+    /**
+     * Creates database {@code name} under {@code storageFolder} holding a {@code people} table with {@code rows} rows
+     * and a 16-row {@code cities} table, leaves it in use and returns the manager.
+     */
+    public static DBManager createDatabase(Path storageFolder, String name, int rows) throws IOException {
+        DBManager.getInstance(storageFolder.toString()).delInstance();
+        DBManager manager = DBManager.getInstance(storageFolder.toString());
+        manager.createDatabase(name, new DBMetadata(new HashMap<>()));
+        manager.useDatabase(name);
+        manager.getDatabase().createTable("people", new java.util.ArrayList<>(PEOPLE_ATTRIBUTES.subList(1, 5)));
+        manager.getDatabase().createTable("cities", new java.util.ArrayList<>(List.of("name", "region")));
+
+        Table people = manager.getDatabase().getTables().get("people");
+        DBMetadata.Table peopleMetadata = manager.getMetadata().getTables().get("people");
+        Random random = new Random(SEED);
+        for (int i = 0; i < rows; i++) {
+            people.addRecord(person(random, i));
+            peopleMetadata.incrementNextPrimaryKey();
+        }
+        Table cities = manager.getDatabase().getTables().get("cities");
+        DBMetadata.Table citiesMetadata = manager.getMetadata().getTables().get("cities");
+        for (int i = 0; i < CITIES.length; i++) {
+            HashMap<String, String> city = new HashMap<>();
+            city.put("name", CITIES[i]);
+            city.put("region", "R" + (i % 4));
+            cities.addRecord(city);
+            citiesMetadata.incrementNextPrimaryKey();
+        }
+        manager.saveDatabase();
+        return manager;
+    }
+
+    public static Path createStorageFolder() throws IOException {
+        return Files.createTempDirectory("cw-db-bench");
+    }
+
+    public static void deleteStorageFolder(Path storageFolder) {
+        Utils.deleteDirectory(new File(storageFolder.toString()));
+    }
+}
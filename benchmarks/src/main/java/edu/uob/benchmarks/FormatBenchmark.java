@@ -0,0 +1,32 @@
+package edu.uob.benchmarks;
+
+import edu.uob.database.Table;
+import edu.uob.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class FormatBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+    private Table table;
+    private ArrayList<String> attributes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        table = BenchmarkData.peopleTable(rows);
+        attributes = new ArrayList<>(BenchmarkData.PEOPLE_ATTRIBUTES);
+    }
+
+    @Benchmark
+    public String prettyPrintTable() {
+        return Utils.prettyPrintTable(table.getRecords(), attributes, table.getRecords().keySet(), false);
+    }
+}
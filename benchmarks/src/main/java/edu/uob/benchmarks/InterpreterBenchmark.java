@@ -0,0 +1,86 @@
+package edu.uob.benchmarks;
+
+import edu.uob.database.DBManager;
+import edu.uob.interpreter.Interpreter;
+import edu.uob.parser.Command;
+import edu.uob.parser.Parser;
+import edu.uob.tokenizer.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes pre-parsed commands against a generated {@code people} table, so the numbers cover execution, result
+ * formatting and (for UPDATE/DELETE) the save that follows every mutation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class InterpreterBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    private Path storageFolder;
+    private DBManager manager;
+    private Interpreter interpreter;
+    private Command pointSelect;
+    private Command rangeSelect;
+    private Command update;
+    private Command delete;
+    private Command join;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        storageFolder = BenchmarkData.createStorageFolder();
+        manager = BenchmarkData.createDatabase(storageFolder, "bench", rows);
+        interpreter = new Interpreter(manager);
+        Parser parser = new Parser();
+        pointSelect = parser.parse(Tokenizer.tokenize("SELECT * FROM people WHERE id == " + (rows / 2) + ";"));
+        rangeSelect = parser.parse(Tokenizer.tokenize("SELECT name, age FROM people WHERE age > 80 AND city == 'Bath';"));
+        update = parser.parse(Tokenizer.tokenize("UPDATE people SET city = 'Leeds' WHERE id == " + (rows / 2) + ";"));
+        // Matches nothing, so every invocation does the same work: a full scan plus the save.
+        delete = parser.parse(Tokenizer.tokenize("DELETE FROM people WHERE age > 1000;"));
+        join = parser.parse(Tokenizer.tokenize("JOIN people AND cities ON city AND name;"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        manager.closeDatabase();
+        manager.delInstance();
+        BenchmarkData.deleteStorageFolder(storageFolder);
+    }
+
+    @Benchmark
+    public String selectPoint() throws IOException {
+        interpreter.interpret(pointSelect);
+        return interpreter.getResponse();
+    }
+
+    @Benchmark
+    public String selectRange() throws IOException {
+        interpreter.interpret(rangeSelect);
+        return interpreter.getResponse();
+    }
+
+    @Benchmark
+    public String updatePoint() throws IOException {
+        interpreter.interpret(update);
+        return interpreter.getResponse();
+    }
+
+    @Benchmark
+    public String deleteScan() throws IOException {
+        interpreter.interpret(delete);
+        return interpreter.getResponse();
+    }
+
+    @Benchmark
+    public String join() throws IOException {
+        interpreter.interpret(join);
+        return interpreter.getResponse();
+    }
+}
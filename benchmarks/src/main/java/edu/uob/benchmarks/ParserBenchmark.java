@@ -0,0 +1,35 @@
+package edu.uob.benchmarks;
+
+import edu.uob.parser.Command;
+import edu.uob.parser.Parser;
+import edu.uob.tokenizer.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"select", "insert10", "insert1000", "update"})
+    public String query;
+    private String text;
+    private Parser parser;
+
+    @Setup
+    public void setup() {
+        text = Queries.byName(query);
+        parser = new Parser();
+    }
+
+    /** Parsing only: the parser mutates string literal tokens, so each invocation gets freshly tokenized input. */
+    @Benchmark
+    public Command tokenizeAndParse() {
+        ArrayList<Tokenizer.Token> tokens = Tokenizer.tokenize(text);
+        return parser.parse(tokens);
+    }
+}
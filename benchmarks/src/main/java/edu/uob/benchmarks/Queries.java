@@ -0,0 +1,29 @@
+package edu.uob.benchmarks;
+
+/** Query texts used by the front-end (tokenizer and parser) benchmarks. */
+final class Queries {
+    private Queries() {}
+
+    static String byName(String name) {
+        return switch (name) {
+            case "select" -> "SELECT name, age FROM people WHERE (age >= 35 AND city == 'Bristol') OR name LIKE 'Si';";
+            case "update" -> "UPDATE people SET city = 'Leeds', age = 40 WHERE id == 5000;";
+            case "insert10" -> insert(10);
+            case "insert1000" -> insert(1000);
+            default -> throw new IllegalArgumentException("Unknown query " + name);
+        };
+    }
+
+    static String insert(int values) {
+        StringBuilder query = new StringBuilder("INSERT INTO people VALUES (");
+        for (int i = 0; i < values; i++) {
+            if (i > 0) query.append(", ");
+            switch (i % 3) {
+                case 0 -> query.append("'name ").append(i).append("'");
+                case 1 -> query.append(i * 7);
+                default -> query.append("TRUE");
+            }
+        }
+        return query.append(");").toString();
+    }
+}
@@ -0,0 +1,46 @@
+package edu.uob.benchmarks;
+
+import edu.uob.database.DBMetadata;
+import edu.uob.database.Table;
+import edu.uob.utils.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+    private Path storageFolder;
+    private String tablePath;
+    private Table table;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        storageFolder = BenchmarkData.createStorageFolder();
+        tablePath = storageFolder.resolve("people.tab").toString();
+        table = BenchmarkData.peopleTable(rows);
+        table.saveTable(tablePath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { BenchmarkData.deleteStorageFolder(storageFolder); }
+
+    @Benchmark
+    public Table loadTable() throws IOException {
+        Table loaded = new Table(new DBMetadata.Table("people", "id", rows + 1,
+                new Utils.CaseInsensitiveArrayList<>(BenchmarkData.PEOPLE_ATTRIBUTES)));
+        loaded.loadTable(tablePath);
+        return loaded;
+    }
+
+    @Benchmark
+    public void saveTable() throws IOException { table.saveTable(tablePath); }
+}
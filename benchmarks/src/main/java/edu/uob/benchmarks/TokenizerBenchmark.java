@@ -0,0 +1,25 @@
+package edu.uob.benchmarks;
+
+import edu.uob.tokenizer.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+    @Param({"select", "insert10", "insert1000"})
+    public String query;
+    private String text;
+
+    @Setup
+    public void setup() { text = Queries.byName(query); }
+
+    @Benchmark
+    public ArrayList<Tokenizer.Token> tokenize() { return Tokenizer.tokenize(text); }
+}
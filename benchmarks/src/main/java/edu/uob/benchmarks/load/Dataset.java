@@ -0,0 +1,57 @@
+package edu.uob.benchmarks.load;
+
+import edu.uob.database.DBManager;
+import edu.uob.database.DBMetadata;
+import edu.uob.database.Table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/** Builds the synthetic {@code people} and {@code cities} tables directly through the storage layer. */
+final class Dataset {
+    static final String[] CITIES = {"Bristol", "Bath", "Leeds", "York", "Cardiff", "London", "Glasgow", "Belfast",
+            "Oxford", "Exeter", "Durham", "Norwich", "Brighton", "Dundee", "Truro", "Ely"};
+    private static final String[] NAMES = {"Simon", "Sion", "Rob", "Chris", "Alice", "Bob", "Harry", "Ada", "Grace",
+            "Alan", "Edsger", "Barbara", "Donald", "Ken", "Dennis", "Margaret"};
+
+    private Dataset() {}
+
+    static String name(Random random) { return NAMES[random.nextInt(NAMES.length)] + random.nextInt(100000); }
+    static int age(Random random) { return 18 + random.nextInt(70); }
+    static String city(Random random) { return CITIES[random.nextInt(CITIES.length)]; }
+
+    /** (Re)creates database {@code name} with {@code rows} people. Inserting row by row would save the table each time. */
+    static void create(DBManager manager, String name, int rows, long seed) throws IOException {
+        if (manager.databaseExists(name)) manager.deleteDatabase(name);
+        manager.createDatabase(name, new DBMetadata(new HashMap<>()));
+        manager.useDatabase(name);
+        manager.getDatabase().createTable("people", new ArrayList<>(List.of("name", "age", "city", "score")));
+        manager.getDatabase().createTable("cities", new ArrayList<>(List.of("name", "region")));
+
+        Random random = new Random(seed);
+        Table people = manager.getDatabase().getTables().get("people");
+        DBMetadata.Table peopleMetadata = manager.getMetadata().getTables().get("people");
+        for (int i = 0; i < rows; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", name(random));
+            record.put("age", Integer.toString(age(random)));
+            record.put("city", city(random));
+            record.put("score", Integer.toString(random.nextInt(1000)));
+            people.addRecord(record);
+            peopleMetadata.incrementNextPrimaryKey();
+        }
+        Table cities = manager.getDatabase().getTables().get("cities");
+        DBMetadata.Table citiesMetadata = manager.getMetadata().getTables().get("cities");
+        for (int i = 0; i < CITIES.length; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", CITIES[i]);
+            record.put("region", "R" + (i % 4));
+            cities.addRecord(record);
+            citiesMetadata.incrementNextPrimaryKey();
+        }
+        manager.saveDatabase();
+    }
+}
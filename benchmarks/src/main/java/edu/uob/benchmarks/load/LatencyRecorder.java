@@ -0,0 +1,48 @@
+package edu.uob.benchmarks.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Collects raw latencies for one operation kind; each client owns its own recorder, merged after the run. */
+final class LatencyRecorder {
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos) {
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+        latencies[count++] = nanos;
+    }
+    void recordError() { errors++; }
+    int getCount() { return count; }
+    long getErrors() { return errors; }
+
+    void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) record(other.latencies[i]);
+        errors += other.errors;
+    }
+
+    /** Summary in microseconds; ordered keys keep the results file stable for diffing. */
+    Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("operations", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", round(count / seconds));
+        summary.put("meanMicros", round(count == 0 ? 0 : Arrays.stream(sorted).average().orElse(0) / 1000.0));
+        summary.put("p50Micros", percentile(sorted, 0.50));
+        summary.put("p99Micros", percentile(sorted, 0.99));
+        summary.put("p999Micros", percentile(sorted, 0.999));
+        summary.put("maxMicros", count == 0 ? 0 : round(sorted[count - 1] / 1000.0));
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return round(sorted[Math.max(0, index)] / 1000.0);
+    }
+    private static double round(double value) { return Math.round(value * 10.0) / 10.0; }
+}
@@ -0,0 +1,221 @@
+package edu.uob.benchmarks.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.uob.DBServer;
+import edu.uob.database.DBManager;
+import edu.uob.server.SelectorServer;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * End-to-end load generator: N clients talk to a DBServer over TCP, each running a weighted mix of statements against
+ * a synthetic dataset, and latency percentiles and throughput are reported per statement kind.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar edu.uob.benchmarks.load.LoadGenerator \
+ *     --clients=32 --duration=30 --warmup=5 --rows=10000 --mix=point:60,range:10,insert:10,update:15,join:5
+ * </pre>
+ *
+ * By default a server is started in-process with the non-blocking front end on a free port and the dataset is
+ * rebuilt from {@code --seed}, so two runs with the same options issue the same statements. {@code --server=external
+ * --host=H --port=P} targets a running server instead; prepare its storage folder once with {@code --setup-only}.
+ * Results are written as JSON to {@code --out} (default {@code loadgen-results.json}) with a stable key order, so files
+ * from different releases can be diffed directly.
+ */
+public class LoadGenerator {
+    private static final char END_OF_TRANSMISSION = 4;
+    private static final String DATABASE = "loadgen";
+
+    private final Map<String, String> options;
+    private final int clients;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int rows;
+    private final long seed;
+    private final EnumMap<Operation, Integer> mix;
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(parseOptions(args)).run();
+    }
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        this.rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.mix = parseMix(options.getOrDefault("mix", "point:60,range:10,insert:10,update:15,join:5"));
+    }
+
+    void run() throws Exception {
+        String host = options.getOrDefault("host", "localhost");
+        int port;
+        SelectorServer selectorServer = null;
+        Thread serverThread = null;
+        if (options.getOrDefault("server", "nio").equals("external")) {
+            port = Integer.parseInt(options.getOrDefault("port", "8888"));
+        } else {
+            DBServer server = new DBServer();
+            Dataset.create(DBManager.getInstance(Paths.get("databases").toAbsolutePath().toString()), DATABASE, rows, seed);
+            if (options.containsKey("setup-only")) return;
+            int workers = Integer.parseInt(options.getOrDefault("workers", "" + Runtime.getRuntime().availableProcessors()));
+            selectorServer = new SelectorServer((session, command) -> server.handleCommand(command, session), workers, workers * 256);
+            port = selectorServer.bind(0);
+            SelectorServer serving = selectorServer;
+            serverThread = new Thread(() -> {
+                try { serving.serve(); } catch (IOException e) { e.printStackTrace(); }
+            }, "db-selector");
+            serverThread.start();
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long deadline = measureFrom + durationSeconds * 1_000_000_000L;
+        List<EnumMap<Operation, LatencyRecorder>> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            int clientIndex = i;
+            new Thread(() -> {
+                try {
+                    results.add(runClient(host, port, new Random(seed + clientIndex), measureFrom, deadline));
+                } catch (IOException e) {
+                    System.err.println("Client " + clientIndex + " failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "loadgen-client-" + i).start();
+        }
+        done.await();
+        if (selectorServer != null) {
+            selectorServer.stop();
+            serverThread.join();
+        }
+        report(results);
+    }
+
+    private EnumMap<Operation, LatencyRecorder> runClient(String host, int port, Random random, long measureFrom,
+                                                          long deadline) throws IOException {
+        EnumMap<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) recorders.put(operation, new LatencyRecorder());
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        try (Socket socket = new Socket(host, port);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            send(writer, reader, "USE " + DATABASE + ";");
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                Operation operation = choose(random, totalWeight);
+                String query = operation.query(random, rows);
+                boolean ok = send(writer, reader, query);
+                long latency = System.nanoTime() - now;
+                if (now < measureFrom) continue;
+                if (ok) recorders.get(operation).record(latency);
+                else recorders.get(operation).recordError();
+            }
+        }
+        return recorders;
+    }
+
+    private Operation choose(Random random, int totalWeight) {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) return entry.getKey();
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private static boolean send(BufferedWriter writer, BufferedReader reader, String query) throws IOException {
+        writer.write(query);
+        writer.write("\n");
+        writer.flush();
+        String line = reader.readLine();
+        if (line == null) throw new IOException("Server disconnected (end-of-stream)");
+        boolean ok = line.startsWith("[OK]");
+        while (line != null && !line.contains("" + END_OF_TRANSMISSION)) line = reader.readLine();
+        return ok;
+    }
+
+    private void report(List<EnumMap<Operation, LatencyRecorder>> clientResults) throws IOException {
+        LatencyRecorder overall = new LatencyRecorder();
+        EnumMap<Operation, LatencyRecorder> merged = new EnumMap<>(Operation.class);
+        for (Operation operation : mix.keySet()) merged.put(operation, new LatencyRecorder());
+        for (EnumMap<Operation, LatencyRecorder> result : clientResults) {
+            for (Operation operation : mix.keySet()) {
+                merged.get(operation).merge(result.get(operation));
+                overall.merge(result.get(operation));
+            }
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("clients", clients);
+        config.put("durationSeconds", durationSeconds);
+        config.put("warmupSeconds", warmupSeconds);
+        config.put("rows", rows);
+        config.put("seed", seed);
+        config.put("server", options.getOrDefault("server", "nio"));
+        Map<String, Object> mixConfig = new LinkedHashMap<>();
+        mix.forEach((operation, weight) -> mixConfig.put(operation.name(), weight));
+        config.put("mix", mixConfig);
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        merged.forEach((operation, recorder) -> operations.put(operation.name(), recorder.summary(durationSeconds)));
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("config", config);
+        output.put("overall", overall.summary(durationSeconds));
+        output.put("operations", operations);
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File out = new File(options.getOrDefault("out", "loadgen-results.json"));
+        mapper.writeValue(out, output);
+
+        System.out.printf("%-14s %10s %8s %12s %10s %10s %10s%n", "operation", "ops", "errors", "ops/s", "p50 us", "p99 us", "p999 us");
+        printRow("OVERALL", overall.summary(durationSeconds));
+        operations.forEach((name, summary) -> printRow(name, summary));
+        System.out.println("Results written to " + out.getAbsolutePath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printRow(String name, Object summaryObject) {
+        Map<String, Object> summary = (Map<String, Object>) summaryObject;
+        System.out.printf("%-14s %10s %8s %12s %10s %10s %10s%n", name, summary.get("operations"), summary.get("errors"),
+                summary.get("throughputPerSecond"), summary.get("p50Micros"), summary.get("p99Micros"), summary.get("p999Micros"));
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + arg);
+            int equals = arg.indexOf('=');
+            if (equals < 0) options.put(arg.substring(2), "true");
+            else options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    static EnumMap<Operation, Integer> parseMix(String mix) {
+        EnumMap<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.split(":");
+            Operation operation = switch (nameAndWeight[0].trim().toLowerCase()) {
+                case "point" -> Operation.POINT_SELECT;
+                case "range" -> Operation.RANGE_SELECT;
+                case "insert" -> Operation.INSERT;
+                case "update" -> Operation.UPDATE;
+                case "join" -> Operation.JOIN;
+                default -> throw new IllegalArgumentException("Unknown operation " + nameAndWeight[0]);
+            };
+            int weight = Integer.parseInt(nameAndWeight[1].trim());
+            if (weight > 0) weights.put(operation, weight);
+        }
+        return weights;
+    }
+}
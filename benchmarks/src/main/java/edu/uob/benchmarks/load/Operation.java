@@ -0,0 +1,34 @@
+package edu.uob.benchmarks.load;
+
+import java.util.Random;
+
+/** The statement kinds a load generator client can issue, each able to render a query for the synthetic dataset. */
+enum Operation {
+    POINT_SELECT {
+        String query(Random random, int rows) {
+            return "SELECT * FROM people WHERE id == " + (1 + random.nextInt(rows)) + ";";
+        }
+    },
+    RANGE_SELECT {
+        String query(Random random, int rows) {
+            int age = 18 + random.nextInt(68);
+            return "SELECT name, score FROM people WHERE age >= " + age + " AND age < " + (age + 2) + ";";
+        }
+    },
+    INSERT {
+        String query(Random random, int rows) {
+            return "INSERT INTO people VALUES ('" + Dataset.name(random) + "', " + Dataset.age(random) + ", '"
+                    + Dataset.city(random) + "', " + random.nextInt(1000) + ");";
+        }
+    },
+    UPDATE {
+        String query(Random random, int rows) {
+            return "UPDATE people SET score = " + random.nextInt(1000) + " WHERE id == " + (1 + random.nextInt(rows)) + ";";
+        }
+    },
+    JOIN {
+        String query(Random random, int rows) { return "JOIN people AND cities ON city AND name;"; }
+    };
+
+    abstract String query(Random random, int rows);
+}
@@ -1,8 +1,15 @@
 package edu.uob;
 
+import edu.uob.parser.Command;
 import edu.uob.parser.Parser;
+import edu.uob.parser.StatementCache;
 import edu.uob.database.DBManager;
 import edu.uob.interpreter.Interpreter;
+import edu.uob.server.SelectorServer;
+import edu.uob.stats.Phase;
+import edu.uob.stats.QueryStats;
+import edu.uob.stats.QueryTrace;
+import edu.uob.stats.SlowQueryLog;
 import edu.uob.tokenizer.Tokenizer;
 import edu.uob.utils.ServerResponse;
 
@@ -16,14 +23,24 @@ import java.nio.file.Files;
 public class DBServer {
 
     private static final char END_OF_TRANSMISSION = 4;
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.statementCache.size", 1024);
     private String storageFolderPath;
     private DBManager manager;
     private Parser parser;
     private Interpreter interpreter;
+    private StatementCache statementCache;
 
     public static void main(String args[]) throws IOException {
         DBServer server = new DBServer();
-        server.blockingListenOn(8888);
+        // "--nio" selects the non-blocking front end, "--workers=N" sizes its execution pool:
+        boolean nonBlocking = false;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.equals("--nio")) nonBlocking = true;
+            else if (arg.startsWith("--workers=")) workers = Integer.parseInt(arg.substring("--workers=".length()));
+        }
+        if (nonBlocking) server.selectorListenOn(8888, workers);
+        else server.blockingListenOn(8888);
     }
 
     /**
@@ -34,6 +51,7 @@ public class DBServer {
         manager = DBManager.getInstance(storageFolderPath);
         parser = new Parser();
         interpreter = new Interpreter(manager);
+        statementCache = new StatementCache(STATEMENT_CACHE_SIZE);
         try {
             // Create the database storage folder if it doesn't already exist !
             Files.createDirectories(Paths.get(storageFolderPath));
@@ -48,18 +66,55 @@ public class DBServer {
     *
     * <p>This method handles all incoming DB commands and carries out the required actions.
     */
-    public String handleCommand(String command) {
+    public String handleCommand(String command) { return handleCommand(command, "local"); }
+
+    /** As {@link #handleCommand(String)}, attributing the command to {@code session} (its cursors and slow query log entries). */
+    public synchronized String handleCommand(String command, String session) {
+        QueryTrace trace = QueryTrace.begin();
+        trace.setQuery(command);
+        trace.setSession(session);
+        String result;
         try {
-			interpreter.interpret(parser.parse(Tokenizer.tokenize(command)));
-            if (interpreter.getResponse() != null) return ServerResponse.success(interpreter.getResponse());
-            return ServerResponse.success();
+            // Identical query text skips tokenizing and parsing altogether:
+            String normalizedCommand = StatementCache.normalize(command);
+            Command parsedCommand = statementCache.get(normalizedCommand);
+            if (parsedCommand == null) {
+                parsedCommand = parser.parse(Tokenizer.tokenize(command));
+                statementCache.put(normalizedCommand, parsedCommand);
+            } else {
+                trace.setCached(true);
+            }
+            trace.setCommandType(parsedCommand.getCommandType());
+            long start = System.nanoTime();
+            // The manager's lock also keeps background compaction (see DBManager.compact) out of the way:
+            synchronized (manager) { interpreter.interpret(parsedCommand, session, normalizedCommand); }
+            QueryTrace.record(Phase.INTERPRET, start);
+            if (interpreter.getResponse() != null) result = ServerResponse.success(interpreter.getResponse());
+            else result = ServerResponse.success();
         } catch(Exception e) {
-            return ServerResponse.error(e);
+            trace.setFailed(true);
+            result = ServerResponse.error(e);
         }
+        trace.setBytesSent(result.length());
+        QueryTrace.end();
+        QueryStats.getInstance().record(trace);
+        SlowQueryLog.getInstance().record(trace);
+        return result;
+    }
+
+    /** Drops what {@code session} leaves behind (its cursors and prepared statements) once its connection has closed. */
+    public synchronized void closeSession(String session) {
+        synchronized (manager) { interpreter.closeSession(session); }
     }
 
     //  === Methods below handle networking aspects of the project - you will not need to change these ! ===
 
+    public void selectorListenOn(int portNumber, int workers) throws IOException {
+        // Commands still execute one at a time (handleCommand is synchronized); the pool absorbs framing and encoding.
+        new SelectorServer((session, command) -> handleCommand(command, session), this::closeSession, workers, workers * 256)
+                .listenOn(portNumber);
+    }
+
     public void blockingListenOn(int portNumber) throws IOException {
         try (ServerSocket s = new ServerSocket(portNumber)) {
             System.out.println("Server listening on port " + portNumber);
@@ -81,13 +136,17 @@ public class DBServer {
         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()))) {
 
             System.out.println("Connection established: " + serverSocket.getInetAddress());
-            while (!Thread.interrupted()) {
-                String incomingCommand = reader.readLine();
-                System.out.println("Received message: " + incomingCommand);
-                String result = handleCommand(incomingCommand);
-                writer.write(result);
-                writer.write("\n" + END_OF_TRANSMISSION + "\n");
-                writer.flush();
+            String session = String.valueOf(s.getRemoteSocketAddress());
+            try {
+                while (!Thread.interrupted()) {
+                    String incomingCommand = reader.readLine();
+                    String result = handleCommand(incomingCommand, session);
+                    writer.write(result);
+                    writer.write("\n" + END_OF_TRANSMISSION + "\n");
+                    writer.flush();
+                }
+            } finally {
+                closeSession(session);
             }
         }
     }
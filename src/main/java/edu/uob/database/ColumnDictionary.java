@@ -0,0 +1,32 @@
+package edu.uob.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The distinct values of one low-cardinality attribute. Records share the dictionary's String for a value rather than
+ * each holding a copy, and the table file stores the value's code (its position in the dictionary) in its place.
+ * Values are never removed, so a code stays valid for as long as the dictionary lives.
+ */
+public class ColumnDictionary {
+    private final ArrayList<String> values = new ArrayList<>();
+    private final HashMap<String, Integer> codes = new HashMap<>();
+
+    // The shared instance of the value, which is added if new:
+    public String intern(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return values.get(code);
+        codes.put(value, values.size());
+        values.add(value);
+        return value;
+    }
+    public int code(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        intern(value);
+        return values.size() - 1;
+    }
+    public String value(int code) { return values.get(code); }
+    public ArrayList<String> getValues() { return values; }
+    public int size() { return values.size(); }
+}
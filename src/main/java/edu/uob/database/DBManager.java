@@ -1,11 +1,14 @@
 package edu.uob.database;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.uob.stats.Phase;
+import edu.uob.stats.QueryTrace;
 import edu.uob.utils.DBException;
 import edu.uob.utils.ErrorType;
 import edu.uob.utils.Utils;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.*;
 
@@ -20,6 +23,14 @@ public class DBManager {
     private DBMetadata databaseMetadata = null;
     private Database database = null;
     private final ObjectMapper mapper;
+    // How often the compactor looks for ALTER TABLE or vacuum work (0 to leave it all to compact()), and how many
+    // rows it brings up to date at a time before letting commands in again:
+    private static final long COMPACTION_INTERVAL_MILLIS = Long.getLong("db.compaction.intervalMillis", 1000);
+    private static final int COMPACTION_BATCH_ROWS = Integer.getInteger("db.compaction.batchRows", 10000);
+    private Thread compactor;
+    // Under the group fsync policy, whether saved changes are still waiting for the metadata naming them to be committed:
+    private boolean commitPending;
+    private Thread groupCommitter;
     private DBManager(String storageFolderPath) {
         this.storageFolderPath = storageFolderPath;
         this.mapper = new ObjectMapper();
@@ -44,29 +55,27 @@ public class DBManager {
         this.databaseName = databaseName;
         loadMetadata();
         this.database = new Database(Utils.constructDirectoryPath(storageFolderPath, databaseName), this.databaseMetadata);
+        database.removeOrphans();
     }
     public void createDatabase(String databaseName, DBMetadata metadata) throws IOException {
         if (databaseExists(databaseName)) throw new DBException(ErrorType.DUPLICATE_DATABASE_CREATION_EXCEPTION);
         Path directory = Paths.get(storageFolderPath, databaseName);
         Files.createDirectory(directory);
-        Path metadataFile = Paths.get(directory.toString(), "metadata.json");
-        Files.createFile(metadataFile);
-        if (metadata != null)  mapper.writeValue(metadataFile.toFile(), metadata);
+        if (metadata != null) writeMetadata(directory, metadata);
+        else Files.createFile(Paths.get(directory.toString(), "metadata.json"));
     }
     public void closeDatabase() throws IOException {
         if (databaseName == null) return;
         saveDatabase();
+        if (commitPending) commit();
+        database.free();
         databaseName = null;
         databaseMetadata = null;
         database = null;
     }
     public void saveDatabase() throws IOException {
         if (databaseName == null) return;
-
-        // Save: Write current database's metadata object to file as JSON:
-        Path directory = Paths.get(storageFolderPath, databaseName);
-        Path metadataFile = Paths.get(directory.toString(), "metadata.json");
-        mapper.writeValue(metadataFile.toFile(), databaseMetadata);
+        long start = System.nanoTime();
 
         // close each table that is currently open:
         for (String tableName : database.getTables().keySet()) {
@@ -74,12 +83,117 @@ public class DBManager {
                 database.saveTable(tableName);
             }
         }
+
+        // Then the metadata naming them, which commits them:
+        if (Durability.getPolicy() != Durability.Policy.GROUP) {
+            commit();
+        } else {
+            commitPending = true;
+            if (groupCommitter == null) startGroupCommitter();
+        }
+        QueryTrace.record(Phase.PERSIST, start);
+        if (compactor == null && COMPACTION_INTERVAL_MILLIS > 0 && database.hasPendingCompaction()) startCompactor();
+    }
+    /**
+     * Commits what has been written to the tables' files by writing the metadata, the database's manifest: it names each
+     * table's current generation of files and how much of its log counts, along with nextPrimaryKey and the rest, so
+     * the files and the metadata move on together or not at all. Under the group policy the files are forced first.
+     * Files the metadata no longer names are deleted once it is committed.
+     */
+    private synchronized void commit() throws IOException {
+        if (databaseName == null) return;
+        if (Durability.getPolicy() == Durability.Policy.GROUP) Durability.syncWritten();
+        QueryTrace.addBytesWritten(writeMetadata(Paths.get(storageFolderPath, databaseName), databaseMetadata));
+        commitPending = false;
+        for (String file : database.takeObsoleteFiles()) Files.deleteIfExists(Paths.get(file));
+    }
+    // Written beside the live copy and renamed over it, so a crash leaves one or the other whole:
+    private long writeMetadata(Path directory, DBMetadata metadata) throws IOException {
+        Path metadataFile = directory.resolve("metadata.json");
+        Path temporary = Durability.temporary(metadataFile);
+        byte[] metadataJson = mapper.writeValueAsBytes(metadata);
+        try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            out.write(metadataJson);
+            Durability.written(out, metadataFile);
+        }
+        Durability.replace(temporary, metadataFile);
+        return metadataJson.length;
+    }
+    private synchronized void startGroupCommitter() {
+        if (groupCommitter != null) return;
+        groupCommitter = new Thread(this::runGroupCommitter, "group-commit");
+        groupCommitter.setDaemon(true);
+        groupCommitter.start();
+    }
+    private void runGroupCommitter() {
+        try {
+            while (true) {
+                Thread.sleep(Durability.GROUP_MILLIS);
+                synchronized (this) {
+                    if (!commitPending) continue;
+                    try {
+                        commit();
+                    } catch (IOException e) {
+                        System.err.println("Group commit failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException ignored) { }
+    }
+    /**
+     * Does one step of the database's pending ALTER TABLE or vacuum work; false when there is none. Rows in memory are
+     * brought up to date a batch at a time under the lock (see Database.compact). A table file is written afresh, for
+     * an ALTER or a vacuum, without holding it, commands carrying on while the new generation of its files is written,
+     * and only the swap takes the lock again (see Database.Rewrite); a rewrite overtaken by another rewrite of the
+     * table meanwhile is dropped and tried again next time.
+     */
+    public boolean compact() throws IOException {
+        Database rewriting;
+        Database.Rewrite rewrite;
+        synchronized (this) {
+            if (database == null) return false;
+            if (database.compact(COMPACTION_BATCH_ROWS)) {
+                saveDatabase();
+                return true;
+            }
+            rewrite = database.startRewrite();
+            if (rewrite == null) return false;
+            rewriting = database;
+        }
+        rewrite.run();
+        synchronized (this) {
+            // Another database in use, or this one closed and opened again, meanwhile:
+            if (database != rewriting) rewrite.discard();
+            else if (database.finishRewrite(rewrite)) saveDatabase();
+        }
+        return true;
+    }
+    private synchronized void startCompactor() {
+        if (compactor != null) return;
+        compactor = new Thread(this::runCompactor, "compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+    // Step after step while there is work, taking the lock for each so commands interleave:
+    private void runCompactor() {
+        try {
+            while (true) {
+                try {
+                    Thread.sleep(compact() ? 1 : COMPACTION_INTERVAL_MILLIS);
+                } catch (IOException e) {
+                    System.err.println("Compaction failed: " + e.getMessage());
+                    Thread.sleep(COMPACTION_INTERVAL_MILLIS);
+                }
+            }
+        } catch (InterruptedException ignored) { }
     }
     public void deleteDatabase(String databaseName) {
         Path databasePath = Paths.get(storageFolderPath, databaseName);
         if (!exists(databasePath)) throw new DBException(ErrorType.DATABASE_NOT_FOUND_EXCEPTION);
 
         if (this.databaseName != null && this.databaseName.equals(databaseName)) {
+            commitPending = false;
+            this.database.free();
             this.databaseName = null;
             this.databaseMetadata = null;
             this.database = null;
@@ -9,9 +9,12 @@ import edu.uob.utils.Utils;
 import edu.uob.utils.Utils.CaseInsensitiveArrayList;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DBMetadata {
     private HashMap<String, Table> tables;
+    // Numbers the table files: each full write of a table gets a generation of files of its own (see Database):
+    private long nextGeneration = 1;
 
     @JsonCreator
     public DBMetadata(@JsonProperty("tables") HashMap<String, Table> tables) {
@@ -25,6 +28,9 @@ public class DBMetadata {
     public void setTables(HashMap<String, Table> tables) {
         this.tables = tables;
     }
+    public long getNextGeneration() { return nextGeneration; }
+    public void setNextGeneration(long nextGeneration) { this.nextGeneration = nextGeneration; }
+    public long newGeneration() { return nextGeneration++; }
 
     @Override
     public String toString() {
@@ -38,10 +44,35 @@ public class DBMetadata {
     }
 
     public static class Table {
+        // Every version handed out in this process is larger than any before it, including those read back from disk:
+        private static final AtomicLong VERSIONS = new AtomicLong();
         private final String originalTableName;
         private final String primaryKey;
         private int nextPrimaryKey;
         private CaseInsensitiveArrayList<String> attributes;
+        // Planner statistics from the last ANALYZE (null until then) and the rows changed since:
+        private TableStatistics statistics;
+        private long modificationsSinceAnalyze;
+        // Changes whenever the table's rows or attributes do, so results computed from it can be recognised as stale:
+        private long version = VERSIONS.incrementAndGet();
+        // Lower-cased attributes with a trigram index, rebuilt in memory whenever the table is loaded:
+        private ArrayList<String> trigramIndexes = new ArrayList<>();
+        // Moved on by every ALTER TABLE ADD or DROP:
+        private int schemaVersion;
+        // The ALTERs made since the table file was last written, oldest first; the file is read through them:
+        private ArrayList<SchemaChange> schemaChanges = new ArrayList<>();
+        // Row versions held by the table file and its log, how many of those are superseded or deleted (tombstones
+        // included), and how many are in the log:
+        private long fileRows;
+        private long deadRows;
+        private long logRows;
+        // Which generation of files holds the table (0 for files named after the table alone), and how much of its log
+        // the metadata accounts for: bytes past that were written by a save that never committed. -1 for the whole log.
+        private long generation;
+        private long logBytes = -1;
+        // VACUUMs run on the table, and the bytes they gave back:
+        private long vacuums;
+        private long reclaimedBytes;
 
         @JsonCreator
         public Table(@JsonProperty("originalTableName") String originalTableName,
@@ -68,6 +99,90 @@ public class DBMetadata {
         public void setAttributes(CaseInsensitiveArrayList<String> attributes) {
             this.attributes = attributes;
         }
+        public TableStatistics getStatistics() { return statistics; }
+        public void setStatistics(TableStatistics statistics) { this.statistics = statistics; }
+        public long getModificationsSinceAnalyze() { return modificationsSinceAnalyze; }
+        public void setModificationsSinceAnalyze(long modificationsSinceAnalyze) {
+            this.modificationsSinceAnalyze = modificationsSinceAnalyze;
+        }
+        public long getVersion() { return version; }
+        public void setVersion(long version) {
+            this.version = version;
+            VERSIONS.accumulateAndGet(version, Math::max);
+        }
+        public void nextVersion() { version = VERSIONS.incrementAndGet(); }
+        public ArrayList<String> getTrigramIndexes() { return trigramIndexes; }
+        public void setTrigramIndexes(ArrayList<String> trigramIndexes) { this.trigramIndexes = trigramIndexes; }
+        public int getSchemaVersion() { return schemaVersion; }
+        public void setSchemaVersion(int schemaVersion) { this.schemaVersion = schemaVersion; }
+        public ArrayList<SchemaChange> getSchemaChanges() { return schemaChanges; }
+        public void setSchemaChanges(ArrayList<SchemaChange> schemaChanges) { this.schemaChanges = schemaChanges; }
+        // Records an ALTER that the table file does not reflect yet:
+        public void alter(boolean add, String attribute) {
+            schemaVersion++;
+            schemaChanges.add(new SchemaChange(schemaVersion, add, attribute.toLowerCase()));
+            nextVersion();
+        }
+        public long getFileRows() { return fileRows; }
+        public void setFileRows(long fileRows) { this.fileRows = fileRows; }
+        public long getDeadRows() { return deadRows; }
+        public void setDeadRows(long deadRows) { this.deadRows = deadRows; }
+        public long getLogRows() { return logRows; }
+        public void setLogRows(long logRows) { this.logRows = logRows; }
+        public long getGeneration() { return generation; }
+        public void setGeneration(long generation) { this.generation = generation; }
+        public long getLogBytes() { return logBytes; }
+        public void setLogBytes(long logBytes) { this.logBytes = logBytes; }
+        public long getVacuums() { return vacuums; }
+        public void setVacuums(long vacuums) { this.vacuums = vacuums; }
+        public long getReclaimedBytes() { return reclaimedBytes; }
+        public void setReclaimedBytes(long reclaimedBytes) { this.reclaimedBytes = reclaimedBytes; }
+        // Rows appended to the log, dead of them being what they superseded or deleted:
+        public void appended(long rows, long dead) {
+            fileRows += rows;
+            logRows += rows;
+            deadRows += dead;
+        }
+        // The table file has just been written out, with its rows live and under the current schema, and no log:
+        public void fileRewritten(long rows) {
+            schemaChanges.clear();
+            fileRows = rows;
+            deadRows = 0;
+            logRows = 0;
+            logBytes = 0;
+        }
+        // What a rewrite reads the table's files through, detached so that it can go on away from the lock:
+        public Table copy() {
+            Table copy = new Table(originalTableName, primaryKey, nextPrimaryKey, new CaseInsensitiveArrayList<>(attributes));
+            copy.schemaVersion = schemaVersion;
+            copy.schemaChanges = new ArrayList<>(schemaChanges);
+            copy.generation = generation;
+            copy.logBytes = logBytes;
+            return copy;
+        }
+        public void vacuumed(long bytes) {
+            vacuums++;
+            reclaimedBytes += bytes;
+        }
+    }
+
+    /** One ALTER TABLE ADD or DROP, and the schema version it brought the table to. */
+    public static class SchemaChange {
+        private final int version;
+        private final boolean add;
+        // Lower-cased:
+        private final String attribute;
+
+        @JsonCreator
+        public SchemaChange(@JsonProperty("version") int version, @JsonProperty("add") boolean add,
+                            @JsonProperty("attribute") String attribute) {
+            this.version = version;
+            this.add = add;
+            this.attribute = attribute;
+        }
+        public int getVersion() { return version; }
+        public boolean isAdd() { return add; }
+        public String getAttribute() { return attribute; }
     }
 }
 
@@ -5,18 +5,33 @@ import edu.uob.utils.ErrorType;
 import edu.uob.utils.Utils;
 
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 public class Database {
 
     private final String dbPath;
     private final HashMap<String, Table> tables;
     private final DBMetadata metadata;
+    // Files no longer named by the metadata, deleted once the metadata that stopped naming them is committed:
+    private final ArrayList<String> obsoleteFiles = new ArrayList<>();
+    // Statistics are refreshed once this many rows (or a tenth of the table, if more) have changed since the last ANALYZE:
+    private static final long AUTO_ANALYZE_CHANGES = Long.getLong("db.stats.autoAnalyzeChanges", 500);
+    // A table is vacuumed in the background once this share of the rows its file and log hold are dead (or once its
+    // log holds as many rows as the file), and at least db.vacuum.minRows of them are:
+    private static final long VACUUM_DEAD_PERCENT = Long.getLong("db.vacuum.deadPercent", 30);
+    private static final long VACUUM_MIN_ROWS = Long.getLong("db.vacuum.minRows", 1000);
     public Database(String dbPath, DBMetadata metadata) {
         this.dbPath = dbPath;
         this.metadata = metadata;
@@ -25,22 +40,90 @@ public class Database {
             tables.put(tableName, null);
         }
     }
-    public void loadTable(String tableName) throws IOException {
+    public void loadTable(String tableName) throws IOException { loadTable(tableName, null); }
+    // Makes sure at least the given attributes of the table are in memory (all of them when columns is null):
+    public void loadTable(String tableName, Collection<String> columns) throws IOException {
         if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        if (tables.get(tableName) != null) return;
-        tables.put(tableName, new Table(metadata.getTables().get(tableName)));
-        tables.get(tableName).loadTable(Utils.constructFilePath(dbPath, tableName + ".tab"));
+        Table table = tables.get(tableName);
+        if (table != null && table.isLoaded(columns)) return;
+        if (table == null) {
+            table = new Table(metadata.getTables().get(tableName));
+            tables.put(tableName, table);
+        }
+        table.loadTable(getTableFilePath(tableName), columns);
+    }
+    public String getPath() { return dbPath; }
+    // Lets go of every loaded table's rows; the database is not used after this.
+    public void free() {
+        for (Table table : tables.values()) if (table != null) table.free();
+    }
+    /**
+     * The table file of the table's current generation. A full write of a table goes to a new generation of files
+     * rather than over the live ones, and the metadata naming the new generation is what commits it: a crash before
+     * then leaves the old generation in place, whole, alongside the nextPrimaryKey that goes with it.
+     */
+    public String getTableFilePath(String tableName) {
+        return tableFilePath(tableName, metadata.getTables().get(tableName).getGeneration());
+    }
+    private String tableFilePath(String tableName, long generation) {
+        return Utils.constructFilePath(dbPath, tableName + (generation == 0 ? "" : "." + generation) + ".tab");
+    }
+    // A table file with the files beside it:
+    private static List<String> tableFiles(String tableDataFilePath) {
+        return List.of(tableDataFilePath, Table.dictionaryFilePath(tableDataFilePath),
+                ZoneMap.zoneFilePath(tableDataFilePath), Table.logFilePath(tableDataFilePath));
+    }
+    // Handed to the caller, which deletes them once the metadata is committed:
+    public ArrayList<String> takeObsoleteFiles() {
+        ArrayList<String> files = new ArrayList<>(obsoleteFiles);
+        obsoleteFiles.clear();
+        return files;
+    }
+    /** Deletes the files a crash left behind: half-written temporary files, and generations the metadata does not name. */
+    public void removeOrphans() throws IOException {
+        HashSet<String> live = new HashSet<>();
+        for (String tableName : tables.keySet()) {
+            for (String path : tableFiles(getTableFilePath(tableName))) live.add(Paths.get(path).getFileName().toString());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(dbPath))) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean tableFile = name.endsWith(".tab") || name.endsWith(".dict") || name.endsWith(".zones") || name.endsWith(".log");
+                if (name.endsWith(".tmp") || tableFile && !live.contains(name)) Files.deleteIfExists(file);
+            }
+        }
     }
     public void saveTable(String tableName) throws IOException {
         if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        tables.get(tableName).saveTable(Utils.constructFilePath(dbPath, tableName + ".tab"));
+        Table table = tables.get(tableName);
+        // Only read so far: writing the decoded attributes back would lose the rest.
+        if (!table.isLoaded(null)) return;
+        // Only the rows changed go out, to the log; an ALTER alone is left to compact():
+        if (table.isDirty()) rewrite(tableName);
+        else table.appendLog(getTableFilePath(tableName));
+    }
+    // Writes the table out in full as a new generation of files, the old one becoming obsolete:
+    private void rewrite(String tableName) throws IOException {
+        DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+        long generation = tableMetadata.getGeneration();
+        String oldPath = getTableFilePath(tableName);
+        tableMetadata.setGeneration(metadata.newGeneration());
+        try {
+            tables.get(tableName).saveTable(getTableFilePath(tableName));
+        } catch (IOException | RuntimeException e) {
+            obsoleteFiles.addAll(tableFiles(getTableFilePath(tableName)));
+            tableMetadata.setGeneration(generation);
+            throw e;
+        }
+        obsoleteFiles.addAll(tableFiles(oldPath));
     }
 
     public void dropTable(String tableName) throws IOException {
         if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
+        obsoleteFiles.addAll(tableFiles(getTableFilePath(tableName)));
         metadata.getTables().remove(tableName);
-        tables.remove(tableName);
-        Utils.deleteFile(Utils.constructFilePath(dbPath, tableName + ".tab"));
+        Table table = tables.remove(tableName);
+        if (table != null) table.free();
     }
 
     public void createTable(String tableName, ArrayList<String> attributes) throws IOException {
@@ -52,23 +135,242 @@ public class Database {
                 throw new DBException(ErrorType.TABLE_CREATION_FAILED_EXCEPTION, "TABLE CREATION FAILED. ATTRIBUTES MUST BE UNIQUE)");
             noRepeatsAttributes.add(attribute);
         }
-        metadata.getTables().put(tableName.toLowerCase(), new DBMetadata.Table(tableName,"id", 1, noRepeatsAttributes));
-        tables.put(tableName.toLowerCase(), new Table(metadata.getTables().get(tableName.toLowerCase())));
-        Path tabFile = Paths.get(Utils.constructFilePath(dbPath,tableName.toLowerCase() + ".tab"));
-        Files.createFile(tabFile);
-        saveTable(tableName.toLowerCase());
+        DBMetadata.Table tableMetadata = new DBMetadata.Table(tableName,"id", 1, noRepeatsAttributes);
+        // A generation of its own, so that no file of a table of the same name dropped before can be taken for it:
+        tableMetadata.setGeneration(metadata.newGeneration());
+        metadata.getTables().put(tableName.toLowerCase(), tableMetadata);
+        tables.put(tableName.toLowerCase(), new Table(tableMetadata));
+        tables.get(tableName.toLowerCase()).saveTable(getTableFilePath(tableName.toLowerCase()));
     }
 
-    public void addAttribute(String tableName, String attributeName) throws IOException {
+    // Neither ALTER reads or writes a row: a loaded table projects its rows, and files are read through the change.
+    public void addAttribute(String tableName, String attributeName) {
         if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        if (tables.get(tableName) == null) loadTable(tableName);
-        tables.get(tableName).addAttribute(attributeName);
+        DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+        Table table = tables.get(tableName);
+        if (table != null) {
+            table.addAttribute(attributeName);
+        } else {
+            if (tableMetadata.getAttributes().contains(attributeName)) throw new DBException(ErrorType.DUPLICATE_ATTRIBUTE_EXCEPTION);
+            tableMetadata.getAttributes().add(attributeName);
+        }
+        tableMetadata.alter(true, attributeName);
+        tableMetadata.setStatistics(null);
+    }
+
+    public void dropAttribute(String tableName, String attributeName) {
+        if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
+        DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+        Table table = tables.get(tableName);
+        if (table != null) {
+            table.dropAttribute(attributeName);
+        } else {
+            if (!tableMetadata.getAttributes().contains(attributeName)) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+            if (attributeName.equalsIgnoreCase("id")) throw new DBException(ErrorType.PK_DROP_EXCEPTION);
+            tableMetadata.getAttributes().remove(attributeName);
+        }
+        tableMetadata.alter(false, attributeName);
+        tableMetadata.setStatistics(null);
+        tableMetadata.getTrigramIndexes().remove(attributeName.toLowerCase());
     }
 
-    public void dropAttribute(String tableName, String attributeName) throws IOException {
+    /**
+     * One batch of the in-memory work left behind by ALTER TABLE, done under the lock: up to {@code batchRows} rows of
+     * a loaded table brought in line with its attributes. False when there was nothing to do; table files still to be
+     * written under a new schema are left to {@link #startRewrite()}, which does it away from the lock.
+     */
+    public boolean compact(int batchRows) {
+        for (Table table : tables.values()) {
+            if (table == null || !table.hasPendingAlter()) continue;
+            table.compactRows(batchRows);
+            return true;
+        }
+        return false;
+    }
+    public boolean hasPendingCompaction() {
+        for (String tableName : tables.keySet()) {
+            Table table = tables.get(tableName);
+            if (table != null && table.hasPendingAlter()) return true;
+            DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+            if (!tableMetadata.getSchemaChanges().isEmpty() || needsVacuum(tableMetadata)) return true;
+        }
+        return false;
+    }
+    private static boolean needsVacuum(DBMetadata.Table tableMetadata) {
+        long dead = tableMetadata.getDeadRows();
+        long logged = tableMetadata.getLogRows();
+        if (dead >= VACUUM_MIN_ROWS && dead * 100 >= tableMetadata.getFileRows() * VACUUM_DEAD_PERCENT) return true;
+        return logged >= VACUUM_MIN_ROWS && 2 * logged >= tableMetadata.getFileRows();
+    }
+    /**
+     * Writes the table file afresh from the live rows, under the current schema, and empties its log. Returns the
+     * bytes given back.
+     */
+    public long vacuum(String tableName) throws IOException {
         if (!tables.containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        if (tables.get(tableName) == null) loadTable(tableName);
-        tables.get(tableName).dropAttribute(attributeName);
+        Rewrite rewrite = startRewrite(tableName);
+        rewrite.run();
+        finishRewrite(rewrite);
+        return rewrite.getReclaimedBytes();
+    }
+    /**
+     * A rewrite of the next table whose file predates an ALTER, or that has enough dead rows to vacuum (see
+     * {@link #needsVacuum}); null if there is none.
+     */
+    public Rewrite startRewrite() {
+        for (String tableName : tables.keySet()) {
+            DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+            if (!tableMetadata.getSchemaChanges().isEmpty() || needsVacuum(tableMetadata)) return startRewrite(tableName);
+        }
+        return null;
+    }
+    /** Notes what the table's files hold now and sets aside a generation for the rewrite to write; see {@link Rewrite}. */
+    public Rewrite startRewrite(String tableName) {
+        DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+        String sourcePath = getTableFilePath(tableName);
+        DBMetadata.Table snapshot = tableMetadata.copy();
+        // The whole log, which may grow before the rewrite is done, so how much of it the rewrite reads is pinned now:
+        if (snapshot.getLogBytes() < 0) snapshot.setLogBytes(new File(Table.logFilePath(sourcePath)).length());
+        long generation = metadata.newGeneration();
+        return new Rewrite(tableName, tableMetadata, snapshot, sourcePath, tableFilePath(tableName, generation), generation);
+    }
+    /**
+     * Puts the rewrite's generation in place of the one it was read from, carrying over the rows logged since it
+     * started, and the ALTERs made since, which the new file is read through as the old one was. False, with its files
+     * deleted, if the table was written afresh or dropped meanwhile, for the compactor to try again; a rewrite that
+     * failed otherwise throws.
+     */
+    public boolean finishRewrite(Rewrite rewrite) throws IOException {
+        DBMetadata.Table tableMetadata = metadata.getTables().get(rewrite.tableName);
+        boolean current = tableMetadata == rewrite.tableMetadata
+                && tableMetadata.getGeneration() == rewrite.snapshot.getGeneration();
+        if (!current || rewrite.failure != null) {
+            rewrite.discard();
+            if (current && rewrite.failure instanceof IOException e) throw e;
+            if (current) throw (RuntimeException) rewrite.failure;
+            return false;
+        }
+        Path log = Paths.get(Table.logFilePath(rewrite.sourcePath));
+        long logBytes = tableMetadata.getLogBytes() < 0 ? log.toFile().length() : tableMetadata.getLogBytes();
+        long carried = copyLog(log, rewrite.logBytes, logBytes, Paths.get(Table.logFilePath(rewrite.targetPath)));
+        long before = fileBytes(rewrite.sourcePath);
+        long rowsLogged = tableMetadata.getLogRows() - rewrite.logRows;
+        long deadLogged = tableMetadata.getDeadRows() - rewrite.deadRows;
+        // The new file has the columns of the schema the rewrite started under; the log entries keep their own versions:
+        ArrayList<DBMetadata.SchemaChange> later = new ArrayList<>();
+        for (DBMetadata.SchemaChange change : tableMetadata.getSchemaChanges()) {
+            if (change.getVersion() > rewrite.snapshot.getSchemaVersion()) later.add(change);
+        }
+        tableMetadata.setGeneration(rewrite.targetGeneration);
+        tableMetadata.fileRewritten(rewrite.snapshot.getFileRows());
+        tableMetadata.getSchemaChanges().addAll(later);
+        tableMetadata.appended(rowsLogged, deadLogged);
+        tableMetadata.setLogBytes(carried);
+        obsoleteFiles.addAll(tableFiles(rewrite.sourcePath));
+        rewrite.reclaimedBytes = Math.max(0, before - fileBytes(rewrite.targetPath));
+        tableMetadata.vacuumed(rewrite.reclaimedBytes);
+        return true;
+    }
+    // Copies bytes [start, end) of one log to a new log, returning how many:
+    private static long copyLog(Path source, long start, long end, Path target) throws IOException {
+        if (end <= start) return 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long copied = 0; copied < end - start; ) copied += in.transferTo(start + copied, end - start - copied, out);
+            Durability.written(out, target);
+        }
+        return end - start;
+    }
+
+    /**
+     * A table file written afresh from its live rows under the current schema, as VACUUM and the compactor do. The files of a generation are never written over,
+     * only its log appended to, so the rewrite reads the committed generation and writes the new one without holding
+     * the database: {@link #startRewrite} notes under the lock what there is to read, {@link #run} does the reading and
+     * writing while commands carry on, and {@link #finishRewrite}, under the lock again, swaps the new generation in
+     * with whatever was logged meanwhile copied over to its log.
+     */
+    public static class Rewrite {
+        private final String tableName;
+        private final DBMetadata.Table tableMetadata;
+        // The table's metadata as it was when the rewrite started, which the files are read through, and the counts
+        // of its log then (the snapshot's own are those of the generation written, once it is):
+        private final DBMetadata.Table snapshot;
+        private final long logBytes;
+        private final long deadRows;
+        private final long logRows;
+        private final String sourcePath;
+        private final String targetPath;
+        private final long targetGeneration;
+        private Exception failure;
+        private long reclaimedBytes;
+        private Rewrite(String tableName, DBMetadata.Table tableMetadata, DBMetadata.Table snapshot, String sourcePath,
+                        String targetPath, long targetGeneration) {
+            this.tableName = tableName;
+            this.tableMetadata = tableMetadata;
+            this.snapshot = snapshot;
+            this.logBytes = snapshot.getLogBytes();
+            this.deadRows = tableMetadata.getDeadRows();
+            this.logRows = tableMetadata.getLogRows();
+            this.sourcePath = sourcePath;
+            this.targetPath = targetPath;
+            this.targetGeneration = targetGeneration;
+        }
+        /** Reads the rows of the generation started from and writes them out as the new one; touches nothing shared. */
+        public void run() {
+            Table table = new Table(snapshot);
+            try {
+                table.loadTable(sourcePath);
+                table.saveTable(targetPath);
+            } catch (IOException | RuntimeException e) {
+                // Perhaps because the files went with a rewrite of the table meanwhile; finishRewrite tells.
+                failure = e;
+            } finally {
+                table.free();
+            }
+        }
+        // The generation written is not going to be used:
+        public void discard() throws IOException {
+            for (String path : tableFiles(targetPath)) {
+                Files.deleteIfExists(Paths.get(path));
+                Files.deleteIfExists(Durability.temporary(Paths.get(path)));
+            }
+        }
+        public String getTableName() { return tableName; }
+        public long getReclaimedBytes() { return reclaimedBytes; }
+    }
+    private static long fileBytes(String tableDataFilePath) {
+        long bytes = 0;
+        for (String path : tableFiles(tableDataFilePath)) bytes += new File(path).length();
+        return bytes;
+    }
+
+    public void createTrigramIndex(String tableName, String attributeName) throws IOException {
+        loadTable(tableName);
+        tables.get(tableName).createTrigramIndex(attributeName);
+        metadata.getTables().get(tableName).getTrigramIndexes().add(attributeName.toLowerCase());
+    }
+    public void dropTrigramIndex(String tableName, String attributeName) throws IOException {
+        loadTable(tableName);
+        tables.get(tableName).dropTrigramIndex(attributeName);
+        metadata.getTables().get(tableName).getTrigramIndexes().remove(attributeName.toLowerCase());
+    }
+
+    public TableStatistics analyzeTable(String tableName) throws IOException {
+        loadTable(tableName);
+        TableStatistics statistics = TableStatistics.compute(tables.get(tableName));
+        metadata.getTables().get(tableName).setStatistics(statistics);
+        metadata.getTables().get(tableName).setModificationsSinceAnalyze(0);
+        return statistics;
+    }
+    // Counts rows inserted, updated or deleted, re-analyzing the table when enough have changed.
+    public void recordModifications(String tableName, long rows) throws IOException {
+        if (rows == 0) return;
+        DBMetadata.Table tableMetadata = metadata.getTables().get(tableName);
+        long changes = tableMetadata.getModificationsSinceAnalyze() + rows;
+        tableMetadata.setModificationsSinceAnalyze(changes);
+        long analyzedRows = tableMetadata.getStatistics() == null ? 0 : tableMetadata.getStatistics().getRowCount();
+        if (changes >= Math.max(AUTO_ANALYZE_CHANGES, analyzedRows / 10)) analyzeTable(tableName);
     }
 
 
@@ -0,0 +1,73 @@
+package edu.uob.database;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.HashSet;
+
+/**
+ * When what the database writes is forced to disk, chosen with {@code db.fsync}:
+ * <ul>
+ * <li>{@code commit} (the default): every file a command writes, and then the metadata naming it, is fsynced before
+ * the command returns, so once it has succeeded it survives a crash of the machine.</li>
+ * <li>{@code group}: fsyncs are put off and done together every {@code db.fsync.groupMillis} (default 10) ms, when the
+ * metadata is committed (see DBManager); a crash loses at most the last interval's commands, whole.</li>
+ * <li>{@code os}: nothing is fsynced and the operating system writes back in its own time. Surviving a crash of the
+ * process is unaffected; a crash of the machine can lose anything recent, or leave a commit's files only partly on
+ * disk.</li>
+ * </ul>
+ * Whatever the policy, a file is replaced by renaming a complete new one over it, never rewritten in place.
+ */
+public class Durability {
+    public enum Policy { COMMIT, GROUP, OS }
+    private static final Policy POLICY = Policy.valueOf(System.getProperty("db.fsync", "commit").toUpperCase());
+    public static final long GROUP_MILLIS = Long.getLong("db.fsync.groupMillis", 10);
+    // Files written since the last group commit, which forces them:
+    private static final HashSet<Path> unsynced = new HashSet<>();
+
+    public static Policy getPolicy() { return POLICY; }
+
+    // Called with a file's stream once all of it is written, before closing; target is where the file ends up.
+    public static void written(FileOutputStream out, Path target) throws IOException {
+        if (POLICY == Policy.COMMIT) out.getFD().sync();
+        else if (POLICY == Policy.GROUP) unsynced(target);
+    }
+    public static void written(FileChannel channel, Path target) throws IOException {
+        if (POLICY == Policy.COMMIT) channel.force(false);
+        else if (POLICY == Policy.GROUP) unsynced(target);
+    }
+    private static synchronized void unsynced(Path target) { unsynced.add(target); }
+
+    /** Renames the complete file {@code temp} over {@code target} in one step, making the rename itself durable too. */
+    public static void replace(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (POLICY == Policy.COMMIT) syncDirectory(target.toAbsolutePath().getParent());
+        else if (POLICY == Policy.GROUP) unsynced(target.toAbsolutePath().getParent());
+    }
+    /** Forces what was written since the last call, for a group commit; files deleted since are passed over. */
+    public static void syncWritten() throws IOException {
+        HashSet<Path> paths;
+        synchronized (Durability.class) {
+            paths = new HashSet<>(unsynced);
+            unsynced.clear();
+        }
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                syncDirectory(path);
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (NoSuchFileException ignored) { }
+        }
+    }
+    // A directory's entries only survive a crash once the directory itself is forced; not every platform allows it.
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) { }
+    }
+    // The name a file is written under before it replaces path:
+    public static Path temporary(Path path) { return path.resolveSibling(path.getFileName() + ".tmp"); }
+}
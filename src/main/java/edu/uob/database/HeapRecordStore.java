@@ -0,0 +1,146 @@
+package edu.uob.database;
+
+import java.util.*;
+
+/**
+ * Rows as HashMaps on the heap, in an array indexed by id: ids are handed out in sequence from 1, so a lookup is one
+ * array read with no boxing and no hashing, and walking the array visits the rows in id order. A deleted row leaves a
+ * null slot behind; the array doubles when an id falls past its end. An id that would leave the array mostly empty
+ * (negative, or far beyond the rows held) is kept in a sorted overflow map instead. The row handed out is the stored one.
+ */
+public class HeapRecordStore extends AbstractMap<Integer, HashMap<String, String>> implements RecordStore {
+    // The array may grow to this many slots beyond twice the rows held before ids go to the overflow map:
+    private static final int DENSE_SLACK = 1024;
+    private HashMap<String, String>[] slots = newSlots(16);
+    private final TreeMap<Integer, HashMap<String, String>> overflow = new TreeMap<>();
+    private int size;
+    // Moved on whenever a row is added or removed, so iterators fail fast as HashMap's do:
+    private int modCount;
+
+    @Override
+    public HashMap<String, String> get(int id) {
+        if (id >= 0 && id < slots.length && slots[id] != null) return slots[id];
+        return overflow.isEmpty() ? null : overflow.get(id);
+    }
+    @Override
+    public boolean contains(int id) { return get(id) != null; }
+    @Override
+    public void set(int id, HashMap<String, String> record) {
+        if (!overflow.isEmpty() && overflow.containsKey(id)) {
+            overflow.put(id, record);
+            return;
+        }
+        if (id < 0 || id >= slots.length && id >= 2L * size + DENSE_SLACK) {
+            overflow.put(id, record);
+            size++;
+            modCount++;
+            return;
+        }
+        if (id >= slots.length) slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+        if (slots[id] == null) {
+            size++;
+            modCount++;
+        }
+        slots[id] = record;
+    }
+    @Override
+    public HashMap<String, String> delete(int id) {
+        HashMap<String, String> removed;
+        if (id >= 0 && id < slots.length && slots[id] != null) {
+            removed = slots[id];
+            slots[id] = null;
+        } else {
+            removed = overflow.isEmpty() ? null : overflow.remove(id);
+            if (removed == null) return null;
+        }
+        size--;
+        modCount++;
+        return removed;
+    }
+    @Override
+    public HashMap<String, String> get(Object key) { return key instanceof Integer ? get((int) (Integer) key) : null; }
+    @Override
+    public boolean containsKey(Object key) { return key instanceof Integer && contains((int) (Integer) key); }
+    @Override
+    public HashMap<String, String> put(Integer id, HashMap<String, String> record) {
+        HashMap<String, String> previous = get((int) id);
+        set(id, record);
+        return previous;
+    }
+    @Override
+    public HashMap<String, String> remove(Object key) { return key instanceof Integer ? delete((int) (Integer) key) : null; }
+    @Override
+    public int size() { return size; }
+    @Override
+    public void clear() { free(); }
+    // In id order, merging the array with the overflow map:
+    @Override
+    public Set<Map.Entry<Integer, HashMap<String, String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() { return size; }
+            @Override
+            public Iterator<Map.Entry<Integer, HashMap<String, String>>> iterator() {
+                return new Iterator<>() {
+                    private int expected = modCount;
+                    private int slot = advance(0);
+                    // Found by key rather than with an iterator, which remove() would invalidate:
+                    private Map.Entry<Integer, HashMap<String, String>> nextOverflow = overflow.firstEntry();
+                    private int last = -1;
+                    private boolean lastSet;
+                    private int advance(int from) {
+                        while (from < slots.length && slots[from] == null) from++;
+                        return from;
+                    }
+                    @Override
+                    public boolean hasNext() { return slot < slots.length || nextOverflow != null; }
+                    @Override
+                    public Map.Entry<Integer, HashMap<String, String>> next() {
+                        if (modCount != expected) throw new ConcurrentModificationException();
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Map.Entry<Integer, HashMap<String, String>> entry;
+                        if (nextOverflow != null && (slot >= slots.length || nextOverflow.getKey() < slot)) {
+                            entry = nextOverflow;
+                            nextOverflow = overflow.higherEntry(entry.getKey());
+                        } else {
+                            entry = new AbstractMap.SimpleImmutableEntry<>(slot, slots[slot]);
+                            slot = advance(slot + 1);
+                        }
+                        last = entry.getKey();
+                        lastSet = true;
+                        return entry;
+                    }
+                    @Override
+                    public void remove() {
+                        if (!lastSet) throw new IllegalStateException();
+                        delete(last);
+                        expected = modCount;
+                        lastSet = false;
+                    }
+                };
+            }
+        };
+    }
+    // Object headers, table slots and entries of each row's HashMap plus its value Strings, shared ones counted each time:
+    @Override
+    public long getMemoryBytes() {
+        long bytes = 16 + 4L * slots.length;
+        for (HashMap<String, String> record : values()) {
+            bytes += 96 + 16L * record.size();
+            for (String value : record.values()) bytes += 32 + 56 + (value == null ? 0 : value.length());
+        }
+        return bytes;
+    }
+    @Override
+    public String getKind() { return "heap"; }
+    @Override
+    public void free() {
+        slots = newSlots(16);
+        overflow.clear();
+        size = 0;
+        modCount++;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static HashMap<String, String>[] newSlots(int length) { return (HashMap<String, String>[]) new HashMap[length]; }
+}
@@ -0,0 +1,261 @@
+package edu.uob.database;
+
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Rows encoded into direct (off-heap) buffers, so the garbage collector sees a few large arenas and one array of
+ * handles rather than a HashMap and its Strings per row. Rows are appended to the current arena, which is
+ * {@code db.offheap.arenaBytes} (default 1MB) long; the handle of id N, at index N of the directory, is its arena and
+ * offset. Rows are decoded into a fresh HashMap on every read, so changes must be {@link #set} back.
+ *
+ * <p>A row is {@code [int length][short fields]} then per field {@code [short column][int bytes][UTF-8]}, columns being
+ * numbered by the store as it meets them. A changed or deleted row leaves its old bytes behind; once they outweigh the
+ * live rows the live ones are copied into new arenas. {@link #free} drops every arena at once, and the buffers'
+ * memory goes back to the system as soon as they are collected.
+ */
+public class OffHeapRecordStore extends AbstractMap<Integer, HashMap<String, String>> implements RecordStore {
+    private static final int ARENA_BYTES = Integer.getInteger("db.offheap.arenaBytes", 1 << 20);
+    private static final int HEADER_BYTES = 6;
+    private static final int FIELD_BYTES = 6;
+    private final int arenaBytes;
+    private final ArrayList<ByteBuffer> arenas = new ArrayList<>();
+    // Id --> (arena + 1) << 32 | offset, or 0 for no row:
+    private long[] handles = new long[16];
+    private final ArrayList<String> columns = new ArrayList<>();
+    private final HashMap<String, Integer> columnNumbers = new HashMap<>();
+    private int size;
+    // Moved on whenever a row is added or removed, so iterators fail fast as HashMap's do:
+    private int modCount;
+    private long liveBytes;
+    private long deadBytes;
+    private byte[] scratch = new byte[256];
+
+    public OffHeapRecordStore() { this(ARENA_BYTES); }
+    public OffHeapRecordStore(int arenaBytes) { this.arenaBytes = arenaBytes; }
+
+    @Override
+    public HashMap<String, String> get(int id) {
+        long handle = handle(id);
+        return handle == 0 ? null : decode(handle);
+    }
+    @Override
+    public boolean contains(int id) { return handle(id) != 0; }
+    @Override
+    public void set(int id, HashMap<String, String> record) {
+        if (id < 0) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
+        if (id >= handles.length) handles = Arrays.copyOf(handles, Math.max(id + 1, handles.length * 2));
+        if (handles[id] != 0) {
+            release(handles[id]);
+        } else {
+            size++;
+            modCount++;
+        }
+        handles[id] = encode(record);
+        if (deadBytes > liveBytes && deadBytes >= arenaBytes) compact();
+    }
+    @Override
+    public HashMap<String, String> delete(int id) {
+        long handle = handle(id);
+        if (handle == 0) return null;
+        HashMap<String, String> removed = decode(handle);
+        release(handle);
+        handles[id] = 0;
+        size--;
+        modCount++;
+        return removed;
+    }
+    @Override
+    public HashMap<String, String> get(Object key) { return key instanceof Integer ? get((int) (Integer) key) : null; }
+    @Override
+    public boolean containsKey(Object key) { return key instanceof Integer && contains((int) (Integer) key); }
+    @Override
+    public HashMap<String, String> put(Integer id, HashMap<String, String> record) {
+        HashMap<String, String> previous = get((int) id);
+        set(id, record);
+        return previous;
+    }
+    @Override
+    public HashMap<String, String> remove(Object key) { return key instanceof Integer ? delete((int) (Integer) key) : null; }
+    @Override
+    public int size() { return size; }
+    @Override
+    public void clear() { free(); }
+    // In id order, each row decoded as it is reached:
+    @Override
+    public Set<Map.Entry<Integer, HashMap<String, String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() { return size; }
+            @Override
+            public Iterator<Map.Entry<Integer, HashMap<String, String>>> iterator() {
+                return new Iterator<>() {
+                    private int expected = modCount;
+                    private int next = advance(0);
+                    private int last = -1;
+                    private int advance(int from) {
+                        while (from < handles.length && handles[from] == 0) from++;
+                        return from;
+                    }
+                    @Override
+                    public boolean hasNext() { return next < handles.length; }
+                    @Override
+                    public Map.Entry<Integer, HashMap<String, String>> next() {
+                        if (modCount != expected) throw new ConcurrentModificationException();
+                        if (!hasNext()) throw new NoSuchElementException();
+                        last = next;
+                        next = advance(next + 1);
+                        return new AbstractMap.SimpleImmutableEntry<>(last, decode(handles[last]));
+                    }
+                    @Override
+                    public void remove() {
+                        if (last < 0) throw new IllegalStateException();
+                        delete(last);
+                        expected = modCount;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+    // The ids alone, without decoding any row:
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() { return size; }
+            @Override
+            public boolean contains(Object key) { return containsKey(key); }
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private final int expected = modCount;
+                    private int next = advance(0);
+                    private int advance(int from) {
+                        while (from < handles.length && handles[from] == 0) from++;
+                        return from;
+                    }
+                    @Override
+                    public boolean hasNext() { return next < handles.length; }
+                    @Override
+                    public Integer next() {
+                        if (modCount != expected) throw new ConcurrentModificationException();
+                        if (!hasNext()) throw new NoSuchElementException();
+                        int id = next;
+                        next = advance(next + 1);
+                        return id;
+                    }
+                };
+            }
+        };
+    }
+    @Override
+    public long getMemoryBytes() {
+        long bytes = 8L * handles.length;
+        for (ByteBuffer arena : arenas) bytes += arena.capacity();
+        return bytes;
+    }
+    public long getLiveBytes() { return liveBytes; }
+    public int getArenaCount() { return arenas.size(); }
+    @Override
+    public String getKind() { return "offheap"; }
+    @Override
+    public void free() {
+        arenas.clear();
+        handles = new long[16];
+        size = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        modCount++;
+    }
+
+    private long handle(int id) { return id >= 0 && id < handles.length ? handles[id] : 0; }
+    private long encode(HashMap<String, String> record) {
+        byte[][] values = new byte[record.size()][];
+        int[] numbers = new int[record.size()];
+        int length = HEADER_BYTES, field = 0;
+        for (Map.Entry<String, String> entry : record.entrySet()) {
+            numbers[field] = columnNumbers.computeIfAbsent(entry.getKey(), column -> {
+                columns.add(column);
+                return columns.size() - 1;
+            });
+            values[field] = entry.getValue() == null ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+            length += FIELD_BYTES + (values[field] == null ? 0 : values[field].length);
+            field++;
+        }
+        long handle = allocate(length);
+        ByteBuffer arena = arenas.get((int) (handle >>> 32) - 1);
+        int offset = (int) handle;
+        arena.putInt(offset, length);
+        arena.putShort(offset + 4, (short) values.length);
+        offset += HEADER_BYTES;
+        for (int i = 0; i < values.length; i++) {
+            arena.putShort(offset, (short) numbers[i]);
+            arena.putInt(offset + 2, values[i] == null ? -1 : values[i].length);
+            offset += FIELD_BYTES;
+            if (values[i] == null) continue;
+            arena.put(offset, values[i]);
+            offset += values[i].length;
+        }
+        liveBytes += length;
+        return handle;
+    }
+    private HashMap<String, String> decode(long handle) {
+        ByteBuffer arena = arenas.get((int) (handle >>> 32) - 1);
+        int offset = (int) handle;
+        int fields = arena.getShort(offset + 4);
+        HashMap<String, String> record = new HashMap<>(fields * 4 / 3 + 1);
+        offset += HEADER_BYTES;
+        for (int i = 0; i < fields; i++) {
+            String column = columns.get(arena.getShort(offset));
+            int bytes = arena.getInt(offset + 2);
+            offset += FIELD_BYTES;
+            if (bytes < 0) {
+                record.put(column, null);
+                continue;
+            }
+            if (scratch.length < bytes) scratch = new byte[Math.max(bytes, scratch.length * 2)];
+            arena.get(offset, scratch, 0, bytes);
+            record.put(column, new String(scratch, 0, bytes, StandardCharsets.UTF_8));
+            offset += bytes;
+        }
+        return record;
+    }
+    // Room for length bytes at the end of the current arena, or in a new one (sized to fit an oversized row):
+    private long allocate(int length) {
+        ByteBuffer arena = arenas.isEmpty() ? null : arenas.get(arenas.size() - 1);
+        if (arena == null || arena.capacity() - arena.position() < length) {
+            arena = ByteBuffer.allocateDirect(Math.max(arenaBytes, length));
+            arenas.add(arena);
+        }
+        int offset = arena.position();
+        arena.position(offset + length);
+        return (long) arenas.size() << 32 | offset;
+    }
+    private void release(long handle) {
+        int length = arenas.get((int) (handle >>> 32) - 1).getInt((int) handle);
+        liveBytes -= length;
+        deadBytes += length;
+    }
+    // Copies the live rows, in id order, into fresh arenas and drops the old ones:
+    private void compact() {
+        ArrayList<ByteBuffer> old = new ArrayList<>(arenas);
+        arenas.clear();
+        for (int id = 0; id < handles.length; id++) {
+            if (handles[id] == 0) continue;
+            ByteBuffer from = old.get((int) (handles[id] >>> 32) - 1);
+            int offset = (int) handles[id];
+            int length = from.getInt(offset);
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            from.get(offset, scratch, 0, length);
+            long handle = allocate(length);
+            arenas.get((int) (handle >>> 32) - 1).put((int) handle, scratch, 0, length);
+            handles[id] = handle;
+        }
+        deadBytes = 0;
+    }
+}
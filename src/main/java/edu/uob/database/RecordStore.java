@@ -0,0 +1,32 @@
+package edu.uob.database;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Where a table keeps its rows, by id. Besides the Map view the rest of the server reads through, which iterates in
+ * increasing id order, a store takes the id as a plain int for its own lookups and writes. A row handed out may be a
+ * copy of what is stored (see {@link OffHeapRecordStore}), so a change to it is only kept once it is {@link #set}
+ * back; setting a row whose id is already present never disturbs an iteration in progress.
+ *
+ * <p>{@code db.storage} picks the kind new tables use: {@code heap} (the default) or {@code offheap}.
+ */
+public interface RecordStore extends Map<Integer, HashMap<String, String>> {
+    String STORAGE = System.getProperty("db.storage", "heap");
+
+    static RecordStore create() {
+        return STORAGE.equalsIgnoreCase("offheap") ? new OffHeapRecordStore() : new HeapRecordStore();
+    }
+
+    // Null when there is no row with this id:
+    HashMap<String, String> get(int id);
+    boolean contains(int id);
+    void set(int id, HashMap<String, String> record);
+    // The row removed, or null when there was none:
+    HashMap<String, String> delete(int id);
+    // Bytes the rows take up, estimated for rows on the heap:
+    long getMemoryBytes();
+    String getKind();
+    // Releases the rows; the store is empty afterwards.
+    void free();
+}
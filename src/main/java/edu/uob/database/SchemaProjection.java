@@ -0,0 +1,89 @@
+package edu.uob.database;
+
+import java.util.*;
+
+/**
+ * A table's rows as its current attributes see them, while an ALTER TABLE has not yet been applied to every stored
+ * row: an added attribute a row holds no value for reads as NULL and a dropped one is not there. A row needing either
+ * is copied on the way out, leaving the store as it is until {@link Table#compactRows} brings the rows up to date;
+ * writes go straight to the store.
+ */
+class SchemaProjection extends AbstractMap<Integer, HashMap<String, String>> implements RecordStore {
+    private final RecordStore store;
+    // Keys of the attributes added, and of those dropped, since the stored rows were last brought up to date:
+    private final HashSet<String> added = new HashSet<>();
+    private final HashSet<String> dropped = new HashSet<>();
+
+    SchemaProjection(RecordStore store) { this.store = store; }
+
+    // An attribute may only be added back once its old values are gone from the rows (see Table.addAttribute):
+    void add(String key) { added.add(key); }
+    void drop(String key) {
+        added.remove(key);
+        dropped.add(key);
+    }
+    boolean isDropped(String key) { return dropped.contains(key); }
+    boolean isCurrent(HashMap<String, String> row) {
+        for (String key : added) if (!row.containsKey(key)) return false;
+        for (String key : dropped) if (row.containsKey(key)) return false;
+        return true;
+    }
+    HashMap<String, String> project(HashMap<String, String> row) {
+        if (row == null || isCurrent(row)) return row;
+        HashMap<String, String> projected = new HashMap<>(row);
+        for (String key : added) projected.putIfAbsent(key, "NULL");
+        for (String key : dropped) projected.remove(key);
+        return projected;
+    }
+
+    @Override
+    public HashMap<String, String> get(int id) { return project(store.get(id)); }
+    @Override
+    public boolean contains(int id) { return store.contains(id); }
+    @Override
+    public void set(int id, HashMap<String, String> record) { store.set(id, record); }
+    @Override
+    public HashMap<String, String> delete(int id) { return project(store.delete(id)); }
+    @Override
+    public HashMap<String, String> get(Object key) { return key instanceof Integer ? get((int) (Integer) key) : null; }
+    @Override
+    public boolean containsKey(Object key) { return store.containsKey(key); }
+    @Override
+    public HashMap<String, String> put(Integer id, HashMap<String, String> record) { return project(store.put(id, record)); }
+    @Override
+    public HashMap<String, String> remove(Object key) { return key instanceof Integer ? delete((int) (Integer) key) : null; }
+    @Override
+    public int size() { return store.size(); }
+    @Override
+    public void clear() { store.clear(); }
+    @Override
+    public Set<Integer> keySet() { return store.keySet(); }
+    @Override
+    public Set<Map.Entry<Integer, HashMap<String, String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() { return store.size(); }
+            @Override
+            public Iterator<Map.Entry<Integer, HashMap<String, String>>> iterator() {
+                Iterator<Map.Entry<Integer, HashMap<String, String>>> rows = store.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() { return rows.hasNext(); }
+                    @Override
+                    public Map.Entry<Integer, HashMap<String, String>> next() {
+                        Map.Entry<Integer, HashMap<String, String>> row = rows.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(row.getKey(), project(row.getValue()));
+                    }
+                    @Override
+                    public void remove() { rows.remove(); }
+                };
+            }
+        };
+    }
+    @Override
+    public long getMemoryBytes() { return store.getMemoryBytes(); }
+    @Override
+    public String getKind() { return store.getKind(); }
+    @Override
+    public void free() { store.free(); }
+}
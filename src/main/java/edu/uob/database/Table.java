@@ -1,119 +1,655 @@
 package edu.uob.database;
 
+import edu.uob.stats.QueryTrace;
 import edu.uob.utils.DBException;
 import edu.uob.utils.ErrorType;
 import edu.uob.utils.Utils.CaseInsensitiveArrayList;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class Table {
-    private final HashMap<Integer, HashMap<String, String>> records;
+    // An attribute with more distinct values than this is held as plain strings:
+    private static final int DICTIONARY_MAX_VALUES = Integer.getInteger("db.dictionary.maxValues", 256);
+    // Suffix of a dictionary encoded attribute's name in the file header:
+    private static final String DICTIONARY_MARKER = ":dict";
+    // How a line of the log beside the table file starts: a row's new version, or a tombstone for a deleted row:
+    private static final String LOG_VERSION = "+";
+    private static final String LOG_TOMBSTONE = "-";
+    private final RecordStore records;
+    // The rows as the current attributes see them while an ALTER has not reached every stored row yet, else null:
+    private SchemaProjection projection;
+    // Rows below this id have been brought up to date since the last ALTER:
+    private int compactedTo = 1;
+    // Whether the table file has to be written in full, as for a table not written yet:
+    private boolean dirty = true;
+    // Rows changed since the file or its log was last written, each mapped to whether the file holds an earlier
+    // version of it (which the change makes dead):
+    private final HashMap<Integer, Boolean> unsaved = new HashMap<>();
     private final String originalTableName;
     private final String primaryKey;
     private int nextPrimaryKey;
     private final CaseInsensitiveArrayList<String> attributes;
+    // Lower-cased attributes decoded into the records so far, or null when every attribute is:
+    private HashSet<String> loadedAttributes;
+    // Whose version every change moves on (null for a table built without metadata):
+    private final DBMetadata.Table metadata;
+    // Trigram indexes by lower-cased attribute; one declared in the metadata is built once its attribute is loaded:
+    private final HashMap<String, TrigramIndex> trigramIndexes = new HashMap<>();
+    // Dictionaries of the lower-cased attributes with few enough distinct values; id never has one:
+    private final HashMap<String, ColumnDictionary> dictionaries = new HashMap<>();
+    // Block summaries of the loaded attributes (lower-cased, id included), rebuilt on every load and save:
+    private ZoneMap zoneMap = new ZoneMap();
     public Table(String originalTableName, String primaryKey, int nextPrimaryKey, CaseInsensitiveArrayList<String> attributes) {
+        this(originalTableName, primaryKey, nextPrimaryKey, attributes, null);
+    }
+    // Method to instantiate the Table using metadata
+    public Table(DBMetadata.Table metadata) {
+        this(metadata.getOriginalTableName(), metadata.getPrimaryKey(), metadata.getNextPrimaryKey(), metadata.getAttributes(), metadata);
+    }
+    private Table(String originalTableName, String primaryKey, int nextPrimaryKey, CaseInsensitiveArrayList<String> attributes,
+                  DBMetadata.Table metadata) {
         this.originalTableName = originalTableName;
         this.primaryKey = primaryKey;
         this.nextPrimaryKey = nextPrimaryKey;
         this.attributes = attributes;
-        this.records = new HashMap<>();
-    }
-    // Method to instantiate the Table using metadata
-    public Table(DBMetadata.Table metadata) {
-        this(metadata.getOriginalTableName(), metadata.getPrimaryKey(), metadata.getNextPrimaryKey(), metadata.getAttributes());
+        this.records = RecordStore.create();
+        this.metadata = metadata;
+        for (String attribute : attributes) {
+            if (!attribute.equalsIgnoreCase("id")) dictionaries.put(attribute.toLowerCase(), new ColumnDictionary());
+        }
     }
-    public void loadTable(String tableDataFilePath) throws IOException {
-        BufferedReader buffer;
-        buffer = new BufferedReader(new FileReader(tableDataFilePath));
-
-        String line;
-        boolean firstLine = true; // Flag to indicate whether it's the first line
-        while ((line = buffer.readLine()) != null) {
-            if (firstLine) {
-                firstLine = false;
+    public void loadTable(String tableDataFilePath) throws IOException { loadTable(tableDataFilePath, null); }
+    /**
+     * Decodes only {@code columns} (plus id) of each row of the file; null decodes every attribute. Called again on a
+     * partially loaded table it fills the attributes still missing into the records already in memory, which is only
+     * valid while the table is unmodified, hence a table must be loaded in full before it is changed or saved.
+     */
+    public void loadTable(String tableDataFilePath, Collection<String> columns) throws IOException {
+        boolean filling = !records.isEmpty();
+        // The attributes this call decodes:
+        HashSet<String> loading = new HashSet<>();
+        for (String key : attributes.keys()) {
+            boolean loaded = loadedAttributes == null ? filling : loadedAttributes.contains(key);
+            if (!loaded && (columns == null || key.equals("id") || containsIgnoreCase(columns, key))) loading.add(key);
+        }
+        String[] keys;
+        boolean[] wanted;
+        ArrayList<String> missing;
+        String[][] encoded;
+        try (BufferedReader buffer = new BufferedReader(new FileReader(tableDataFilePath))) {
+            // The first line is the header, which names the columns and marks the dictionary encoded ones:
+            String header = buffer.readLine();
+            FileLayout layout = new FileLayout(header, attributes, metadata == null ? List.of() : metadata.getSchemaChanges());
+            keys = layout.getKeys();
+            wanted = new boolean[keys.length];
+            for (int i = 0; i < keys.length; i++) wanted[i] = keys[i] != null && loading.contains(keys[i]);
+            missing = new ArrayList<>(layout.getMissing());
+            missing.retainAll(loading);
+            encoded = readDictionaries(tableDataFilePath, header, keys);
+            String line;
+            while ((line = buffer.readLine()) != null) {
+                HashMap<String, String> decoded = decodeRow(line, keys, wanted, encoded);
+                for (String key : missing) decoded.put(key, "NULL");
+                if (!filling) {
+                    records.set(Integer.parseInt(decoded.get("id")), decoded);
+                    continue;
+                }
+                // id always comes first:
+                int tab = line.indexOf('\t');
+                int id = Integer.parseInt(tab < 0 ? line : line.substring(0, tab));
+                HashMap<String, String> record = records.get(id);
+                if (record == null) continue;
+                record.putAll(decoded);
+                records.set(id, record);
+            }
+        }
+        // Then the rows changed since the file was written, over the versions it holds:
+        List<DBMetadata.SchemaChange> changes = metadata == null ? List.of() : metadata.getSchemaChanges();
+        for (Map.Entry<Integer, HashMap<String, String>> logged : readLog(tableDataFilePath, changes, metadata == null ? -1 : metadata.getLogBytes()).entrySet()) {
+            int id = logged.getKey();
+            if (logged.getValue() == null) {
+                records.delete(id);
                 continue;
             }
-            String[] data = line.split("\t");
-            HashMap<String, String> record = new HashMap<>();
-            for (int i = 0; i < data.length; i++) {
-                record.put(attributes.get(i).toLowerCase(), data[i]);
+            HashMap<String, String> record = filling ? records.get(id) : null;
+            if (record == null) record = new HashMap<>();
+            for (String key : loading) record.put(key, logged.getValue().get(key));
+            records.set(id, record);
+        }
+        for (int i = 0; i < keys.length; i++) if (wanted[i] && !keys[i].equals("id")) buildDictionary(keys[i], encoded[i]);
+        for (String key : missing) buildDictionary(key, null);
+        if (columns == null) {
+            loadedAttributes = null;
+        } else {
+            if (loadedAttributes == null) loadedAttributes = new HashSet<>();
+            loadedAttributes.addAll(loading);
+        }
+        if (!filling) dirty = false;
+        ArrayList<String> summarised = new ArrayList<>();
+        for (String key : attributes.keys()) if (isLoaded(List.of(key))) summarised.add(key);
+        zoneMap = ZoneMap.build(getRecords(), summarised, zoneMap.getBlockRows());
+        if (metadata == null) return;
+        for (String attribute : metadata.getTrigramIndexes()) {
+            if (!trigramIndexes.containsKey(attribute) && isLoaded(List.of(attribute))) buildTrigramIndex(attribute);
+        }
+    }
+    /**
+     * Which column of a table file holds each attribute. A file written before the ALTERs recorded in the metadata
+     * still has the columns of its own schema version: replaying the changes over its header tells which columns are
+     * still attributes, and which attributes it has no column for and so are NULL throughout. Without changes the
+     * file's columns are the attributes, in order.
+     */
+    public static class FileLayout {
+        // Per column, the key it is read into, or null for the column of a dropped attribute:
+        private final String[] keys;
+        // Keys of the attributes the file has no column for:
+        private final ArrayList<String> missing = new ArrayList<>();
+        public FileLayout(String header, CaseInsensitiveArrayList<String> attributes, List<DBMetadata.SchemaChange> changes) {
+            if (header == null || changes.isEmpty()) {
+                keys = attributes.keys().clone();
+                return;
+            }
+            String[] columns = header.split("\t");
+            HashMap<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                String column = columns[i].endsWith(DICTIONARY_MARKER)
+                        ? columns[i].substring(0, columns[i].length() - DICTIONARY_MARKER.length()) : columns[i];
+                positions.put(column.toLowerCase(), i);
+            }
+            for (DBMetadata.SchemaChange change : changes) {
+                // An attribute added back after being dropped does not take its old column up again:
+                if (change.isAdd()) positions.put(change.getAttribute(), -1);
+                else positions.remove(change.getAttribute());
+            }
+            keys = new String[columns.length];
+            for (Map.Entry<String, Integer> position : positions.entrySet()) {
+                if (position.getValue() >= 0) keys[position.getValue()] = position.getKey();
+            }
+            for (String key : attributes.keys()) {
+                Integer position = positions.get(key);
+                if (position == null || position < 0) missing.add(key);
+            }
+        }
+        public String[] getKeys() { return keys; }
+        public ArrayList<String> getMissing() { return missing; }
+    }
+    /**
+     * Splits one data line of a table file into a record holding only the attributes flagged in {@code wanted};
+     * {@code keys} are the lower-cased attribute names in file order and {@code dictionaries} what
+     * {@link #readDictionaries} returned for them. A dictionary encoded value is the dictionary's own String.
+     */
+    public static HashMap<String, String> decodeRow(String line, String[] keys, boolean[] wanted, String[][] dictionaries) {
+        HashMap<String, String> record = new HashMap<>();
+        int start = 0;
+        for (int i = 0; i < keys.length && start <= line.length(); i++) {
+            int end = line.indexOf('\t', start);
+            if (end < 0) end = line.length();
+            if (wanted[i]) {
+                String[] dictionary = dictionaries[i];
+                record.put(keys[i], dictionary == null ? line.substring(start, end) : dictionary[Integer.parseInt(line, start, end, 10)]);
+            }
+            start = end + 1;
+        }
+        return record;
+    }
+    /**
+     * As above, straight into {@code into} at each column's ordinal in {@code ordinals} (negative to skip the column),
+     * for a reader that lays rows out by ordinal rather than by key.
+     */
+    public static void decodeRow(String line, int[] ordinals, String[][] dictionaries, String[] into) {
+        int start = 0;
+        for (int i = 0; i < ordinals.length && start <= line.length(); i++) {
+            int end = line.indexOf('\t', start);
+            if (end < 0) end = line.length();
+            if (ordinals[i] >= 0) {
+                String[] dictionary = dictionaries[i];
+                into[ordinals[i]] = dictionary == null ? line.substring(start, end) : dictionary[Integer.parseInt(line, start, end, 10)];
+            }
+            start = end + 1;
+        }
+    }
+    /**
+     * The dictionary of each attribute ({@code keys}, in file order) that the table file's header marks as encoded,
+     * read from the dictionary file beside it; null for an attribute stored as plain values.
+     */
+    public static String[][] readDictionaries(String tableDataFilePath, String header, String[] keys) throws IOException {
+        String[][] dictionaries = new String[keys.length][];
+        if (header == null || !header.contains(DICTIONARY_MARKER)) return dictionaries;
+        HashMap<String, String[]> stored = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(dictionaryFilePath(tableDataFilePath)))) {
+            // "attribute<TAB>count" then one value per line:
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                String[] values = new String[Integer.parseInt(line.substring(tab + 1))];
+                for (int i = 0; i < values.length; i++) values[i] = reader.readLine();
+                stored.put(line.substring(0, tab), values);
+            }
+        }
+        String[] columns = header.split("\t");
+        for (int i = 0; i < columns.length && i < keys.length; i++) {
+            if (!columns[i].endsWith(DICTIONARY_MARKER) || keys[i] == null) continue;
+            dictionaries[i] = stored.get(keys[i]);
+            if (dictionaries[i] == null) throw new IOException("No dictionary for " + keys[i] + " in " + tableDataFilePath);
+        }
+        return dictionaries;
+    }
+    public static String dictionaryFilePath(String tableDataFilePath) {
+        String base = tableDataFilePath.endsWith(".tab") ? tableDataFilePath.substring(0, tableDataFilePath.length() - 4) : tableDataFilePath;
+        return base + ".dict";
+    }
+    public static String logFilePath(String tableDataFilePath) {
+        String base = tableDataFilePath.endsWith(".tab") ? tableDataFilePath.substring(0, tableDataFilePath.length() - 4) : tableDataFilePath;
+        return base + ".log";
+    }
+    /**
+     * The first {@code logBytes} of the log beside a table file (see {@link #appendLog}) replayed, by id: the row's last
+     * version, or null for a row deleted. A version logged before ALTERs recorded since is brought up to date through them.
+     */
+    public static TreeMap<Integer, HashMap<String, String>> readLog(String tableDataFilePath, List<DBMetadata.SchemaChange> changes,
+                                                                    long logBytes) throws IOException {
+        TreeMap<Integer, HashMap<String, String>> rows = new TreeMap<>();
+        File log = new File(logFilePath(tableDataFilePath));
+        if (!log.exists()) return rows;
+        // Only as far as the metadata accounts for (all of it when logBytes is negative):
+        byte[] bytes;
+        try (InputStream in = new FileInputStream(log)) {
+            bytes = in.readNBytes(logBytes < 0 ? Integer.MAX_VALUE : (int) logBytes);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)))) {
+            // "+schemaVersion<TAB>key=value<TAB>..." or "-id":
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(LOG_TOMBSTONE)) {
+                    rows.put(Integer.parseInt(line.substring(1)), null);
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                int schemaVersion = Integer.parseInt(fields[0].substring(1));
+                HashMap<String, String> row = new HashMap<>();
+                for (int i = 1; i < fields.length; i++) {
+                    int equals = fields[i].indexOf('=');
+                    row.put(fields[i].substring(0, equals), fields[i].substring(equals + 1));
+                }
+                for (DBMetadata.SchemaChange change : changes) {
+                    if (change.getVersion() <= schemaVersion) continue;
+                    if (change.isAdd()) row.put(change.getAttribute(), "NULL");
+                    else row.remove(change.getAttribute());
+                }
+                rows.put(Integer.parseInt(row.get("id")), row);
             }
-            addRecord(Integer.parseInt(record.get("id")), record);
         }
+        return rows;
+    }
+    // Shares one String per distinct value of the attribute, giving up once there are too many for that to pay:
+    private void buildDictionary(String attribute, String[] encodedValues) {
+        dictionaries.remove(attribute);
+        ColumnDictionary dictionary = new ColumnDictionary();
+        if (encodedValues != null) for (String value : encodedValues) dictionary.intern(value);
+        for (HashMap<String, String> record : records.values()) {
+            String value = record.get(attribute);
+            if (value == null) continue;
+            String shared = dictionary.intern(value);
+            if (dictionary.size() > DICTIONARY_MAX_VALUES) return;
+            if (shared != value) record.put(attribute, shared);
+        }
+        dictionaries.put(attribute, dictionary);
     }
+    // The dictionary's instance of the value, or the value itself once the attribute has outgrown its dictionary:
+    private String share(String attribute, String value) {
+        ColumnDictionary dictionary = dictionaries.get(attribute);
+        if (dictionary == null || value == null) return value;
+        String shared = dictionary.intern(value);
+        if (dictionary.size() > DICTIONARY_MAX_VALUES) dictionaries.remove(attribute);
+        return shared;
+    }
+    public ColumnDictionary getDictionary(String attribute) { return dictionaries.get(attribute.toLowerCase()); }
+    public ZoneMap getZoneMap() { return zoneMap; }
+    /** Whether all of {@code columns} (every attribute when null) are decoded in memory. */
+    public boolean isLoaded(Collection<String> columns) {
+        if (loadedAttributes == null) return true;
+        if (columns == null) return false;
+        for (String column : columns) if (!loadedAttributes.contains(column.toLowerCase())) return false;
+        return true;
+    }
+    private static boolean containsIgnoreCase(Collection<String> columns, String key) {
+        for (String column : columns) if (column.equalsIgnoreCase(key)) return true;
+        return false;
+    }
+    /**
+     * Writes the table file. An attribute with no more distinct values than half the rows is written as dictionary
+     * codes, marked as such in the header, and its dictionary goes to a file beside the table file. Rows are written in
+     * id order so that each zone map block is one run of lines; the zone map, rebuilt tight as the rows go out, is
+     * written beside the file with the byte range of every block.
+     */
     public void saveTable(String tableDataFilePath) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(tableDataFilePath));
+        // What FileReader decodes with, so the byte offsets recorded are where the lines are read back from:
+        Charset charset = Charset.defaultCharset();
+        // Written beside the live file and renamed over it once complete, so a crash never leaves it half written:
+        Path target = Paths.get(tableDataFilePath);
+        Path temporary = Durability.temporary(target);
+        String[] keys = attributes.keys();
+        ColumnDictionary[] encoded = new ColumnDictionary[keys.length];
+        boolean anyEncoded = false;
+        for (int i = 0; i < keys.length; i++) {
+            ColumnDictionary dictionary = dictionaries.get(keys[i]);
+            if (dictionary != null && dictionary.size() <= records.size() / 2) {
+                encoded[i] = dictionary;
+                anyEncoded = true;
+            }
+        }
+        ZoneMap written = new ZoneMap(zoneMap.getBlockRows());
+        RecordStore rows = getRecords();
+        long bytesWritten;
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             OutputStream writer = new BufferedOutputStream(file)) {
+            // Write header
+            StringBuilder headerBuilder = new StringBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                headerBuilder.append(attributes.get(i)).append(encoded[i] == null ? "" : DICTIONARY_MARKER).append("\t");
+            }
+            byte[] header = headerBuilder.toString().trim().getBytes(charset);
+            writer.write(header);
+            writer.write('\n');
+            bytesWritten = header.length + 1;
 
-        // Write header
-        StringBuilder headerBuilder = new StringBuilder();
-        for (String attribute : attributes) { headerBuilder.append(attribute).append("\t"); }
-        writer.write(headerBuilder.toString().trim());
-        writer.newLine();
+            // Write records
+            List<String> columns = Arrays.asList(keys);
+            ZoneMap.Block block = null;
+            long blockStart = bytesWritten;
+            for (int id : rows.keySet()) {
+                HashMap<String, String> values = rows.get(id);
+                if (written.block(id) != block) {
+                    if (block != null) block.setFileRange(blockStart, (int) (bytesWritten - blockStart));
+                    block = written.block(id);
+                    blockStart = bytesWritten;
+                }
+                written.add(id, values, columns, true);
+                StringBuilder recordBuilder = new StringBuilder();
+                for (int i = 0; i < keys.length; i++) {
+                    String value = values.getOrDefault(keys[i], "");
+                    if (encoded[i] == null) recordBuilder.append(value).append("\t");
+                    else recordBuilder.append(encoded[i].code(value)).append("\t");
+                }
+                byte[] record = recordBuilder.toString().trim().getBytes(charset);
+                writer.write(record);
+                writer.write('\n');
+                bytesWritten += record.length + 1;
+            }
+            if (block != null) block.setFileRange(blockStart, (int) (bytesWritten - blockStart));
+            writer.flush();
+            Durability.written(file, target);
+        } catch (IOException | RuntimeException e) {
+            // The live file is untouched; the half written one goes:
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Durability.replace(temporary, target);
+        written.write(ZoneMap.zoneFilePath(tableDataFilePath), bytesWritten);
+        zoneMap = written;
+        dirty = false;
+        unsaved.clear();
+        // Everything the log held is in the file now:
+        Files.deleteIfExists(Paths.get(logFilePath(tableDataFilePath)));
+        if (metadata != null) metadata.fileRewritten(rows.size());
 
-        // Write records
-        for (Map.Entry<Integer, HashMap<String, String>> entry : records.entrySet()) {
-            StringBuilder recordBuilder = new StringBuilder();
-            for (String attribute : attributes) {
-                recordBuilder.append(entry.getValue().getOrDefault(attribute.toLowerCase(), "")).append("\t");
+        // Written after the records, as coding them may have added values:
+        File dictionaryFile = new File(dictionaryFilePath(tableDataFilePath));
+        if (anyEncoded) {
+            Path dictionaryTarget = dictionaryFile.toPath();
+            Path dictionaryTemporary = Durability.temporary(dictionaryTarget);
+            try (FileOutputStream dictionaryOut = new FileOutputStream(dictionaryTemporary.toFile());
+                 BufferedWriter dictionaryWriter = new BufferedWriter(new OutputStreamWriter(dictionaryOut, charset))) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (encoded[i] == null) continue;
+                    String dictionaryHeader = keys[i] + "\t" + encoded[i].size();
+                    dictionaryWriter.write(dictionaryHeader);
+                    dictionaryWriter.newLine();
+                    bytesWritten += dictionaryHeader.length() + 1;
+                    for (String value : encoded[i].getValues()) {
+                        dictionaryWriter.write(value);
+                        dictionaryWriter.newLine();
+                        bytesWritten += value.length() + 1;
+                    }
+                }
+                dictionaryWriter.flush();
+                Durability.written(dictionaryOut, dictionaryTarget);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(dictionaryTemporary);
+                throw e;
+            }
+            Durability.replace(dictionaryTemporary, dictionaryTarget);
+        } else if (dictionaryFile.exists() && !dictionaryFile.delete()) {
+            throw new IOException("Could not delete " + dictionaryFile);
+        }
+        QueryTrace.addBytesWritten(bytesWritten);
+    }
+    /**
+     * Writes the rows changed since the table file was last written to the log beside it rather than rewriting the
+     * file: a new version of each row inserted or updated, and a tombstone for each row deleted. Loading replays the
+     * log over the file, the last entry for an id winning. What the log supersedes is counted as dead in the
+     * metadata, for VACUUM to reclaim by writing the file afresh.
+     */
+    public void appendLog(String tableDataFilePath) throws IOException {
+        if (unsaved.isEmpty()) return;
+        int schemaVersion = metadata == null ? 0 : metadata.getSchemaVersion();
+        String[] keys = attributes.keys();
+        long rows = 0;
+        long dead = 0;
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<Integer, Boolean> change : unsaved.entrySet()) {
+            HashMap<String, String> row = getRecords().get(change.getKey());
+            boolean stored = change.getValue();
+            if (row != null) {
+                lines.append(LOG_VERSION).append(schemaVersion);
+                for (String key : keys) lines.append('\t').append(key).append('=').append(row.getOrDefault(key, "NULL"));
+                if (stored) dead++;
+            } else if (stored) {
+                // Both the version deleted and the tombstone itself are dead:
+                lines.append(LOG_TOMBSTONE).append(change.getKey());
+                dead += 2;
+            } else {
+                // Inserted and deleted again in between:
+                continue;
             }
-            writer.write(recordBuilder.toString().trim());
-            writer.newLine();
+            lines.append(System.lineSeparator());
+            rows++;
+        }
+        byte[] bytes = lines.toString().getBytes(Charset.defaultCharset());
+        Path log = Paths.get(logFilePath(tableDataFilePath));
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Whatever lies past what the metadata accounts for was written by a save that never committed:
+            long committed = metadata == null || metadata.getLogBytes() < 0 ? channel.size() : metadata.getLogBytes();
+            channel.truncate(committed);
+            channel.position(committed);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            Durability.written(channel, log);
+            if (metadata != null) metadata.setLogBytes(channel.position());
         }
-        writer.close();
+        unsaved.clear();
+        if (metadata != null) metadata.appended(rows, dead);
+        QueryTrace.addBytesWritten(bytes.length);
+    }
+    public TrigramIndex getTrigramIndex(String attribute) { return trigramIndexes.get(attribute.toLowerCase()); }
+    public void createTrigramIndex(String attribute) {
+        if (!attributes.contains(attribute)) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+        if (trigramIndexes.containsKey(attribute.toLowerCase())) throw new DBException(ErrorType.DUPLICATE_INDEX_EXCEPTION);
+        buildTrigramIndex(attribute.toLowerCase());
+    }
+    public void dropTrigramIndex(String attribute) {
+        if (trigramIndexes.remove(attribute.toLowerCase()) == null) throw new DBException(ErrorType.INDEX_NOT_FOUND_EXCEPTION);
     }
+    private void buildTrigramIndex(String attribute) {
+        TrigramIndex index = new TrigramIndex(attribute);
+        for (Map.Entry<Integer, HashMap<String, String>> record : getRecords().entrySet()) {
+            index.add(record.getKey(), record.getValue().get(attribute));
+        }
+        trigramIndexes.put(attribute, index);
+    }
+    /**
+     * Constant time whatever the size of the table: no row is touched. Until {@link #compactRows} has been through
+     * them, rows are read through a projection that gives them NULL for the new attribute.
+     */
     public void addAttribute(String attribute) {
         if (attributes.contains(attribute)) throw new DBException(ErrorType.DUPLICATE_ATTRIBUTE_EXCEPTION);
+        String key = attribute.toLowerCase();
+        // Rows may still hold values of a dropped attribute of the same name, which must not come back with it:
+        if (projection != null && projection.isDropped(key)) compactRows(Integer.MAX_VALUE);
         attributes.add(attribute);
-        for (HashMap<String, String> record : records.values()) record.put(attribute.toLowerCase(), "NULL");
+        ColumnDictionary dictionary = new ColumnDictionary();
+        dictionary.intern("NULL");
+        dictionaries.put(key, dictionary);
+        if (!records.isEmpty()) projection().add(key);
+        if (loadedAttributes != null) loadedAttributes.add(key);
+        zoneMap.dropColumn(key);
+        zoneMap.addToAll(key, "NULL");
+        if (metadata != null) metadata.nextVersion();
     }
+    // As addAttribute, leaving the dropped attribute's values in the rows, hidden, until compactRows removes them.
     public void dropAttribute(String attribute) {
         if (!attributes.contains(attribute)) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
         if (attribute.equalsIgnoreCase("id")) throw new DBException(ErrorType.PK_DROP_EXCEPTION);
+        String key = attribute.toLowerCase();
         attributes.remove(attribute);
-        for (HashMap<String, String> record : records.values()) record.remove(attribute.toLowerCase());
+        if (!records.isEmpty()) projection().drop(key);
+        if (loadedAttributes != null) loadedAttributes.remove(key);
+        trigramIndexes.remove(key);
+        dictionaries.remove(key);
+        zoneMap.dropColumn(key);
+        if (metadata != null) metadata.nextVersion();
+    }
+    // Every row has to be looked at again for the latest ALTER, including those already brought up to date:
+    private SchemaProjection projection() {
+        if (projection == null) projection = new SchemaProjection(records);
+        compactedTo = 1;
+        return projection;
+    }
+    public boolean hasPendingAlter() { return projection != null; }
+    /**
+     * Writes up to {@code maxRows} more rows back in line with the current attributes, in id order, and drops the
+     * projection once every row is. The rows read the same before and after, so the table is not changed by it.
+     */
+    public void compactRows(int maxRows) {
+        if (projection == null) return;
+        for (int rows = 0; compactedTo < nextPrimaryKey && rows < maxRows; compactedTo++) {
+            HashMap<String, String> row = records.get(compactedTo);
+            if (row == null) continue;
+            rows++;
+            if (!projection.isCurrent(row)) records.set(compactedTo, projection.project(row));
+        }
+        if (compactedTo < nextPrimaryKey) return;
+        // Rows given their id explicitly may lie past the key sequence:
+        for (int id : records.keySet()) {
+            if (id < nextPrimaryKey) continue;
+            HashMap<String, String> row = records.get(id);
+            if (!projection.isCurrent(row)) records.set(id, projection.project(row));
+        }
+        projection = null;
     }
     public void addRecord(int id, HashMap<String, String> record) {
         validateKeySet(record.keySet());
-        records.put(id, record);
+        for (Map.Entry<String, String> value : record.entrySet()) value.setValue(share(value.getKey(), value.getValue()));
+        boolean replaced = records.contains(id);
+        records.set(id, record);
+        for (TrigramIndex index : trigramIndexes.values()) index.add(id, record.get(index.getAttribute()));
+        zoneMap.add(id, record, record.keySet(), true);
+        changed(id, replaced);
     }
     public void addRecord(HashMap<String, String> record) {
         validateKeySet(record.keySet());
+        for (Map.Entry<String, String> value : record.entrySet()) value.setValue(share(value.getKey(), value.getValue()));
         record.put("id", Integer.toString(nextPrimaryKey));
-        records.put(nextPrimaryKey, record);
+        records.set(nextPrimaryKey, record);
+        for (TrigramIndex index : trigramIndexes.values()) index.add(nextPrimaryKey, record.get(index.getAttribute()));
+        zoneMap.add(nextPrimaryKey, record, record.keySet(), true);
+        changed(nextPrimaryKey, false);
         nextPrimaryKey++;
     }
     public void updateRecord(int id, HashMap<String, String> newRecord) {
-        if (!records.containsKey(id)) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
-        validateKeySet(newRecord.keySet());
-        for (String key : newRecord.keySet()) {
-            records.get(id).replace(key, newRecord.get(key));
+        int[] ordinals = new int[newRecord.size()];
+        String[] values = new String[ordinals.length];
+        int i = 0;
+        for (Map.Entry<String, String> value : newRecord.entrySet()) {
+            ordinals[i] = attributes.indexOf(value.getKey());
+            if (ordinals[i] < 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+            values[i++] = value.getValue();
+        }
+        updateRecord(id, ordinals, values);
+    }
+    // The attributes to change by ordinal, each with its new value:
+    public void updateRecord(int id, int[] ordinals, String[] values) {
+        HashMap<String, String> record = getRecords().get(id);
+        if (record == null) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
+        String[] keys = attributes.keys();
+        ArrayList<String> changed = new ArrayList<>(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            String key = keys[ordinals[i]];
+            String previous = record.put(key, share(key, values[i]));
+            changed.add(key);
+            TrigramIndex index = trigramIndexes.get(key);
+            if (index == null) continue;
+            index.remove(id, previous);
+            index.add(id, values[i]);
         }
+        records.set(id, record);
+        zoneMap.add(id, record, changed, false);
+        changed(id, true);
     }
     public void deleteRecords(Set<Integer> ids) {
-        for (Integer id : ids) { records.remove(id); }
+        for (Integer id : ids) {
+            HashMap<String, String> removed = getRecords().delete(id);
+            if (removed == null) continue;
+            for (TrigramIndex index : trigramIndexes.values()) index.remove(id, removed.get(index.getAttribute()));
+            changed(id, true);
+        }
     }
+    // A row inserted since the last write stays one the file holds no version of, however often it changes after:
+    private void changed(int id, boolean stored) {
+        unsaved.putIfAbsent(id, stored);
+        if (metadata != null) metadata.nextVersion();
+    }
+    public boolean isDirty() { return dirty; }
+    public boolean hasUnsavedRows() { return !unsaved.isEmpty(); }
     public HashMap<String, String> getRecord(int id) {
-        if (!records.containsKey(id)) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
-        return new HashMap<>(records.get(id));
+        HashMap<String, String> record = getRecords().get(id);
+        if (record == null) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
+        return new HashMap<>(record);
     }
     public HashMap<String, String> getRecord(int id, ArrayList<String> attributes) {
-        if (!records.containsKey(id)) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
+        HashMap<String, String> record = getRecords().get(id);
+        if (record == null) throw new DBException(ErrorType.INVALID_PRIMARY_KEY_EXCEPTION);
         validateKeySet(attributes);
         HashMap<String, String> requestedRecord = new HashMap<>();
-        for (String attribute : attributes) { requestedRecord.put(attribute, records.get(id).get(attribute)); }
+        for (String attribute : attributes) { requestedRecord.put(attribute, record.get(attribute)); }
         return requestedRecord;
     }
     public ArrayList<HashMap<String, String>> getRecords(ArrayList<String> attributes) {
         validateKeySet(attributes);
-        ArrayList<HashMap<String, String>> result = new ArrayList<>();
-        for (Integer id : records.keySet()) {
-            HashMap<String, String> record = getRecord(id, attributes);
-            result.add(record);
+        ArrayList<HashMap<String, String>> result = new ArrayList<>(records.size());
+        for (HashMap<String, String> record : getRecords().values()) {
+            HashMap<String, String> requestedRecord = new HashMap<>(attributes.size() * 4 / 3 + 1);
+            for (String attribute : attributes) requestedRecord.put(attribute, record.get(attribute));
+            result.add(requestedRecord);
         }
         return result;
     }
-    public HashMap<Integer, HashMap<String, String>> getRecords() { return records; }
+    // The rows, seen through the projection while an ALTER is pending:
+    public RecordStore getRecords() { return projection == null ? records : projection; }
+    // The table is gone: its rows (off the heap, for such a store) and indexes are let go at once.
+    public void free() {
+        records.free();
+        projection = null;
+        trigramIndexes.clear();
+        zoneMap = new ZoneMap(zoneMap.getBlockRows());
+    }
     public String getPrimaryKey() { return primaryKey; }
     public String getOriginalTableName() {return this.originalTableName; }
     public int getNextPrimaryKey() { return nextPrimaryKey; }
@@ -123,7 +659,7 @@ public class Table {
         StringBuilder string = new StringBuilder();
         for (int id : records.keySet()) {
             string.append("Record ID: ").append(id).append("\n");
-            HashMap<String, String> record = records.get(id);
+            HashMap<String, String> record = getRecords().get(id);
             for (String attribute : attributes) {
                 string.append(attribute).append(": ").append(record.get(attribute)).append("\n");
             }
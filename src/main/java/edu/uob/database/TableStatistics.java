@@ -0,0 +1,128 @@
+package edu.uob.database;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.uob.utils.Utils;
+
+import java.util.*;
+
+/**
+ * Planner statistics for one table, gathered by ANALYZE and kept with the table's metadata: the row count and, for each
+ * attribute, its NULL count, an estimate of its distinct values and, over its numeric values, min/max and an
+ * equi-depth histogram.
+ */
+public class TableStatistics {
+    private static final int HISTOGRAM_BUCKETS = 32;
+    private final long rowCount;
+    // lower-cased attribute name --> statistics:
+    private final LinkedHashMap<String, ColumnStatistics> columns;
+
+    @JsonCreator
+    public TableStatistics(@JsonProperty("rowCount") long rowCount,
+                           @JsonProperty("columns") LinkedHashMap<String, ColumnStatistics> columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    public static TableStatistics compute(Table table) {
+        LinkedHashMap<String, ColumnStatistics> columns = new LinkedHashMap<>();
+        for (String attribute : table.getAttributes()) {
+            String key = attribute.toLowerCase();
+            long nullCount = 0;
+            DistinctCounter distinct = new DistinctCounter();
+            double[] numbers = new double[table.getRecords().size()];
+            int numericCount = 0;
+            for (HashMap<String, String> record : table.getRecords().values()) {
+                String value = record.get(key);
+                if (value == null || value.equalsIgnoreCase("NULL")) {
+                    nullCount++;
+                    continue;
+                }
+                distinct.add(value);
+                if (Utils.isNumeric(value)) {
+                    float number = Float.parseFloat(value);
+                    if (!Float.isNaN(number)) numbers[numericCount++] = number;
+                }
+            }
+            Arrays.sort(numbers, 0, numericCount);
+            ArrayList<Double> histogram = new ArrayList<>();
+            if (numericCount > 0) {
+                int buckets = Math.min(HISTOGRAM_BUCKETS, numericCount);
+                for (int i = 0; i <= buckets; i++) histogram.add(numbers[(int) ((long) i * (numericCount - 1) / buckets)]);
+            }
+            columns.put(key, new ColumnStatistics(nullCount, distinct.estimate(), numericCount, histogram));
+        }
+        return new TableStatistics(table.getRecords().size(), columns);
+    }
+
+    public long getRowCount() { return rowCount; }
+    public LinkedHashMap<String, ColumnStatistics> getColumns() { return columns; }
+    public ColumnStatistics column(String attribute) { return columns.get(attribute.toLowerCase()); }
+
+    public static class ColumnStatistics {
+        private final long nullCount;
+        private final long distinctCount;
+        private final long numericCount;
+        // Equi-depth bucket boundaries over the numeric values: first is the minimum, last the maximum.
+        private final ArrayList<Double> histogram;
+
+        @JsonCreator
+        public ColumnStatistics(@JsonProperty("nullCount") long nullCount,
+                                @JsonProperty("distinctCount") long distinctCount,
+                                @JsonProperty("numericCount") long numericCount,
+                                @JsonProperty("histogram") ArrayList<Double> histogram) {
+            this.nullCount = nullCount;
+            this.distinctCount = distinctCount;
+            this.numericCount = numericCount;
+            this.histogram = histogram;
+        }
+        public long getNullCount() { return nullCount; }
+        public long getDistinctCount() { return distinctCount; }
+        public long getNumericCount() { return numericCount; }
+        public ArrayList<Double> getHistogram() { return histogram; }
+        public Double min() { return histogram.isEmpty() ? null : histogram.get(0); }
+        public Double max() { return histogram.isEmpty() ? null : histogram.get(histogram.size() - 1); }
+
+        /** Estimated fraction of the numeric values that are below {@code value}, interpolating within a bucket. */
+        public double fractionBelow(double value) {
+            if (histogram.isEmpty() || value <= histogram.get(0)) return 0;
+            int last = histogram.size() - 1;
+            if (value > histogram.get(last)) return 1;
+            int bucket = 0;
+            while (bucket < last - 1 && histogram.get(bucket + 1) < value) bucket++;
+            double low = histogram.get(bucket), high = histogram.get(bucket + 1);
+            double within = high > low ? (value - low) / (high - low) : 1;
+            return (bucket + within) / last;
+        }
+    }
+
+    /**
+     * K-minimum-values sketch: keeps the K smallest distinct hashes seen. Below K distinct values the count is exact;
+     * above it, how tightly the K smallest hashes are packed estimates how many distinct values there are.
+     */
+    static class DistinctCounter {
+        private static final int K = 1024;
+        private final TreeSet<Long> smallest = new TreeSet<>();
+        void add(String value) {
+            long hash = mix(value.hashCode()) >>> 1;
+            if (smallest.size() < K) {
+                smallest.add(hash);
+            } else if (hash < smallest.last() && smallest.add(hash)) {
+                smallest.pollLast();
+            }
+        }
+        long estimate() {
+            if (smallest.size() < K) return smallest.size();
+            double kth = (double) smallest.last() / Long.MAX_VALUE;
+            return Math.round((K - 1) / kth);
+        }
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package edu.uob.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * For each three-character sequence (trigram) of one attribute's values, compared case-insensitively, the ids of the
+ * records whose value contains it. A value containing a LIKE pattern contains every trigram of the pattern, so
+ * intersecting the pattern's posting lists yields every record that can match; the candidates must still be checked,
+ * as the trigrams need not be adjacent. Patterns shorter than three characters cannot be narrowed down this way.
+ */
+public class TrigramIndex {
+    private final String attribute;
+    // Trigram, its three chars packed into a long --> ids of the records holding it:
+    private final HashMap<Long, HashSet<Integer>> postings = new HashMap<>();
+
+    public TrigramIndex(String attribute) { this.attribute = attribute.toLowerCase(); }
+
+    public String getAttribute() { return attribute; }
+    public void add(int id, String value) {
+        if (value == null) return;
+        for (long trigram : trigrams(value)) postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+    }
+    public void remove(int id, String value) {
+        if (value == null) return;
+        for (long trigram : trigrams(value)) {
+            HashSet<Integer> ids = postings.get(trigram);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) postings.remove(trigram);
+        }
+    }
+    public static boolean canNarrow(String pattern) { return pattern.toLowerCase().length() >= 3; }
+    // At most this many candidates: the length of the shortest posting list among the pattern's trigrams.
+    public int estimate(String pattern) {
+        int shortest = Integer.MAX_VALUE;
+        for (long trigram : trigrams(pattern)) {
+            HashSet<Integer> ids = postings.get(trigram);
+            shortest = Math.min(shortest, ids == null ? 0 : ids.size());
+        }
+        return shortest;
+    }
+    // Ids, in increasing order, of the records holding every trigram of the pattern, which must pass canNarrow:
+    public int[] candidates(String pattern) {
+        ArrayList<HashSet<Integer>> lists = new ArrayList<>();
+        for (long trigram : trigrams(pattern)) {
+            HashSet<Integer> ids = postings.get(trigram);
+            if (ids == null) return new int[0];
+            lists.add(ids);
+        }
+        // Walk the shortest list, probing the others from shortest to longest so most misses are found early:
+        lists.sort(Comparator.comparingInt(HashSet::size));
+        int[] candidates = new int[lists.get(0).size()];
+        int count = 0;
+        next:
+        for (int id : lists.get(0)) {
+            for (int i = 1; i < lists.size(); i++) if (!lists.get(i).contains(id)) continue next;
+            candidates[count++] = id;
+        }
+        candidates = Arrays.copyOf(candidates, count);
+        Arrays.sort(candidates);
+        return candidates;
+    }
+    public int getTrigramCount() { return postings.size(); }
+
+    private static HashSet<Long> trigrams(String value) {
+        String lowerCase = value.toLowerCase();
+        HashSet<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= lowerCase.length(); i++) {
+            trigrams.add((long) lowerCase.charAt(i) << 32 | (long) lowerCase.charAt(i + 1) << 16 | lowerCase.charAt(i + 2));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,205 @@
+package edu.uob.database;
+
+import edu.uob.utils.Utils;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Summaries of fixed-size blocks of rows, block b holding the ids [b * blockRows + 1, (b + 1) * blockRows]. For each
+ * attribute a block keeps the smallest and largest numeric value and a Bloom filter of the other values, which is
+ * enough to tell that no row of the block can satisfy a comparison, so that a scan can pass over the whole block.
+ * On append-ordered data (ids, timestamps) ranges then touch only the blocks they overlap.
+ *
+ * <p>Summaries only widen: an update adds the new value and a delete takes nothing away, so they stay correct but can
+ * grow loose until they are rebuilt when the table is next saved or loaded. Saving also writes them beside the table
+ * file, with the byte range of each block in it, so a streamed scan can skip blocks without reading them.
+ */
+public class ZoneMap {
+    private static final int BLOCK_ROWS = Integer.getInteger("db.zone.blockRows", 1024);
+    private static final int MAGIC = 0x5a4f4e45;
+    private static final int BLOOM_HASHES = 3;
+    private final int blockRows;
+    private final ArrayList<Block> blocks = new ArrayList<>();
+
+    public ZoneMap() { this(BLOCK_ROWS); }
+    public ZoneMap(int blockRows) { this.blockRows = blockRows; }
+
+    // Summarises the given attributes (lower-cased, as the records hold them) of every record:
+    public static ZoneMap build(Map<Integer, HashMap<String, String>> records, Collection<String> columns, int blockRows) {
+        ZoneMap zoneMap = new ZoneMap(blockRows);
+        for (Map.Entry<Integer, HashMap<String, String>> record : records.entrySet()) {
+            zoneMap.add(record.getKey(), record.getValue(), columns, true);
+        }
+        return zoneMap;
+    }
+
+    public int getBlockRows() { return blockRows; }
+    public ArrayList<Block> getBlocks() { return blocks; }
+    public Block block(int id) {
+        int index = Math.max(0, (id - 1) / blockRows);
+        while (blocks.size() <= index) blocks.add(new Block());
+        return blocks.get(index);
+    }
+    // Widens the summaries of the record's block by the given columns of {@code values}; newRow counts it in the block.
+    public void add(int id, HashMap<String, String> values, Collection<String> columns, boolean newRow) {
+        Block block = block(id);
+        if (newRow) block.rows++;
+        for (String column : columns) {
+            String value = values.get(column);
+            if (value != null) block.zones.computeIfAbsent(column, key -> new ColumnZone(blockRows)).add(value);
+        }
+    }
+    public void dropColumn(String column) { for (Block block : blocks) block.zones.remove(column); }
+    // Widens every block holding rows by the value, which every row has for the column (as an attribute just added):
+    public void addToAll(String column, String value) {
+        for (Block block : blocks) {
+            if (block.rows > 0) block.zones.computeIfAbsent(column, key -> new ColumnZone(blockRows)).add(value);
+        }
+    }
+
+    public void write(String path, long tableFileBytes) throws IOException {
+        Path target = Paths.get(path);
+        FileOutputStream file = new FileOutputStream(Durability.temporary(target).toFile());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeLong(tableFileBytes);
+            out.writeInt(blockRows);
+            out.writeInt(blocks.size());
+            for (Block block : blocks) {
+                out.writeInt(block.rows);
+                out.writeLong(block.fileOffset);
+                out.writeInt(block.fileBytes);
+                out.writeInt(block.zones.size());
+                for (Map.Entry<String, ColumnZone> zone : block.zones.entrySet()) {
+                    out.writeUTF(zone.getKey());
+                    zone.getValue().write(out);
+                }
+            }
+            out.flush();
+            Durability.written(file, target);
+        }
+        Durability.replace(Durability.temporary(target), target);
+    }
+    // The summaries written beside a table file, or null when there are none or the file has changed since:
+    public static ZoneMap read(String path, long tableFileBytes) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != tableFileBytes) return null;
+            ZoneMap zoneMap = new ZoneMap(in.readInt());
+            int blockCount = in.readInt();
+            for (int b = 0; b < blockCount; b++) {
+                Block block = new Block();
+                block.rows = in.readInt();
+                block.fileOffset = in.readLong();
+                block.fileBytes = in.readInt();
+                int zones = in.readInt();
+                for (int z = 0; z < zones; z++) block.zones.put(in.readUTF(), ColumnZone.read(in));
+                zoneMap.blocks.add(block);
+            }
+            return zoneMap;
+        }
+    }
+    public static String zoneFilePath(String tableDataFilePath) {
+        String base = tableDataFilePath.endsWith(".tab") ? tableDataFilePath.substring(0, tableDataFilePath.length() - 4) : tableDataFilePath;
+        return base + ".zones";
+    }
+
+    public static class Block {
+        private final HashMap<String, ColumnZone> zones = new HashMap<>();
+        private int rows;
+        // Where the block's lines lie in the table file, when read from disk:
+        private long fileOffset;
+        private int fileBytes;
+        // Null when the attribute is not summarised, in which case nothing can be ruled out:
+        public ColumnZone zone(String attribute) { return zones.get(attribute); }
+        public int getRows() { return rows; }
+        public long getFileOffset() { return fileOffset; }
+        public int getFileBytes() { return fileBytes; }
+        void setFileRange(long fileOffset, int fileBytes) {
+            this.fileOffset = fileOffset;
+            this.fileBytes = fileBytes;
+        }
+    }
+
+    public static class ColumnZone {
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+        private int numericCount;
+        // Over the case-folded values that are not numbers; null until there is one:
+        private long[] bloom;
+        private final int bloomBits;
+        ColumnZone(int blockRows) {
+            // About eight bits a row keeps false positives near 3% with three hashes:
+            this.bloomBits = Math.max(64, Integer.highestOneBit(Math.max(1, blockRows * 8 - 1)) << 1);
+        }
+        private ColumnZone(int bloomBits, long[] bloom) {
+            this.bloomBits = bloomBits;
+            this.bloom = bloom;
+        }
+        void add(String value) {
+            if (Utils.isNumeric(value)) {
+                float number = Float.parseFloat(value);
+                if (!Float.isNaN(number)) {
+                    min = Math.min(min, number);
+                    max = Math.max(max, number);
+                    numericCount++;
+                    return;
+                }
+            }
+            if (bloom == null) bloom = new long[bloomBits / 64];
+            int hash = foldedHash(value);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = bloomBit(hash, i);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        public boolean hasNumbers() { return numericCount > 0; }
+        public float getMin() { return min; }
+        public float getMax() { return max; }
+        // False only if no value that is not a number equals this one, ignoring case:
+        public boolean mightContain(String value) {
+            if (bloom == null) return false;
+            int hash = foldedHash(value);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = bloomBit(hash, i);
+                if ((bloom[bit >>> 6] & 1L << bit) == 0) return false;
+            }
+            return true;
+        }
+        private int bloomBit(int hash, int i) {
+            int second = Integer.rotateLeft(hash * 0x9e3779b9, 16) | 1;
+            return (hash + i * second) & (bloomBits - 1);
+        }
+        private static int foldedHash(String value) {
+            int hash = 0;
+            for (int i = 0; i < value.length(); i++) hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+            return hash ^ (hash >>> 16);
+        }
+        void write(DataOutputStream out) throws IOException {
+            out.writeFloat(min);
+            out.writeFloat(max);
+            out.writeInt(numericCount);
+            out.writeInt(bloomBits);
+            out.writeInt(bloom == null ? 0 : bloom.length);
+            if (bloom != null) for (long word : bloom) out.writeLong(word);
+        }
+        static ColumnZone read(DataInputStream in) throws IOException {
+            float min = in.readFloat(), max = in.readFloat();
+            int numericCount = in.readInt(), bloomBits = in.readInt(), words = in.readInt();
+            long[] bloom = words == 0 ? null : new long[words];
+            for (int i = 0; i < words; i++) bloom[i] = in.readLong();
+            ColumnZone zone = new ColumnZone(bloomBits, bloom);
+            zone.min = min;
+            zone.max = max;
+            zone.numericCount = numericCount;
+            return zone;
+        }
+    }
+}
@@ -10,9 +10,20 @@ public interface CommandVisitor {
     void visit(Command.CreateTable createTableCommand) throws IOException;
     void visit(Command.Drop drop) throws IOException;
     void visit(Command.Alter alter) throws IOException;
+    void visit(Command.Index index) throws IOException;
     void visit(Command.Insert insert) throws IOException;
     void visit(Command.Select select) throws IOException;
     void visit(Command.Delete delete) throws IOException;
     void visit(Command.Update update) throws IOException;
     void visit(Command.Join join) throws IOException;
+    void visit(Command.Prepare prepare) throws IOException;
+    void visit(Command.Execute execute) throws IOException;
+    void visit(Command.ShowStats showStats) throws IOException;
+    void visit(Command.ResetStats resetStats) throws IOException;
+    void visit(Command.Explain explain) throws IOException;
+    void visit(Command.Analyze analyze) throws IOException;
+    void visit(Command.Vacuum vacuum) throws IOException;
+    void visit(Command.Declare declare) throws IOException;
+    void visit(Command.Fetch fetch) throws IOException;
+    void visit(Command.Close close) throws IOException;
 }
\ No newline at end of file
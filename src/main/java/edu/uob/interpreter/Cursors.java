@@ -0,0 +1,80 @@
+package edu.uob.interpreter;
+
+import edu.uob.planner.Plan;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Open cursors by session. A cursor is a planned SELECT or JOIN that has not been run: each FETCH pulls the next rows
+ * through its operator tree, so only one fetch's rows are held at a time (sorts, aggregates and the build side of a
+ * join still read their whole input first). A cursor left unused for longer than the timeout is closed by the next
+ * cursor command from any session, and each session may have at most maxPerSession open.
+ */
+public class Cursors {
+    private final long timeoutMillis;
+    private final int maxPerSession;
+    // session --> cursor name --> cursor:
+    private final HashMap<String, HashMap<String, Cursor>> sessions = new HashMap<>();
+
+    public Cursors(long timeoutMillis, int maxPerSession) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxPerSession = maxPerSession;
+    }
+
+    public void declare(String session, String name, Plan plan, long now) {
+        expire(now);
+        HashMap<String, Cursor> cursors = sessions.computeIfAbsent(session, s -> new HashMap<>());
+        if (cursors.containsKey(name)) throw new DBException(ErrorType.DUPLICATE_CURSOR_EXCEPTION);
+        if (cursors.size() >= maxPerSession) throw new DBException(ErrorType.CURSOR_LIMIT_EXCEPTION);
+        cursors.put(name, new Cursor(plan, now));
+    }
+    public Plan get(String session, String name, long now) {
+        expire(now);
+        HashMap<String, Cursor> cursors = sessions.get(session);
+        Cursor cursor = cursors == null ? null : cursors.get(name);
+        if (cursor == null) throw new DBException(ErrorType.CURSOR_NOT_FOUND_EXCEPTION);
+        cursor.lastUsed = now;
+        return cursor.plan;
+    }
+    public void close(String session, String name) {
+        HashMap<String, Cursor> cursors = sessions.get(session);
+        Cursor cursor = cursors == null ? null : cursors.remove(name);
+        if (cursor == null) throw new DBException(ErrorType.CURSOR_NOT_FOUND_EXCEPTION);
+        cursor.plan.close();
+        if (cursors.isEmpty()) sessions.remove(session);
+    }
+    // Closes every cursor of a session that has gone:
+    public void closeSession(String session) {
+        HashMap<String, Cursor> cursors = sessions.remove(session);
+        if (cursors != null) for (Cursor cursor : cursors.values()) cursor.plan.close();
+    }
+    public int size(String session) {
+        HashMap<String, Cursor> cursors = sessions.get(session);
+        return cursors == null ? 0 : cursors.size();
+    }
+    // Closes every cursor not used within the timeout:
+    public void expire(long now) {
+        for (HashMap<String, Cursor> cursors : sessions.values()) {
+            Iterator<Cursor> iterator = cursors.values().iterator();
+            while (iterator.hasNext()) {
+                Cursor cursor = iterator.next();
+                if (now - cursor.lastUsed < timeoutMillis) continue;
+                cursor.plan.close();
+                iterator.remove();
+            }
+        }
+        sessions.values().removeIf(HashMap::isEmpty);
+    }
+
+    private static class Cursor {
+        private final Plan plan;
+        private long lastUsed;
+        private Cursor(Plan plan, long lastUsed) {
+            this.plan = plan;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
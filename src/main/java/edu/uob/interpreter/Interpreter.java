@@ -1,11 +1,16 @@
 package edu.uob.interpreter;
 
 import edu.uob.parser.Command;
-import edu.uob.parser.Condition;
 import edu.uob.database.DBManager;
 import edu.uob.database.DBMetadata;
 import edu.uob.database.Table;
-import edu.uob.tokenizer.TokenType;
+import edu.uob.database.TableStatistics;
+import edu.uob.planner.Binder;
+import edu.uob.planner.Plan;
+import edu.uob.planner.Planner;
+import edu.uob.stats.Phase;
+import edu.uob.stats.QueryStats;
+import edu.uob.stats.QueryTrace;
 import edu.uob.utils.DBException;
 import edu.uob.utils.ErrorType;
 import edu.uob.utils.Utils;
@@ -14,14 +19,48 @@ import java.io.IOException;
 import java.util.*;
 
 public class Interpreter implements CommandVisitor {
+    private static final long CURSOR_TIMEOUT_MILLIS = Long.getLong("db.cursor.timeoutMillis", 5 * 60 * 1000);
+    private static final int MAX_CURSORS_PER_SESSION = Integer.getInteger("db.cursor.maxPerSession", 16);
+    // 0 turns the result cache off:
+    private static final long RESULT_CACHE_BYTES = Long.getLong("db.resultCache.bytes", 16L << 20);
     private final DBManager manager;
+    private final Binder binder;
+    private final Planner planner;
+    private final PreparedStatements preparedStatements;
+    private final Cursors cursors;
+    private final ResultCache resultCache;
     private String response;
-    public Interpreter(DBManager manager) { this.manager = manager; }
+    private String session;
+    private String query;
+    // What the names of the command being run resolved to:
+    private Binder.Binding binding;
+    public Interpreter(DBManager manager) {
+        this.manager = manager;
+        this.binder = new Binder(manager);
+        this.planner = new Planner(manager);
+        this.preparedStatements = new PreparedStatements();
+        this.cursors = new Cursors(CURSOR_TIMEOUT_MILLIS, MAX_CURSORS_PER_SESSION);
+        this.resultCache = new ResultCache(RESULT_CACHE_BYTES);
+    }
     public String getResponse() { return response; }
-    public void interpret(Command command) throws IOException {
+    public ResultCache getResultCache() { return resultCache; }
+    public void interpret(Command command) throws IOException { interpret(command, "local", null); }
+    /**
+     * Cursors and prepared statements belong to the session that declared them. {@code query} is the normalised text the command was parsed
+     * from, which lets a SELECT or JOIN answer from the result cache; null leaves the cache out.
+     */
+    public void interpret(Command command, String session, String query) throws IOException {
         response = null;
+        this.session = session;
+        this.query = query;
+        bind(command);
         command.accept(this);
     };
+    /** Drops the cursors and prepared statements of a session that has gone. */
+    public void closeSession(String session) {
+        cursors.closeSession(session);
+        preparedStatements.closeSession(session);
+    }
     @Override
     public void visit(Command.Use useCommand) throws IOException { manager.useDatabase(useCommand.getDatabaseName()); }
     @Override
@@ -57,280 +96,236 @@ public class Interpreter implements CommandVisitor {
         manager.saveDatabase();
     }
     @Override
-    public void visit(Command.Insert insert) throws IOException {
+    public void visit(Command.Index index) throws IOException {
         if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
-
+        if (index.getIndexAction() == Command.Index.IndexAction.CREATE) {
+            manager.getDatabase().createTrigramIndex(index.getTableName(), index.getAttributeName());
+        } else {
+            manager.getDatabase().dropTrigramIndex(index.getTableName(), index.getAttributeName());
+        }
+        manager.saveDatabase();
+    }
+    @Override
+    public void visit(Command.Insert insert) throws IOException {
         String tableName = insert.getTableName();
         manager.getDatabase().loadTable(tableName);
         Table table = manager.getDatabase().getTables().get(tableName);
+        QueryTrace.addTable(tableName, table.getRecords().size());
 
-        List<String> attributeNames = table.getAttributes();
+        // The binder has checked there is a value for every attribute after id, in order:
+        String[] keys = binding.getKeys(0);
         List<String> values = insert.getValues().getValues();
-        if (attributeNames.size() != values.size() + 1) {
-            throw new DBException(ErrorType.INVALID_VALUE_EXCEPTION);
-        }
-
-        // Map values to attributes
-        HashMap<String, String> newRecord = new HashMap<>();
-        for (int i = 0; i < values.size(); i++) {
-            String attributeName = attributeNames.get(i + 1).toLowerCase();
-            String value = values.get(i);
-            newRecord.put(attributeName.toLowerCase(), value);
-        }
+        HashMap<String, String> newRecord = new HashMap<>(values.size() * 4 / 3 + 1);
+        for (int i = 0; i < values.size(); i++) newRecord.put(keys[i + 1], values.get(i));
 
         table.addRecord(newRecord);
         // update next Primary Key manually as int is not passed by reference:
         manager.getMetadata().getTables().get(tableName).incrementNextPrimaryKey();
+        manager.getDatabase().recordModifications(tableName, 1);
         manager.saveDatabase();
     }
     @Override
     public void visit(Command.Select select) throws IOException {
-        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
-        if (!manager.getDatabase().getTables().containsKey(select.getTableName()))
-            throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        manager.getDatabase().loadTable(select.getTableName());
-        Table table = manager.getDatabase().getTables().get(select.getTableName());
-
-        // Attributes requested:
-        ArrayList<String> attributes = processWildCardList(select);
-
-        // Records requested:
-        Condition condition = select.getCondition();
-        Set<Integer> recordIDs;
-        if (condition == null) { recordIDs = manager.getDatabase().getTables().get(select.getTableName()).getRecords().keySet(); }
-        else { recordIDs = processCondition(condition, table); }
-        response = Utils.prettyPrintTable(table.getRecords(), attributes, recordIDs, false);
+        String key = resultKey(select.getTableName());
+        if (key != null && respondFromCache(key)) return;
+        Plan plan = planner.plan(select, binding);
+        run(plan, false);
+        respond(plan);
+        if (key != null) resultCache.put(key, response, plan.getResult().size());
     }
     @Override
     public void visit(Command.Delete delete) throws IOException {
-        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
-        if (!manager.getDatabase().getTables().containsKey(delete.getTableName()))
-            throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        manager.getDatabase().loadTable(delete.getTableName());
-        Table table = manager.getDatabase().getTables().get(delete.getTableName());
-
-        // Records to be deleted:
-        Condition condition = delete.getCondition();
-        Set<Integer> recordIDs;
-        recordIDs = processCondition(condition, table);
-        table.deleteRecords(recordIDs);
+        Plan plan = planner.plan(delete, binding);
+        run(plan, false);
+        recordModifications(delete, plan);
         manager.saveDatabase();
     }
     @Override
     public void visit(Command.Update update) throws IOException {
-        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
-        if (!manager.getDatabase().getTables().containsKey(update.getTableName()))
-            throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
-        manager.getDatabase().loadTable(update.getTableName());
-        Table table = manager.getDatabase().getTables().get(update.getTableName());
-
-        HashMap<String, String> nameValueList = update.getNameValueList();
-        Condition condition = update.getCondition();
-
-        Set<Integer> recordIDs = processCondition(condition, table);
-
-        for (Integer id : recordIDs) {
-            HashMap<String, String> record = table.getRecord(id);
-            for (Map.Entry<String, String> entry : nameValueList.entrySet()) {
-                String attributeName = entry.getKey();
-                String attributeValue = entry.getValue();
-                if (attributeName.equalsIgnoreCase("id") || !table.getAttributes().contains(attributeName)) {
-                    throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
-                }
-                record.put(attributeName.toLowerCase(), attributeValue);
-            }
-            table.updateRecord(id, record);
-        }
+        Plan plan = planner.plan(update, binding);
+        run(plan, false);
+        recordModifications(update, plan);
         manager.saveDatabase();
     }
     @Override
     public void visit(Command.Join join) throws IOException {
-        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
-
-        String firstTableName = join.getFirstTableName();
-        String secondTableName = join.getSecondTableName();
-        String firstAttributeName = join.getFirstAttributeName();
-        String secondAttributeName = join.getSecondAttributeName();
-
-        // Retrieve the tables from the database
-        manager.getDatabase().loadTable(firstTableName);
-        Table firstTable = manager.getDatabase().getTables().get(firstTableName);
-        manager.getDatabase().loadTable(secondTableName);
-        Table secondTable = manager.getDatabase().getTables().get(secondTableName);
-
-        if (!firstTable.getAttributes().contains(firstAttributeName)
-                || !secondTable.getAttributes().contains(secondAttributeName)) {
-            throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
-        }
-
-        // Perform the join operation
-        Table resultTable = performJoin(firstTable, secondTable, firstAttributeName, secondAttributeName);
-
-        response = Utils.prettyPrintTable(resultTable.getRecords(), resultTable.getAttributes(), resultTable.getRecords().keySet(), true);
+        String key = resultKey(join.getFirstTableName(), join.getSecondTableName());
+        if (key != null && respondFromCache(key)) return;
+        Plan plan = planner.plan(join, binding);
+        run(plan, false);
+        respond(plan);
+        if (key != null) resultCache.put(key, response, plan.getResult().size());
     }
-    private Table performJoin(Table firstTable, Table secondTable, String firstAttributeName, String secondAttributeName) {
-        Table resultTable = new Table( "joinTable","id", 1, new Utils.CaseInsensitiveArrayList<>());
-        resultTable.addAttribute("id");
-        // Add attributes from the first table to the result table, excluding the join column and id
-        for (String attribute : firstTable.getAttributes()) {
-            if (!attribute.equalsIgnoreCase(firstAttributeName) && !attribute.equalsIgnoreCase("id")) {
-                resultTable.addAttribute(firstTable.getOriginalTableName() + "." + attribute);
-            }
-        }
-        // Add attributes from the second table to the result table, excluding the join column and id
-        for (String attribute : secondTable.getAttributes()) {
-            if (!attribute.equalsIgnoreCase(secondAttributeName) && !attribute.equalsIgnoreCase("id")) {
-                resultTable.addAttribute(secondTable.getOriginalTableName() + "." + attribute);
-            }
-        }
-        // Perform the join operation
-        for (Map.Entry<Integer, HashMap<String, String>> entry : firstTable.getRecords().entrySet()) {
-            String attributeValueFromFirstTable = entry.getValue().get(firstAttributeName.toLowerCase());
-            for (Map.Entry<Integer, HashMap<String, String>> entry2 : secondTable.getRecords().entrySet()) {
-                String attributeValueFromSecondTable = entry2.getValue().get(secondAttributeName.toLowerCase());
-                if (attributeValueFromFirstTable.equals(attributeValueFromSecondTable)) {
-                    HashMap<String, String> mergedRecord = new HashMap<>();
-                    // Add attributes from the first table to the merged record
-                    for (String attribute : firstTable.getAttributes()) {
-                        if (!attribute.equalsIgnoreCase(firstAttributeName) && !attribute.equals("id")) {
-                            mergedRecord.put(firstTable.getOriginalTableName() + "." + attribute, entry.getValue().get(attribute.toLowerCase()));
-                        }
-                    }
-                    // Add attributes from the second table to the merged record
-                    for (String attribute : secondTable.getAttributes()) {
-                        if (!attribute.equalsIgnoreCase(secondAttributeName) && !attribute.equals("id")) {
-                            mergedRecord.put(secondTable.getOriginalTableName() + "." + attribute, entry2.getValue().get(attribute.toLowerCase()));
-                        }
-                    }
-                    resultTable.addRecord(mergedRecord);
-                }
-            }
-        }
-
-        return resultTable;
+    @Override
+    public void visit(Command.Prepare prepare) { preparedStatements.prepare(session, prepare, query); }
+    @Override
+    public void visit(Command.Execute execute) throws IOException {
+        PreparedStatements.Statement prepared = preparedStatements.get(session, execute.getStatementName());
+        Command.Prepare prepare = prepared.getPrepare();
+        ArrayList<String> parameters = execute.getParameters().getValues();
+        if (parameters.size() != prepare.getParameterCount()) throw new DBException(ErrorType.PARAMETER_COUNT_EXCEPTION);
+        // The EXECUTE text does not pin down the statement, which can be prepared again under the same name; the
+        // PREPARE text and the values bound to it do:
+        query = prepared.getText() == null ? null : prepared.getText() + '\u0000' + String.join("\u0000", parameters);
+        Command statement = prepare.getStatement().bind(parameters);
+        bind(statement);
+        statement.accept(this);
     }
-    private ArrayList<String> processWildCardList(Command.Select select) {
-        if (select.isSelectAll()) {
-            return manager.getDatabase().getTables().get(select.getTableName()).getAttributes();
-        }
-
-        ArrayList<String> attributes = new ArrayList<>();
-        for (String attribute : select.getWildAttribList().getAttributes()) {
-            if (manager.getDatabase().getTables().get(select.getTableName()).getAttributes().contains(attribute.toLowerCase())) {
-                attributes.add(attribute);
-            } else {
-                throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+    @Override
+    public void visit(Command.ShowStats showStats) { response = QueryStats.getInstance().format() + tableMemory(); }
+    @Override
+    public void visit(Command.ResetStats resetStats) { QueryStats.getInstance().reset(); }
+    @Override
+    public void visit(Command.Explain explain) throws IOException {
+        Plan plan = planner.plan(explain.getStatement(), binding);
+        if (explain.isAnalyze()) {
+            // Like any other run of the statement, an analysed UPDATE or DELETE changes the data:
+            run(plan, true);
+            if (plan.getResult() == null) {
+                recordModifications(explain.getStatement(), plan);
+                manager.saveDatabase();
             }
         }
-        return attributes;
+        response = plan.explain(explain.isAnalyze());
     }
-    private Set<Integer> processCondition(Condition condition, Table table) {
-        Set<Integer> result = new HashSet<>();
-        if (condition instanceof Condition.Expression) {
-            Set<Integer> leftResult = processCondition(((Condition.Expression) condition).getLeftCondition(), table);
-            Set<Integer> rightResult = processCondition(((Condition.Expression) condition).getRightCondition(), table);
-            if (((Condition.Expression) condition).getBoolOperator() == Condition.BoolOperator.AND) {
-                result.addAll(leftResult);
-                result.retainAll(rightResult);
-            } else { // Condition.BoolOperator.OR
-                result.addAll(leftResult);
-                result.addAll(rightResult);
-            }
-            return result;
+    @Override
+    public void visit(Command.Analyze analyze) throws IOException {
+        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
+        TableStatistics statistics = manager.getDatabase().analyzeTable(analyze.getTableName());
+        manager.saveDatabase();
+        // One row per attribute summarising what was gathered:
+        ArrayList<String> attributes = new ArrayList<>(List.of("attribute", "nulls", "distinct", "min", "max"));
+        HashMap<Integer, HashMap<String, String>> summary = new HashMap<>();
+        for (Map.Entry<String, TableStatistics.ColumnStatistics> column : statistics.getColumns().entrySet()) {
+            HashMap<String, String> row = new HashMap<>();
+            row.put("attribute", column.getKey());
+            row.put("nulls", String.valueOf(column.getValue().getNullCount()));
+            row.put("distinct", String.valueOf(column.getValue().getDistinctCount()));
+            row.put("min", formatBound(column.getValue().min()));
+            row.put("max", formatBound(column.getValue().max()));
+            summary.put(summary.size() + 1, row);
         }
-        // Implicitly is instanceof AttributeValueComparison --> evaluate/Find matching records:
-        return evaluateCondition(table, condition);
+        response = "\nrows: " + statistics.getRowCount()
+                + Utils.prettyPrintTable(summary, attributes, new TreeSet<>(summary.keySet()), true);
     }
-    private TokenType getTokenType(String value) {
-        if (value.matches("[+-]?\\d+")) {
-            return TokenType.INTEGER_LITERAL;
-        } else if (value.matches("[+-]?\\d+(\\.\\d+)?")) {
-            return TokenType.FLOAT_LITERAL;
-        } else if (value.equalsIgnoreCase("false")
-                || value.equalsIgnoreCase("true")) {
-            return TokenType.BOOLEAN_LITERAL;
-        } else if (value.equalsIgnoreCase("null")) {
-            return TokenType.NULL_LITERAL;
+    @Override
+    public void visit(Command.Vacuum vacuum) throws IOException {
+        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
+        DBMetadata.Table tableMetadata = manager.getMetadata().getTables().get(vacuum.getTableName());
+        long dead = tableMetadata == null ? 0 : tableMetadata.getDeadRows();
+        long reclaimed = manager.getDatabase().vacuum(vacuum.getTableName());
+        manager.saveDatabase();
+        response = "\ndead_rows: " + dead + "\nreclaimed_bytes: " + reclaimed;
+    }
+    @Override
+    public void visit(Command.Declare declare) throws IOException {
+        // Planned (tables loaded, names checked) but not run; FETCH runs it a few rows at a time:
+        Plan plan = planner.plan(declare.getStatement(), binding);
+        try {
+            cursors.declare(session, declare.getCursorName(), plan, System.currentTimeMillis());
+        } catch (DBException e) {
+            plan.close();
+            throw e;
         }
-        return TokenType.STRING_LITERAL;
     }
-    private TokenType getAttributeType(Table table, String attribute) {
-        ArrayList<String> tmp = new ArrayList<>();
-        tmp.add(attribute.toLowerCase());
-        TokenType type;
-        for (HashMap<String, String> value : table.getRecords(tmp)) {
-            if (getTokenType(value.get(attribute)) != TokenType.NULL_LITERAL) {
-                return getTokenType(value.get(attribute));
-            }
+    @Override
+    public void visit(Command.Fetch fetch) {
+        Plan plan = cursors.get(session, fetch.getCursorName(), System.currentTimeMillis());
+        LinkedHashMap<Integer, String[]> rows;
+        long start = System.nanoTime();
+        try {
+            rows = plan.fetch(fetch.getCount());
+        } catch (ConcurrentModificationException e) {
+            // A scan's place in a table that has since had rows added or removed is lost:
+            cursors.close(session, fetch.getCursorName());
+            throw new DBException(ErrorType.CURSOR_INVALIDATED_EXCEPTION);
         }
-        return TokenType.NULL_LITERAL;
+        QueryTrace.record(plan.isJoin() ? Phase.JOIN : Phase.SCAN, start);
+        QueryTrace.addRowsReturned(rows.size());
+        response = format(rows, plan.getAttributes());
     }
-    private HashSet<Integer> evaluateCondition(Table table, Condition condition) {
-        HashSet<Integer> result = new HashSet<>();
-        TokenType attributeType = getAttributeType(table, ((Condition.AttributeValueComparison) condition).getAttributeName());
-
-        String attribute = ((Condition.AttributeValueComparison) condition).getAttributeName();
-        if (!table.getAttributes().contains(attribute)) {
-            throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+    @Override
+    public void visit(Command.Close close) { cursors.close(session, close.getCursorName()); }
+    // One row per table of the database in use that is in memory, with what its rows take up:
+    private String tableMemory() {
+        if (manager.getDatabase() == null) return "";
+        ArrayList<String> attributes = new ArrayList<>(List.of("table", "storage", "rows", "memory_bytes"));
+        HashMap<Integer, HashMap<String, String>> tables = new HashMap<>();
+        for (Map.Entry<String, Table> table : new TreeMap<>(manager.getDatabase().getTables()).entrySet()) {
+            if (table.getValue() == null) continue;
+            HashMap<String, String> row = new HashMap<>();
+            row.put("table", table.getKey());
+            row.put("storage", table.getValue().getRecords().getKind());
+            row.put("rows", String.valueOf(table.getValue().getRecords().size()));
+            row.put("memory_bytes", String.valueOf(table.getValue().getRecords().getMemoryBytes()));
+            tables.put(tables.size() + 1, row);
         }
-        for (Integer key : table.getRecords().keySet()) {
-            String recordValue = table.getRecords().get(key).get(attribute);
-            String comparisonValue = ((Condition.AttributeValueComparison) condition).getValue();
-            switch (((Condition.AttributeValueComparison) condition).getComparator()) {
-                case EQUAL:
-                    // Integers, Floats, boolean, NULL
-                    if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                            Float.parseFloat(recordValue) == Float.parseFloat(comparisonValue)) { result.add(key); break; }
-                    // Strings
-                    if (recordValue.equals(comparisonValue)) { result.add(key); break; }
-                    // Boolean
-                    if (attributeType == TokenType.BOOLEAN_LITERAL && recordValue.equalsIgnoreCase(comparisonValue)) {
-                        result.add(key);
-                    }
-                    break;
-                case NOT_EQUAL:
-                    // Integers, Floats, boolean, NULL
-                    if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                            Float.parseFloat(recordValue) != Float.parseFloat(comparisonValue)) { result.add(key); break; }
-                    // Boolean
-                    if (attributeType == TokenType.BOOLEAN_LITERAL && !recordValue.equalsIgnoreCase(comparisonValue)) {
-                        result.add(key);
-                        break;
-                    }
-                    // Strings
-                    if (attributeType == TokenType.STRING_LITERAL && !recordValue.equals(comparisonValue)) { result.add(key); break; }
-
-                    break;
-                // integers, floats
-                case LESS_THAN:
-                    if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                            Float.parseFloat(recordValue) < Float.parseFloat(comparisonValue)) { result.add(key); }
-                    break;
-                case GREATER_THAN:
-                        if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                                Float.parseFloat(recordValue) > Float.parseFloat(comparisonValue)) { result.add(key); }
-                    break;
-                case LESS_THAN_OR_EQUAL:
-                    if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                            Float.parseFloat(recordValue) <= Float.parseFloat(comparisonValue)) { result.add(key); }
-                    break;
-                case GREATER_THAN_OR_EQUAL:
-                    if (isNumeric(recordValue) && isNumeric(comparisonValue) &&
-                            Float.parseFloat(recordValue) >= Float.parseFloat(comparisonValue)) { result.add(key); }
-                    break;
-                case LIKE:
-                    if (recordValue.toLowerCase().contains(comparisonValue.toLowerCase())) { result.add(key); }
-                    break;
-            }
+        return Utils.prettyPrintTable(tables, attributes, new TreeSet<>(tables.keySet()), true) + tableStorage();
+    }
+    // One row per table of the database in use, loaded or not, with what its file and log hold and what VACUUM did:
+    private String tableStorage() {
+        ArrayList<String> attributes = new ArrayList<>(List.of("table", "file_rows", "dead_rows", "log_rows", "vacuums",
+                "reclaimed_bytes"));
+        HashMap<Integer, HashMap<String, String>> tables = new HashMap<>();
+        for (Map.Entry<String, DBMetadata.Table> table : new TreeMap<>(manager.getMetadata().getTables()).entrySet()) {
+            HashMap<String, String> row = new HashMap<>();
+            row.put("table", table.getKey());
+            row.put("file_rows", String.valueOf(table.getValue().getFileRows()));
+            row.put("dead_rows", String.valueOf(table.getValue().getDeadRows()));
+            row.put("log_rows", String.valueOf(table.getValue().getLogRows()));
+            row.put("vacuums", String.valueOf(table.getValue().getVacuums()));
+            row.put("reclaimed_bytes", String.valueOf(table.getValue().getReclaimedBytes()));
+            tables.put(tables.size() + 1, row);
         }
-        return result;
+        return Utils.prettyPrintTable(tables, attributes, new TreeSet<>(tables.keySet()), true);
     }
-    private boolean isNumeric(String value) {
-        try {
-            Float.parseFloat(value);
-            return true;
-        } catch(NumberFormatException e ) {
-            return false;
+    private static String formatBound(Double bound) {
+        if (bound == null) return "NULL";
+        return bound == Math.rint(bound) ? String.valueOf(bound.longValue()) : String.valueOf(bound);
+    }
+    // Counts the rows an UPDATE or DELETE touched towards the table's automatic re-analysis.
+    private void recordModifications(Command statement, Plan plan) throws IOException {
+        String tableName = statement instanceof Command.Update ? ((Command.Update) statement).getTableName()
+                : ((Command.Delete) statement).getTableName();
+        manager.getDatabase().recordModifications(tableName, plan.getRoot().getActualRows());
+    }
+    // Null when the result cannot be cached: the cache is off, there is no query text or a table does not exist.
+    private String resultKey(String... tableNames) {
+        if (!resultCache.isEnabled() || query == null || manager.getDatabase() == null) return null;
+        StringBuilder key = new StringBuilder(manager.getDatabaseName());
+        for (String tableName : tableNames) {
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get(tableName);
+            if (metadata == null) return null;
+            key.append('\u0000').append(metadata.getVersion());
         }
+        return key.append('\u0000').append(query).toString();
+    }
+    private boolean respondFromCache(String key) {
+        ResultCache.Result cached = resultCache.get(key);
+        if (cached == null) return false;
+        QueryTrace.addResultCacheHit();
+        QueryTrace.addRowsReturned(cached.getRows());
+        response = cached.getResponse();
+        return true;
+    }
+    private void bind(Command command) {
+        long start = System.nanoTime();
+        binding = binder.bind(command);
+        QueryTrace.record(Phase.BIND, start);
+    }
+    private void run(Plan plan, boolean analyze) {
+        long start = System.nanoTime();
+        plan.execute(analyze);
+        QueryTrace.record(plan.isJoin() ? Phase.JOIN : Phase.SCAN, start);
+    }
+    private void respond(Plan plan) {
+        QueryTrace.addRowsReturned(plan.getResult().size());
+        response = format(plan.getResult(), plan.getAttributes());
+    }
+    private String format(LinkedHashMap<Integer, String[]> rows, ArrayList<String> attributes) {
+        long start = System.nanoTime();
+        String formatted = Utils.prettyPrintRows(rows.values(), attributes);
+        QueryTrace.record(Phase.FORMAT, start);
+        return formatted;
     }
 }
@@ -0,0 +1,43 @@
+package edu.uob.interpreter;
+
+import edu.uob.parser.Command;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+
+import java.util.HashMap;
+
+/**
+ * Prepared statements by session. Like cursors, a statement belongs to the session that prepared it: another session
+ * can neither run it nor replace it by preparing the same name, and it goes when its session closes.
+ */
+public class PreparedStatements {
+    // session --> statement name --> statement:
+    private final HashMap<String, HashMap<String, Statement>> sessions = new HashMap<>();
+
+    // Re-preparing a name replaces the earlier statement; text is the normalised PREPARE it came from, or null:
+    public void prepare(String session, Command.Prepare prepare, String text) {
+        sessions.computeIfAbsent(session, s -> new HashMap<>()).put(prepare.getStatementName(), new Statement(prepare, text));
+    }
+    public Statement get(String session, String name) {
+        HashMap<String, Statement> statements = sessions.get(session);
+        Statement statement = statements == null ? null : statements.get(name);
+        if (statement == null) throw new DBException(ErrorType.PREPARED_STATEMENT_NOT_FOUND_EXCEPTION);
+        return statement;
+    }
+    public void closeSession(String session) { sessions.remove(session); }
+    public int size(String session) {
+        HashMap<String, Statement> statements = sessions.get(session);
+        return statements == null ? 0 : statements.size();
+    }
+
+    public static class Statement {
+        private final Command.Prepare prepare;
+        private final String text;
+        private Statement(Command.Prepare prepare, String text) {
+            this.prepare = prepare;
+            this.text = text;
+        }
+        public Command.Prepare getPrepare() { return prepare; }
+        public String getText() { return text; }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.uob.interpreter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Formatted SELECT and JOIN responses, least recently used first. A key names the database, the version of every table
+ * read and the normalised query, so any change to one of those tables makes its old entries unreachable; they are then
+ * left to age out. Entries are charged two bytes a character and evicted once the total passes the budget.
+ */
+public class ResultCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private final long capacityBytes;
+    private final LinkedHashMap<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ResultCache(long capacityBytes) { this.capacityBytes = capacityBytes; }
+
+    public boolean isEnabled() { return capacityBytes > 0; }
+    public Result get(String key) {
+        Result result = results.get(key);
+        if (result == null) misses++;
+        else hits++;
+        return result;
+    }
+    public void put(String key, String response, int rows) {
+        Result result = new Result(response, rows);
+        long bytes = size(key, result);
+        // A result that would push out everything else is not worth keeping:
+        if (bytes > capacityBytes / 4) return;
+        Result previous = results.put(key, result);
+        if (previous != null) sizeBytes -= size(key, previous);
+        sizeBytes += bytes;
+        Iterator<Map.Entry<String, Result>> eldest = results.entrySet().iterator();
+        while (sizeBytes > capacityBytes && eldest.hasNext()) {
+            Map.Entry<String, Result> entry = eldest.next();
+            sizeBytes -= size(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+    public void clear() {
+        results.clear();
+        sizeBytes = 0;
+    }
+    public int size() { return results.size(); }
+    public long getSizeBytes() { return sizeBytes; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+
+    private static long size(String key, Result result) {
+        return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + result.response.length());
+    }
+
+    public static class Result {
+        private final String response;
+        private final int rows;
+        public Result(String response, int rows) {
+            this.response = response;
+            this.rows = rows;
+        }
+        public String getResponse() { return response; }
+        public int getRows() { return rows; }
+    }
+}
@@ -0,0 +1,30 @@
+package edu.uob.parser;
+
+import edu.uob.interpreter.CommandVisitor;
+
+import java.io.IOException;
+
+// <Aggregate> ::= <Function> "(" [AttributeName] ")" | "COUNT" "(" "*" ")"
+public class Aggregate extends Node {
+    public enum Function { COUNT, SUM, AVG, MIN, MAX }
+    private final Function function;
+    // Lower-cased; null for COUNT(*):
+    private final String attributeName;
+    public Aggregate(Function function, String attributeName) {
+        this.function = function;
+        this.attributeName = attributeName == null ? null : attributeName.toLowerCase();
+    }
+    public Function getFunction() { return function; }
+    public String getAttributeName() { return attributeName; }
+    // The column heading of the aggregate in a result, e.g. "COUNT(*)" or "AVG(mark)":
+    public String getLabel() { return function + "(" + (attributeName == null ? "*" : attributeName) + ")"; }
+    @Override
+    public String toString() { return getLabel(); }
+    @Override
+    public void accept(CommandVisitor visitor) throws IOException {}
+    @Override
+    public void print(int indent) {
+        System.out.print(" ".repeat(indent));
+        System.out.println("Aggregate: " + getLabel());
+    }
+}
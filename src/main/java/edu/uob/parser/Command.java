@@ -4,7 +4,9 @@ import edu.uob.interpreter.CommandVisitor;
 import edu.uob.tokenizer.Tokenizer.Token;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 public abstract class Command extends Node {
     @Override
@@ -12,6 +14,10 @@ public abstract class Command extends Node {
         System.out.print(" ".repeat(indent));
         System.out.println("Command: " + this.getClass().getSimpleName());
     }
+    // Returns a copy of this command with each "?" placeholder replaced by its parameter value, in order of appearance.
+    public Command bind(ArrayList<String> parameters) { return this; }
+    // Name the command is reported under by SHOW STATS, e.g. "CREATE" for both CREATE DATABASE and CREATE TABLE.
+    public String getCommandType() { return getClass().getSimpleName().toUpperCase(); }
     // <Use> ::=  "USE " [DatabaseName]
     public static class Use extends Command {
         private final String databaseName;
@@ -33,6 +39,8 @@ public abstract class Command extends Node {
         public CreateDatabase(Token token) { databaseName = token.getValue().toLowerCase(); }
         public String getDatabaseName() { return databaseName; }
         @Override
+        public String getCommandType() { return "CREATE"; }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
         @Override
         public void print(int indent) {
@@ -52,6 +60,8 @@ public abstract class Command extends Node {
         public List.AttributeList getAttributes() {return attributes; }
         public String getTableName() { return tableName; }
         @Override
+        public String getCommandType() { return "CREATE"; }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
         @Override
         public void print(int indent) {
@@ -72,6 +82,8 @@ public abstract class Command extends Node {
         public String getName() { return name; }
         public DropType getDropType() { return dropType; }
         @Override
+        public String getCommandType() { return "DROP"; }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
         public enum DropType { DATABASE, TABLE }
     }
@@ -111,6 +123,8 @@ public abstract class Command extends Node {
         public String getAttributeName() { return attributeName; }
         public AlterationType getAlterationType() { return alterationType; }
         @Override
+        public String getCommandType() { return "ALTER"; }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
         @Override
         public void print(int indent) {
@@ -134,6 +148,36 @@ public abstract class Command extends Node {
             super(tableNameToken, AlterationType.DROP, attributeNameToken);
         }
     }
+    // <CreateIndex> ::= "CREATE " "INDEX " "ON " [TableName] "(" [AttributeName] ")" " USING " "TRIGRAM"
+    // <DropIndex>   ::= "DROP " "INDEX " "ON " [TableName] "(" [AttributeName] ")"
+    public static class Index extends Command {
+        private final String tableName;
+        private final String attributeName;
+        private final IndexAction indexAction;
+        public Index(Token tableNameToken, IndexAction indexAction, Token attributeNameToken) {
+            this.tableName = tableNameToken.getValue().toLowerCase();
+            this.attributeName = attributeNameToken.getValue().toLowerCase();
+            this.indexAction = indexAction;
+        }
+        public String getTableName() { return tableName; }
+        public String getAttributeName() { return attributeName; }
+        public IndexAction getIndexAction() { return indexAction; }
+        @Override
+        public String getCommandType() { return indexAction.name(); }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+        public enum IndexAction { CREATE, DROP }
+    }
+    public static class CreateIndex extends Index {
+        public CreateIndex(Token tableNameToken, Token attributeNameToken) {
+            super(tableNameToken, IndexAction.CREATE, attributeNameToken);
+        }
+    }
+    public static class DropIndex extends Index {
+        public DropIndex(Token tableNameToken, Token attributeNameToken) {
+            super(tableNameToken, IndexAction.DROP, attributeNameToken);
+        }
+    }
     // <Insert> ::=  "INSERT " "INTO " [TableName] " VALUES" "(" <ValueList> ")"
     public static class Insert extends Command {
         private final String tableName;
@@ -142,9 +186,15 @@ public abstract class Command extends Node {
             this.tableName = tableNameToken.getValue().toLowerCase();
             this.values = new List.ValueList();
         }
+        private Insert(String tableName, List.ValueList values) {
+            this.tableName = tableName;
+            this.values = values;
+        }
         public String getTableName() { return tableName; }
         public List.ValueList getValues() { return values; }
         @Override
+        public Command bind(ArrayList<String> parameters) { return new Insert(tableName, values.bind(parameters)); }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
     }
     public static class Select extends Command {
@@ -152,13 +202,37 @@ public abstract class Command extends Node {
         private final String tableName;
         private final Condition condition;
         private final boolean selectAll;
+        // Aggregates of the select list by label; the label also takes the aggregate's place in wildAttribList:
+        private final LinkedHashMap<String, Aggregate> aggregates;
+        private final ArrayList<String> groupBy;
+        private final OrderLimit orderLimit;
 
         public Select(List.WildAttributeList wildAttribList, Token tableNameToken, Condition condition, boolean selectAll) {
+            this(wildAttribList, tableNameToken, condition, selectAll, new LinkedHashMap<>(), new ArrayList<>(), OrderLimit.NONE);
+        }
+        public Select(List.WildAttributeList wildAttribList, Token tableNameToken, Condition condition, boolean selectAll,
+                      LinkedHashMap<String, Aggregate> aggregates, ArrayList<String> groupBy, OrderLimit orderLimit) {
+            this(wildAttribList, tableNameToken.getValue().toLowerCase(), condition, selectAll, aggregates, groupBy, orderLimit);
+        }
+        private Select(List.WildAttributeList wildAttribList, String tableName, Condition condition, boolean selectAll,
+                       LinkedHashMap<String, Aggregate> aggregates, ArrayList<String> groupBy, OrderLimit orderLimit) {
             this.wildAttribList = wildAttribList;
-            this.tableName = tableNameToken.getValue().toLowerCase();
+            this.tableName = tableName;
             this.condition = condition;
             this.selectAll = selectAll;
+            this.aggregates = aggregates;
+            this.groupBy = groupBy;
+            this.orderLimit = orderLimit;
+        }
+        @Override
+        public Command bind(ArrayList<String> parameters) {
+            if (condition == null) return this;
+            return new Select(wildAttribList, tableName, condition.bind(parameters), selectAll, aggregates, groupBy, orderLimit);
         }
+        public LinkedHashMap<String, Aggregate> getAggregates() { return aggregates; }
+        public ArrayList<String> getGroupBy() { return groupBy; }
+        public OrderLimit getOrderLimit() { return orderLimit; }
+        public boolean isAggregate() { return !aggregates.isEmpty() || !groupBy.isEmpty(); }
         public List.WildAttributeList getWildAttribList() { return wildAttribList; }
         public String getTableName() { return tableName; }
         public Condition getCondition() { return condition; }
@@ -182,9 +256,14 @@ public abstract class Command extends Node {
         private final Condition condition;
 
         public Delete(Token tableNameToken, Condition condition) {
-            this.tableName = tableNameToken.getValue().toLowerCase();
+            this(tableNameToken.getValue().toLowerCase(), condition);
+        }
+        private Delete(String tableName, Condition condition) {
+            this.tableName = tableName;
             this.condition = condition;
         }
+        @Override
+        public Command bind(ArrayList<String> parameters) { return new Delete(tableName, condition.bind(parameters)); }
         public String getTableName() { return tableName; }
         public Condition getCondition() { return condition; }
         @Override
@@ -193,12 +272,31 @@ public abstract class Command extends Node {
     public static class Update extends Command {
         private final String tableName;
         private final HashMap<String, String> nameValueList;
+        // attribute name --> index of the "?" placeholder assigned to it:
+        private final HashMap<String, Integer> parameters;
         private final Condition condition;
         public Update(Token tableNameToken, HashMap<String, String> nameValueList, Condition condition) {
-            this.tableName = tableNameToken.getValue().toLowerCase();
+            this(tableNameToken, nameValueList, new HashMap<>(), condition);
+        }
+        public Update(Token tableNameToken, HashMap<String, String> nameValueList, HashMap<String, Integer> parameters,
+                      Condition condition) {
+            this(tableNameToken.getValue().toLowerCase(), nameValueList, parameters, condition);
+        }
+        private Update(String tableName, HashMap<String, String> nameValueList, HashMap<String, Integer> parameters,
+                       Condition condition) {
+            this.tableName = tableName;
             this.nameValueList = nameValueList;
+            this.parameters = parameters;
             this.condition = condition;
         }
+        @Override
+        public Command bind(ArrayList<String> parameterValues) {
+            HashMap<String, String> boundValues = new HashMap<>(nameValueList);
+            for (String attributeName : parameters.keySet()) {
+                boundValues.put(attributeName, parameterValues.get(parameters.get(attributeName)));
+            }
+            return new Update(tableName, boundValues, new HashMap<>(), condition.bind(parameterValues));
+        }
         public String getTableName() { return tableName; }
         public HashMap<String, String> getNameValueList() { return nameValueList; }
         public Condition getCondition() { return condition; }
@@ -210,13 +308,20 @@ public abstract class Command extends Node {
         private final String secondTableName;
         private final String firstAttributeName;
         private final String secondAttributeName;
+        private final OrderLimit orderLimit;
         public Join(Token firstTableNameToken, Token secondTableNameToken,
                     Token firstAttributeNameToken, Token secondAttributeNameToken) {
+            this(firstTableNameToken, secondTableNameToken, firstAttributeNameToken, secondAttributeNameToken, OrderLimit.NONE);
+        }
+        public Join(Token firstTableNameToken, Token secondTableNameToken,
+                    Token firstAttributeNameToken, Token secondAttributeNameToken, OrderLimit orderLimit) {
             this.firstTableName = firstTableNameToken.getValue().toLowerCase();
             this.secondTableName = secondTableNameToken.getValue().toLowerCase();
             this.firstAttributeName = firstAttributeNameToken.getValue();
             this.secondAttributeName = secondAttributeNameToken.getValue();
+            this.orderLimit = orderLimit;
         }
+        public OrderLimit getOrderLimit() { return orderLimit; }
         public String getFirstTableName() {
             return firstTableName;
         }
@@ -232,4 +337,123 @@ public abstract class Command extends Node {
         @Override
         public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
     }
-}
\ No newline at end of file
+    // <Prepare> ::= "PREPARE " [StatementName] " AS " <CommandType>
+    public static class Prepare extends Command {
+        private final String statementName;
+        private final Command statement;
+        private final int parameterCount;
+        public Prepare(Token statementNameToken, Command statement, int parameterCount) {
+            this.statementName = statementNameToken.getValue().toLowerCase();
+            this.statement = statement;
+            this.parameterCount = parameterCount;
+        }
+        public String getStatementName() { return statementName; }
+        public Command getStatement() { return statement; }
+        public int getParameterCount() { return parameterCount; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+        @Override
+        public void print(int indent) {
+            super.print(indent);
+            System.out.println(" ".repeat(indent + 2) + "Statement: " + statementName + " (" + parameterCount + " parameters)");
+            statement.print(indent + 4);
+        }
+    }
+    // <Execute> ::= "EXECUTE " [StatementName] | "EXECUTE " [StatementName] "(" <ValueList> ")"
+    public static class Execute extends Command {
+        private final String statementName;
+        private final List.ValueList parameters;
+        public Execute(Token statementNameToken) {
+            this.statementName = statementNameToken.getValue().toLowerCase();
+            this.parameters = new List.ValueList();
+        }
+        public String getStatementName() { return statementName; }
+        public List.ValueList getParameters() { return parameters; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <ShowStats> ::= "SHOW " "STATS"
+    public static class ShowStats extends Command {
+        @Override
+        public String getCommandType() { return "SHOW STATS"; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <ResetStats> ::= "RESET " "STATS"
+    public static class ResetStats extends Command {
+        @Override
+        public String getCommandType() { return "RESET STATS"; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Explain> ::= "EXPLAIN " <Select | Update | Delete | Join> | "EXPLAIN " "ANALYZE " <Select | Update | Delete | Join>
+    public static class Explain extends Command {
+        private final Command statement;
+        private final boolean analyze;
+        public Explain(Command statement, boolean analyze) {
+            this.statement = statement;
+            this.analyze = analyze;
+        }
+        public Command getStatement() { return statement; }
+        public boolean isAnalyze() { return analyze; }
+        @Override
+        public Command bind(ArrayList<String> parameters) { return new Explain(statement.bind(parameters), analyze); }
+        @Override
+        public String getCommandType() { return analyze ? "EXPLAIN ANALYZE" : "EXPLAIN"; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Analyze> ::= "ANALYZE " [TableName]
+    public static class Analyze extends Command {
+        private final String tableName;
+        public Analyze(Token token) { tableName = token.getValue().toLowerCase(); }
+        public String getTableName() { return tableName; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Vacuum> ::= "VACUUM " [TableName]
+    public static class Vacuum extends Command {
+        private final String tableName;
+        public Vacuum(Token token) { tableName = token.getValue().toLowerCase(); }
+        public String getTableName() { return tableName; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Declare> ::= "DECLARE " [CursorName] " CURSOR " "FOR " <Select | Join>
+    public static class Declare extends Command {
+        private final String cursorName;
+        private final Command statement;
+        public Declare(Token cursorNameToken, Command statement) { this(cursorNameToken.getValue().toLowerCase(), statement); }
+        private Declare(String cursorName, Command statement) {
+            this.cursorName = cursorName;
+            this.statement = statement;
+        }
+        public String getCursorName() { return cursorName; }
+        public Command getStatement() { return statement; }
+        @Override
+        public Command bind(ArrayList<String> parameters) { return new Declare(cursorName, statement.bind(parameters)); }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Fetch> ::= "FETCH " [IntegerLiteral] " FROM " [CursorName]
+    public static class Fetch extends Command {
+        private final String cursorName;
+        private final int count;
+        public Fetch(Token cursorNameToken, int count) {
+            this.cursorName = cursorNameToken.getValue().toLowerCase();
+            this.count = count;
+        }
+        public String getCursorName() { return cursorName; }
+        public int getCount() { return count; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+    // <Close> ::= "CLOSE " [CursorName]
+    public static class Close extends Command {
+        private final String cursorName;
+        public Close(Token cursorNameToken) { this.cursorName = cursorNameToken.getValue().toLowerCase(); }
+        public String getCursorName() { return cursorName; }
+        @Override
+        public void accept(CommandVisitor visitor) throws IOException { visitor.visit(this); }
+    }
+}
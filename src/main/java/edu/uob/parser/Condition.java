@@ -2,6 +2,7 @@ package edu.uob.parser;
 
 import edu.uob.interpreter.CommandVisitor;
 import java.io.IOException;
+import java.util.ArrayList;
 
 //<Condition> ::= "(" <Expression> ")" | <Expression>
 //<Expression> ::= <AttributeComparison> | <Condition> <BoolOperator> <Condition>
@@ -10,6 +11,8 @@ import java.io.IOException;
 public abstract class Condition extends Node {
     public enum BoolOperator { AND, OR }
     public enum Comparator { EQUAL, NOT_EQUAL, LESS_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL, LIKE, }
+    // Returns a copy with each "?" placeholder replaced by its parameter value (see Command.bind).
+    public abstract Condition bind(ArrayList<String> parameters);
 
     //<Condition> <BoolOperator> <Condition>
     public static class Expression extends Condition {
@@ -25,6 +28,10 @@ public abstract class Condition extends Node {
         public BoolOperator getBoolOperator() { return boolOperator; }
         public Condition getRightCondition() { return rightCondition; }
         @Override
+        public Condition bind(ArrayList<String> parameters) {
+            return new Expression(leftCondition.bind(parameters), boolOperator, rightCondition.bind(parameters));
+        }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException {}
         @Override
         public void print(int indent) {
@@ -38,15 +45,29 @@ public abstract class Condition extends Node {
         private final String attributeName;
         private final Comparator comparator;
         private final String value;
+        private final int parameterIndex;
         public AttributeValueComparison(String attributeName, Comparator comparator, String value) {
+            this(attributeName, comparator, value, -1);
+        }
+        // A comparison against the parameterIndex'th "?" of a prepared statement:
+        public AttributeValueComparison(String attributeName, Comparator comparator, int parameterIndex) {
+            this(attributeName, comparator, null, parameterIndex);
+        }
+        private AttributeValueComparison(String attributeName, Comparator comparator, String value, int parameterIndex) {
             this.attributeName = attributeName.toLowerCase();
             this.comparator = comparator;
             this.value = value;
+            this.parameterIndex = parameterIndex;
         }
         public String getAttributeName() { return attributeName; }
         public Comparator getComparator() { return comparator; }
         public String getValue() { return value; }
         @Override
+        public Condition bind(ArrayList<String> parameters) {
+            if (parameterIndex < 0) return this;
+            return new AttributeValueComparison(attributeName, comparator, parameters.get(parameterIndex));
+        }
+        @Override
         public void accept(CommandVisitor visitor) throws IOException {}
         @Override
         public void print(int indent) {
@@ -54,7 +75,7 @@ public abstract class Condition extends Node {
             System.out.println("Condition: AttributeValueComparison");
             System.out.println(" ".repeat(indent + 2) + "Attribute Name: " + attributeName);
             System.out.println(" ".repeat(indent + 2) + "Comparator: " + comparator);
-            System.out.println(" ".repeat(indent + 2) + "Value: " + value);
+            System.out.println(" ".repeat(indent + 2) + "Value: " + (parameterIndex < 0 ? value : "?" + parameterIndex));
         }
     }
 }
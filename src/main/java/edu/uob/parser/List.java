@@ -11,6 +11,7 @@ import edu.uob.tokenizer.Tokenizer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public abstract class List extends Node {
     @Override
@@ -42,18 +43,36 @@ public abstract class List extends Node {
     }
     // <ValueList> ::=  [Value] | [Value] "," <ValueList>
     public static class ValueList extends IdentifierList {
+        // list position --> index of the "?" placeholder at that position:
+        private final HashMap<Integer, Integer> parameters;
         public ValueList() {
             super();
+            parameters = new HashMap<>();
         }
         public ArrayList<String> getValues() {
             return super.getElements();
         }
         public void addElement(Tokenizer.Token token) {
+            if (token.getType() == TokenType.PLACEHOLDER) {
+                parameters.put(getElements().size(), parameters.size());
+                getElements().add(null);
+                return;
+            }
             if (token.getType() == TokenType.STRING_LITERAL) {
                 token.setValue(token.getValue().substring(1, token.getValue().length() - 1).strip());
             }
             super.addElement(token);
         }
+        public int getParameterCount() { return parameters.size(); }
+        public ValueList bind(ArrayList<String> parameterValues) {
+            if (parameters.isEmpty()) return this;
+            ValueList bound = new ValueList();
+            bound.getElements().addAll(getElements());
+            for (Integer position : parameters.keySet()) {
+                bound.getElements().set(position, parameterValues.get(parameters.get(position)));
+            }
+            return bound;
+        }
     }
     // <WildAttribList>  ::=  <AttributeList> | "*"
     public static class WildAttributeList extends AttributeList {
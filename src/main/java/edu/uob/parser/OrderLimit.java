@@ -0,0 +1,47 @@
+package edu.uob.parser;
+
+import edu.uob.interpreter.CommandVisitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+// <OrderLimit> ::= "" | <OrderBy> | <Limit> | <OrderBy> <Limit>
+public class OrderLimit extends Node {
+    public static final OrderLimit NONE = new OrderLimit(new ArrayList<>(), -1, 0);
+    private final ArrayList<SortKey> sortKeys;
+    // -1 when there is no LIMIT:
+    private final int limit;
+    private final int offset;
+    public OrderLimit(ArrayList<SortKey> sortKeys, int limit, int offset) {
+        this.sortKeys = sortKeys;
+        this.limit = limit;
+        this.offset = offset;
+    }
+    public ArrayList<SortKey> getSortKeys() { return sortKeys; }
+    public int getLimit() { return limit; }
+    public int getOffset() { return offset; }
+    public boolean isOrdered() { return !sortKeys.isEmpty(); }
+    public boolean isLimited() { return limit >= 0; }
+    @Override
+    public void accept(CommandVisitor visitor) throws IOException {}
+    @Override
+    public void print(int indent) {
+        System.out.print(" ".repeat(indent));
+        System.out.println("Order By: " + sortKeys + (isLimited() ? " Limit: " + limit + " Offset: " + offset : ""));
+    }
+
+    // <SortKey> ::= [AttributeName] | <Aggregate> | [AttributeName] " ASC" | [AttributeName] " DESC" | ...
+    public static class SortKey {
+        // Lower-cased attribute name or aggregate label:
+        private final String name;
+        private final boolean descending;
+        public SortKey(String name, boolean descending) {
+            this.name = name;
+            this.descending = descending;
+        }
+        public String getName() { return name; }
+        public boolean isDescending() { return descending; }
+        @Override
+        public String toString() { return name + (descending ? " DESC" : ""); }
+    }
+}
@@ -2,8 +2,12 @@ package edu.uob.parser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
+import edu.uob.stats.Phase;
+import edu.uob.stats.QueryTrace;
 import edu.uob.tokenizer.Tokenizer;
 import edu.uob.tokenizer.TokenType;
 import edu.uob.utils.DBException;
@@ -11,9 +15,21 @@ import edu.uob.utils.DBException;
 import static edu.uob.utils.ErrorType.*;
 
 public class Parser {
+    // Keywords that came after the original command set are only keywords where the grammar expects them; anywhere a
+    // name is expected they are names, so tables and attributes that already use these words can still be queried.
+    private static final EnumSet<TokenType> NON_RESERVED_KEYWORDS = EnumSet.of(TokenType.PREPARE_KEYWORD,
+            TokenType.EXECUTE_KEYWORD, TokenType.SHOW_KEYWORD, TokenType.RESET_KEYWORD, TokenType.EXPLAIN_KEYWORD,
+            TokenType.AS_KEYWORD, TokenType.STATS_KEYWORD, TokenType.ANALYZE_KEYWORD, TokenType.GROUP_KEYWORD,
+            TokenType.BY_KEYWORD, TokenType.ORDER_KEYWORD, TokenType.ASC_KEYWORD, TokenType.DESC_KEYWORD,
+            TokenType.LIMIT_KEYWORD, TokenType.OFFSET_KEYWORD, TokenType.DECLARE_KEYWORD, TokenType.CURSOR_KEYWORD,
+            TokenType.FOR_KEYWORD, TokenType.FETCH_KEYWORD, TokenType.CLOSE_KEYWORD, TokenType.INDEX_KEYWORD,
+            TokenType.USING_KEYWORD, TokenType.VACUUM_KEYWORD);
     private ArrayList<Tokenizer.Token> tokens;
     private int currentTokenIndex;
     private int parenthesisCount;
+    // "?" placeholders are only legal inside PREPARE; parameterCount numbers them in order of appearance.
+    private boolean allowPlaceholders;
+    private int parameterCount;
     public Parser() {
         tokens = new ArrayList<>();
         currentTokenIndex = 0;
@@ -21,7 +37,13 @@ public class Parser {
     public Command parse(ArrayList<Tokenizer.Token> tokens) {
         this.tokens = tokens;
         this.currentTokenIndex = 0;
-        return parseCommand();
+        this.parenthesisCount = 0;
+        this.allowPlaceholders = false;
+        this.parameterCount = 0;
+        long start = System.nanoTime();
+        Command command = parseCommand();
+        QueryTrace.record(Phase.PARSE, start);
+        return command;
     }
     private Command parseCommand() {
         // <Command> ::= <CommandType> ";"
@@ -30,7 +52,7 @@ public class Parser {
         return command;
     }
     private Command parseCommandType() {
-        // <CommandType> ::= <Use> | <Create> | <Drop> | <Alter> | <Insert> | <Select> | <Update> | <Delete> | <Join>
+        // <CommandType> ::= <Use> | <Create> | <Drop> | <Alter> | <Insert> | <Select> | <Update> | <Delete> | <Join> | <ShowStats> | <ResetStats> | <Explain> | <Analyze> | <Vacuum>
         TokenType currTokenType = tokens.get(currentTokenIndex).getType();
         return switch (currTokenType) {
             case USE_KEYWORD -> parseUse();
@@ -42,20 +64,126 @@ public class Parser {
             case DELETE_KEYWORD -> parseDelete();
             case UPDATE_KEYWORD -> parseUpdate();
             case JOIN_KEYWORD -> parseJoin();
+            case PREPARE_KEYWORD -> parsePrepare();
+            case EXECUTE_KEYWORD -> parseExecute();
+            case SHOW_KEYWORD -> parseShowStats();
+            case RESET_KEYWORD -> parseResetStats();
+            case EXPLAIN_KEYWORD -> parseExplain();
+            case ANALYZE_KEYWORD -> parseAnalyze();
+            case VACUUM_KEYWORD -> parseVacuum();
+            case DECLARE_KEYWORD -> parseDeclare();
+            case FETCH_KEYWORD -> parseFetch();
+            case CLOSE_KEYWORD -> parseClose();
             default -> throw new DBException(INVALID_QUERY_EXCEPTION);
         };
     }
+    private Command parsePrepare() {
+        // <Prepare> ::= "PREPARE " [StatementName] " AS " <CommandType>
+        consumeToken(TokenType.PREPARE_KEYWORD);
+        Tokenizer.Token statementNameToken = consumeName();
+        consumeToken(TokenType.AS_KEYWORD);
+        TokenType statementType = tokens.get(currentTokenIndex).getType();
+        if (statementType == TokenType.PREPARE_KEYWORD || statementType == TokenType.EXECUTE_KEYWORD)
+            throw new DBException(INVALID_QUERY_EXCEPTION);
+        allowPlaceholders = true;
+        Command statement = parseCommandType();
+        allowPlaceholders = false;
+        return new Command.Prepare(statementNameToken, statement, parameterCount);
+    }
+    private Command parseExecute() {
+        // <Execute> ::= "EXECUTE " [StatementName] | "EXECUTE " [StatementName] "(" <ValueList> ")"
+        consumeToken(TokenType.EXECUTE_KEYWORD);
+        Command.Execute command = new Command.Execute(consumeName());
+        if (tokens.get(currentTokenIndex).getType() == TokenType.SEMICOLON) return command;
+        consumeToken(TokenType.LEFT_PAREN);
+        parseList(command.getParameters(), tokenType -> tokenType == TokenType.STRING_LITERAL
+                || tokenType == TokenType.BOOLEAN_LITERAL || tokenType == TokenType.FLOAT_LITERAL
+                || tokenType == TokenType.INTEGER_LITERAL || tokenType == TokenType.NULL_LITERAL, TokenType.RIGHT_PAREN);
+        return command;
+    }
+    private Command parseExplain() {
+        // <Explain> ::= "EXPLAIN " <Select | Update | Delete | Join> | "EXPLAIN " "ANALYZE " <Select | Update | Delete | Join>
+        consumeToken(TokenType.EXPLAIN_KEYWORD);
+        boolean analyze = tokens.get(currentTokenIndex).getType() == TokenType.ANALYZE_KEYWORD;
+        if (analyze) consumeToken(TokenType.ANALYZE_KEYWORD);
+        Command statement = switch (tokens.get(currentTokenIndex).getType()) {
+            case SELECT_KEYWORD -> parseSelect();
+            case UPDATE_KEYWORD -> parseUpdate();
+            case DELETE_KEYWORD -> parseDelete();
+            case JOIN_KEYWORD -> parseJoin();
+            default -> throw new DBException(INVALID_QUERY_EXCEPTION);
+        };
+        return new Command.Explain(statement, analyze);
+    }
+    private Command parseAnalyze() {
+        // <Analyze> ::= "ANALYZE " [TableName]
+        consumeToken(TokenType.ANALYZE_KEYWORD);
+        return new Command.Analyze(consumeName());
+    }
+    private Command parseVacuum() {
+        // <Vacuum> ::= "VACUUM " [TableName]
+        consumeToken(TokenType.VACUUM_KEYWORD);
+        return new Command.Vacuum(consumeName());
+    }
+    private Command parseDeclare() {
+        // <Declare> ::= "DECLARE " [CursorName] " CURSOR " "FOR " <Select | Join>
+        consumeToken(TokenType.DECLARE_KEYWORD);
+        Tokenizer.Token cursorNameToken = consumeName();
+        consumeToken(TokenType.CURSOR_KEYWORD);
+        consumeToken(TokenType.FOR_KEYWORD);
+        Command statement = switch (tokens.get(currentTokenIndex).getType()) {
+            case SELECT_KEYWORD -> parseSelect();
+            case JOIN_KEYWORD -> parseJoin();
+            default -> throw new DBException(INVALID_QUERY_EXCEPTION);
+        };
+        return new Command.Declare(cursorNameToken, statement);
+    }
+    private Command parseFetch() {
+        // <Fetch> ::= "FETCH " [IntegerLiteral] " FROM " [CursorName]
+        consumeToken(TokenType.FETCH_KEYWORD);
+        int count = parseCount();
+        consumeToken(TokenType.FROM_KEYWORD);
+        return new Command.Fetch(consumeName(), count);
+    }
+    private Command parseClose() {
+        // <Close> ::= "CLOSE " [CursorName]
+        consumeToken(TokenType.CLOSE_KEYWORD);
+        return new Command.Close(consumeName());
+    }
+    private Command parseShowStats() {
+        // <ShowStats> ::= "SHOW " "STATS"
+        consumeToken(TokenType.SHOW_KEYWORD);
+        consumeToken(TokenType.STATS_KEYWORD);
+        return new Command.ShowStats();
+    }
+    private Command parseResetStats() {
+        // <ResetStats> ::= "RESET " "STATS"
+        consumeToken(TokenType.RESET_KEYWORD);
+        consumeToken(TokenType.STATS_KEYWORD);
+        return new Command.ResetStats();
+    }
     private Command.Use parseUse() {
         // <Use> ::= "USE " [DatabaseName]
         consumeToken(TokenType.USE_KEYWORD);
-        Tokenizer.Token indentifierToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token indentifierToken = consumeName();
         return new Command.Use(indentifierToken);
     }
     private Command parseCreate() {
-        // <Create> ::= <CreateDatabase> | <CreateTable>
+        // <Create> ::= <CreateDatabase> | <CreateTable> | <CreateIndex>
         consumeToken(TokenType.CREATE_KEYWORD);
-        Tokenizer.Token createToken = consumeToken(new TokenType[]{TokenType.DATABASE_KEYWORD, TokenType.TABLE_KEYWORD});
-        Tokenizer.Token identifierToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token createToken = consumeToken(new TokenType[]{TokenType.DATABASE_KEYWORD, TokenType.TABLE_KEYWORD,
+                TokenType.INDEX_KEYWORD});
+
+        // "CREATE " "INDEX " "ON " [TableName] "(" [AttributeName] ")" " USING " [IndexMethod]
+        if (createToken.getType() == TokenType.INDEX_KEYWORD) {
+            Tokenizer.Token[] target = parseIndexTarget();
+            consumeToken(TokenType.USING_KEYWORD);
+            if (!consumeToken(TokenType.IDENTIFIER).getValue().equalsIgnoreCase("TRIGRAM")) {
+                throw new DBException(INVALID_QUERY_EXCEPTION, "Only TRIGRAM indexes are supported");
+            }
+            return new Command.CreateIndex(target[0], target[1]);
+        }
+        Tokenizer.Token identifierToken = consumeName();
 
         // "CREATE " "DATABASE " [DatabaseName]
         if (createToken.getType() == TokenType.DATABASE_KEYWORD) return new Command.CreateDatabase(identifierToken);
@@ -67,15 +195,20 @@ public class Parser {
         // "CREATE " "TABLE " [TableName] "(" <AttributeList> ")"
         Command.CreateTable command = new Command.CreateTable(identifierToken);
         consumeToken(TokenType.LEFT_PAREN);
-        parseList(command.getAttributes(), tokenType -> tokenType == TokenType.IDENTIFIER, TokenType.RIGHT_PAREN);
+        parseList(command.getAttributes(), Parser::isName, TokenType.RIGHT_PAREN);
         if (command.getAttributes().getAttributes().isEmpty()) throw new DBException(INVALID_LIST_EXCEPTION);
         return command;
     }
     private Command parseDrop() {
-        // "DROP " "DATABASE " [DatabaseName] | "DROP " "TABLE " [TableName]
+        // "DROP " "DATABASE " [DatabaseName] | "DROP " "TABLE " [TableName] | "DROP " "INDEX " "ON " [TableName] "(" [AttributeName] ")"
         consumeToken(TokenType.DROP_KEYWORD);
-        Tokenizer.Token dropType = consumeToken(new TokenType[]{TokenType.DATABASE_KEYWORD, TokenType.TABLE_KEYWORD});
-        Tokenizer.Token identifierToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token dropType = consumeToken(new TokenType[]{TokenType.DATABASE_KEYWORD, TokenType.TABLE_KEYWORD,
+                TokenType.INDEX_KEYWORD});
+        if (dropType.getType() == TokenType.INDEX_KEYWORD) {
+            Tokenizer.Token[] target = parseIndexTarget();
+            return new Command.DropIndex(target[0], target[1]);
+        }
+        Tokenizer.Token identifierToken = consumeName();
 
         // "DROP " "DATABASE " [DatabaseName]
         if (dropType.getType() == TokenType.DATABASE_KEYWORD) return new Command.DropDatabase(identifierToken);
@@ -83,13 +216,22 @@ public class Parser {
         // "DROP " "TABLE " [TableName]
         return new Command.DropTable(identifierToken);
     }
+    // "ON " [TableName] "(" [AttributeName] ")" --> {table name token, attribute name token}
+    private Tokenizer.Token[] parseIndexTarget() {
+        consumeToken(TokenType.ON_KEYWORD);
+        Tokenizer.Token tableName = consumeName();
+        consumeToken(TokenType.LEFT_PAREN);
+        Tokenizer.Token attributeName = consumeName();
+        consumeToken(TokenType.RIGHT_PAREN);
+        return new Tokenizer.Token[] {tableName, attributeName};
+    }
     // <Alter> ::=  "ALTER " "TABLE " [TableName] " " <"ADD" | "DROP"> " " [AttributeName]
     private Command parseAlter() {
         consumeToken(TokenType.ALTER_KEYWORD);
         consumeToken(TokenType.TABLE_KEYWORD);
-        Tokenizer.Token tableName = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token tableName = consumeName();
         Tokenizer.Token alterType = consumeToken(new TokenType[]{TokenType.ADD_KEYWORD, TokenType.DROP_KEYWORD});
-        Tokenizer.Token attributeName = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token attributeName = consumeName();
         // ADD Attribute:
         if (alterType.getType() == TokenType.ADD_KEYWORD) { return new Command.AddAttribute(tableName, attributeName); }
         // Drop Attribute:
@@ -99,52 +241,136 @@ public class Parser {
     private Command parseInsert() {
         consumeToken(TokenType.INSERT_KEYWORD);
         consumeToken(TokenType.INTO_KEYWORD);
-        Tokenizer.Token tableName = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token tableName = consumeName();
         consumeToken(TokenType.VALUES_KEYWORD);
         consumeToken(TokenType.LEFT_PAREN);
         Command.Insert command = new Command.Insert(tableName);
 
         parseList(command.getValues(), tokenType -> tokenType == TokenType.STRING_LITERAL
                 || tokenType == TokenType.BOOLEAN_LITERAL || tokenType == TokenType.FLOAT_LITERAL
-                || tokenType == TokenType.INTEGER_LITERAL || tokenType == TokenType.NULL_LITERAL, TokenType.RIGHT_PAREN);
+                || tokenType == TokenType.INTEGER_LITERAL || tokenType == TokenType.NULL_LITERAL
+                || (allowPlaceholders && tokenType == TokenType.PLACEHOLDER), TokenType.RIGHT_PAREN);
 
         if (command.getValues().getValues().isEmpty()) throw new DBException(INVALID_LIST_EXCEPTION);
+        parameterCount += command.getValues().getParameterCount();
         return command;
     }
     private Command parseSelect() {
-        // <Select> ::=  "SELECT " <WildAttribList> " FROM " [TableName] |
+        // <Select> ::=  "SELECT " <SelectList> " FROM " [TableName] [" WHERE " <Condition>] [" GROUP " "BY " <AttributeList>] <OrderLimit>
         consumeToken(TokenType.SELECT_KEYWORD);
 
         boolean selectAll = false;
         List.WildAttributeList attributesList = new List.WildAttributeList();
+        LinkedHashMap<String, Aggregate> aggregates = new LinkedHashMap<>();
         if (tokens.get(currentTokenIndex).getType() == TokenType.ASTRIX) {
             consumeToken(TokenType.ASTRIX);
             selectAll = true;
         } else {
-            parseList(attributesList, tokenType -> tokenType == TokenType.IDENTIFIER, TokenType.FROM_KEYWORD);
-            if (attributesList.getAttributes().isEmpty()) throw new DBException(INVALID_LIST_EXCEPTION);
-            currentTokenIndex--;
+            parseSelectList(attributesList, aggregates);
         }
 
         consumeToken(TokenType.FROM_KEYWORD);
-        Tokenizer.Token tableNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token tableNameToken = consumeName();
 
-        if (tokens.get(currentTokenIndex).getType() == TokenType.SEMICOLON)
-            return new Command.Select(attributesList, tableNameToken, null, selectAll);
-
-        // "SELECT " <WildAttribList> " FROM " [TableName] " WHERE " <Condition>
-        consumeToken(TokenType.WHERE_KEYWORD);
-        Condition condition = parseCondition();
-        //condition.print(5);
-        if (parenthesisCount != 0) throw new DBException(INVALID_QUERY_EXCEPTION);
-
-        return new Command.Select(attributesList, tableNameToken, condition, selectAll);
+        Condition condition = null;
+        if (tokens.get(currentTokenIndex).getType() == TokenType.WHERE_KEYWORD) {
+            consumeToken(TokenType.WHERE_KEYWORD);
+            condition = parseCondition();
+            if (parenthesisCount != 0) throw new DBException(INVALID_QUERY_EXCEPTION);
+        }
+        ArrayList<String> groupBy = new ArrayList<>();
+        if (tokens.get(currentTokenIndex).getType() == TokenType.GROUP_KEYWORD) {
+            consumeToken(TokenType.GROUP_KEYWORD);
+            consumeToken(TokenType.BY_KEYWORD);
+            groupBy.add(consumeName().getValue().toLowerCase());
+            while (tokens.get(currentTokenIndex).getType() == TokenType.COMMA) {
+                consumeToken(TokenType.COMMA);
+                groupBy.add(consumeName().getValue().toLowerCase());
+            }
+        }
+        return new Command.Select(attributesList, tableNameToken, condition, selectAll, aggregates, groupBy, parseOrderLimit());
+    }
+    private OrderLimit parseOrderLimit() {
+        // <OrderLimit> ::= "" | <OrderBy> | <Limit> | <OrderBy> <Limit>
+        // <OrderBy>    ::= " ORDER " "BY " <SortKey> | " ORDER " "BY " <SortKey> "," ...
+        // <Limit>      ::= " LIMIT " [IntegerLiteral] | " LIMIT " [IntegerLiteral] " OFFSET " [IntegerLiteral]
+        ArrayList<OrderLimit.SortKey> sortKeys = new ArrayList<>();
+        if (tokens.get(currentTokenIndex).getType() == TokenType.ORDER_KEYWORD) {
+            consumeToken(TokenType.ORDER_KEYWORD);
+            consumeToken(TokenType.BY_KEYWORD);
+            sortKeys.add(parseSortKey());
+            while (tokens.get(currentTokenIndex).getType() == TokenType.COMMA) {
+                consumeToken(TokenType.COMMA);
+                sortKeys.add(parseSortKey());
+            }
+        }
+        if (tokens.get(currentTokenIndex).getType() != TokenType.LIMIT_KEYWORD) {
+            return sortKeys.isEmpty() ? OrderLimit.NONE : new OrderLimit(sortKeys, -1, 0);
+        }
+        consumeToken(TokenType.LIMIT_KEYWORD);
+        int limit = parseCount();
+        int offset = 0;
+        if (tokens.get(currentTokenIndex).getType() == TokenType.OFFSET_KEYWORD) {
+            consumeToken(TokenType.OFFSET_KEYWORD);
+            offset = parseCount();
+        }
+        return new OrderLimit(sortKeys, limit, offset);
+    }
+    private OrderLimit.SortKey parseSortKey() {
+        // <SortKey> ::= [AttributeName] [" ASC" | " DESC"] | <Aggregate> [" ASC" | " DESC"]
+        Tokenizer.Token nameToken = consumeName();
+        String name = nameToken.getValue().toLowerCase();
+        if (tokens.get(currentTokenIndex).getType() == TokenType.LEFT_PAREN) name = parseAggregate(nameToken).getLabel();
+        TokenType direction = tokens.get(currentTokenIndex).getType();
+        if (direction == TokenType.ASC_KEYWORD || direction == TokenType.DESC_KEYWORD) consumeToken();
+        return new OrderLimit.SortKey(name, direction == TokenType.DESC_KEYWORD);
+    }
+    private int parseCount() {
+        String count = consumeToken(TokenType.INTEGER_LITERAL).getValue();
+        try {
+            int value = Integer.parseInt(count);
+            if (value >= 0) return value;
+        } catch (NumberFormatException ignored) { }
+        throw new DBException(INVALID_VALUE_EXCEPTION);
+    }
+    private void parseSelectList(List.WildAttributeList attributesList, LinkedHashMap<String, Aggregate> aggregates) {
+        // <SelectList> ::= <SelectItem> | <SelectItem> "," <SelectList>
+        // <SelectItem> ::= [AttributeName] | <Aggregate>
+        while (true) {
+            if (!isName(tokens.get(currentTokenIndex).getType())) throw new DBException(INVALID_LIST_EXCEPTION);
+            Tokenizer.Token token = consumeName();
+            if (tokens.get(currentTokenIndex).getType() == TokenType.LEFT_PAREN) {
+                Aggregate aggregate = parseAggregate(token);
+                aggregates.put(aggregate.getLabel(), aggregate);
+                attributesList.addElement(new Tokenizer.Token(aggregate.getLabel(), TokenType.IDENTIFIER));
+            } else {
+                attributesList.addElement(token);
+            }
+            if (tokens.get(currentTokenIndex).getType() == TokenType.FROM_KEYWORD) return;
+            consumeToken(TokenType.COMMA);
+        }
+    }
+    private Aggregate parseAggregate(Tokenizer.Token functionToken) {
+        // <Aggregate> ::= <Function> "(" [AttributeName] ")" | "COUNT" "(" "*" ")"
+        // <Function>  ::= "COUNT" | "SUM" | "AVG" | "MIN" | "MAX"
+        Aggregate.Function function = Arrays.stream(Aggregate.Function.values())
+                .filter(candidate -> candidate.name().equalsIgnoreCase(functionToken.getValue())).findFirst()
+                .orElseThrow(() -> new DBException(INVALID_QUERY_EXCEPTION));
+        consumeToken(TokenType.LEFT_PAREN);
+        String attributeName = null;
+        if (function == Aggregate.Function.COUNT && tokens.get(currentTokenIndex).getType() == TokenType.ASTRIX) {
+            consumeToken(TokenType.ASTRIX);
+        } else {
+            attributeName = consumeName().getValue();
+        }
+        consumeToken(TokenType.RIGHT_PAREN);
+        return new Aggregate(function, attributeName);
     }
     private Command parseDelete() {
         // <Delete> ::= "DELETE " "FROM " [TableName] " WHERE " <Condition>
         consumeToken(TokenType.DELETE_KEYWORD);
         consumeToken(TokenType.FROM_KEYWORD);
-        Tokenizer.Token tableNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token tableNameToken = consumeName();
 
         consumeToken(TokenType.WHERE_KEYWORD);
         Condition condition = parseCondition();
@@ -155,49 +381,52 @@ public class Parser {
     private Command parseUpdate() {
         // <Update> ::= "UPDATE " [TableName] " SET " <NameValueList> " WHERE " <Condition>
         consumeToken(TokenType.UPDATE_KEYWORD);
-        Tokenizer.Token tableNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token tableNameToken = consumeName();
 
         consumeToken(TokenType.SET_KEYWORD);
         HashMap<String, String> nameValueList = new HashMap<>();
-        parseNameValueList(nameValueList);
+        HashMap<String, Integer> parameters = new HashMap<>();
+        parseNameValueList(nameValueList, parameters);
 
         Condition condition = parseCondition();
         if (parenthesisCount != 0) throw new DBException(INVALID_QUERY_EXCEPTION);
 
-        return new Command.Update(tableNameToken, nameValueList, condition);
+        return new Command.Update(tableNameToken, nameValueList, parameters, condition);
     }
     private Command parseJoin() {
         consumeToken(TokenType.JOIN_KEYWORD);
 
-        Tokenizer.Token firstTableNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token firstTableNameToken = consumeName();
         consumeToken(TokenType.AND_KEYWORD);
-        Tokenizer.Token secondTableNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token secondTableNameToken = consumeName();
         consumeToken(TokenType.ON_KEYWORD);
 
-        Tokenizer.Token firstAttributeNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token firstAttributeNameToken = consumeName();
         consumeToken(TokenType.AND_KEYWORD);
 
         // Parse second attribute name
-        Tokenizer.Token secondAttributeNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token secondAttributeNameToken = consumeName();
 
         return new Command.Join(firstTableNameToken, secondTableNameToken,
-            firstAttributeNameToken, secondAttributeNameToken
+            firstAttributeNameToken, secondAttributeNameToken, parseOrderLimit()
         );
     }
-    private void parseNameValueList(HashMap<String, String> nameValueList) {
+    private void parseNameValueList(HashMap<String, String> nameValueList, HashMap<String, Integer> parameters) {
         Tokenizer.Token currToken;
         while ((currToken = consumeToken()).getType() != TokenType.EOF) {
             if (currToken.getType() == TokenType.WHERE_KEYWORD) return;
 
-            if (currToken.getType() != TokenType.IDENTIFIER) throw new DBException(INVALID_LIST_EXCEPTION);
+            if (!isName(currToken.getType())) throw new DBException(INVALID_LIST_EXCEPTION);
             String attributeName = currToken.getValue().toLowerCase();
             consumeToken(TokenType.ASSIGN_KEYWORD);
-            Tokenizer.Token valueToken = consumeToken(new TokenType[] {TokenType.STRING_LITERAL, TokenType.BOOLEAN_LITERAL,
-                                         TokenType.FLOAT_LITERAL, TokenType.INTEGER_LITERAL,
-                                         TokenType.NULL_LITERAL});
+            Tokenizer.Token valueToken = consumeToken(valueTokenTypes());
             String attributeValue = valueToken.getValue();
 
             // Add name-value pair to the list
+            if (valueToken.getType() == TokenType.PLACEHOLDER) {
+                parameters.put(attributeName, parameterCount++);
+                attributeValue = null;
+            }
             nameValueList.put(attributeName, attributeValue);
 
             // check for comma between attributes, but not at end:
@@ -244,11 +473,12 @@ public class Parser {
     }
     private Condition parseAttributeComparison() {
         // <AttributeComparison> ::= [AttributeName] <Comparator> [Value]
-        Tokenizer.Token attributeNameToken = consumeToken(TokenType.IDENTIFIER);
+        Tokenizer.Token attributeNameToken = consumeName();
         Condition.Comparator comparator = parseComparator();
-        Tokenizer.Token valueToken = consumeToken(new TokenType[] {TokenType.STRING_LITERAL, TokenType.BOOLEAN_LITERAL,
-                                         TokenType.FLOAT_LITERAL, TokenType.INTEGER_LITERAL,
-                                         TokenType.NULL_LITERAL});
+        Tokenizer.Token valueToken = consumeToken(valueTokenTypes());
+        if (valueToken.getType() == TokenType.PLACEHOLDER) {
+            return new Condition.AttributeValueComparison(attributeNameToken.getValue(), comparator, parameterCount++);
+        }
         if (valueToken.getType() == TokenType.STRING_LITERAL) {
             valueToken.setValue(valueToken.getValue().substring(1, valueToken.getValue().length() - 1).strip());
         }
@@ -304,6 +534,14 @@ public class Parser {
             default -> throw new DBException(INVALID_QUERY_EXCEPTION, "Expected comparator but found: " + currentTokenType);
         };
     }
+    private TokenType[] valueTokenTypes() {
+        if (allowPlaceholders) {
+            return new TokenType[] {TokenType.STRING_LITERAL, TokenType.BOOLEAN_LITERAL, TokenType.FLOAT_LITERAL,
+                    TokenType.INTEGER_LITERAL, TokenType.NULL_LITERAL, TokenType.PLACEHOLDER};
+        }
+        return new TokenType[] {TokenType.STRING_LITERAL, TokenType.BOOLEAN_LITERAL, TokenType.FLOAT_LITERAL,
+                TokenType.INTEGER_LITERAL, TokenType.NULL_LITERAL};
+    }
     @FunctionalInterface interface TokenCondition { boolean test(TokenType tokenType); }
     private void parseList(List.IdentifierList list, TokenCondition isValid, TokenType endingToken) {
         Tokenizer.Token currToken;
@@ -312,7 +550,7 @@ public class Parser {
 
             // Attribute expected --> add to list:
             if (isValid.test(currToken.getType())) {
-                list.addElement(currToken);
+                list.addElement(NON_RESERVED_KEYWORDS.contains(currToken.getType()) ? asName(currToken) : currToken);
                 // check for comma between attributes, but not at end:
                 if (tokens.get(currentTokenIndex).getType() != endingToken) { consumeToken(TokenType.COMMA); }
             } else {
@@ -321,6 +559,15 @@ public class Parser {
         }
         throw new DBException(INVALID_LIST_EXCEPTION);
     }
+    private static boolean isName(TokenType tokenType) {
+        return tokenType == TokenType.IDENTIFIER || NON_RESERVED_KEYWORDS.contains(tokenType);
+    }
+    private static Tokenizer.Token asName(Tokenizer.Token token) { return new Tokenizer.Token(token.getValue(), TokenType.IDENTIFIER); }
+    // [TableName], [AttributeName], [DatabaseName], [StatementName] or [CursorName]:
+    private Tokenizer.Token consumeName() {
+        if (!NON_RESERVED_KEYWORDS.contains(tokens.get(currentTokenIndex).getType())) return consumeToken(TokenType.IDENTIFIER);
+        return asName(consumeToken());
+    }
     private Tokenizer.Token consumeToken() { return tokens.get(currentTokenIndex++); }
     private Tokenizer.Token consumeToken(TokenType expectedTokenType) {
         Tokenizer.Token currentToken = tokens.get(currentTokenIndex);
@@ -0,0 +1,57 @@
+package edu.uob.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of parsed commands keyed by normalised query text. Commands are never modified once parsed (binding a
+ * prepared statement makes a copy), so a cached command can be executed any number of times.
+ */
+public class StatementCache {
+    private final LinkedHashMap<String, Command> statements;
+    private long hits;
+    private long misses;
+
+    public StatementCache(int capacity) {
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Command> eldest) { return size() > capacity; }
+        };
+    }
+    public Command get(String normalizedQuery) {
+        Command command = statements.get(normalizedQuery);
+        if (command == null) misses++;
+        else hits++;
+        return command;
+    }
+    public void put(String normalizedQuery, Command command) { statements.put(normalizedQuery, command); }
+    public int size() { return statements.size(); }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public void clear() { statements.clear(); }
+
+    /**
+     * Trims the query and collapses each run of whitespace outside string literals to a single space, so queries that
+     * only differ in layout share one cache entry. Keyword and identifier case is kept as table and attribute names
+     * preserve the case the user typed.
+     */
+    public static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        boolean inString = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!inString && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') inString = !inString;
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package edu.uob.planner;
+
+import edu.uob.database.DBManager;
+import edu.uob.database.DBMetadata;
+import edu.uob.parser.Aggregate;
+import edu.uob.parser.Command;
+import edu.uob.parser.Condition;
+import edu.uob.parser.OrderLimit;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+import edu.uob.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * Semantic analysis between parsing and planning. Every table and attribute a SELECT, UPDATE, DELETE, JOIN or INSERT
+ * names is checked against the metadata of the database in use and resolved to its ordinal in the table's attributes,
+ * which is where a row flowing through the plan holds its value (see Row). Binding happens on every execution rather
+ * than once per parse, as a cached statement may outlive the schema it was first run against, but never per row: what
+ * it resolves is all the planner and the operators need, so none of them looks a name up or lower-cases one again.
+ *
+ * <p>UPDATE's assignments are left alone; they are only checked once a row matches (see PlanNode.Update).
+ */
+public class Binder {
+    private final DBManager manager;
+    public Binder(DBManager manager) { this.manager = manager; }
+
+    /** Binds the statement, or the one an EXPLAIN or DECLARE wraps; null for a command that reads no table. */
+    public Binding bind(Command command) {
+        if (command instanceof Command.Explain) return bind(((Command.Explain) command).getStatement());
+        if (command instanceof Command.Declare) return bind(((Command.Declare) command).getStatement());
+        if (command instanceof Command.Select) return bindSelect((Command.Select) command);
+        if (command instanceof Command.Update) {
+            Command.Update update = (Command.Update) command;
+            return bindCondition(reading(table(update.getTableName())), update.getCondition());
+        }
+        if (command instanceof Command.Delete) {
+            Command.Delete delete = (Command.Delete) command;
+            return bindCondition(reading(table(delete.getTableName())), delete.getCondition());
+        }
+        if (command instanceof Command.Join) return bindJoin((Command.Join) command);
+        if (command instanceof Command.Insert) return bindInsert((Command.Insert) command);
+        return null;
+    }
+
+    // Checks in the order the planner used to: grouping, the select list, ORDER BY, then the condition.
+    private Binding bindSelect(Command.Select select) {
+        Binding binding = new Binding(table(select.getTableName()));
+        Utils.CaseInsensitiveArrayList<String> attributes = binding.getTable(0).getAttributes();
+        ArrayList<String> groupBy = select.getGroupBy();
+        ArrayList<Aggregate> aggregates = new ArrayList<>(select.getAggregates().values());
+        if (select.isSelectAll()) {
+            if (select.isAggregate()) throw new DBException(ErrorType.GROUP_BY_EXCEPTION);
+            binding.header = attributes;
+            binding.headerOrdinals = new int[attributes.size()];
+            for (int i = 0; i < attributes.size(); i++) binding.headerOrdinals[i] = i;
+        } else {
+            // Only what the SELECT returns, aggregates, groups, sorts on or tests needs to be read:
+            binding.columns = new LinkedHashMap<>();
+            binding.groupOrdinals = new int[groupBy.size()];
+            for (int i = 0; i < groupBy.size(); i++) binding.groupOrdinals[i] = binding.column(groupBy.get(i));
+            binding.aggregateOrdinals = new int[aggregates.size()];
+            binding.header = new ArrayList<>();
+            ArrayList<String> selected = select.getWildAttribList().getAttributes();
+            binding.headerOrdinals = new int[selected.size()];
+            for (int i = 0; i < selected.size(); i++) {
+                String attribute = selected.get(i);
+                Aggregate aggregate = select.getAggregates().get(attribute);
+                if (aggregate != null) {
+                    int index = aggregates.indexOf(aggregate);
+                    String name = aggregate.getAttributeName();
+                    binding.aggregateOrdinals[index] = name == null ? -1 : binding.column(name);
+                    binding.headerOrdinals[i] = groupBy.size() + index;
+                } else {
+                    int ordinal = binding.column(attribute);
+                    if (!select.isAggregate()) {
+                        binding.headerOrdinals[i] = ordinal;
+                    } else {
+                        binding.headerOrdinals[i] = groupBy.indexOf(binding.getKeys(0)[ordinal]);
+                        if (binding.headerOrdinals[i] < 0) throw new DBException(ErrorType.GROUP_BY_EXCEPTION);
+                    }
+                }
+                binding.header.add(attribute);
+            }
+        }
+        // A plain SELECT may sort on any attribute of the table; an aggregate query only on its groups and aggregates:
+        ArrayList<OrderLimit.SortKey> sortKeys = select.getOrderLimit().getSortKeys();
+        binding.sortOrdinals = new int[sortKeys.size()];
+        for (int i = 0; i < sortKeys.size(); i++) {
+            String name = sortKeys.get(i).getName();
+            if (!select.isAggregate()) {
+                binding.sortOrdinals[i] = binding.column(name);
+            } else if (groupBy.contains(name)) {
+                binding.sortOrdinals[i] = groupBy.indexOf(name);
+            } else if (select.getAggregates().containsKey(name)) {
+                binding.sortOrdinals[i] = groupBy.size() + aggregates.indexOf(select.getAggregates().get(name));
+            } else {
+                throw new DBException(ErrorType.GROUP_BY_EXCEPTION);
+            }
+        }
+        return bindCondition(binding, select.getCondition());
+    }
+    // UPDATE and DELETE read only what their condition tests:
+    private static Binding reading(DBMetadata.Table table) {
+        Binding binding = new Binding(table);
+        binding.columns = new LinkedHashMap<>();
+        return binding;
+    }
+    private static Binding bindCondition(Binding binding, Condition condition) {
+        if (condition instanceof Condition.Expression) {
+            bindCondition(binding, ((Condition.Expression) condition).getLeftCondition());
+            bindCondition(binding, ((Condition.Expression) condition).getRightCondition());
+        } else if (condition != null) {
+            binding.column(((Condition.AttributeValueComparison) condition).getAttributeName());
+        }
+        return binding;
+    }
+    private Binding bindJoin(Command.Join join) {
+        Binding binding = new Binding(table(join.getFirstTableName()));
+        binding.tables.add(table(join.getSecondTableName()));
+        binding.joinOrdinals = new int[] {
+                binding.getTable(0).getAttributes().indexOf(join.getFirstAttributeName()),
+                binding.getTable(1).getAttributes().indexOf(join.getSecondAttributeName()) };
+        if (binding.joinOrdinals[0] < 0 || binding.joinOrdinals[1] < 0) {
+            throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+        }
+        return binding;
+    }
+    // One value per attribute besides id, which is handed out by the table:
+    private Binding bindInsert(Command.Insert insert) {
+        Binding binding = new Binding(table(insert.getTableName()));
+        if (binding.getTable(0).getAttributes().size() != insert.getValues().getValues().size() + 1) {
+            throw new DBException(ErrorType.INVALID_VALUE_EXCEPTION);
+        }
+        return binding;
+    }
+    private DBMetadata.Table table(String tableName) {
+        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
+        if (!manager.getDatabase().getTables().containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
+        return manager.getMetadata().getTables().get(tableName);
+    }
+
+    /**
+     * What a statement's names resolved to. Tables are numbered in the order the statement names them. An aggregate
+     * SELECT's rows are laid out as its groups followed by its aggregates (see PlanNode.HashAggregate), so that is
+     * what its header and sort ordinals point into; any other SELECT's point into the table's attributes.
+     */
+    public static class Binding {
+        private final ArrayList<DBMetadata.Table> tables = new ArrayList<>();
+        // Key --> ordinal of each attribute of the first table the statement reads, or null when it reads all of them:
+        private LinkedHashMap<String, Integer> columns;
+        private ArrayList<String> header;
+        private int[] headerOrdinals;
+        private int[] sortOrdinals = new int[0];
+        private int[] groupOrdinals = new int[0];
+        // -1 for COUNT(*):
+        private int[] aggregateOrdinals = new int[0];
+        private int[] joinOrdinals;
+        private Binding(DBMetadata.Table table) { tables.add(table); }
+
+        public DBMetadata.Table getTable(int table) { return tables.get(table); }
+        // The keys a stored record of the given table holds its values under, by ordinal:
+        public String[] getKeys(int table) { return tables.get(table).getAttributes().keys(); }
+        public Collection<String> getColumns() { return columns == null ? null : columns.keySet(); }
+        // SELECT's result header, as the attributes were named, and where each column's value is in a row:
+        public ArrayList<String> getHeader() { return header; }
+        public int[] getHeaderOrdinals() { return headerOrdinals; }
+        // Where the value each ORDER BY item of a SELECT sorts on is in a row:
+        public int[] getSortOrdinals() { return sortOrdinals; }
+        // The ordinals of an aggregate SELECT's GROUP BY attributes, and of each aggregate's attribute in select order:
+        public int[] getGroupOrdinals() { return groupOrdinals; }
+        public int[] getAggregateOrdinals() { return aggregateOrdinals; }
+        // JOIN's attribute on each side:
+        public int getJoinOrdinal(int table) { return joinOrdinals[table]; }
+
+        // The ordinal of an attribute of the first table, noting it as read:
+        private int column(String attribute) {
+            int ordinal = tables.get(0).getAttributes().indexOf(attribute);
+            if (ordinal < 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+            if (columns != null) columns.put(getKeys(0)[ordinal], ordinal);
+            return ordinal;
+        }
+    }
+}
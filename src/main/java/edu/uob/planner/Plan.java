@@ -0,0 +1,85 @@
+package edu.uob.planner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/** A tree of operators ready to run, plus what the interpreter needs to format its result. */
+public class Plan {
+    private final PlanNode root;
+    private final PlanNode.Output output;
+    private final ArrayList<String> attributes;
+    private final boolean join;
+    private boolean exhausted;
+
+    Plan(PlanNode root, PlanNode.Output output, ArrayList<String> attributes, boolean join) {
+        this.root = root;
+        this.output = output;
+        this.attributes = attributes;
+        this.join = join;
+    }
+
+    /**
+     * Runs the plan to completion; with {@code analyze} every operator also records the time spent in it. The tree is
+     * closed afterwards, even on failure, so files held by scans and sorts are released.
+     */
+    public void execute(boolean analyze) {
+        if (analyze) root.setTimed();
+        try {
+            while (root.next() != null) {}
+        } finally {
+            root.close();
+        }
+    }
+
+    /**
+     * Runs the plan a little further for a cursor: pulls up to {@code count} more rows and returns just those (the map
+     * is reused by the next call), each holding the values of {@link #getAttributes()} in order. The tree is closed once
+     * it runs dry or fails.
+     */
+    public LinkedHashMap<Integer, String[]> fetch(int count) {
+        output.getResult().clear();
+        if (exhausted) return output.getResult();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (root.next() == null) {
+                    exhausted = true;
+                    root.close();
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            exhausted = true;
+            root.close();
+            throw e;
+        }
+        return output.getResult();
+    }
+    public void close() {
+        exhausted = true;
+        root.close();
+    }
+
+    public PlanNode getRoot() { return root; }
+    public boolean isJoin() { return join; }
+    // Only SELECT and JOIN plans produce output, rows holding the attributes' values in order; for UPDATE and DELETE
+    // these are null.
+    public ArrayList<String> getAttributes() { return attributes; }
+    public LinkedHashMap<Integer, String[]> getResult() { return output == null ? null : output.getResult(); }
+
+    /** One line per operator, children indented under their parent, with estimated and (if run) actual figures. */
+    public String explain(boolean analyze) {
+        StringBuilder explanation = new StringBuilder("\n");
+        explain(root, 0, analyze, explanation);
+        return explanation.toString();
+    }
+    private static void explain(PlanNode node, int depth, boolean analyze, StringBuilder explanation) {
+        explanation.append("  ".repeat(depth)).append(depth > 0 ? "-> " : "").append(node.describe());
+        explanation.append("  (estimated rows=").append(node.getEstimatedRows());
+        if (analyze) {
+            explanation.append(", actual rows=").append(node.getActualRows());
+            explanation.append(String.format(", time=%.3f ms", node.getNanos() / 1_000_000.0));
+        }
+        explanation.append(")\n");
+        for (PlanNode child : node.getChildren()) explain(child, depth + 1, analyze, explanation);
+    }
+}
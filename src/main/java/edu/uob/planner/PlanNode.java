@@ -0,0 +1,1165 @@
+package edu.uob.planner;
+
+import edu.uob.database.DBMetadata;
+import edu.uob.database.Table;
+import edu.uob.database.TrigramIndex;
+import edu.uob.database.ZoneMap;
+import edu.uob.parser.Aggregate;
+import edu.uob.stats.QueryTrace;
+import edu.uob.tokenizer.TokenType;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+import edu.uob.utils.Utils;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * A physical operator. Rows are pulled from the root one at a time with {@link #next()}; each operator pulls from its
+ * children as it needs to. A plan is built for a single execution and is not reusable.
+ *
+ * <p>Rows are laid out by ordinal (see Row): operators are handed the ordinals the Binder resolved and never look a
+ * name up, except where a stored record is turned into a row.
+ *
+ * <p>Every operator counts the rows it produces; when the plan is run for EXPLAIN ANALYZE it also accumulates the time
+ * spent in it, including its children. An operator that needs no more input (a satisfied LIMIT) {@link #close() closes}
+ * its children, so scans below it stop early and release what they hold.
+ */
+public abstract class PlanNode {
+    protected final ArrayList<PlanNode> children = new ArrayList<>();
+    private long estimatedRows;
+    private long actualRows;
+    private long nanos;
+    private boolean timed;
+
+    public final Row next() {
+        Row row;
+        if (timed) {
+            long start = System.nanoTime();
+            row = produce();
+            nanos += System.nanoTime() - start;
+        } else {
+            row = produce();
+        }
+        if (row != null) actualRows++;
+        return row;
+    }
+    protected abstract Row produce();
+    public abstract String describe();
+    // No more rows will be pulled from this subtree:
+    public void close() { for (PlanNode child : children) child.close(); }
+
+    public ArrayList<PlanNode> getChildren() { return children; }
+    public long getEstimatedRows() { return estimatedRows; }
+    public void setEstimatedRows(long estimatedRows) { this.estimatedRows = estimatedRows; }
+    public long getActualRows() { return actualRows; }
+    public long getNanos() { return nanos; }
+    void setTimed() {
+        timed = true;
+        for (PlanNode child : children) child.setTimed();
+    }
+    // A stored record as a row: the value under each of keys (the table's by ordinal, null for one not read).
+    static Row row(int id, HashMap<String, String> record, String[] keys) {
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) if (keys[i] != null) values[i] = record.get(keys[i]);
+        return new Row(id, values);
+    }
+
+    // ============================================================================================================== //
+    //                                                  ACCESS                                                        //
+    // ============================================================================================================== //
+
+    public static class SeqScan extends PlanNode {
+        private final String tableName;
+        private final Table table;
+        private final String[] keys;
+        private Iterator<Map.Entry<Integer, HashMap<String, String>>> records;
+        private boolean exhausted;
+        public SeqScan(String tableName, Table table, String[] keys) {
+            this.tableName = tableName;
+            this.table = table;
+            this.keys = keys;
+        }
+        public String getTableName() { return tableName; }
+        @Override
+        protected Row produce() {
+            if (exhausted) return null;
+            if (records == null) records = table.getRecords().entrySet().iterator();
+            if (!records.hasNext()) {
+                exhausted = true;
+                QueryTrace.addRowsScanned(getActualRows());
+                return null;
+            }
+            Map.Entry<Integer, HashMap<String, String>> entry = records.next();
+            return row(entry.getKey(), entry.getValue(), keys);
+        }
+        @Override
+        public void close() {
+            if (exhausted) return;
+            exhausted = true;
+            QueryTrace.addRowsScanned(getActualRows());
+        }
+        @Override
+        public String describe() { return "SeqScan: " + tableName; }
+    }
+    /**
+     * Reads a table straight from its file without loading it: only the wanted attributes of each line are decoded and
+     * only rows passing the predicate (if any) are passed on, so memory use does not grow with the table. When the
+     * zone map saved with the file is current, blocks the predicate cannot match are not read at all.
+     */
+    public static class FileScan extends PlanNode {
+        private final String tableName;
+        private final String filePath;
+        private final Utils.CaseInsensitiveArrayList<String> attributes;
+        // The ALTERs made since the file was written, which decide which of its columns are read (see Table.FileLayout):
+        private final List<DBMetadata.SchemaChange> changes;
+        // How much of the log the metadata accounts for (see Table.readLog):
+        private final long logBytes;
+        private final Collection<String> columns;
+        private final Predicate predicate;
+        // Per column of the file, the ordinal its value goes to, or -1 when it is not read:
+        private int[] ordinals;
+        // Ordinals of the attributes read that the file has no column for:
+        private int[] missing;
+        // The keys a logged row's values are read from, by ordinal (null for an attribute not read):
+        private String[] keys;
+        // Rows changed since the file was written (null when deleted), merged into those read from it by id:
+        private Iterator<Map.Entry<Integer, HashMap<String, String>>> logged;
+        private TreeMap<Integer, HashMap<String, String>> log;
+        private Row nextLogged;
+        private Row nextRead;
+        private BufferedReader reader;
+        private String[][] dictionaries;
+        // Null unless skipping blocks, in which case reader holds the current block's lines:
+        private ZoneMap zones;
+        private RandomAccessFile file;
+        private int block;
+        private long blocksSkipped;
+        private long rowsRead;
+        private boolean exhausted;
+        public FileScan(String tableName, String filePath, List<String> attributes, Collection<String> columns,
+                        Predicate predicate) {
+            this(tableName, filePath, attributes, List.of(), -1, columns, predicate);
+        }
+        public FileScan(String tableName, String filePath, DBMetadata.Table metadata, Collection<String> columns,
+                        Predicate predicate) {
+            this(tableName, filePath, metadata.getAttributes(), metadata.getSchemaChanges(), metadata.getLogBytes(), columns,
+                    predicate);
+        }
+        private FileScan(String tableName, String filePath, List<String> attributes, List<DBMetadata.SchemaChange> changes,
+                         long logBytes, Collection<String> columns, Predicate predicate) {
+            this.tableName = tableName;
+            this.filePath = filePath;
+            this.attributes = new Utils.CaseInsensitiveArrayList<>(attributes);
+            this.changes = changes;
+            this.logBytes = logBytes;
+            this.columns = columns;
+            this.predicate = predicate;
+        }
+        @Override
+        protected Row produce() {
+            if (exhausted) return null;
+            try {
+                if (reader == null) open();
+                if (nextRead == null) nextRead = read();
+                Row row;
+                if (nextLogged != null && (nextRead == null || nextLogged.getId() < nextRead.getId())) {
+                    row = nextLogged;
+                    nextLogged = nextLogged();
+                } else {
+                    row = nextRead;
+                    nextRead = null;
+                }
+                if (row != null) return row;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            close();
+            return null;
+        }
+        // The next row from the file that the log has not superseded and the predicate accepts:
+        private Row read() throws IOException {
+            String line;
+            while ((line = nextLine()) != null) {
+                rowsRead++;
+                String[] values = new String[keys.length];
+                Table.decodeRow(line, ordinals, dictionaries, values);
+                // id is always the first attribute:
+                int id = Integer.parseInt(values[0]);
+                if (log.containsKey(id)) continue;
+                for (int ordinal : missing) values[ordinal] = "NULL";
+                if (predicate == null || predicate.test(values)) return new Row(id, values);
+            }
+            return null;
+        }
+        private Row nextLogged() {
+            while (logged.hasNext()) {
+                Map.Entry<Integer, HashMap<String, String>> entry = logged.next();
+                if (entry.getValue() == null) continue;
+                rowsRead++;
+                Row row = row(entry.getKey(), entry.getValue(), keys);
+                if (predicate == null || predicate.test(row.getValues())) return row;
+            }
+            return null;
+        }
+        private void open() throws IOException {
+            reader = new BufferedReader(new FileReader(filePath));
+            String header = reader.readLine();
+            keys = attributes.keys().clone();
+            // id (the first) is always read:
+            if (columns != null) for (int i = 1; i < keys.length; i++) if (!columns.contains(keys[i])) keys[i] = null;
+            Table.FileLayout layout = new Table.FileLayout(header, attributes, changes);
+            String[] fileKeys = layout.getKeys();
+            ordinals = new int[fileKeys.length];
+            for (int i = 0; i < fileKeys.length; i++) {
+                ordinals[i] = fileKeys[i] == null ? -1 : attributes.indexOf(fileKeys[i]);
+                if (ordinals[i] >= 0 && keys[ordinals[i]] == null) ordinals[i] = -1;
+            }
+            missing = layout.getMissing().stream().mapToInt(attributes::indexOf)
+                    .filter(ordinal -> keys[ordinal] != null).toArray();
+            dictionaries = Table.readDictionaries(filePath, header, fileKeys);
+            log = Table.readLog(filePath, changes, logBytes);
+            logged = log.entrySet().iterator();
+            nextLogged = nextLogged();
+            // The zones were summarised under the file's own columns:
+            if (predicate == null || !changes.isEmpty()) return;
+            zones = ZoneMap.read(ZoneMap.zoneFilePath(filePath), new File(filePath).length());
+            if (zones == null) return;
+            reader.close();
+            reader = new BufferedReader(Reader.nullReader());
+            file = new RandomAccessFile(filePath, "r");
+        }
+        private String nextLine() throws IOException {
+            String line;
+            while ((line = reader.readLine()) == null && zones != null && nextBlock()) { }
+            return line;
+        }
+        // Moves the reader onto the next block the predicate might match; false when there is none left.
+        private boolean nextBlock() throws IOException {
+            while (block < zones.getBlocks().size()) {
+                ZoneMap.Block candidate = zones.getBlocks().get(block++);
+                if (candidate.getFileBytes() == 0) continue;
+                if (!predicate.mightMatch(candidate)) {
+                    blocksSkipped++;
+                    continue;
+                }
+                byte[] bytes = new byte[candidate.getFileBytes()];
+                file.seek(candidate.getFileOffset());
+                file.readFully(bytes);
+                // Decoded as FileReader would:
+                reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
+                return true;
+            }
+            return false;
+        }
+        @Override
+        public void close() {
+            if (exhausted) return;
+            exhausted = true;
+            QueryTrace.addRowsScanned(rowsRead);
+            if (reader == null) return;
+            try { reader.close(); } catch (IOException ignored) { }
+            if (file == null) return;
+            try { file.close(); } catch (IOException ignored) { }
+        }
+        @Override
+        public String describe() {
+            return "FileScan: " + tableName + (predicate == null ? "" : " (" + predicate + ")")
+                    + (blocksSkipped == 0 ? "" : " (" + blocksSkipped + " blocks skipped)");
+        }
+
+        /**
+         * The type of the first non-NULL value of each of {@code columns} in file order, as the condition compiler
+         * needs; reads only as far into the file as it takes to find them.
+         */
+        public static HashMap<String, TokenType> attributeTypes(String filePath, List<String> attributes,
+                                                                 Collection<String> columns) throws IOException {
+            return attributeTypes(filePath, attributes, List.of(), -1, columns);
+        }
+        public static HashMap<String, TokenType> attributeTypes(String filePath, DBMetadata.Table metadata,
+                                                                 Collection<String> columns) throws IOException {
+            return attributeTypes(filePath, metadata.getAttributes(), metadata.getSchemaChanges(), metadata.getLogBytes(), columns);
+        }
+        private static HashMap<String, TokenType> attributeTypes(String filePath, List<String> attributes,
+                                                                  List<DBMetadata.SchemaChange> changes, long logBytes,
+                                                                  Collection<String> columns) throws IOException {
+            HashMap<String, TokenType> types = new HashMap<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+                String header = reader.readLine();
+                String[] keys = new Table.FileLayout(header, new Utils.CaseInsensitiveArrayList<>(attributes), changes).getKeys();
+                boolean[] wanted = new boolean[keys.length];
+                for (int i = 0; i < keys.length; i++) wanted[i] = keys[i] != null && columns.contains(keys[i]);
+                String[][] dictionaries = Table.readDictionaries(filePath, header, keys);
+                String line;
+                while (types.size() < columns.size() && (line = reader.readLine()) != null) {
+                    for (Map.Entry<String, String> value : Table.decodeRow(line, keys, wanted, dictionaries).entrySet()) {
+                        if (types.containsKey(value.getKey())) continue;
+                        TokenType type = Predicate.valueType(value.getValue());
+                        if (type != TokenType.NULL_LITERAL) types.put(value.getKey(), type);
+                    }
+                }
+            }
+            // Values only ever written to the log:
+            for (HashMap<String, String> row : Table.readLog(filePath, changes, logBytes).values()) {
+                if (types.size() == columns.size()) break;
+                if (row == null) continue;
+                for (String column : columns) {
+                    TokenType type = Predicate.valueType(row.getOrDefault(column, "NULL"));
+                    if (type != TokenType.NULL_LITERAL) types.putIfAbsent(column, type);
+                }
+            }
+            return types;
+        }
+    }
+    // Primary key lookup for "id == N":
+    public static class IndexLookup extends PlanNode {
+        private final String tableName;
+        private final Table table;
+        private final String[] keys;
+        private final int id;
+        private boolean done;
+        public IndexLookup(String tableName, Table table, String[] keys, int id) {
+            this.tableName = tableName;
+            this.table = table;
+            this.keys = keys;
+            this.id = id;
+        }
+        @Override
+        protected Row produce() {
+            if (done) return null;
+            done = true;
+            HashMap<String, String> values = table.getRecords().get(id);
+            if (values == null) return null;
+            QueryTrace.addRowsScanned(1);
+            return row(id, values, keys);
+        }
+        @Override
+        public String describe() { return "IndexLookup: " + tableName + " (id == " + id + ")"; }
+    }
+
+    // Primary key range "lo <= id <= hi", probing each id in turn; rows come out in id order, highest first if descending.
+    public static class IndexRangeScan extends PlanNode {
+        private final String tableName;
+        private final Table table;
+        private final String[] keys;
+        private final int low;
+        private final int high;
+        private final boolean descending;
+        private long next;
+        public IndexRangeScan(String tableName, Table table, String[] keys, int low, int high) {
+            this(tableName, table, keys, low, high, false);
+        }
+        public IndexRangeScan(String tableName, Table table, String[] keys, int low, int high, boolean descending) {
+            this.tableName = tableName;
+            this.table = table;
+            this.keys = keys;
+            this.low = low;
+            this.high = high;
+            this.descending = descending;
+            this.next = descending ? high : low;
+        }
+        @Override
+        protected Row produce() {
+            while (next >= low && next <= high) {
+                int id = (int) next;
+                next += descending ? -1 : 1;
+                HashMap<String, String> values = table.getRecords().get(id);
+                if (values != null) {
+                    QueryTrace.addRowsScanned(1);
+                    return row(id, values, keys);
+                }
+            }
+            return null;
+        }
+        @Override
+        public String describe() {
+            return "IndexRangeScan: " + tableName + " (" + low + " <= id <= " + high + (descending ? ", descending" : "") + ")";
+        }
+    }
+    // Records holding every trigram of a LIKE pattern, in id order; the Filter above still checks the pattern itself.
+    public static class TrigramScan extends PlanNode {
+        private final String tableName;
+        private final Table table;
+        private final String[] keys;
+        private final TrigramIndex index;
+        private final String pattern;
+        private int[] candidates;
+        private int position;
+        public TrigramScan(String tableName, Table table, String[] keys, TrigramIndex index, String pattern) {
+            this.tableName = tableName;
+            this.table = table;
+            this.keys = keys;
+            this.index = index;
+            this.pattern = pattern;
+        }
+        @Override
+        protected Row produce() {
+            if (candidates == null) candidates = index.candidates(pattern);
+            while (position < candidates.length) {
+                int id = candidates[position++];
+                HashMap<String, String> values = table.getRecords().get(id);
+                if (values != null) {
+                    QueryTrace.addRowsScanned(1);
+                    return row(id, values, keys);
+                }
+            }
+            return null;
+        }
+        @Override
+        public String describe() { return "TrigramScan: " + tableName + " (" + index.getAttribute() + " LIKE " + pattern + ")"; }
+    }
+
+    // Every record of the zone map blocks the predicate might match, block by block in id order; the Filter above still
+    // tests each row.
+    public static class ZoneScan extends PlanNode {
+        private final String tableName;
+        private final Table table;
+        private final String[] keys;
+        private final int blockRows;
+        private final int[] blocks;
+        private final int blockCount;
+        private int position;
+        private long next;
+        private long blockEnd = -1;
+        public ZoneScan(String tableName, Table table, String[] keys, int blockRows, int[] blocks, int blockCount) {
+            this.tableName = tableName;
+            this.table = table;
+            this.keys = keys;
+            this.blockRows = blockRows;
+            this.blocks = blocks;
+            this.blockCount = blockCount;
+        }
+        @Override
+        protected Row produce() {
+            while (true) {
+                if (next > blockEnd) {
+                    if (position == blocks.length) return null;
+                    next = (long) blocks[position++] * blockRows + 1;
+                    blockEnd = next + blockRows - 1;
+                }
+                int id = (int) next++;
+                HashMap<String, String> values = table.getRecords().get(id);
+                if (values != null) {
+                    QueryTrace.addRowsScanned(1);
+                    return row(id, values, keys);
+                }
+            }
+        }
+        @Override
+        public String describe() { return "ZoneScan: " + tableName + " (" + blocks.length + " of " + blockCount + " blocks)"; }
+    }
+
+    // ============================================================================================================== //
+    //                                              ROW OPERATORS                                                     //
+    // ============================================================================================================== //
+
+    public static class Filter extends PlanNode {
+        private final Predicate predicate;
+        public Filter(PlanNode child, Predicate predicate) {
+            children.add(child);
+            this.predicate = predicate;
+        }
+        @Override
+        protected Row produce() {
+            Row row;
+            while ((row = children.get(0).next()) != null) {
+                if (predicate.test(row.getValues())) return row;
+            }
+            return null;
+        }
+        @Override
+        public String describe() { return "Filter: " + predicate; }
+    }
+    // Names the attributes that reach the output; rows pass through untouched and Output picks those columns out.
+    public static class Project extends PlanNode {
+        private final ArrayList<String> attributes;
+        public Project(PlanNode child, ArrayList<String> attributes) {
+            children.add(child);
+            this.attributes = attributes;
+        }
+        public ArrayList<String> getAttributes() { return attributes; }
+        @Override
+        protected Row produce() { return children.get(0).next(); }
+        @Override
+        public String describe() { return "Project: " + String.join(", ", attributes); }
+    }
+    /**
+     * Groups its input on the GROUP BY attributes and computes each aggregate per group; without GROUP BY the whole
+     * input is one group, which yields a row even when the input is empty. The input is read in full on the first
+     * call. From PARALLEL_THRESHOLD rows it is cut into partitions that are aggregated on separate threads and the
+     * partial results merged. Output rows hold the grouping attributes' values followed by each aggregate's result.
+     */
+    public static class HashAggregate extends PlanNode {
+        private static final int PARALLEL_THRESHOLD = 1 << 16;
+        private final ArrayList<String> groupBy;
+        private final ArrayList<Aggregate> aggregates;
+        // Where each grouping attribute's value and each aggregate's attribute's value (-1 for COUNT(*)) is in an input row:
+        private final int[] groupOrdinals;
+        private final int[] aggregateOrdinals;
+        private Iterator<Row> results;
+        public HashAggregate(PlanNode child, ArrayList<String> groupBy, int[] groupOrdinals, ArrayList<Aggregate> aggregates,
+                             int[] aggregateOrdinals) {
+            children.add(child);
+            this.groupBy = groupBy;
+            this.groupOrdinals = groupOrdinals;
+            this.aggregates = aggregates;
+            this.aggregateOrdinals = aggregateOrdinals;
+        }
+        @Override
+        protected Row produce() {
+            if (results == null) results = aggregate().iterator();
+            return results.hasNext() ? results.next() : null;
+        }
+        private ArrayList<Row> aggregate() {
+            ArrayList<String[]> input = new ArrayList<>();
+            Row row;
+            while ((row = children.get(0).next()) != null) input.add(row.getValues());
+            LinkedHashMap<ArrayList<String>, Accumulator[]> groups;
+            int partitions = Math.min(Runtime.getRuntime().availableProcessors(), input.size() / (PARALLEL_THRESHOLD / 4));
+            if (input.size() < PARALLEL_THRESHOLD || partitions < 2) {
+                groups = aggregate(input, 0, input.size());
+            } else {
+                int size = (input.size() + partitions - 1) / partitions;
+                groups = IntStream.range(0, partitions).parallel()
+                        .mapToObj(partition -> aggregate(input, partition * size, Math.min(input.size(), (partition + 1) * size)))
+                        .reduce(HashAggregate::merge).orElseGet(LinkedHashMap::new);
+            }
+            if (groups.isEmpty() && groupBy.isEmpty()) groups.put(new ArrayList<>(), accumulators());
+            ArrayList<Row> rows = new ArrayList<>(groups.size());
+            for (Map.Entry<ArrayList<String>, Accumulator[]> group : groups.entrySet()) {
+                String[] values = new String[groupOrdinals.length + aggregateOrdinals.length];
+                for (int i = 0; i < groupOrdinals.length; i++) values[i] = group.getKey().get(i);
+                for (int i = 0; i < aggregateOrdinals.length; i++) values[groupOrdinals.length + i] = group.getValue()[i].result();
+                rows.add(new Row(rows.size() + 1, values));
+            }
+            return rows;
+        }
+        private LinkedHashMap<ArrayList<String>, Accumulator[]> aggregate(ArrayList<String[]> input, int from, int to) {
+            LinkedHashMap<ArrayList<String>, Accumulator[]> groups = new LinkedHashMap<>();
+            for (int row = from; row < to; row++) {
+                String[] values = input.get(row);
+                ArrayList<String> key = new ArrayList<>(groupOrdinals.length);
+                for (int ordinal : groupOrdinals) key.add(values[ordinal]);
+                Accumulator[] accumulators = groups.computeIfAbsent(key, k -> accumulators());
+                for (int i = 0; i < accumulators.length; i++) {
+                    accumulators[i].add(aggregateOrdinals[i] < 0 ? "" : values[aggregateOrdinals[i]]);
+                }
+            }
+            return groups;
+        }
+        private static LinkedHashMap<ArrayList<String>, Accumulator[]> merge(LinkedHashMap<ArrayList<String>, Accumulator[]> into,
+                                                                            LinkedHashMap<ArrayList<String>, Accumulator[]> from) {
+            for (Map.Entry<ArrayList<String>, Accumulator[]> group : from.entrySet()) {
+                Accumulator[] existing = into.putIfAbsent(group.getKey(), group.getValue());
+                if (existing != null) for (int i = 0; i < existing.length; i++) existing[i].merge(group.getValue()[i]);
+            }
+            return into;
+        }
+        private Accumulator[] accumulators() {
+            Accumulator[] accumulators = new Accumulator[aggregates.size()];
+            for (int i = 0; i < accumulators.length; i++) accumulators[i] = new Accumulator(aggregates.get(i).getFunction());
+            return accumulators;
+        }
+        @Override
+        public String describe() {
+            StringBuilder description = new StringBuilder("HashAggregate: ");
+            for (int i = 0; i < aggregates.size(); i++) description.append(i == 0 ? "" : ", ").append(aggregates.get(i).getLabel());
+            if (!groupBy.isEmpty()) description.append(aggregates.isEmpty() ? "" : " ").append("GROUP BY ").append(String.join(", ", groupBy));
+            return description.toString();
+        }
+    }
+    /**
+     * Running state of one aggregate over one group. NULLs are skipped (COUNT(*) is handed "" for every row), SUM and
+     * AVG only take numeric values, and MIN/MAX compare numbers numerically and ahead of any text.
+     */
+    static class Accumulator {
+        private final Aggregate.Function function;
+        private long count;
+        private long numericCount;
+        private boolean integral = true;
+        private long longSum;
+        private double doubleSum;
+        private String extreme;
+        Accumulator(Aggregate.Function function) { this.function = function; }
+        void add(String value) {
+            if (value == null || value.equalsIgnoreCase("NULL")) return;
+            count++;
+            switch (function) {
+                case SUM, AVG -> {
+                    if (!Utils.isNumeric(value)) return;
+                    numericCount++;
+                    double number = Double.parseDouble(value);
+                    doubleSum += number;
+                    if (integral) addIntegral(value);
+                }
+                case MIN -> { if (extreme == null || compareValues(value, extreme) < 0) extreme = value; }
+                case MAX -> { if (extreme == null || compareValues(value, extreme) > 0) extreme = value; }
+                default -> { }
+            }
+        }
+        private void addIntegral(String value) {
+            if (value.indexOf('.') >= 0) {
+                integral = false;
+                return;
+            }
+            try {
+                longSum = Math.addExact(longSum, Long.parseLong(value.startsWith("+") ? value.substring(1) : value));
+            } catch (NumberFormatException | ArithmeticException e) {
+                integral = false;
+            }
+        }
+        void merge(Accumulator other) {
+            count += other.count;
+            numericCount += other.numericCount;
+            doubleSum += other.doubleSum;
+            if (integral && other.integral) {
+                try { longSum = Math.addExact(longSum, other.longSum); } catch (ArithmeticException e) { integral = false; }
+            } else {
+                integral = false;
+            }
+            if (other.extreme != null && (extreme == null
+                    || (function == Aggregate.Function.MIN ? compareValues(other.extreme, extreme) < 0 : compareValues(other.extreme, extreme) > 0))) {
+                extreme = other.extreme;
+            }
+        }
+        String result() {
+            return switch (function) {
+                case COUNT -> String.valueOf(count);
+                case SUM -> numericCount == 0 ? "NULL" : integral ? String.valueOf(longSum) : formatNumber(doubleSum);
+                case AVG -> numericCount == 0 ? "NULL" : formatNumber(doubleSum / numericCount);
+                case MIN, MAX -> extreme == null ? "NULL" : extreme;
+            };
+        }
+        static int compareValues(String a, String b) {
+            boolean aNumeric = Utils.isNumeric(a), bNumeric = Utils.isNumeric(b);
+            if (aNumeric && bNumeric) return Double.compare(Double.parseDouble(a), Double.parseDouble(b));
+            if (aNumeric != bNumeric) return aNumeric ? -1 : 1;
+            return a.compareTo(b);
+        }
+        private static String formatNumber(double number) {
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+    }
+    /**
+     * Stable sort of its input; the whole input is read on the first call. Rows are buffered until their estimated size
+     * reaches the memory budget, then the buffer is sorted and written to a temporary run file in the spill directory.
+     * Once the input ends the runs and the final buffer are merged through a heap, MERGE_FAN_IN runs at a time, and
+     * the merge is streamed to the parent rather than materialised. Run files are deleted as soon as they are merged
+     * and when the sort is closed. Without a spill directory everything is sorted in memory.
+     */
+    public static class Sort extends PlanNode {
+        private static final int MERGE_FAN_IN = 64;
+        private final Comparator<Row> comparator;
+        private final String description;
+        private final File spillDirectory;
+        private final long memoryBytes;
+        private final ArrayList<File> runFiles = new ArrayList<>();
+        private ArrayList<Row> sorted;
+        private int position;
+        private Merge merge;
+        private long spillBytes;
+        public Sort(PlanNode child, Comparator<Row> comparator, String description) {
+            this(child, comparator, description, null, Long.MAX_VALUE);
+        }
+        public Sort(PlanNode child, Comparator<Row> comparator, String description, File spillDirectory, long memoryBytes) {
+            children.add(child);
+            this.comparator = comparator;
+            this.description = description;
+            this.spillDirectory = spillDirectory;
+            this.memoryBytes = memoryBytes;
+        }
+        @Override
+        protected Row produce() {
+            try {
+                if (sorted == null && merge == null) sort();
+                if (merge != null) return merge.pull();
+                return position < sorted.size() ? sorted.get(position++) : null;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        private void sort() throws IOException {
+            ArrayList<Row> buffer = new ArrayList<>();
+            long bufferBytes = 0;
+            Row row;
+            while ((row = children.get(0).next()) != null) {
+                buffer.add(row);
+                bufferBytes += estimateBytes(row);
+                if (spillDirectory != null && bufferBytes >= memoryBytes) {
+                    buffer.sort(comparator);
+                    runFiles.add(spill(buffer.iterator()));
+                    buffer = new ArrayList<>();
+                    bufferBytes = 0;
+                }
+            }
+            buffer.sort(comparator);
+            if (runFiles.isEmpty()) {
+                sorted = buffer;
+                return;
+            }
+            // Runs are merged oldest first, so rows that compare equal keep their input order:
+            while (runFiles.size() > MERGE_FAN_IN) {
+                ArrayList<File> inputs = new ArrayList<>(runFiles.subList(0, MERGE_FAN_IN));
+                Merge pass = new Merge(inputs, null);
+                File merged;
+                try {
+                    merged = spill(pass);
+                } finally {
+                    pass.close();
+                }
+                runFiles.subList(0, MERGE_FAN_IN).clear();
+                runFiles.add(0, merged);
+            }
+            merge = new Merge(runFiles, buffer);
+        }
+        private File spill(Iterator<Row> rows) throws IOException {
+            File run = File.createTempFile("sort-", ".run", spillDirectory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+                while (rows.hasNext()) writeRow(out, rows.next());
+            } catch (IOException | RuntimeException e) {
+                run.delete();
+                throw e;
+            }
+            spillBytes += run.length();
+            QueryTrace.addSpill(run.length());
+            return run;
+        }
+        @Override
+        public void close() {
+            super.close();
+            if (merge != null) merge.close();
+            for (File run : runFiles) run.delete();
+            runFiles.clear();
+        }
+        @Override
+        public String describe() {
+            return "Sort: " + description + (spillBytes == 0 ? "" : " (spilled " + spillBytes + " bytes)");
+        }
+
+        // A rough heap footprint: the row and its array, plus a reference and a string per value.
+        private static long estimateBytes(Row row) {
+            long bytes = 48;
+            for (String value : row.getValues()) bytes += 8 + (value == null ? 0 : 48 + value.length());
+            return bytes;
+        }
+        private static void writeRow(DataOutputStream out, Row row) throws IOException {
+            out.writeInt(row.getId());
+            out.writeInt(row.getValues().length);
+            for (String value : row.getValues()) {
+                out.writeBoolean(value != null);
+                if (value != null) writeString(out, value);
+            }
+        }
+        private static Row readRow(DataInputStream in) throws IOException {
+            int id;
+            try {
+                id = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            String[] values = new String[in.readInt()];
+            for (int i = 0; i < values.length; i++) values[i] = in.readBoolean() ? readString(in) : null;
+            return new Row(id, values);
+        }
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // k-way merge of sorted runs (and optionally a final in-memory run); ties go to the earliest run.
+        private class Merge implements Iterator<Row> {
+            private final ArrayList<DataInputStream> inputs = new ArrayList<>();
+            private final ArrayList<File> files;
+            private final Iterator<Row> memoryRun;
+            private final PriorityQueue<Head> heap;
+            private Merge(ArrayList<File> files, ArrayList<Row> memoryRun) throws IOException {
+                this.files = files;
+                this.memoryRun = memoryRun == null ? null : memoryRun.iterator();
+                Comparator<Head> order = Comparator.<Head, Row>comparing(head -> head.row, comparator)
+                        .thenComparingInt(head -> head.run);
+                this.heap = new PriorityQueue<>(files.size() + 1, order);
+                for (File file : files) {
+                    inputs.add(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+                    advance(inputs.size() - 1);
+                }
+                if (memoryRun != null) advance(files.size());
+            }
+            private void advance(int run) throws IOException {
+                Row row;
+                if (run < inputs.size()) row = readRow(inputs.get(run));
+                else row = memoryRun.hasNext() ? memoryRun.next() : null;
+                if (row != null) heap.add(new Head(row, run));
+            }
+            Row pull() throws IOException {
+                Head head = heap.poll();
+                if (head == null) {
+                    close();
+                    return null;
+                }
+                advance(head.run);
+                return head.row;
+            }
+            @Override
+            public boolean hasNext() { return !heap.isEmpty(); }
+            @Override
+            public Row next() {
+                try {
+                    return pull();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            void close() {
+                for (DataInputStream input : inputs) {
+                    try { input.close(); } catch (IOException ignored) { }
+                }
+                inputs.clear();
+                for (File file : files) file.delete();
+            }
+        }
+        private static class Head {
+            private final Row row;
+            private final int run;
+            private Head(Row row, int run) {
+                this.row = row;
+                this.run = run;
+            }
+        }
+    }
+    /**
+     * The first k rows of its input in comparator order, holding no more than k at a time: a heap whose head is the
+     * worst row kept, replaced whenever a better one arrives. Ties keep arrival order, as Sort does.
+     */
+    public static class TopK extends PlanNode {
+        private final Comparator<Row> comparator;
+        private final int k;
+        private final String description;
+        private ArrayList<Row> top;
+        private int position;
+        public TopK(PlanNode child, Comparator<Row> comparator, int k, String description) {
+            children.add(child);
+            this.comparator = comparator;
+            this.k = k;
+            this.description = description;
+        }
+        @Override
+        protected Row produce() {
+            if (top == null) top = select();
+            return position < top.size() ? top.get(position++) : null;
+        }
+        private ArrayList<Row> select() {
+            Comparator<Ranked> order = Comparator.<Ranked, Row>comparing(ranked -> ranked.row, comparator)
+                    .thenComparingLong(ranked -> ranked.arrival);
+            PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), order.reversed());
+            long arrival = 0;
+            Row row;
+            while (k > 0 && (row = children.get(0).next()) != null) {
+                Ranked ranked = new Ranked(row, arrival++);
+                if (heap.size() < k) heap.add(ranked);
+                else if (order.compare(ranked, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(ranked);
+                }
+            }
+            if (k == 0) children.get(0).close();
+            ArrayList<Ranked> ranked = new ArrayList<>(heap);
+            ranked.sort(order);
+            ArrayList<Row> rows = new ArrayList<>(ranked.size());
+            for (Ranked entry : ranked) rows.add(entry.row);
+            return rows;
+        }
+        @Override
+        public String describe() { return "TopK: " + description + " (k = " + k + ")"; }
+
+        private static class Ranked {
+            private final Row row;
+            private final long arrival;
+            private Ranked(Row row, long arrival) {
+                this.row = row;
+                this.arrival = arrival;
+            }
+        }
+    }
+    // Skips the first offset rows and passes on at most limit more; after that its input is closed and never pulled again.
+    public static class Limit extends PlanNode {
+        private final int limit;
+        private final int offset;
+        private int skipped;
+        private int emitted;
+        private boolean done;
+        public Limit(PlanNode child, int limit, int offset) {
+            children.add(child);
+            this.limit = limit;
+            this.offset = offset;
+        }
+        @Override
+        protected Row produce() {
+            if (done) return null;
+            Row row = null;
+            if (emitted < limit) {
+                while ((row = children.get(0).next()) != null && skipped < offset) skipped++;
+            }
+            if (row == null) {
+                done = true;
+                children.get(0).close();
+                return null;
+            }
+            emitted++;
+            return row;
+        }
+        @Override
+        public String describe() { return "Limit: " + limit + (offset == 0 ? "" : " OFFSET " + offset); }
+    }
+
+    // ============================================================================================================== //
+    //                                                  JOINS                                                         //
+    // ============================================================================================================== //
+
+    /**
+     * Shared by both join algorithms: output rows get ids 1, 2, ... and hold the id followed by every attribute of
+     * either side except id and the join attribute, left table first, as {@link #getAttributes()} names them. Inputs
+     * are rows of their tables laid out by ordinal. One input (the build side) is read into memory first; rows come
+     * out in the order the other (probe) input arrives.
+     */
+    public abstract static class Join extends PlanNode {
+        protected final int leftOrdinal;
+        protected final int rightOrdinal;
+        protected final boolean buildLeft;
+        private final String leftAttribute;
+        private final String rightAttribute;
+        private final String buildTableName;
+        private final String[] leftColumns;
+        private final int[] leftOutputs;
+        private final String[] rightColumns;
+        private final int[] rightOutputs;
+        private int nextId = 1;
+        protected Join(PlanNode left, Table leftTable, int leftOrdinal, PlanNode right, Table rightTable, int rightOrdinal,
+                       boolean buildLeft) {
+            children.add(left);
+            children.add(right);
+            this.leftOrdinal = leftOrdinal;
+            this.rightOrdinal = rightOrdinal;
+            this.leftAttribute = leftTable.getAttributes().keys()[leftOrdinal];
+            this.rightAttribute = rightTable.getAttributes().keys()[rightOrdinal];
+            this.buildLeft = buildLeft;
+            this.buildTableName = (buildLeft ? leftTable : rightTable).getOriginalTableName();
+            leftOutputs = outputOrdinals(leftTable, leftOrdinal);
+            leftColumns = qualify(leftTable, leftOutputs);
+            rightOutputs = outputOrdinals(rightTable, rightOrdinal);
+            rightColumns = qualify(rightTable, rightOutputs);
+        }
+        /** "id" followed by the qualified names of both sides' output attributes, as the join result's header. */
+        public ArrayList<String> getAttributes() {
+            Utils.CaseInsensitiveArrayList<String> attributes = new Utils.CaseInsensitiveArrayList<>();
+            attributes.add("id");
+            for (String column : leftColumns) addUnique(attributes, column);
+            for (String column : rightColumns) addUnique(attributes, column);
+            return attributes;
+        }
+        protected PlanNode buildInput() { return children.get(buildLeft ? 0 : 1); }
+        protected PlanNode probeInput() { return children.get(buildLeft ? 1 : 0); }
+        protected int buildOrdinal() { return buildLeft ? leftOrdinal : rightOrdinal; }
+        protected int probeOrdinal() { return buildLeft ? rightOrdinal : leftOrdinal; }
+        protected Row merge(String[] probe, String[] build) {
+            String[] left = buildLeft ? build : probe;
+            String[] right = buildLeft ? probe : build;
+            String[] merged = new String[1 + leftOutputs.length + rightOutputs.length];
+            merged[0] = Integer.toString(nextId);
+            for (int i = 0; i < leftOutputs.length; i++) merged[1 + i] = left[leftOutputs[i]];
+            for (int i = 0; i < rightOutputs.length; i++) merged[1 + leftOutputs.length + i] = right[rightOutputs[i]];
+            return new Row(nextId++, merged);
+        }
+        protected String describeCondition() {
+            return leftAttribute + " == " + rightAttribute + " (build: " + buildTableName + ")";
+        }
+        // Every ordinal but id's (the first) and the join attribute's:
+        private static int[] outputOrdinals(Table table, int joinOrdinal) {
+            return IntStream.range(1, table.getAttributes().size()).filter(ordinal -> ordinal != joinOrdinal).toArray();
+        }
+        private static String[] qualify(Table table, int[] ordinals) {
+            String[] columns = new String[ordinals.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = table.getOriginalTableName() + "." + table.getAttributes().get(ordinals[i]);
+            }
+            return columns;
+        }
+        private static void addUnique(ArrayList<String> attributes, String attribute) {
+            if (attributes.contains(attribute)) throw new DBException(ErrorType.DUPLICATE_ATTRIBUTE_EXCEPTION);
+            attributes.add(attribute);
+        }
+    }
+    // Builds a hash table over the build input on the first call, then streams the probe input through it.
+    public static class HashJoin extends Join {
+        private HashMap<String, ArrayList<String[]>> buckets;
+        private String[] probe;
+        private ArrayList<String[]> matches;
+        private int matchPosition;
+        public HashJoin(PlanNode left, Table leftTable, int leftOrdinal, PlanNode right, Table rightTable, int rightOrdinal,
+                        boolean buildLeft) {
+            super(left, leftTable, leftOrdinal, right, rightTable, rightOrdinal, buildLeft);
+        }
+        @Override
+        protected Row produce() {
+            if (buckets == null) {
+                buckets = new HashMap<>();
+                Row row;
+                while ((row = buildInput().next()) != null) {
+                    buckets.computeIfAbsent(row.get(buildOrdinal()), key -> new ArrayList<>(1)).add(row.getValues());
+                }
+            }
+            while (matches == null || matchPosition == matches.size()) {
+                Row row = probeInput().next();
+                if (row == null) return null;
+                probe = row.getValues();
+                matches = buckets.get(probe[probeOrdinal()]);
+                matchPosition = 0;
+                if (matches == null) matches = new ArrayList<>(0);
+            }
+            return merge(probe, matches.get(matchPosition++));
+        }
+        @Override
+        public String describe() { return "HashJoin: " + describeCondition(); }
+    }
+    // Reads the build input once into memory and compares every probe row with every build row.
+    public static class NestedLoopJoin extends Join {
+        private ArrayList<String[]> inner;
+        private String[] outer;
+        private int innerPosition;
+        public NestedLoopJoin(PlanNode left, Table leftTable, int leftOrdinal, PlanNode right, Table rightTable,
+                              int rightOrdinal, boolean buildLeft) {
+            super(left, leftTable, leftOrdinal, right, rightTable, rightOrdinal, buildLeft);
+        }
+        @Override
+        protected Row produce() {
+            if (inner == null) {
+                inner = new ArrayList<>();
+                Row row;
+                while ((row = buildInput().next()) != null) inner.add(row.getValues());
+            }
+            while (true) {
+                if (outer == null || innerPosition == inner.size()) {
+                    Row row = probeInput().next();
+                    if (row == null) return null;
+                    outer = row.getValues();
+                    innerPosition = 0;
+                }
+                while (innerPosition < inner.size()) {
+                    String[] candidate = inner.get(innerPosition++);
+                    if (outer[probeOrdinal()].equals(candidate[buildOrdinal()])) return merge(outer, candidate);
+                }
+            }
+        }
+        @Override
+        public String describe() { return "NestedLoopJoin: " + describeCondition(); }
+    }
+
+    // ============================================================================================================== //
+    //                                                  ROOTS                                                         //
+    // ============================================================================================================== //
+
+    /**
+     * Collects the rows to be formatted into the response, keyed by id in arrival order, each holding the header's
+     * columns in order: the values at the given ordinals, or the row as it is when there are none.
+     */
+    public static class Output extends PlanNode {
+        private final LinkedHashMap<Integer, String[]> result = new LinkedHashMap<>();
+        private final int[] columns;
+        public Output(PlanNode child, int[] columns) {
+            children.add(child);
+            this.columns = columns;
+        }
+        public LinkedHashMap<Integer, String[]> getResult() { return result; }
+        @Override
+        protected Row produce() {
+            Row row = children.get(0).next();
+            if (row == null) return null;
+            if (columns == null) {
+                result.put(row.getId(), row.getValues());
+                return row;
+            }
+            String[] values = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) values[i] = row.get(columns[i]);
+            result.put(row.getId(), values);
+            return row;
+        }
+        @Override
+        public String describe() { return "Output"; }
+    }
+    // Sets each assigned attribute, resolved to its ordinal once (-1 when the table has no such attribute):
+    public static class Update extends PlanNode {
+        private final Table table;
+        private final int[] ordinals;
+        private final String[] values;
+        private final String description;
+        private boolean validated;
+        public Update(PlanNode child, Table table, HashMap<String, String> nameValueList) {
+            children.add(child);
+            this.table = table;
+            this.ordinals = new int[nameValueList.size()];
+            this.values = new String[ordinals.length];
+            TreeSet<String> names = new TreeSet<>();
+            int i = 0;
+            for (Map.Entry<String, String> entry : nameValueList.entrySet()) {
+                ordinals[i] = table.getAttributes().indexOf(entry.getKey());
+                values[i++] = entry.getValue();
+                names.add(entry.getKey().toLowerCase());
+            }
+            this.description = String.join(", ", names);
+        }
+        @Override
+        protected Row produce() {
+            Row row = children.get(0).next();
+            if (row == null) return null;
+            // Only checked once a row matches, so an update that matches nothing never fails; id is the first attribute:
+            if (!validated) {
+                for (int ordinal : ordinals) if (ordinal <= 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+                validated = true;
+            }
+            table.updateRecord(row.getId(), ordinals, values);
+            return row;
+        }
+        @Override
+        public String describe() { return "Update: " + description; }
+    }
+    // Deleting while scanning would invalidate the scan, so every matching row is read before any is removed.
+    public static class Delete extends PlanNode {
+        private final Table table;
+        private ArrayList<Row> deleted;
+        private int position;
+        public Delete(PlanNode child, Table table) {
+            children.add(child);
+            this.table = table;
+        }
+        @Override
+        protected Row produce() {
+            if (deleted == null) {
+                deleted = new ArrayList<>();
+                Row row;
+                while ((row = children.get(0).next()) != null) deleted.add(row);
+                HashSet<Integer> ids = new HashSet<>();
+                for (Row match : deleted) ids.add(match.getId());
+                table.deleteRecords(ids);
+            }
+            return position < deleted.size() ? deleted.get(position++) : null;
+        }
+        @Override
+        public String describe() { return "Delete"; }
+    }
+}
@@ -0,0 +1,402 @@
+package edu.uob.planner;
+
+import edu.uob.database.DBManager;
+import edu.uob.database.DBMetadata;
+import edu.uob.database.Table;
+import edu.uob.database.TableStatistics;
+import edu.uob.database.TrigramIndex;
+import edu.uob.database.ZoneMap;
+import edu.uob.parser.Command;
+import edu.uob.parser.Condition;
+import edu.uob.parser.OrderLimit;
+import edu.uob.utils.DBException;
+import edu.uob.tokenizer.TokenType;
+import edu.uob.utils.ErrorType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Turns SELECT, UPDATE, DELETE and JOIN commands into operator trees. Names are checked and resolved by the Binder
+ * beforehand and tables are loaded here, so a plan that is returned can run without further validation (apart from
+ * UPDATE's assignments, see PlanNode.Update).
+ * Where a table has been analysed its statistics drive the estimates: which access path to use, the order the
+ * conditions of an AND are checked in, and which side of a join is built in memory. Without statistics the planner
+ * falls back to fixed selectivity guesses.
+ *
+ * <p>A SELECT on a table that is not in memory and whose file is at least {@code db.scan.streamBytes} (default 64MB)
+ * long streams the file instead: the condition is tested as each line is decoded and the table is not cached.
+ *
+ * <p>ORDER BY sorts the result, or with a LIMIT keeps only the first OFFSET + LIMIT rows in a bounded heap. Ordering a
+ * loaded table by id needs no sort at all: the primary key is walked in order and a LIMIT stops the walk early. A sort
+ * whose input outgrows {@code db.sort.memoryBytes} (default 64MB) spills sorted runs to the database folder and merges
+ * them.
+ */
+public class Planner {
+    // Below this many rows on the build side a nested loop is cheaper than building a hash table:
+    private static final long NESTED_LOOP_THRESHOLD = 8;
+    // Float comparison is exact for integers up to 2^24, so "id == N" can only match record N below that:
+    private static final float MAX_EXACT_ID = 1 << 24;
+
+    private static final long STREAM_THRESHOLD_BYTES = Long.getLong("db.scan.streamBytes", 64L << 20);
+    private static final long SORT_MEMORY_BYTES = Long.getLong("db.sort.memoryBytes", 64L << 20);
+
+    private final DBManager manager;
+    private final Binder binder;
+    private final long streamThresholdBytes;
+    private final long sortMemoryBytes;
+    public Planner(DBManager manager) { this(manager, STREAM_THRESHOLD_BYTES); }
+    Planner(DBManager manager, long streamThresholdBytes) { this(manager, streamThresholdBytes, SORT_MEMORY_BYTES); }
+    Planner(DBManager manager, long streamThresholdBytes, long sortMemoryBytes) {
+        this.manager = manager;
+        this.binder = new Binder(manager);
+        this.streamThresholdBytes = streamThresholdBytes;
+        this.sortMemoryBytes = sortMemoryBytes;
+    }
+
+    public Plan plan(Command command) throws IOException { return plan(command, binder.bind(command)); }
+    /** Plans a command that has already been bound. */
+    public Plan plan(Command command, Binder.Binding binding) throws IOException {
+        if (command instanceof Command.Select) return planSelect((Command.Select) command, binding);
+        if (command instanceof Command.Update) return planUpdate((Command.Update) command, binding);
+        if (command instanceof Command.Delete) return planDelete((Command.Delete) command, binding);
+        if (command instanceof Command.Join) return planJoin((Command.Join) command, binding);
+        throw new DBException(ErrorType.INVALID_QUERY_EXCEPTION);
+    }
+
+    private Plan planSelect(Command.Select select, Binder.Binding binding) throws IOException {
+        String tableName = select.getTableName();
+        TableStatistics statistics = statistics(tableName);
+        OrderLimit orderLimit = select.getOrderLimit();
+        ArrayList<String> attributes = binding.getHeader();
+        int[] sortOrdinals = binding.getSortOrdinals();
+        PlanNode source;
+        boolean indexOrdered = false;
+        if (isColdAndLarge(tableName)) {
+            source = fileScan(select, binding);
+        } else {
+            Table table = loadTable(tableName, binding.getColumns());
+            // Primary key order is unique, so ordering by id (the first attribute) first decides the whole order:
+            OrderLimit.SortKey idOrder = null;
+            if (!select.isAggregate() && orderLimit.isOrdered() && sortOrdinals[0] == 0) idOrder = orderLimit.getSortKeys().get(0);
+            source = access(tableName, table, readKeys(table, binding.getColumns()), statistics, select.getCondition(), idOrder);
+            indexOrdered = idOrder != null;
+        }
+        PlanNode top;
+        if (select.isAggregate()) {
+            top = new PlanNode.HashAggregate(source, select.getGroupBy(), binding.getGroupOrdinals(),
+                    new ArrayList<>(select.getAggregates().values()), binding.getAggregateOrdinals());
+            estimate(top, groupCount(select.getGroupBy(), statistics, source.getEstimatedRows()));
+        } else {
+            top = estimate(new PlanNode.Project(source, attributes), source.getEstimatedRows());
+        }
+        top = orderAndLimit(top, orderLimit, sortOrdinals, indexOrdered);
+        PlanNode.Output output = new PlanNode.Output(top, binding.getHeaderOrdinals());
+        estimate(output, top.getEstimatedRows());
+        return new Plan(output, output, attributes, false);
+    }
+    private PlanNode fileScan(Command.Select select, Binder.Binding binding) throws IOException {
+        DBMetadata.Table metadata = binding.getTable(0);
+        String tableName = select.getTableName();
+        TableStatistics statistics = metadata.getStatistics();
+        String filePath = manager.getDatabase().getTableFilePath(tableName);
+        Predicate predicate = null;
+        if (select.getCondition() != null) {
+            HashSet<String> tested = new HashSet<>();
+            addConditionAttributes(select.getCondition(), tested);
+            HashMap<String, TokenType> types = PlanNode.FileScan.attributeTypes(filePath, metadata, tested);
+            predicate = and(orderedConjuncts(Predicate.compile(select.getCondition(), metadata.getAttributes(),
+                    attribute -> types.getOrDefault(attribute, TokenType.NULL_LITERAL), statistics)));
+        }
+        long tableRows = statistics == null ? metadata.getNextPrimaryKey() - 1 : statistics.getRowCount();
+        PlanNode scan = new PlanNode.FileScan(tableName, filePath, metadata, binding.getColumns(), predicate);
+        return estimate(scan, predicate == null ? tableRows : (long) Math.ceil(tableRows * predicate.selectivity()));
+    }
+    private Plan planUpdate(Command.Update update, Binder.Binding binding) throws IOException {
+        Table table = loadTable(update.getTableName(), null);
+        PlanNode access = access(update.getTableName(), table, readKeys(table, binding.getColumns()),
+                statistics(update.getTableName()), update.getCondition());
+        PlanNode root = estimate(new PlanNode.Update(access, table, update.getNameValueList()), access.getEstimatedRows());
+        return new Plan(root, null, null, false);
+    }
+    private Plan planDelete(Command.Delete delete, Binder.Binding binding) throws IOException {
+        Table table = loadTable(delete.getTableName(), null);
+        PlanNode access = access(delete.getTableName(), table, readKeys(table, binding.getColumns()),
+                statistics(delete.getTableName()), delete.getCondition());
+        PlanNode root = estimate(new PlanNode.Delete(access, table), access.getEstimatedRows());
+        return new Plan(root, null, null, false);
+    }
+    private Plan planJoin(Command.Join join, Binder.Binding binding) throws IOException {
+        Table firstTable = loadTable(join.getFirstTableName(), null);
+        Table secondTable = loadTable(join.getSecondTableName(), null);
+        int firstOrdinal = binding.getJoinOrdinal(0), secondOrdinal = binding.getJoinOrdinal(1);
+        TableStatistics firstStatistics = statistics(join.getFirstTableName());
+        TableStatistics secondStatistics = statistics(join.getSecondTableName());
+        PlanNode left = access(join.getFirstTableName(), firstTable, readKeys(firstTable, null), firstStatistics, null);
+        PlanNode right = access(join.getSecondTableName(), secondTable, readKeys(secondTable, null), secondStatistics, null);
+        // Hold the smaller input in memory and stream the larger one past it:
+        boolean buildLeft = left.getEstimatedRows() < right.getEstimatedRows();
+        long buildRows = Math.min(left.getEstimatedRows(), right.getEstimatedRows());
+        PlanNode.Join joinNode;
+        if (buildRows <= NESTED_LOOP_THRESHOLD) {
+            joinNode = new PlanNode.NestedLoopJoin(left, firstTable, firstOrdinal, right, secondTable, secondOrdinal, buildLeft);
+        } else {
+            joinNode = new PlanNode.HashJoin(left, firstTable, firstOrdinal, right, secondTable, secondOrdinal, buildLeft);
+        }
+        estimate(joinNode, joinRows(left.getEstimatedRows(), firstStatistics, binding.getKeys(0)[firstOrdinal],
+                right.getEstimatedRows(), secondStatistics, binding.getKeys(1)[secondOrdinal]));
+        PlanNode top = orderAndLimit(joinNode, join.getOrderLimit(), joinSortOrdinals(join.getOrderLimit(), joinNode.getAttributes()), false);
+        // Join rows already hold the header's columns in order:
+        PlanNode.Output output = new PlanNode.Output(top, null);
+        estimate(output, top.getEstimatedRows());
+        return new Plan(output, output, joinNode.getAttributes(), true);
+    }
+
+    private boolean isColdAndLarge(String tableName) {
+        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
+        if (!manager.getDatabase().getTables().containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
+        if (manager.getDatabase().getTables().get(tableName) != null) return false;
+        return new File(manager.getDatabase().getTableFilePath(tableName)).length() >= streamThresholdBytes;
+    }
+    // Loads the table with at least the given attributes decoded (all of them when null):
+    private Table loadTable(String tableName, Collection<String> attributes) throws IOException {
+        if (manager.getDatabase() == null) throw new DBException(ErrorType.NO_DATABASE_IN_USE);
+        if (!manager.getDatabase().getTables().containsKey(tableName)) throw new DBException(ErrorType.TABLE_NOT_FOUND_EXCEPTION);
+        manager.getDatabase().loadTable(tableName, attributes);
+        return manager.getDatabase().getTables().get(tableName);
+    }
+    private static void addConditionAttributes(Condition condition, HashSet<String> attributes) {
+        if (condition instanceof Condition.Expression) {
+            addConditionAttributes(((Condition.Expression) condition).getLeftCondition(), attributes);
+            addConditionAttributes(((Condition.Expression) condition).getRightCondition(), attributes);
+        } else if (condition != null) {
+            attributes.add(((Condition.AttributeValueComparison) condition).getAttributeName().toLowerCase());
+        }
+    }
+    // The keys of the table's attributes by ordinal, null for any not among columns (every one is read when null):
+    private static String[] readKeys(Table table, Collection<String> columns) {
+        String[] keys = table.getAttributes().keys();
+        if (columns == null) return keys;
+        String[] read = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) if (columns.contains(keys[i])) read[i] = keys[i];
+        return read;
+    }
+    // A JOIN sorts on "id" or on the one "table.attribute" column the name belongs to, by its place in the join's rows:
+    private static int[] joinSortOrdinals(OrderLimit orderLimit, ArrayList<String> joinAttributes) {
+        int[] ordinals = new int[orderLimit.getSortKeys().size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            String name = orderLimit.getSortKeys().get(i).getName();
+            ordinals[i] = -1;
+            for (int column = 0; column < joinAttributes.size(); column++) {
+                String attribute = joinAttributes.get(column);
+                if (!attribute.equalsIgnoreCase(name) && !attribute.toLowerCase().endsWith("." + name)) continue;
+                if (ordinals[i] >= 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+                ordinals[i] = column;
+            }
+            if (ordinals[i] < 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+        }
+        return ordinals;
+    }
+    /**
+     * Adds ORDER BY and LIMIT on top of a result: a full sort without a limit, otherwise a top-k heap of OFFSET + LIMIT
+     * rows, then the limit itself. When the input already arrives in order only the limit is needed.
+     */
+    private PlanNode orderAndLimit(PlanNode input, OrderLimit orderLimit, int[] sortOrdinals, boolean inOrder) {
+        PlanNode top = input;
+        if (orderLimit.isOrdered() && !inOrder) {
+            Comparator<Row> ordering = ordering(orderLimit.getSortKeys(), sortOrdinals);
+            StringBuilder description = new StringBuilder();
+            for (OrderLimit.SortKey sortKey : orderLimit.getSortKeys()) {
+                description.append(description.length() == 0 ? "" : ", ").append(sortKey);
+            }
+            long k = (long) orderLimit.getOffset() + orderLimit.getLimit();
+            if (orderLimit.isLimited() && k <= Integer.MAX_VALUE) {
+                top = estimate(new PlanNode.TopK(top, ordering, (int) k, description.toString()), Math.min(k, top.getEstimatedRows()));
+            } else {
+                File spillDirectory = new File(manager.getDatabase().getPath());
+                top = estimate(new PlanNode.Sort(top, ordering, description.toString(), spillDirectory, sortMemoryBytes),
+                        top.getEstimatedRows());
+            }
+        }
+        if (orderLimit.isLimited()) {
+            long rows = Math.min(orderLimit.getLimit(), Math.max(0, top.getEstimatedRows() - orderLimit.getOffset()));
+            top = estimate(new PlanNode.Limit(top, orderLimit.getLimit(), orderLimit.getOffset()), rows);
+        }
+        return top;
+    }
+    private static Comparator<Row> ordering(ArrayList<OrderLimit.SortKey> sortKeys, int[] sortOrdinals) {
+        Comparator<Row> ordering = null;
+        for (int i = 0; i < sortKeys.size(); i++) {
+            int ordinal = sortOrdinals[i];
+            Comparator<Row> key = (a, b) -> compareSortValues(a.get(ordinal), b.get(ordinal));
+            if (sortKeys.get(i).isDescending()) key = key.reversed();
+            ordering = ordering == null ? key : ordering.thenComparing(key);
+        }
+        return ordering;
+    }
+    // NULLs sort after every value, so they come last ascending and first descending:
+    private static int compareSortValues(String a, String b) {
+        boolean aNull = a == null || a.equalsIgnoreCase("NULL"), bNull = b == null || b.equalsIgnoreCase("NULL");
+        if (aNull || bNull) return aNull == bNull ? 0 : aNull ? 1 : -1;
+        return PlanNode.Accumulator.compareValues(a, b);
+    }
+    // At most one group per combination of the grouping attributes' distinct values, and no more than the input rows:
+    private static long groupCount(ArrayList<String> groupBy, TableStatistics statistics, long inputRows) {
+        if (groupBy.isEmpty()) return 1;
+        long groups = 1;
+        for (String attribute : groupBy) {
+            long distinct = distinctCount(statistics, attribute);
+            if (distinct == 0) return inputRows;
+            groups = Math.min(inputRows, groups * distinct);
+        }
+        return groups;
+    }
+    private TableStatistics statistics(String tableName) {
+        DBMetadata.Table metadata = manager.getMetadata().getTables().get(tableName);
+        return metadata == null ? null : metadata.getStatistics();
+    }
+    private static PlanNode access(String tableName, Table table, String[] keys, TableStatistics statistics,
+                                   Condition condition) {
+        return access(tableName, table, keys, statistics, condition, null);
+    }
+    /**
+     * Picks how to read the table: a primary key lookup when the condition pins "id" to one value, a key range probe
+     * when it bounds "id" to fewer ids than half the table (or whenever idOrder asks for rows in id order), a trigram
+     * index probe when a LIKE on an indexed attribute leaves fewer candidates than that, otherwise a scan, of only the
+     * blocks of ids whose zone map summaries do not rule the condition out. The conditions of a top-level AND are reordered so the cheapest and most selective are checked first.
+     * Rows hold the values under {@code keys} (see PlanNode.row).
+     */
+    private static PlanNode access(String tableName, Table table, String[] keys, TableStatistics statistics,
+                                   Condition condition, OrderLimit.SortKey idOrder) {
+        long tableRows = table.getRecords().size();
+        boolean descending = idOrder != null && idOrder.isDescending();
+        if (condition == null && idOrder != null) {
+            return estimate(new PlanNode.IndexRangeScan(tableName, table, keys, 1, table.getNextPrimaryKey() - 1, descending), tableRows);
+        }
+        if (condition == null) return estimate(new PlanNode.SeqScan(tableName, table, keys), tableRows);
+        ArrayList<Predicate> conjuncts = orderedConjuncts(Predicate.compile(condition, table, statistics));
+        Predicate predicate = and(conjuncts);
+        PlanNode source = null;
+        long low = 1, high = table.getNextPrimaryKey() - 1;
+        for (Predicate conjunct : conjuncts) {
+            Integer id = primaryKeyValue(conjunct);
+            if (id != null) {
+                source = estimate(new PlanNode.IndexLookup(tableName, table, keys, id), 1);
+                break;
+            }
+            if (isPrimaryKeyBound(conjunct)) {
+                Predicate.Comparison comparison = (Predicate.Comparison) conjunct;
+                double value = comparison.getFloatValue();
+                switch (comparison.getComparator()) {
+                    case GREATER_THAN -> low = Math.max(low, (long) Math.floor(value) + 1);
+                    case GREATER_THAN_OR_EQUAL -> low = Math.max(low, (long) Math.ceil(value));
+                    case LESS_THAN -> high = Math.min(high, (long) Math.ceil(value) - 1);
+                    case LESS_THAN_OR_EQUAL -> high = Math.min(high, (long) Math.floor(value));
+                    default -> { }
+                }
+            }
+        }
+        if (source == null && idOrder == null) source = trigramScan(tableName, table, keys, conjuncts, tableRows);
+        boolean rangeNarrower = source == null
+                || source instanceof PlanNode.TrigramScan && high - low + 1 < source.getEstimatedRows();
+        if (rangeNarrower && (idOrder != null || high - low + 1 < tableRows / 2)) {
+            // Ids are handed out in increasing order and never reused, so every record lies in [1, nextPrimaryKey):
+            long probes = Math.max(0, high - low + 1);
+            source = estimate(new PlanNode.IndexRangeScan(tableName, table, keys, (int) low, (int) high, descending),
+                    Math.min(probes, tableRows));
+        }
+        if (source == null) source = zoneScan(tableName, table, keys, predicate, tableRows);
+        if (source == null) source = estimate(new PlanNode.SeqScan(tableName, table, keys), tableRows);
+        // The whole condition is still applied to whatever the access path returns:
+        long filtered = (long) Math.ceil(source.getEstimatedRows() * predicate.selectivity());
+        return estimate(new PlanNode.Filter(source, predicate), Math.min(filtered, source.getEstimatedRows()));
+    }
+    // The LIKE conjunct on a trigram-indexed attribute with the fewest candidates, if under half the table:
+    private static PlanNode trigramScan(String tableName, Table table, String[] keys, ArrayList<Predicate> conjuncts,
+                                        long tableRows) {
+        PlanNode best = null;
+        for (Predicate conjunct : conjuncts) {
+            if (!(conjunct instanceof Predicate.Comparison)) continue;
+            Predicate.Comparison comparison = (Predicate.Comparison) conjunct;
+            if (comparison.getComparator() != Condition.Comparator.LIKE) continue;
+            TrigramIndex index = table.getTrigramIndex(comparison.getAttribute());
+            if (index == null || !TrigramIndex.canNarrow(comparison.getValue())) continue;
+            long candidates = index.estimate(comparison.getValue());
+            if (candidates >= tableRows / 2 || (best != null && candidates >= best.getEstimatedRows())) continue;
+            best = estimate(new PlanNode.TrigramScan(tableName, table, keys, index, comparison.getValue()), candidates);
+        }
+        return best;
+    }
+    // The blocks of the zone map the predicate might match, unless that is every block holding rows:
+    private static PlanNode zoneScan(String tableName, Table table, String[] keys, Predicate predicate, long tableRows) {
+        ZoneMap zoneMap = table.getZoneMap();
+        ArrayList<ZoneMap.Block> blocks = zoneMap.getBlocks();
+        int[] candidates = new int[blocks.size()];
+        int count = 0;
+        boolean skipped = false;
+        for (int b = 0; b < blocks.size(); b++) {
+            if (blocks.get(b).getRows() == 0) continue;
+            if (predicate.mightMatch(blocks.get(b))) candidates[count++] = b;
+            else skipped = true;
+        }
+        if (!skipped) return null;
+        return estimate(new PlanNode.ZoneScan(tableName, table, keys, zoneMap.getBlockRows(), Arrays.copyOf(candidates, count),
+                blocks.size()), Math.min(tableRows, (long) count * zoneMap.getBlockRows()));
+    }
+    private static ArrayList<Predicate> orderedConjuncts(Predicate predicate) {
+        ArrayList<Predicate> conjuncts = Predicate.conjuncts(predicate);
+        conjuncts.sort(Comparator.comparingDouble(Planner::rank));
+        return conjuncts;
+    }
+    private static Predicate and(ArrayList<Predicate> conjuncts) {
+        Predicate predicate = conjuncts.get(0);
+        for (int i = 1; i < conjuncts.size(); i++) predicate = new Predicate.And(predicate, conjuncts.get(i));
+        return predicate;
+    }
+    // Conjuncts are checked in increasing cost per row rejected:
+    private static double rank(Predicate conjunct) {
+        double rejected = 1 - conjunct.selectivity();
+        return rejected <= 0 ? Double.MAX_VALUE : conjunct.cost() / rejected;
+    }
+    private static Integer primaryKeyValue(Predicate conjunct) {
+        if (!(conjunct instanceof Predicate.Comparison)) return null;
+        Predicate.Comparison comparison = (Predicate.Comparison) conjunct;
+        if (!comparison.getAttribute().equals("id") || comparison.getComparator() != Condition.Comparator.EQUAL
+                || !comparison.isNumericValue()) return null;
+        float value = comparison.getFloatValue();
+        if (value != Math.rint(value) || Math.abs(value) >= MAX_EXACT_ID) return null;
+        return (int) value;
+    }
+    private static boolean isPrimaryKeyBound(Predicate conjunct) {
+        if (!(conjunct instanceof Predicate.Comparison)) return false;
+        Predicate.Comparison comparison = (Predicate.Comparison) conjunct;
+        return switch (comparison.getComparator()) {
+            case LESS_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL -> comparison.getAttribute().equals("id")
+                    && comparison.isNumericValue() && Math.abs(comparison.getFloatValue()) < MAX_EXACT_ID;
+            default -> false;
+        };
+    }
+    // Matches expected from an equi-join: each row of one side meets |other| / distinct values of the other side.
+    private static long joinRows(long leftRows, TableStatistics leftStatistics, String leftAttribute,
+                                 long rightRows, TableStatistics rightStatistics, String rightAttribute) {
+        long distinct = Math.max(distinctCount(leftStatistics, leftAttribute), distinctCount(rightStatistics, rightAttribute));
+        if (distinct == 0) return Math.max(leftRows, rightRows);
+        return (long) Math.ceil((double) leftRows * rightRows / distinct);
+    }
+    private static long distinctCount(TableStatistics statistics, String attribute) {
+        if (statistics == null) return 0;
+        if (attribute.equalsIgnoreCase("id")) return statistics.getRowCount();
+        TableStatistics.ColumnStatistics column = statistics.column(attribute);
+        return column == null ? 0 : column.getDistinctCount();
+    }
+    private static <T extends PlanNode> T estimate(T node, long rows) {
+        node.setEstimatedRows(rows);
+        return node;
+    }
+}
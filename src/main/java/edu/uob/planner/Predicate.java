@@ -0,0 +1,293 @@
+package edu.uob.planner;
+
+import edu.uob.database.ColumnDictionary;
+import edu.uob.database.Table;
+import edu.uob.database.TableStatistics;
+import edu.uob.database.ZoneMap;
+import edu.uob.parser.Condition;
+import edu.uob.tokenizer.TokenType;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+import edu.uob.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * A WHERE condition compiled against one table, evaluated a row at a time. Everything that does not depend on the row
+ * (where the attribute's value is in it, the attribute's type, whether the comparison value is numeric) is worked out
+ * once at compile time.
+ */
+public abstract class Predicate {
+    // The row's values by the table's attribute ordinals (see Row):
+    public abstract boolean test(String[] values);
+    // Fraction of rows expected to pass, used for row estimates and to order conjuncts:
+    public abstract double selectivity();
+    // Relative cost of evaluating against one row:
+    public abstract double cost();
+    // False only if no row of the block can pass, judging by its zone map summaries:
+    public abstract boolean mightMatch(ZoneMap.Block block);
+
+    /** Compiles {@code condition}; {@code statistics} (may be null) only informs the estimates. */
+    public static Predicate compile(Condition condition, Table table, TableStatistics statistics) {
+        return compile(condition, table.getAttributes(), attribute -> attributeType(table, attribute), statistics,
+                table::getDictionary);
+    }
+    /** As above for a table that is not in memory, whose attribute types are supplied by {@code attributeTypes}. */
+    public static Predicate compile(Condition condition, Utils.CaseInsensitiveArrayList<String> attributes,
+                                    Function<String, TokenType> attributeTypes, TableStatistics statistics) {
+        return compile(condition, attributes, attributeTypes, statistics, attribute -> null);
+    }
+    private static Predicate compile(Condition condition, Utils.CaseInsensitiveArrayList<String> attributes,
+                                     Function<String, TokenType> attributeTypes, TableStatistics statistics,
+                                     Function<String, ColumnDictionary> dictionaries) {
+        if (condition instanceof Condition.Expression) {
+            Condition.Expression expression = (Condition.Expression) condition;
+            Predicate left = compile(expression.getLeftCondition(), attributes, attributeTypes, statistics, dictionaries);
+            Predicate right = compile(expression.getRightCondition(), attributes, attributeTypes, statistics, dictionaries);
+            if (expression.getBoolOperator() == Condition.BoolOperator.AND) return new And(left, right);
+            return new Or(left, right);
+        }
+        Condition.AttributeValueComparison comparison = (Condition.AttributeValueComparison) condition;
+        int ordinal = attributes.indexOf(comparison.getAttributeName());
+        if (ordinal < 0) throw new DBException(ErrorType.INVALID_ATTRIBUTE_EXCEPTION);
+        String attribute = attributes.keys()[ordinal];
+        TokenType attributeType = attributeTypes.apply(attribute);
+        ColumnDictionary dictionary = dictionaries.apply(attribute);
+        if (dictionary != null) {
+            return new DictionaryComparison(attribute, ordinal, comparison.getComparator(), comparison.getValue(),
+                    attributeType, statistics, dictionary);
+        }
+        return new Comparison(attribute, ordinal, comparison.getComparator(), comparison.getValue(), attributeType, statistics);
+    }
+
+    public static class And extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+        public And(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+        public Predicate getLeft() { return left; }
+        public Predicate getRight() { return right; }
+        @Override
+        public boolean test(String[] values) { return left.test(values) && right.test(values); }
+        @Override
+        public boolean mightMatch(ZoneMap.Block block) { return left.mightMatch(block) && right.mightMatch(block); }
+        @Override
+        public double selectivity() { return left.selectivity() * right.selectivity(); }
+        @Override
+        public double cost() { return left.cost() + left.selectivity() * right.cost(); }
+        @Override
+        public String toString() { return "(" + left + " AND " + right + ")"; }
+    }
+    public static class Or extends Predicate {
+        private final Predicate left;
+        private final Predicate right;
+        public Or(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        public boolean test(String[] values) { return left.test(values) || right.test(values); }
+        @Override
+        public boolean mightMatch(ZoneMap.Block block) { return left.mightMatch(block) || right.mightMatch(block); }
+        @Override
+        public double selectivity() {
+            double l = left.selectivity(), r = right.selectivity();
+            return l + r - l * r;
+        }
+        @Override
+        public double cost() { return left.cost() + (1 - left.selectivity()) * right.cost(); }
+        @Override
+        public String toString() { return "(" + left + " OR " + right + ")"; }
+    }
+    public static class Comparison extends Predicate {
+        // Lower-cased, and where its value is in a row:
+        private final String attribute;
+        private final int ordinal;
+        private final Condition.Comparator comparator;
+        private final String value;
+        private final TokenType attributeType;
+        private final boolean numericValue;
+        private final float floatValue;
+        private final String lowerCaseValue;
+        private final long rowCount;
+        private final TableStatistics.ColumnStatistics statistics;
+        public Comparison(String attribute, int ordinal, Condition.Comparator comparator, String value,
+                          TokenType attributeType, TableStatistics tableStatistics) {
+            this.attribute = attribute;
+            this.ordinal = ordinal;
+            this.comparator = comparator;
+            this.value = value;
+            this.attributeType = attributeType;
+            this.numericValue = Utils.isNumeric(value);
+            this.floatValue = numericValue ? Float.parseFloat(value) : 0;
+            this.lowerCaseValue = value.toLowerCase();
+            this.rowCount = tableStatistics == null ? 0 : tableStatistics.getRowCount();
+            this.statistics = tableStatistics == null ? null : tableStatistics.column(attribute);
+        }
+        public String getAttribute() { return attribute; }
+        public int getOrdinal() { return ordinal; }
+        public Condition.Comparator getComparator() { return comparator; }
+        public String getValue() { return value; }
+        public boolean isNumericValue() { return numericValue; }
+        public float getFloatValue() { return floatValue; }
+        @Override
+        public boolean test(String[] values) {
+            String recordValue = values[ordinal];
+            switch (comparator) {
+                case EQUAL:
+                    // Integers, Floats, boolean, NULL
+                    if (numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) == floatValue) return true;
+                    // Strings
+                    if (recordValue.equals(value)) return true;
+                    // Boolean
+                    return attributeType == TokenType.BOOLEAN_LITERAL && recordValue.equalsIgnoreCase(value);
+                case NOT_EQUAL:
+                    if (numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) != floatValue) return true;
+                    if (attributeType == TokenType.BOOLEAN_LITERAL && !recordValue.equalsIgnoreCase(value)) return true;
+                    return attributeType == TokenType.STRING_LITERAL && !recordValue.equals(value);
+                // integers, floats
+                case LESS_THAN:
+                    return numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) < floatValue;
+                case GREATER_THAN:
+                    return numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) > floatValue;
+                case LESS_THAN_OR_EQUAL:
+                    return numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) <= floatValue;
+                case GREATER_THAN_OR_EQUAL:
+                    return numericValue && Utils.isNumeric(recordValue) && Float.parseFloat(recordValue) >= floatValue;
+                case LIKE:
+                    return recordValue.toLowerCase().contains(lowerCaseValue);
+                default:
+                    return false;
+            }
+        }
+        /**
+         * Mirrors {@link #test}: a numeric value can only equal or bound values within the block's numeric range, and
+         * any other value can only be equal to one its Bloom filter holds. != and LIKE are never ruled out.
+         */
+        @Override
+        public boolean mightMatch(ZoneMap.Block block) {
+            ZoneMap.ColumnZone zone = block.zone(attribute);
+            if (zone == null) return true;
+            // NaN parses as a number but only ever matches as the string "NaN":
+            if (numericValue && Float.isNaN(floatValue)) return comparator != Condition.Comparator.EQUAL || zone.mightContain(value);
+            return switch (comparator) {
+                case EQUAL -> numericValue
+                        ? zone.hasNumbers() && zone.getMin() <= floatValue && floatValue <= zone.getMax()
+                        : zone.mightContain(value);
+                case LESS_THAN -> numericValue && zone.hasNumbers() && zone.getMin() < floatValue;
+                case LESS_THAN_OR_EQUAL -> numericValue && zone.hasNumbers() && zone.getMin() <= floatValue;
+                case GREATER_THAN -> numericValue && zone.hasNumbers() && zone.getMax() > floatValue;
+                case GREATER_THAN_OR_EQUAL -> numericValue && zone.hasNumbers() && zone.getMax() >= floatValue;
+                case NOT_EQUAL, LIKE -> true;
+            };
+        }
+        @Override
+        public double selectivity() {
+            if (statistics == null || rowCount == 0) {
+                return switch (comparator) {
+                    case EQUAL -> 0.1;
+                    case NOT_EQUAL -> 0.9;
+                    case LIKE -> 0.25;
+                    default -> 1.0 / 3;
+                };
+            }
+            double numericFraction = (double) statistics.getNumericCount() / rowCount;
+            return switch (comparator) {
+                case EQUAL -> equalSelectivity();
+                case NOT_EQUAL -> 1 - equalSelectivity();
+                case LESS_THAN, LESS_THAN_OR_EQUAL ->
+                        numericValue ? numericFraction * statistics.fractionBelow(floatValue) : 0;
+                case GREATER_THAN, GREATER_THAN_OR_EQUAL ->
+                        numericValue ? numericFraction * (1 - statistics.fractionBelow(floatValue)) : 0;
+                case LIKE -> 0.25;
+            };
+        }
+        private double equalSelectivity() {
+            if (value.equalsIgnoreCase("NULL")) return (double) statistics.getNullCount() / rowCount;
+            if (numericValue && statistics.min() != null && (floatValue < statistics.min() || floatValue > statistics.max())
+                    && statistics.getNumericCount() + statistics.getNullCount() == rowCount) return 0;
+            double nonNullFraction = (double) (rowCount - statistics.getNullCount()) / rowCount;
+            return nonNullFraction / Math.max(1, statistics.getDistinctCount());
+        }
+        @Override
+        public double cost() {
+            return switch (comparator) {
+                case EQUAL, NOT_EQUAL -> numericValue ? 2 : 1;
+                case LIKE -> 4;
+                default -> 2;
+            };
+        }
+        @Override
+        public String toString() { return attribute + " " + symbol(comparator) + " " + value; }
+    }
+
+    // A comparison on a dictionary encoded attribute, worked out once per distinct value rather than once per row:
+    public static class DictionaryComparison extends Comparison {
+        private final HashMap<String, Boolean> outcomes = new HashMap<>();
+        public DictionaryComparison(String attribute, int ordinal, Condition.Comparator comparator, String value,
+                                    TokenType attributeType, TableStatistics tableStatistics, ColumnDictionary dictionary) {
+            super(attribute, ordinal, comparator, value, attributeType, tableStatistics);
+            String[] probe = new String[ordinal + 1];
+            for (String entry : dictionary.getValues()) {
+                probe[ordinal] = entry;
+                outcomes.put(entry, super.test(probe));
+            }
+        }
+        @Override
+        public boolean test(String[] values) {
+            Boolean outcome = outcomes.get(values[getOrdinal()]);
+            // A value the dictionary gained after compiling:
+            return outcome != null ? outcome : super.test(values);
+        }
+    }
+
+    // Flattens a tree of ANDs into its conjuncts; any other predicate is a single conjunct.
+    public static ArrayList<Predicate> conjuncts(Predicate predicate) {
+        ArrayList<Predicate> conjuncts = new ArrayList<>();
+        if (predicate instanceof And) {
+            conjuncts.addAll(conjuncts(((And) predicate).getLeft()));
+            conjuncts.addAll(conjuncts(((And) predicate).getRight()));
+        } else {
+            conjuncts.add(predicate);
+        }
+        return conjuncts;
+    }
+
+    static String symbol(Condition.Comparator comparator) {
+        return switch (comparator) {
+            case EQUAL -> "==";
+            case NOT_EQUAL -> "!=";
+            case LESS_THAN -> "<";
+            case LESS_THAN_OR_EQUAL -> "<=";
+            case GREATER_THAN -> ">";
+            case GREATER_THAN_OR_EQUAL -> ">=";
+            case LIKE -> "LIKE";
+        };
+    }
+
+    // The type of the first non-NULL value of the attribute, which decides how == and != treat booleans and strings.
+    private static TokenType attributeType(Table table, String attribute) {
+        for (HashMap<String, String> record : table.getRecords().values()) {
+            TokenType type = valueType(record.get(attribute));
+            if (type != TokenType.NULL_LITERAL) return type;
+        }
+        return TokenType.NULL_LITERAL;
+    }
+    static TokenType valueType(String value) {
+        if (value.matches("[+-]?\\d+")) {
+            return TokenType.INTEGER_LITERAL;
+        } else if (value.matches("[+-]?\\d+(\\.\\d+)?")) {
+            return TokenType.FLOAT_LITERAL;
+        } else if (value.equalsIgnoreCase("false")
+                || value.equalsIgnoreCase("true")) {
+            return TokenType.BOOLEAN_LITERAL;
+        } else if (value.equalsIgnoreCase("null")) {
+            return TokenType.NULL_LITERAL;
+        }
+        return TokenType.STRING_LITERAL;
+    }
+}
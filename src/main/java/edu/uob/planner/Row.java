@@ -0,0 +1,18 @@
+package edu.uob.planner;
+
+/**
+ * A tuple flowing between plan operators: the record's id and its values by ordinal (not copied). A scan lays values
+ * out by the table's attribute ordinals, null for an attribute it was not asked to read; an aggregate or a join lays
+ * out its own columns (see PlanNode.HashAggregate and PlanNode.Join).
+ */
+public class Row {
+    private final int id;
+    private final String[] values;
+    public Row(int id, String[] values) {
+        this.id = id;
+        this.values = values;
+    }
+    public int getId() { return id; }
+    public String[] getValues() { return values; }
+    public String get(int ordinal) { return values[ordinal]; }
+}
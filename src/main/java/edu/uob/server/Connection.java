@@ -0,0 +1,102 @@
+package edu.uob.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/** Per-socket state owned by the selector thread. Buffers are only allocated while there is data in them. */
+class Connection {
+    final SocketChannel channel;
+    final String session;
+    SelectionKey key;
+    final ArrayDeque<String> pendingCommands = new ArrayDeque<>(2);
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>(2);
+    long pendingOutputBytes;
+    // Written by a worker, read by the selector thread after it pulls this connection off the completed queue.
+    volatile byte[] response;
+    boolean inFlight;
+    boolean closing;
+    private byte[] partial;
+    private int partialLength;
+
+    Connection(SocketChannel channel, String session) {
+        this.channel = channel;
+        this.session = session;
+    }
+
+    /** Splits the bytes in {@code buffer} into newline-terminated commands, keeping any trailing partial frame. */
+    void consume(ByteBuffer buffer, int maxFrameLength) throws IOException {
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int end = start;
+            while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+            int length = end - start;
+            if (partialLength + length > maxFrameLength) throw new IOException("Command exceeds maximum frame length");
+            if (end == buffer.limit()) {
+                // Incomplete frame: keep the bytes until the rest of the line arrives.
+                ensurePartialCapacity(partialLength + length);
+                buffer.get(partial, partialLength, length);
+                partialLength += length;
+                break;
+            }
+            if (partialLength == 0) {
+                // Whole frame is in the read buffer, decode it in place.
+                if (length > 0 && buffer.get(end - 1) == '\r') length--;
+                pendingCommands.add(StandardCharsets.UTF_8.decode(buffer.slice(start, length)).toString());
+            } else {
+                ensurePartialCapacity(partialLength + length);
+                buffer.get(partial, partialLength, length);
+                partialLength += length;
+                int frameLength = partialLength;
+                if (partial[frameLength - 1] == '\r') frameLength--;
+                pendingCommands.add(new String(partial, 0, frameLength, StandardCharsets.UTF_8));
+                partialLength = 0;
+                partial = null;
+            }
+            buffer.position(end + 1);
+        }
+    }
+
+    /** At end of input a trailing unterminated frame is still a command, as it is for a blocking line reader. */
+    void endOfInput() {
+        if (partialLength > 0) {
+            int frameLength = partialLength;
+            if (partial[frameLength - 1] == '\r') frameLength--;
+            pendingCommands.add(new String(partial, 0, frameLength, StandardCharsets.UTF_8));
+        }
+        partialLength = 0;
+        partial = null;
+    }
+
+    void enqueue(byte[] bytes) {
+        output.add(ByteBuffer.wrap(bytes));
+        pendingOutputBytes += bytes.length;
+    }
+
+    void flush() throws IOException {
+        while (!output.isEmpty()) {
+            ByteBuffer buffer = output.peek();
+            int written = channel.write(buffer);
+            pendingOutputBytes -= written;
+            if (buffer.hasRemaining()) return;
+            output.poll();
+        }
+    }
+
+    boolean isIdle() { return !inFlight && pendingOutputBytes == 0; }
+
+    // Half-closed by the client and with every command it sent answered and written out.
+    boolean isFinished() { return closing && pendingCommands.isEmpty() && isIdle(); }
+
+    private void ensurePartialCapacity(int capacity) {
+        if (partial == null) {
+            partial = new byte[Math.max(256, capacity)];
+        } else if (partial.length < capacity) {
+            partial = Arrays.copyOf(partial, Math.max(capacity, partial.length * 2));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package edu.uob.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking front end for the DB server. A single selector thread owns every socket; complete command lines are
+ * handed to a bounded worker pool and the responses are queued back onto the owning connection for writing.
+ *
+ * <p>Idle connections hold no buffers at all: reads go through one shared direct buffer and a connection only keeps
+ * bytes of its own while a command line is incomplete or a response is waiting to be written. A connection stops being
+ * read from while its output backlog or its queue of unanswered commands is full.
+ */
+public class SelectorServer {
+    static final char END_OF_TRANSMISSION = 4;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    private static final int MAX_PENDING_OUTPUT_BYTES = 1024 * 1024;
+    private static final int MAX_PENDING_COMMANDS = 64;
+    private static final long RETRY_INTERVAL_MILLIS = 10;
+
+    // (session, command) --> response; the session is the client's remote address.
+    private final BiFunction<String, String, String> handler;
+    // Told the session of each connection that has closed, so that what it left behind can go:
+    private final Consumer<String> closed;
+    private final ThreadPoolExecutor workers;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> stalled = new LinkedHashSet<>();
+    private volatile boolean stopping;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+
+    public SelectorServer(BiFunction<String, String, String> handler, int workerCount, int queueCapacity) {
+        this(handler, session -> { }, workerCount, queueCapacity);
+    }
+
+    public SelectorServer(BiFunction<String, String, String> handler, Consumer<String> closed, int workerCount,
+                          int queueCapacity) {
+        this.handler = handler;
+        this.closed = closed;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "db-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public void listenOn(int portNumber) throws IOException {
+        bind(portNumber);
+        System.out.println("Server listening on port " + getPort() + " (non-blocking, "
+                + workers.getMaximumPoolSize() + " workers)");
+        serve();
+    }
+
+    /** Opens the listening socket; returns the bound port, which is useful when {@code portNumber} is 0. */
+    public int bind(int portNumber) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(portNumber), 1024);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        return getPort();
+    }
+
+    public int getPort() { return serverChannel.socket().getLocalPort(); }
+
+    public void serve() throws IOException {
+        try {
+            while (!Thread.interrupted() && !stopping) {
+                if (stalled.isEmpty()) selector.select();
+                else selector.select(RETRY_INTERVAL_MILLIS);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read((Connection) key.attachment());
+                        if (key.isValid() && key.isWritable()) write((Connection) key.attachment());
+                    } catch (IOException e) {
+                        if (key.attachment() != null) close((Connection) key.attachment());
+                    }
+                }
+                drainCompleted();
+                retryStalled();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    // The selector is only ever closed by the serving thread, so its key sets are never modified mid-iteration.
+    public void stop() {
+        stopping = true;
+        if (selector != null) selector.wakeup();
+    }
+
+    private void shutdown() throws IOException {
+        workers.shutdownNow();
+        if (selector.isOpen()) {
+            for (SelectionKey key : selector.keys()) key.channel().close();
+            selector.close();
+        }
+        serverChannel.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel, String.valueOf(channel.getRemoteAddress()));
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        readBuffer.clear();
+        int count = connection.channel.read(readBuffer);
+        if (count < 0) {
+            // The client has finished sending: stop reading, but answer what it already sent before closing.
+            connection.closing = true;
+            connection.endOfInput();
+            if (connection.isFinished()) {
+                close(connection);
+                return;
+            }
+            dispatch(connection);
+            updateInterest(connection);
+            return;
+        }
+        readBuffer.flip();
+        connection.consume(readBuffer, MAX_FRAME_LENGTH);
+        dispatch(connection);
+        updateInterest(connection);
+    }
+
+    private void write(Connection connection) throws IOException {
+        connection.flush();
+        if (connection.isFinished()) {
+            close(connection);
+            return;
+        }
+        updateInterest(connection);
+    }
+
+    private void dispatch(Connection connection) {
+        if (connection.inFlight || connection.pendingCommands.isEmpty() || !connection.key.isValid()) return;
+        String command = connection.pendingCommands.peek();
+        connection.inFlight = true;
+        try {
+            workers.execute(() -> {
+                String result;
+                try {
+                    result = handler.apply(connection.session, command);
+                } catch (RuntimeException e) {
+                    result = "[ERROR]: " + e.getMessage();
+                }
+                connection.response = (result + "\n" + END_OF_TRANSMISSION + "\n").getBytes(StandardCharsets.UTF_8);
+                completed.add(connection);
+                selector.wakeup();
+            });
+            connection.pendingCommands.poll();
+            stalled.remove(connection);
+        } catch (RejectedExecutionException e) {
+            // Worker queue is full: keep the command and try again on the next pass of the selector loop.
+            connection.inFlight = false;
+            stalled.add(connection);
+        }
+    }
+
+    private void drainCompleted() throws IOException {
+        Connection connection;
+        while ((connection = completed.poll()) != null) {
+            connection.inFlight = false;
+            if (!connection.key.isValid()) continue;
+            connection.enqueue(connection.response);
+            connection.response = null;
+            try {
+                connection.flush();
+            } catch (IOException e) {
+                close(connection);
+                continue;
+            }
+            dispatch(connection);
+            if (connection.isFinished()) {
+                close(connection);
+                continue;
+            }
+            updateInterest(connection);
+        }
+    }
+
+    private void retryStalled() {
+        if (stalled.isEmpty()) return;
+        for (Connection connection : new ArrayList<>(stalled)) {
+            if (!connection.key.isValid()) {
+                stalled.remove(connection);
+                continue;
+            }
+            dispatch(connection);
+            updateInterest(connection);
+        }
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.key.isValid()) return;
+        int ops = 0;
+        if (!connection.closing && connection.pendingOutputBytes < MAX_PENDING_OUTPUT_BYTES
+                && connection.pendingCommands.size() < MAX_PENDING_COMMANDS) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (connection.pendingOutputBytes > 0) ops |= SelectionKey.OP_WRITE;
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        if (connection.inFlight) {
+            // The socket failed: let the running command finish so its response is not written to a recycled key.
+            connection.closing = true;
+            connection.pendingCommands.clear();
+            if (connection.key.isValid()) connection.key.interestOps(0);
+            return;
+        }
+        if (!connection.channel.isOpen()) return;
+        stalled.remove(connection);
+        connection.key.cancel();
+        try { connection.channel.close(); } catch (IOException ignored) {}
+        // On a worker, as the session's cleanup may wait for another session's command to finish:
+        try {
+            workers.execute(() -> closed.accept(connection.session));
+        } catch (RejectedExecutionException e) {
+            closed.accept(connection.session);
+        }
+    }
+}
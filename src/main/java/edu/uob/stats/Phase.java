@@ -0,0 +1,13 @@
+package edu.uob.stats;
+
+/**
+ * The stages a command passes through inside DBServer.handleCommand. BIND, SCAN, JOIN, FORMAT and PERSIST happen inside
+ * the interpreter; INTERPRET is reported net of them.
+ */
+public enum Phase {
+    TOKENIZE, PARSE, BIND, INTERPRET, SCAN, JOIN, FORMAT, PERSIST;
+
+    boolean isNestedInInterpret() {
+        return this == BIND || this == SCAN || this == JOIN || this == FORMAT || this == PERSIST;
+    }
+}
@@ -0,0 +1,132 @@
+package edu.uob.stats;
+
+import edu.uob.utils.Utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide latency histograms and row/byte counters, one set per command type. Recording is lock-free so it can be
+ * called from every connection; {@link #reset()} clears the figures in place while commands keep recording.
+ */
+public class QueryStats {
+    private static final QueryStats INSTANCE = new QueryStats();
+    private final ConcurrentHashMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+
+    public static QueryStats getInstance() { return INSTANCE; }
+
+    public void record(QueryTrace trace) {
+        CommandStats stats = commands.computeIfAbsent(trace.getCommandType(), type -> new CommandStats());
+        stats.total.record(trace.getTotalNanos());
+        for (Phase phase : QueryTrace.PHASES) {
+            if (trace.hasPhase(phase)) stats.phases[phase.ordinal()].record(trace.getPhaseNanos(phase));
+        }
+        if (trace.isFailed()) stats.errors.increment();
+        if (trace.isCached()) stats.cacheHits.increment();
+        if (trace.isResultCached()) stats.resultCacheHits.increment();
+        stats.rowsScanned.add(trace.getRowsScanned());
+        stats.rowsReturned.add(trace.getRowsReturned());
+        stats.bytesWritten.add(trace.getBytesWritten());
+        stats.bytesSent.add(trace.getBytesSent());
+        stats.sortSpills.add(trace.getSortSpills());
+        stats.spillBytes.add(trace.getSpillBytes());
+    }
+
+    public CommandStats get(String commandType) { return commands.get(commandType); }
+
+    public void reset() { for (CommandStats stats : commands.values()) stats.reset(); }
+
+    /** Renders one row per command type followed by one row per command type and phase; times are in microseconds. */
+    public String format() {
+        ArrayList<String> commandTypes = new ArrayList<>(commands.keySet());
+        Collections.sort(commandTypes);
+
+        ArrayList<String> summaryAttributes = new ArrayList<>(Arrays.asList("command", "count", "errors", "cached", "result_hits",
+                "mean_us", "p50_us", "p99_us", "p999_us", "max_us", "rows_scanned", "rows_returned", "bytes_written",
+                "bytes_sent", "sort_spills", "spill_bytes"));
+        HashMap<Integer, HashMap<String, String>> summary = new HashMap<>();
+        ArrayList<String> phaseAttributes = new ArrayList<>(Arrays.asList("command", "phase", "count", "mean_us",
+                "p50_us", "p99_us", "p999_us", "max_us"));
+        HashMap<Integer, HashMap<String, String>> phases = new HashMap<>();
+        for (String commandType : commandTypes) {
+            CommandStats stats = commands.get(commandType);
+            if (stats.total.getCount() == 0) continue;
+            HashMap<String, String> row = new HashMap<>();
+            row.put("command", commandType);
+            row.put("count", String.valueOf(stats.total.getCount()));
+            row.put("errors", String.valueOf(stats.errors.sum()));
+            row.put("cached", String.valueOf(stats.cacheHits.sum()));
+            row.put("result_hits", String.valueOf(stats.resultCacheHits.sum()));
+            putLatencies(row, stats.total);
+            row.put("rows_scanned", String.valueOf(stats.rowsScanned.sum()));
+            row.put("rows_returned", String.valueOf(stats.rowsReturned.sum()));
+            row.put("bytes_written", String.valueOf(stats.bytesWritten.sum()));
+            row.put("bytes_sent", String.valueOf(stats.bytesSent.sum()));
+            row.put("sort_spills", String.valueOf(stats.sortSpills.sum()));
+            row.put("spill_bytes", String.valueOf(stats.spillBytes.sum()));
+            summary.put(summary.size() + 1, row);
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = stats.phases[phase.ordinal()];
+                if (histogram.getCount() == 0) continue;
+                HashMap<String, String> phaseRow = new HashMap<>();
+                phaseRow.put("command", commandType);
+                phaseRow.put("phase", phase.name());
+                phaseRow.put("count", String.valueOf(histogram.getCount()));
+                putLatencies(phaseRow, histogram);
+                phases.put(phases.size() + 1, phaseRow);
+            }
+        }
+        return Utils.prettyPrintTable(summary, summaryAttributes, new TreeSet<>(summary.keySet()), true)
+                + Utils.prettyPrintTable(phases, phaseAttributes, new TreeSet<>(phases.keySet()), true);
+    }
+    private static void putLatencies(HashMap<String, String> row, LatencyHistogram histogram) {
+        row.put("mean_us", String.format("%.1f", histogram.getMean() / 1000.0));
+        row.put("p50_us", micros(histogram.getPercentile(0.5)));
+        row.put("p99_us", micros(histogram.getPercentile(0.99)));
+        row.put("p999_us", micros(histogram.getPercentile(0.999)));
+        row.put("max_us", micros(histogram.getMax()));
+    }
+    private static String micros(long nanos) { return String.format("%.1f", nanos / 1000.0); }
+
+    public static class CommandStats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder resultCacheHits = new LongAdder();
+        private final LongAdder rowsScanned = new LongAdder();
+        private final LongAdder rowsReturned = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder sortSpills = new LongAdder();
+        private final LongAdder spillBytes = new LongAdder();
+        CommandStats() { for (int i = 0; i < phases.length; i++) phases[i] = new LatencyHistogram(); }
+
+        public LatencyHistogram getLatency() { return total; }
+        public LatencyHistogram getLatency(Phase phase) { return phases[phase.ordinal()]; }
+        public long getErrors() { return errors.sum(); }
+        public long getCacheHits() { return cacheHits.sum(); }
+        public long getResultCacheHits() { return resultCacheHits.sum(); }
+        public long getRowsScanned() { return rowsScanned.sum(); }
+        public long getRowsReturned() { return rowsReturned.sum(); }
+        public long getBytesWritten() { return bytesWritten.sum(); }
+        public long getBytesSent() { return bytesSent.sum(); }
+        public long getSortSpills() { return sortSpills.sum(); }
+        public long getSpillBytes() { return spillBytes.sum(); }
+
+        private void reset() {
+            total.reset();
+            for (LatencyHistogram phase : phases) phase.reset();
+            errors.reset();
+            cacheHits.reset();
+            resultCacheHits.reset();
+            rowsScanned.reset();
+            rowsReturned.reset();
+            bytesWritten.reset();
+            bytesSent.reset();
+            sortSpills.reset();
+            spillBytes.reset();
+        }
+    }
+}
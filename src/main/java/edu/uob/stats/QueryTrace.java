@@ -0,0 +1,125 @@
+package edu.uob.stats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Timings and counters for the command currently executing on this thread. The static helpers are safe to call from
+ * any layer (tokenizer, parser, interpreter, storage) and do nothing when no command is being traced.
+ */
+public class QueryTrace {
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+    static final Phase[] PHASES = Phase.values();
+
+    private final long startNanos;
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final boolean[] phaseSeen = new boolean[PHASES.length];
+    private String query;
+    private String session;
+    private String commandType = "INVALID";
+    // table name --> row count when it was touched; only allocated by commands that read or write a table:
+    private LinkedHashMap<String, Integer> tableSizes;
+    private boolean failed;
+    private boolean cached;
+    private boolean resultCached;
+    private long rowsScanned;
+    private long rowsReturned;
+    private long bytesWritten;
+    private long bytesSent;
+    private long sortSpills;
+    private long spillBytes;
+    private long totalNanos;
+
+    private QueryTrace() { startNanos = System.nanoTime(); }
+
+    public static QueryTrace begin() {
+        QueryTrace trace = new QueryTrace();
+        CURRENT.set(trace);
+        return trace;
+    }
+    public static QueryTrace current() { return CURRENT.get(); }
+
+    /** Stops the trace started on this thread: the interpret phase is reported net of the phases nested in it. */
+    public static QueryTrace end() {
+        QueryTrace trace = CURRENT.get();
+        CURRENT.remove();
+        if (trace == null) return null;
+        trace.totalNanos = System.nanoTime() - trace.startNanos;
+        int interpret = Phase.INTERPRET.ordinal();
+        if (trace.phaseSeen[interpret]) {
+            long nested = 0;
+            for (Phase phase : PHASES) if (phase.isNestedInInterpret()) nested += trace.phaseNanos[phase.ordinal()];
+            trace.phaseNanos[interpret] = Math.max(0, trace.phaseNanos[interpret] - nested);
+        }
+        return trace;
+    }
+
+    /** Adds the time since {@code startNanos} to {@code phase} of the current trace. */
+    public static void record(Phase phase, long startNanos) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) return;
+        trace.phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+        trace.phaseSeen[phase.ordinal()] = true;
+    }
+    public static void addRowsScanned(long rows) {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) trace.rowsScanned += rows;
+    }
+    public static void addRowsReturned(long rows) {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) trace.rowsReturned += rows;
+    }
+
+    public static void addBytesWritten(long bytes) {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) trace.bytesWritten += bytes;
+    }
+
+    // One sorted run of {@code bytes} written to a temporary file by a sort that ran out of memory:
+    public static void addSpill(long bytes) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) return;
+        trace.sortSpills++;
+        trace.spillBytes += bytes;
+    }
+
+    // The response came from the result cache without running the query:
+    public static void addResultCacheHit() {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) trace.resultCached = true;
+    }
+
+    public static void addTable(String tableName, int rows) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) return;
+        if (trace.tableSizes == null) trace.tableSizes = new LinkedHashMap<>();
+        trace.tableSizes.put(tableName, rows);
+    }
+
+    public void setQuery(String query) { this.query = query; }
+    public void setSession(String session) { this.session = session; }
+    public void setCommandType(String commandType) { this.commandType = commandType; }
+    public void setFailed(boolean failed) { this.failed = failed; }
+    public void setCached(boolean cached) { this.cached = cached; }
+    public void setBytesSent(long bytesSent) { this.bytesSent = bytesSent; }
+
+    public String getQuery() { return query; }
+    public String getSession() { return session; }
+    public String getCommandType() { return commandType; }
+    public Map<String, Integer> getTableSizes() {
+        return tableSizes == null ? Collections.emptyMap() : Collections.unmodifiableMap(tableSizes);
+    }
+    public boolean isFailed() { return failed; }
+    public boolean isCached() { return cached; }
+    public boolean isResultCached() { return resultCached; }
+    public long getRowsScanned() { return rowsScanned; }
+    public long getRowsReturned() { return rowsReturned; }
+    public long getBytesWritten() { return bytesWritten; }
+    public long getBytesSent() { return bytesSent; }
+    public long getSortSpills() { return sortSpills; }
+    public long getSpillBytes() { return spillBytes; }
+    public long getTotalNanos() { return totalNanos; }
+    public boolean hasPhase(Phase phase) { return phaseSeen[phase.ordinal()]; }
+    public long getPhaseNanos(Phase phase) { return phaseNanos[phase.ordinal()]; }
+}
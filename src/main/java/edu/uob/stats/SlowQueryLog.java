@@ -0,0 +1,154 @@
+package edu.uob.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends one JSON line per command slower than the threshold to a size-rotated log file. Commands under the threshold
+ * cost a single comparison; slow ones are handed to a background writer thread, so the caller never blocks on disk.
+ * When the writer falls behind, entries that do not fit in its queue are dropped and counted.
+ *
+ * <p>Configured with system properties: {@code db.slowlog.thresholdMs} (default 100, negative disables the log),
+ * {@code db.slowlog.file} (default {@code logs/slow-query.log}), {@code db.slowlog.maxBytes} (size at which the file is
+ * rotated, default 10MB) and {@code db.slowlog.maxFiles} (rotated files kept, default 5).
+ */
+public class SlowQueryLog {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static SlowQueryLog instance;
+
+    private final Path file;
+    private final long thresholdNanos;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<QueryTrace> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private volatile Thread writer;
+    private volatile boolean closed;
+    private OutputStream out;
+    private long fileSize;
+
+    public SlowQueryLog(Path file, long thresholdMillis, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.thresholdNanos = thresholdMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public static synchronized SlowQueryLog getInstance() {
+        if (instance == null) {
+            instance = new SlowQueryLog(Paths.get(System.getProperty("db.slowlog.file", "logs/slow-query.log")),
+                    Long.getLong("db.slowlog.thresholdMs", 100), Long.getLong("db.slowlog.maxBytes", 10L << 20),
+                    Integer.getInteger("db.slowlog.maxFiles", 5));
+        }
+        return instance;
+    }
+
+    public void record(QueryTrace trace) {
+        if (trace == null || trace.getTotalNanos() < thresholdNanos || closed) return;
+        if (writer == null) startWriter();
+        if (!queue.offer(trace)) dropped.incrementAndGet();
+    }
+
+    public long getDropped() { return dropped.get(); }
+
+    /** Writes out every queued entry and stops the writer thread. */
+    public void close() throws InterruptedException {
+        closed = true;
+        Thread running;
+        synchronized (this) { running = writer; }
+        if (running != null) running.join();
+    }
+
+    private synchronized void startWriter() {
+        if (writer != null) return;
+        writer = new Thread(this::drain, "slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void drain() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                // Not interrupted on close: an interrupt would also close the file channel mid-write.
+                QueryTrace trace;
+                try {
+                    trace = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (trace != null) write(trace);
+                else if (out != null) out.flush(); // idle: make buffered entries visible
+            }
+        } catch (IOException e) {
+            System.err.println("Slow query log disabled: " + e.getMessage());
+            closed = true;
+            queue.clear();
+        } finally {
+            try { if (out != null) out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void write(QueryTrace trace) throws IOException {
+        byte[] line = (format(trace) + "\n").getBytes(StandardCharsets.UTF_8);
+        if (out == null) open();
+        if (fileSize > 0 && fileSize + line.length > maxBytes) {
+            out.close();
+            rotate();
+            open();
+        }
+        out.write(line);
+        fileSize += line.length;
+    }
+
+    String format(QueryTrace trace) throws IOException {
+        LinkedHashMap<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", System.currentTimeMillis());
+        entry.put("session", trace.getSession());
+        entry.put("command", trace.getCommandType());
+        entry.put("query", trace.getQuery());
+        entry.put("failed", trace.isFailed());
+        entry.put("total_us", trace.getTotalNanos() / 1000);
+        LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+        for (Phase phase : QueryTrace.PHASES) {
+            if (trace.hasPhase(phase)) phases.put(phase.name().toLowerCase(), trace.getPhaseNanos(phase) / 1000);
+        }
+        entry.put("phases_us", phases);
+        entry.put("tables", trace.getTableSizes());
+        entry.put("rows_scanned", trace.getRowsScanned());
+        entry.put("rows_returned", trace.getRowsReturned());
+        entry.put("bytes_written", trace.getBytesWritten());
+        if (trace.getSortSpills() > 0) {
+            entry.put("sort_spills", trace.getSortSpills());
+            entry.put("spill_bytes", trace.getSpillBytes());
+        }
+        return mapper.writeValueAsString(entry);
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        fileSize = Files.size(file);
+    }
+
+    // slow-query.log --> slow-query.log.1 --> ... --> slow-query.log.<maxFiles>, the oldest is deleted.
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (maxFiles > 0) Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        else Files.delete(file);
+    }
+    private Path rotated(int index) { return file.resolveSibling(file.getFileName() + "." + index); }
+}
@@ -11,6 +11,11 @@ public enum TokenType {
     UPDATE_KEYWORD("UPDATE"),
     DELETE_KEYWORD("DELETE"),
     JOIN_KEYWORD("JOIN"),
+    PREPARE_KEYWORD("PREPARE"),
+    EXECUTE_KEYWORD("EXECUTE"),
+    SHOW_KEYWORD("SHOW"),
+    RESET_KEYWORD("RESET"),
+    EXPLAIN_KEYWORD("EXPLAIN"),
 
     // Language Keywords:
     DATABASE_KEYWORD("DATABASE"),
@@ -25,6 +30,24 @@ public enum TokenType {
     ADD_KEYWORD("ADD"),
     ASSIGN_KEYWORD("ASSIGN"),
     ON_KEYWORD("ON"),
+    AS_KEYWORD("AS"),
+    STATS_KEYWORD("STATS"),
+    ANALYZE_KEYWORD("ANALYZE"),
+    GROUP_KEYWORD("GROUP"),
+    BY_KEYWORD("BY"),
+    ORDER_KEYWORD("ORDER"),
+    ASC_KEYWORD("ASC"),
+    DESC_KEYWORD("DESC"),
+    LIMIT_KEYWORD("LIMIT"),
+    OFFSET_KEYWORD("OFFSET"),
+    DECLARE_KEYWORD("DECLARE"),
+    CURSOR_KEYWORD("CURSOR"),
+    FOR_KEYWORD("FOR"),
+    FETCH_KEYWORD("FETCH"),
+    CLOSE_KEYWORD("CLOSE"),
+    INDEX_KEYWORD("INDEX"),
+    USING_KEYWORD("USING"),
+    VACUUM_KEYWORD("VACUUM"),
 
 
 
@@ -34,6 +57,7 @@ public enum TokenType {
     BOOLEAN_LITERAL("BOOLEAN_LITERAL"),
     STRING_LITERAL("STRING_LITERAL"),
     NULL_LITERAL("NULL_LITERAL"),
+    PLACEHOLDER("PLACEHOLDER"),
 
     // Identifiers:
     IDENTIFIER("IDENTIFIER"),
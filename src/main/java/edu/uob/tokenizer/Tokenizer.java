@@ -1,201 +1,192 @@
 package edu.uob.tokenizer;
 
+import edu.uob.stats.Phase;
+import edu.uob.stats.QueryTrace;
+
 import java.util.ArrayList;
-import java.util.Arrays;
 
+/**
+ * Single-pass scanner: each character of the query is looked at once, and keywords are found with a collision-free
+ * (perfect) hash table built when the class loads, so no regular expressions or intermediate strings are involved.
+ */
 public class Tokenizer {
-    private static final String[] specialCharacters = {"(", ")", ",", ";"};
-    public static ArrayList<Token> tokenize(String query) {
-        ArrayList<String> preprocessedTokens = new ArrayList<String>();
-        query = query.trim();
-        String[] fragments = query.split("'");
-        for (int i = 0; i < fragments.length; i++) {
-            if (i % 2 != 0) preprocessedTokens.add("'" + fragments[i] + "'");
-                //
-            else {
-                String[] nextBatchOfTokens = tokenizeFragments(fragments[i]);
-                preprocessedTokens.addAll(Arrays.asList(nextBatchOfTokens));
+    private static final String[] KEYWORDS = {
+            "USE", "CREATE", "DROP", "ALTER", "INSERT", "SELECT", "UPDATE", "DELETE", "JOIN", "PREPARE", "EXECUTE",
+            "SHOW", "RESET", "EXPLAIN", "DATABASE", "TABLE", "INTO", "VALUES", "FROM", "WHERE", "SET", "AND", "OR",
+            "ADD", "ON", "AS", "STATS", "ANALYZE", "GROUP", "BY", "ORDER",
+            "ASC", "DESC", "LIMIT", "OFFSET", "DECLARE", "CURSOR", "FOR", "FETCH",
+            "CLOSE", "INDEX", "USING", "VACUUM", "TRUE", "FALSE", "NULL", "LIKE"};
+    private static final TokenType[] KEYWORD_TYPES = {
+            TokenType.USE_KEYWORD, TokenType.CREATE_KEYWORD, TokenType.DROP_KEYWORD, TokenType.ALTER_KEYWORD,
+            TokenType.INSERT_KEYWORD, TokenType.SELECT_KEYWORD, TokenType.UPDATE_KEYWORD, TokenType.DELETE_KEYWORD,
+            TokenType.JOIN_KEYWORD, TokenType.PREPARE_KEYWORD, TokenType.EXECUTE_KEYWORD,
+            TokenType.SHOW_KEYWORD, TokenType.RESET_KEYWORD, TokenType.EXPLAIN_KEYWORD, TokenType.DATABASE_KEYWORD,
+            TokenType.TABLE_KEYWORD, TokenType.INTO_KEYWORD, TokenType.VALUES_KEYWORD, TokenType.FROM_KEYWORD,
+            TokenType.WHERE_KEYWORD, TokenType.SET_KEYWORD, TokenType.AND_KEYWORD, TokenType.OR_KEYWORD,
+            TokenType.ADD_KEYWORD, TokenType.ON_KEYWORD, TokenType.AS_KEYWORD, TokenType.STATS_KEYWORD,
+            TokenType.ANALYZE_KEYWORD, TokenType.GROUP_KEYWORD, TokenType.BY_KEYWORD, TokenType.ORDER_KEYWORD,
+            TokenType.ASC_KEYWORD, TokenType.DESC_KEYWORD, TokenType.LIMIT_KEYWORD, TokenType.OFFSET_KEYWORD,
+            TokenType.DECLARE_KEYWORD, TokenType.CURSOR_KEYWORD, TokenType.FOR_KEYWORD, TokenType.FETCH_KEYWORD,
+            TokenType.CLOSE_KEYWORD, TokenType.INDEX_KEYWORD, TokenType.USING_KEYWORD, TokenType.VACUUM_KEYWORD,
+            TokenType.BOOLEAN_LITERAL, TokenType.BOOLEAN_LITERAL, TokenType.NULL_LITERAL, TokenType.LIKE_OPERATOR};
+
+    // Perfect hash of the keywords: every keyword lands in its own slot, so a lookup is one hash and one compare.
+    private static final int KEYWORD_SEED;
+    private static final int KEYWORD_MASK;
+    private static final String[] KEYWORD_TABLE;
+    private static final TokenType[] KEYWORD_TYPE_TABLE;
+    static {
+        int size = Integer.highestOneBit(KEYWORDS.length * 2 - 1) << 1;
+        int seed = 1;
+        String[] table;
+        while (true) {
+            table = tryKeywordTable(seed, size - 1);
+            if (table != null) break;
+            if (++seed > 4096) {
+                seed = 1;
+                size <<= 1;
             }
         }
+        KEYWORD_SEED = seed;
+        KEYWORD_MASK = size - 1;
+        KEYWORD_TABLE = table;
+        KEYWORD_TYPE_TABLE = new TokenType[size];
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            KEYWORD_TYPE_TABLE[keywordSlot(KEYWORDS[i], 0, KEYWORDS[i].length(), seed, size - 1)] = KEYWORD_TYPES[i];
+        }
+    }
+    private static String[] tryKeywordTable(int seed, int mask) {
+        String[] table = new String[mask + 1];
+        for (String keyword : KEYWORDS) {
+            int slot = keywordSlot(keyword, 0, keyword.length(), seed, mask);
+            if (table[slot] != null) return null;
+            table[slot] = keyword;
+        }
+        return table;
+    }
+    private static int keywordSlot(String source, int start, int end, int seed, int mask) {
+        int hash = end - start;
+        for (int i = start; i < end; i++) hash = hash * seed + (source.charAt(i) | 0x20);
+        return (hash ^ (hash >>> 15)) & mask;
+    }
 
-        // generate List<Tokens>
+    public static ArrayList<Token> tokenize(String query) {
+        long start = System.nanoTime();
         ArrayList<Token> tokens = new ArrayList<>();
-        for (String token : preprocessedTokens) { tokens.add(new Token(token)); }
-        tokens.add(new Token("EOF"));
-        //printTokens(tokens);
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            switch (c) {
+                case ' ', '\t', '\n', '\r', '\f' -> i++;
+                case '\'' -> {
+                    // String literal, quotes included; an unterminated literal runs to the end of the query.
+                    int end = query.indexOf('\'', i + 1);
+                    if (end < 0) {
+                        tokens.add(new Token(query.substring(i) + "'", TokenType.STRING_LITERAL));
+                        i = length;
+                    } else {
+                        tokens.add(new Token(query.substring(i, end + 1), TokenType.STRING_LITERAL));
+                        i = end + 1;
+                    }
+                }
+                case '(' -> i = addSymbol(tokens, "(", TokenType.LEFT_PAREN, i);
+                case ')' -> i = addSymbol(tokens, ")", TokenType.RIGHT_PAREN, i);
+                case ',' -> i = addSymbol(tokens, ",", TokenType.COMMA, i);
+                case ';' -> i = addSymbol(tokens, ";", TokenType.SEMICOLON, i);
+                case '=' -> {
+                    if (i + 1 < length && query.charAt(i + 1) == '=') i = addSymbol(tokens, "==", TokenType.EQUALS_OPERATOR, i);
+                    else i = addSymbol(tokens, "=", TokenType.ASSIGN_KEYWORD, i);
+                }
+                case '<' -> {
+                    if (i + 1 < length && query.charAt(i + 1) == '=') i = addSymbol(tokens, "<=", TokenType.LESS_THAN_OR_EQUAL_OPERATOR, i);
+                    else i = addSymbol(tokens, "<", TokenType.LESS_THAN_OPERATOR, i);
+                }
+                case '>' -> {
+                    if (i + 1 < length && query.charAt(i + 1) == '=') i = addSymbol(tokens, ">=", TokenType.GREATER_THAN_OR_EQUAL_OPERATOR, i);
+                    else i = addSymbol(tokens, ">", TokenType.GREATER_THAN_OPERATOR, i);
+                }
+                default -> {
+                    if (c == '!' && i + 1 < length && query.charAt(i + 1) == '=') {
+                        i = addSymbol(tokens, "!=", TokenType.NOT_EQUALS_OPERATOR, i);
+                        break;
+                    }
+                    int end = i + 1;
+                    while (end < length && !isWordBoundary(query, end)) end++;
+                    tokens.add(new Token(query.substring(i, end), classifyWord(query, i, end)));
+                    i = end;
+                }
+            }
+        }
+        tokens.add(new Token("EOF", TokenType.EOF));
+        QueryTrace.record(Phase.TOKENIZE, start);
         return tokens;
     }
-    private static String[] tokenizeFragments(String input) {
-        for (String specialCharacter : specialCharacters) {
-            input = input.replace(specialCharacter, " " + specialCharacter + " ");
-            input = input.replaceAll("(==|>=|<=|>|<|!=|=)", " $1 ");
-            input = input.replaceAll("\t", " ");
+    private static int addSymbol(ArrayList<Token> tokens, String symbol, TokenType type, int position) {
+        tokens.add(new Token(symbol, type));
+        return position + symbol.length();
+    }
+    private static boolean isWordBoundary(String query, int position) {
+        return switch (query.charAt(position)) {
+            case ' ', '\t', '\n', '\r', '\f', '\'', '(', ')', ',', ';', '=', '<', '>' -> true;
+            case '!' -> position + 1 < query.length() && query.charAt(position + 1) == '=';
+            default -> false;
+        };
+    }
+    private static TokenType classifyWord(String source, int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            switch (source.charAt(start)) {
+                case '*': return TokenType.ASTRIX;
+                case '?': return TokenType.PLACEHOLDER;
+                case '{': return TokenType.LEFT_BRACE;
+                case '}': return TokenType.RIGHT_BRACE;
+                case '[': return TokenType.LEFT_BRACKET;
+                case ']': return TokenType.RIGHT_BRACKET;
+                default: break;
+            }
         }
-
-        while (input.contains("  ")) input = input.replaceAll("  ", " ");
-        input = input.trim();
-        return input.split(" ");
+        int slot = keywordSlot(source, start, end, KEYWORD_SEED, KEYWORD_MASK);
+        String keyword = KEYWORD_TABLE[slot];
+        if (keyword != null && keyword.length() == length && keyword.regionMatches(true, 0, source, start, length)) {
+            return KEYWORD_TYPE_TABLE[slot];
+        }
+        return classifyLiteral(source, start, end);
     }
+    private static TokenType classifyLiteral(String source, int start, int end) {
+        // [+-]?\d+ --> integer, [+-]?\d+.\d+ --> float, [a-zA-Z0-9]+ --> identifier:
+        int i = start;
+        char first = source.charAt(i);
+        if (first == '+' || first == '-') i++;
+        int digitsStart = i;
+        while (i < end && isDigit(source.charAt(i))) i++;
+        if (i > digitsStart) {
+            if (i == end) return TokenType.INTEGER_LITERAL;
+            if (source.charAt(i) == '.' && i + 1 < end) {
+                int fractionStart = ++i;
+                while (i < end && isDigit(source.charAt(i))) i++;
+                if (i == end && i > fractionStart) return TokenType.FLOAT_LITERAL;
+            }
+        }
+        for (i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (!isDigit(c) && !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) return TokenType.INVALID_TOKEN;
+        }
+        return TokenType.IDENTIFIER;
+    }
+    private static boolean isDigit(char c) { return c >= '0' && c <= '9'; }
 
     public static void printTokens(ArrayList<Token> tokens) {for (Token token : tokens) { System.out.println(token.getType() + ": " + token.getValue()); }};
 
     public static class Token {
-        private TokenType type;
+        private final TokenType type;
         private String token;
-        public Token(String token) {
+        public Token(String token, TokenType type) {
             this.token = token;
-            setType();
+            this.type = type;
         }
         public TokenType getType() { return type; }
         public String getValue() { return token; }
         public void setValue(String value) { this.token = value; }
-            private void setType() {
-            switch (token.toUpperCase()) {
-                // Command Keywords:
-                case "USE":
-                    type = TokenType.USE_KEYWORD;
-                    break;
-                case "CREATE":
-                    type = TokenType.CREATE_KEYWORD;
-                    break;
-                case "DROP":
-                    type = TokenType.DROP_KEYWORD;
-                    break;
-                case "ALTER":
-                    type = TokenType.ALTER_KEYWORD;
-                    break;
-                case "INSERT":
-                    type = TokenType.INSERT_KEYWORD;
-                    break;
-                case "SELECT":
-                    type = TokenType.SELECT_KEYWORD;
-                    break;
-                case "UPDATE":
-                    type = TokenType.UPDATE_KEYWORD;
-                    break;
-                case "DELETE":
-                    type = TokenType.DELETE_KEYWORD;
-                    break;
-                case "JOIN":
-                    type = TokenType.JOIN_KEYWORD;
-                    break;
-
-                // Language Keywords:
-                case "DATABASE":
-                    type = TokenType.DATABASE_KEYWORD;
-                    break;
-                case "TABLE":
-                    type = TokenType.TABLE_KEYWORD;
-                    break;
-                case "INTO":
-                    type = TokenType.INTO_KEYWORD;
-                    break;
-                case "VALUES":
-                    type = TokenType.VALUES_KEYWORD;
-                    break;
-                case "FROM":
-                    type = TokenType.FROM_KEYWORD;
-                    break;
-                case "WHERE":
-                    type = TokenType.WHERE_KEYWORD;
-                    break;
-                case "SET":
-                    type = TokenType.SET_KEYWORD;
-                    break;
-                case "AND":
-                    type = TokenType.AND_KEYWORD;
-                    break;
-                case "OR":
-                    type = TokenType.OR_KEYWORD;
-                    break;
-                case "ADD":
-                    type = TokenType.ADD_KEYWORD;
-                    break;
-                case "ON":
-                    type = TokenType.ON_KEYWORD;
-                    break;
-
-                // Literals:
-                case "TRUE":
-                case "FALSE":
-                    type = TokenType.BOOLEAN_LITERAL;
-                    break;
-                case "NULL":
-                    type = TokenType.NULL_LITERAL;
-                    break;
-                case "EOF":
-                    type = TokenType.EOF;
-                    break;
-
-                // Operators:
-                case "==":
-                    type = TokenType.EQUALS_OPERATOR;
-                    break;
-                case "!=":
-                    type = TokenType.NOT_EQUALS_OPERATOR;
-                    break;
-                case "<":
-                    type = TokenType.LESS_THAN_OPERATOR;
-                    break;
-                case "<=":
-                    type = TokenType.LESS_THAN_OR_EQUAL_OPERATOR;
-                    break;
-                case ">":
-                    type = TokenType.GREATER_THAN_OPERATOR;
-                    break;
-                case ">=":
-                    type = TokenType.GREATER_THAN_OR_EQUAL_OPERATOR;
-                    break;
-                case "LIKE":
-                    type = TokenType.LIKE_OPERATOR;
-                    break;
-
-                // Delimiters and Punctuation:
-                case ";":
-                    type = TokenType.SEMICOLON;
-                    break;
-                case ",":
-                    type = TokenType.COMMA;
-                    break;
-                case "(":
-                    type = TokenType.LEFT_PAREN;
-                    break;
-                case ")":
-                    type = TokenType.RIGHT_PAREN;
-                    break;
-                case "{":
-                    type = TokenType.LEFT_BRACE;
-                    break;
-                case "}":
-                    type = TokenType.RIGHT_BRACE;
-                    break;
-                case "[":
-                    type = TokenType.LEFT_BRACKET;
-                    break;
-                case "]":
-                    type = TokenType.RIGHT_BRACKET;
-                    break;
-                case "*":
-                    type = TokenType.ASTRIX;
-                    break;
-                case  "=":
-                    type = TokenType.ASSIGN_KEYWORD;
-                    break;
-
-                default:
-                    if (token.matches("[+-]?\\d+")) {
-                        type = TokenType.INTEGER_LITERAL;
-                    } else if (token.matches("[+-]?\\d+(\\.\\d+)?")) {
-                        type = TokenType.FLOAT_LITERAL;
-                    } else if (token.startsWith("'") && token.endsWith("'")) {
-                        type = TokenType.STRING_LITERAL;
-                    } else if (token.matches("[a-zA-Z0-9]+")) {
-                        type = TokenType.IDENTIFIER;
-                    } else {
-                        type = TokenType.INVALID_TOKEN;
-                        break;
-                    }
-            }
-        }
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,16 @@ public enum ErrorType {
     NO_DATABASE_IN_USE("INVALID QUERY: NO DATABASE IN USE. TO SELECT A DATABASE ISSUE THE COMMAND 'SQL:> USE [DATABASE_NAME]'"),
     INVALID_LIST_EXCEPTION("INVALID ATTRIBUTE LIST."),
     INVALID_VALUE_EXCEPTION("INVALID VALUE."),
-    PK_DROP_EXCEPTION("PRIMARY KEY CANNOT BE DROPPED");
+    PK_DROP_EXCEPTION("PRIMARY KEY CANNOT BE DROPPED"),
+    PREPARED_STATEMENT_NOT_FOUND_EXCEPTION("PREPARED STATEMENT NOT FOUND."),
+    PARAMETER_COUNT_EXCEPTION("WRONG NUMBER OF PARAMETERS SUPPLIED FOR PREPARED STATEMENT."),
+    GROUP_BY_EXCEPTION("ATTRIBUTES SELECTED ALONGSIDE AGGREGATES MUST APPEAR IN THE GROUP BY LIST."),
+    CURSOR_NOT_FOUND_EXCEPTION("CURSOR NOT FOUND. IT MAY HAVE BEEN CLOSED OR TIMED OUT."),
+    DUPLICATE_CURSOR_EXCEPTION("CURSOR NAME ALREADY IN USE. CLOSE IT FIRST."),
+    CURSOR_LIMIT_EXCEPTION("TOO MANY OPEN CURSORS IN THIS SESSION. CLOSE ONE FIRST."),
+    CURSOR_INVALIDATED_EXCEPTION("TABLE CHANGED WHILE THE CURSOR WAS OPEN. THE CURSOR HAS BEEN CLOSED."),
+    DUPLICATE_INDEX_EXCEPTION("ATTRIBUTE IS ALREADY INDEXED."),
+    INDEX_NOT_FOUND_EXCEPTION("INDEX NOT FOUND.");
 
     private final String message;
     private ErrorType(String message) {
@@ -40,39 +40,110 @@ public class Utils {
         Path path = Paths.get(filePath);
         Files.delete(path);
     }
+    // Same answer as trying Float.parseFloat, without paying for an exception on every non-numeric value:
+    public static boolean isNumeric(String value) {
+        int i = 0;
+        while (i < value.length() && value.charAt(i) <= ' ') i++;
+        if (i == value.length()) return false;
+        char first = value.charAt(i);
+        if (!(first >= '0' && first <= '9') && first != '+' && first != '-' && first != '.' && first != 'N'
+                && first != 'I') return false;
+        try {
+            Float.parseFloat(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    /**
+     * Attribute names, compared ignoring case. Each lower-cased name maps to its position, so a lookup is one hash probe,
+     * and names that are already lower-case (as the parser hands them over) are looked up without lower-casing a copy.
+     */
     public static class CaseInsensitiveArrayList<S> extends ArrayList<String> implements Serializable {
         @Serial
         private static final long serialVersionUID = 1L;
-        private final Set<String> lowercaseSet = new HashSet<>();
+        // Lower-cased element --> position of its first occurrence:
+        private final HashMap<String, Integer> ordinals = new HashMap<>();
+        // The lower-cased elements by position, built on first use after a change:
+        private transient String[] keys;
         public CaseInsensitiveArrayList() {}
         public CaseInsensitiveArrayList(List<String> elements) { for (String element : elements) this.add(element); }
         @Override
         public boolean add(String element) {
-            lowercaseSet.add(element.toLowerCase());
+            ordinals.putIfAbsent(element.toLowerCase(), size());
+            keys = null;
             return super.add(element);
         }
         @Override
-        public boolean contains(Object obj) {
-            if (!(obj instanceof String searchElement))
-                return false;
-            return lowercaseSet.contains(searchElement.toLowerCase());
+        public boolean contains(Object obj) { return indexOf(obj) >= 0; }
+        @Override
+        public int indexOf(Object obj) {
+            if (!(obj instanceof String searchElement)) return -1;
+            Integer ordinal = ordinals.get(searchElement);
+            if (ordinal == null && !isLowerCase(searchElement)) ordinal = ordinals.get(searchElement.toLowerCase());
+            return ordinal == null ? -1 : ordinal;
         }
         @Override
         public boolean remove(Object obj) {
-            if (!(obj instanceof String)) return false;
-            String searchElement = ((String) obj).toLowerCase();
-            for (String element : super.stream().toList()) {
-               if (searchElement.equalsIgnoreCase(element)) {
-                   super.remove(element);
-                   lowercaseSet.remove(searchElement);
-                   return true;
-               }
+            int index = indexOf(obj);
+            if (index < 0) return false;
+            remove(index);
+            return true;
+        }
+        @Override
+        public String remove(int index) {
+            String removed = super.remove(index);
+            ordinals.clear();
+            for (int i = 0; i < size(); i++) ordinals.putIfAbsent(get(i).toLowerCase(), i);
+            keys = null;
+            return removed;
+        }
+        @Override
+        public void clear() {
+            super.clear();
+            ordinals.clear();
+            keys = null;
+        }
+        // The lower-cased elements by position, i.e. the keys records hold their values under; not to be modified.
+        public String[] keys() {
+            if (keys == null) {
+                String[] lowerCased = new String[size()];
+                for (int i = 0; i < lowerCased.length; i++) lowerCased[i] = get(i).toLowerCase();
+                keys = lowerCased;
             }
-            return false;
+            return keys;
+        }
+        private static boolean isLowerCase(String s) {
+            for (int i = 0; i < s.length(); i++) if (Character.toLowerCase(s.charAt(i)) != s.charAt(i)) return false;
+            return true;
         }
     }
-    public static String prettyPrintTable(HashMap<Integer, HashMap<String, String>> table, ArrayList<String> attributes,
+    public static String prettyPrintTable(Map<Integer, HashMap<String, String>> table, ArrayList<String> attributes,
                                           Set<Integer> recordIDs, boolean joinCMD) {
+        StringBuilder response = prettyPrintHeader(attributes);
+        String[] keys = recordKeys(attributes, joinCMD);
+        for (Integer id : recordIDs) {
+            HashMap<String, String> record = table.get(id);
+            if (record == null) continue;
+            StringBuilder formattedRecord = new StringBuilder();
+            for (String key : keys) {
+                formattedRecord.append("| ").append(padRight(record.getOrDefault(key, ""), 15)).append(" ");
+            }
+            response.append(formattedRecord.toString().trim()).append("\n");
+        }
+        return response.toString();
+    }
+    // As above for rows holding each attribute's value in order:
+    public static String prettyPrintRows(Collection<String[]> rows, ArrayList<String> attributes) {
+        StringBuilder response = prettyPrintHeader(attributes);
+        for (String[] row : rows) {
+            StringBuilder formattedRecord = new StringBuilder();
+            for (String value : row) formattedRecord.append("| ").append(padRight(value == null ? "" : value, 15)).append(" ");
+            response.append(formattedRecord.toString().trim()).append("\n");
+        }
+        return response.toString();
+    }
+    private static StringBuilder prettyPrintHeader(ArrayList<String> attributes) {
         StringBuilder response = new StringBuilder("\n");
         StringBuilder header = new StringBuilder(formatHeader(attributes, 15));
 
@@ -81,19 +152,14 @@ public class Utils {
 
         response.append(header.toString().trim()).append("\n");
         response.append(line.trim()).append("\n");
-
-        for (int id : recordIDs) {
-            if (table.containsKey(id)) {
-                HashMap<String, String> record = table.get(id);
-                StringBuilder formattedRecord = new StringBuilder();
-                for (String attribute : attributes) {
-                    if (!joinCMD) attribute = attribute.toLowerCase();
-                    formattedRecord.append("| ").append(padRight(record.getOrDefault(attribute, ""), 15)).append(" ");
-                }
-                response.append(formattedRecord.toString().trim()).append("\n");
-            }
-        }
-        return response.toString();
+        return response;
+    }
+    // The key each column's value is held under: a join result's qualified names as they are, otherwise lower-cased.
+    private static String[] recordKeys(ArrayList<String> attributes, boolean join) {
+        if (!join && attributes instanceof CaseInsensitiveArrayList<?> list) return list.keys();
+        String[] keys = new String[attributes.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = join ? attributes.get(i) : attributes.get(i).toLowerCase();
+        return keys;
     }
     private static String padRight(String s, int width) { return String.format("%-" + width + "s", s); }
     private static String formatHeader(ArrayList<String> attributes, int width) {
@@ -107,13 +173,13 @@ public class Utils {
     public static String printTable(HashMap<Integer, HashMap<String, String>> table, ArrayList<String> attributes, Set<Integer> recordIDs, boolean join) {
         StringBuilder response = new StringBuilder();
         response.append(formatHeader(attributes)).append("\t\n");
+        String[] keys = recordKeys(attributes, join);
         for (int id : recordIDs) {
             if (table.containsKey(id)) {
                 HashMap<String, String> record = table.get(id);
                 StringBuilder formattedRecord = new StringBuilder();
-                for (String attribute : attributes) {
-                    if (!join) attribute = attribute.toLowerCase();
-                    formattedRecord.append(record.getOrDefault(attribute, "")).append("\t");
+                for (String key : keys) {
+                    formattedRecord.append(record.getOrDefault(key, "")).append("\t");
                 }
 
                 response.append(formattedRecord).append("\n");
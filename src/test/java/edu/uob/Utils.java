@@ -3,6 +3,8 @@ package edu.uob;
 import edu.uob.database.DBManager;
 import edu.uob.database.DBMetadata;
 import edu.uob.database.Table;
+import edu.uob.planner.PlanNode;
+import edu.uob.planner.Row;
 import edu.uob.utils.Utils.CaseInsensitiveArrayList;
 
 import java.io.File;
@@ -18,6 +20,8 @@ public class Utils {
     public static void setupDB(String dbPath) throws IOException {
         File directory = new File(dbPath);
         if (!directory.exists() && !directory.mkdir()) fail("failed to make testing databases directory.");
+        // Drop any manager left behind by an earlier test class so this one points at dbPath:
+        DBManager.getInstance(dbPath).delInstance();
         DBManager manager = DBManager.getInstance(dbPath);
         manager.createDatabase("testDB", new DBMetadata(new HashMap<>()));
         DBMetadata.Table usersTable = new DBMetadata.Table("users", "id", 4,
@@ -55,6 +59,17 @@ public class Utils {
         manager.delInstance();
     }
 
+    // Streams the given rows (values by ordinal), standing in for a scan:
+    public static PlanNode rows(List<String[]> rows) {
+        return new PlanNode() {
+            private int position;
+            @Override
+            protected Row produce() { return position < rows.size() ? new Row(position + 1, rows.get(position++)) : null; }
+            @Override
+            public String describe() { return "Rows"; }
+        };
+    }
+
     public static void deleteDirectory(File directory) {
         if (directory.exists()) {
             File[] files = directory.listFiles();
@@ -0,0 +1,105 @@
+package edu.uob.database;
+
+import edu.uob.parser.Condition;
+import edu.uob.planner.PlanNode;
+import edu.uob.planner.Predicate;
+import edu.uob.planner.Row;
+import edu.uob.utils.Utils.CaseInsensitiveArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DictionaryEncodingTests {
+    private static final String[] STATUSES = {"active", "closed", "Pending"};
+
+    private static Table table(int rows) {
+        Table table = new Table("orders", "id", 1, new CaseInsensitiveArrayList<>(List.of("id", "name", "status")));
+        for (int i = 0; i < rows; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", "customer" + i);
+            // A new String per row, as the parser would produce:
+            record.put("status", new String(STATUSES[i % STATUSES.length]));
+            table.addRecord(record);
+        }
+        return table;
+    }
+
+    @Test
+    public void testLowCardinalityAttributesEncodedOnDisk(@TempDir File directory) throws IOException {
+        Table table = table(300);
+        assertNotNull(table.getDictionary("status"));
+        // More distinct values than the dictionary holds:
+        assertNull(table.getDictionary("name"));
+        assertSame(table.getRecords().get(1).get("status"), table.getRecords().get(4).get("status"));
+
+        String filePath = new File(directory, "orders.tab").getPath();
+        table.saveTable(filePath);
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            assertEquals("id\tname\tstatus:dict", reader.readLine());
+            assertTrue(reader.readLine().matches("\\d+\tcustomer\\d+\t[0-2]"));
+        }
+        assertTrue(new File(directory, "orders.dict").exists());
+
+        Table loaded = new Table("orders", "id", 301, new CaseInsensitiveArrayList<>(List.of("id", "name", "status")));
+        loaded.loadTable(filePath);
+        assertEquals(table.getRecords(), loaded.getRecords());
+        assertSame(loaded.getRecords().get(2).get("status"), loaded.getRecords().get(5).get("status"));
+
+        // Streaming the file decodes the codes too:
+        PlanNode scan = new PlanNode.FileScan("orders", filePath, loaded.getAttributes(), List.of("status"), null);
+        int rows = 0;
+        for (Row row = scan.next(); row != null; row = scan.next(), rows++) {
+            assertEquals(table.getRecords().get(row.getId()).get("status"), row.get(2));
+        }
+        assertEquals(300, rows);
+
+        // Too few rows for a dictionary to pay, so the file goes back to plain values:
+        Table small = table(4);
+        small.saveTable(filePath);
+        assertFalse(new File(directory, "orders.dict").exists());
+        Table reloaded = new Table("orders", "id", 5, new CaseInsensitiveArrayList<>(List.of("id", "name", "status")));
+        reloaded.loadTable(filePath);
+        assertEquals(small.getRecords(), reloaded.getRecords());
+    }
+
+    @Test
+    public void testPredicatesEvaluatedPerDictionaryValue() {
+        Table table = table(30);
+        Predicate like = Predicate.compile(new Condition.AttributeValueComparison("status", Condition.Comparator.LIKE, "PEND"),
+                table, null);
+        Predicate equal = Predicate.compile(new Condition.AttributeValueComparison("status", Condition.Comparator.EQUAL, "closed"),
+                table, null);
+        assertInstanceOf(Predicate.DictionaryComparison.class, like);
+        int likes = 0, equals = 0;
+        for (HashMap<String, String> record : table.getRecords().values()) {
+            if (like.test(values(table, record))) likes++;
+            if (equal.test(values(table, record))) equals++;
+        }
+        assertEquals(10, likes);
+        assertEquals(10, equals);
+
+        // A value added after compiling is still compared:
+        HashMap<String, String> change = new HashMap<>();
+        change.put("status", "suspended");
+        table.updateRecord(1, change);
+        assertTrue(Predicate.compile(new Condition.AttributeValueComparison("status", Condition.Comparator.LIKE, "pend"),
+                table, null).test(values(table, table.getRecords().get(1))));
+        assertTrue(like.test(values(table, table.getRecords().get(1))));
+        assertFalse(equal.test(values(table, table.getRecords().get(1))));
+    }
+    // A record laid out by ordinal, as a scan hands it to a predicate:
+    private static String[] values(Table table, HashMap<String, String> record) {
+        String[] keys = table.getAttributes().keys();
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) values[i] = record.get(keys[i]);
+        return values;
+    }
+}
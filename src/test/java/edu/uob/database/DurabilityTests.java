@@ -0,0 +1,85 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DurabilityTests {
+    private DBServer server;
+    private DBManager manager;
+    private String databaseName;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        databaseName = "";
+        for (int i = 0; i < 10; i++) databaseName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + databaseName + ";");
+        server.handleCommand("USE " + databaseName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55);");
+        manager = DBManager.getInstance(Paths.get("databases").toAbsolutePath().toString());
+    }
+    private Path directory() { return Paths.get("databases", databaseName); }
+    private void reopen() {
+        server.handleCommand("CREATE DATABASE " + databaseName + "x;");
+        server.handleCommand("USE " + databaseName + "x;");
+        server.handleCommand("USE " + databaseName + ";");
+    }
+
+    @Test
+    public void testFullWriteGoesToNewGeneration() throws IOException {
+        synchronized (manager) {
+            String before = manager.getDatabase().getTableFilePath("marks");
+            assertTrue(Files.exists(Paths.get(Table.logFilePath(before))));
+            server.handleCommand("VACUUM marks;");
+            String after = manager.getDatabase().getTableFilePath("marks");
+            assertNotEquals(before, after);
+            // The old generation goes once the metadata naming the new one is committed:
+            assertFalse(Files.exists(Paths.get(before)));
+            assertFalse(Files.exists(Paths.get(Table.logFilePath(before))));
+            assertTrue(Files.exists(Paths.get(after)));
+            try (Stream<Path> files = Files.list(directory())) {
+                assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+            }
+            String rows = server.handleCommand("SELECT * FROM marks;");
+            assertTrue(rows.contains("Simon") && rows.contains("Sion"), rows);
+        }
+    }
+
+    @Test
+    public void testUncommittedWritesIgnoredAfterCrash() throws IOException {
+        synchronized (manager) {
+            String tablePath = manager.getDatabase().getTableFilePath("marks");
+            // What a save that died before committing the metadata leaves behind:
+            Files.writeString(Paths.get(Table.logFilePath(tablePath)), "+0\tid=3\tname=Ghost\tmark=1" + System.lineSeparator(),
+                    StandardOpenOption.APPEND);
+            Path orphan = directory().resolve("marks.99.tab");
+            Files.writeString(orphan, "id\tname\tmark\n");
+            Path temporary = directory().resolve("metadata.json.tmp");
+            Files.writeString(temporary, "{");
+
+            reopen();
+            assertFalse(Files.exists(orphan));
+            assertFalse(Files.exists(temporary));
+            assertFalse(server.handleCommand("SELECT * FROM marks;").contains("Ghost"));
+
+            // The next save writes over the uncommitted tail, and ids carry on from the committed ones:
+            server.handleCommand("INSERT INTO marks VALUES ('Rob', 35);");
+            reopen();
+            String rows = server.handleCommand("SELECT * FROM marks WHERE id == 3;");
+            assertTrue(rows.contains("Rob") && !rows.contains("Ghost"), rows);
+            assertEquals(3, Files.readAllLines(Paths.get(Table.logFilePath(tablePath))).size());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordStoreTests {
+    private static HashMap<String, String> row(int id, String name) {
+        HashMap<String, String> row = new HashMap<>();
+        row.put("id", Integer.toString(id));
+        row.put("name", name);
+        row.put("mark", Integer.toString(id % 100));
+        return row;
+    }
+
+    @Test
+    public void testOffHeapMatchesHashMap() {
+        Random random = new Random(7);
+        // Small arenas, so rows spill over several and the store compacts along the way:
+        OffHeapRecordStore store = new OffHeapRecordStore(4096);
+        HashMap<Integer, HashMap<String, String>> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int id = 1 + random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(id), store.delete(id));
+            } else {
+                // Values of every length, including none and more than one byte a character:
+                HashMap<String, String> row = row(id, "é".repeat(random.nextInt(40)) + i);
+                if (random.nextInt(10) == 0) row.put("note", "");
+                expected.put(id, row);
+                store.set(id, row);
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        assertEquals(expected, store);
+        for (int id = 0; id <= 2001; id++) assertEquals(expected.containsKey(id), store.contains(id));
+        // Overwritten and deleted rows were reclaimed rather than left to pile up:
+        assertTrue(store.getArenaCount() * 4096L < 4 * store.getLiveBytes() + 4096);
+        assertTrue(store.getMemoryBytes() >= store.getLiveBytes());
+
+        // Ids come out in order, and adding a row mid-iteration is caught as with a HashMap:
+        int previous = -1;
+        for (int id : store.keySet()) {
+            assertTrue(id > previous);
+            previous = id;
+        }
+        Iterator<Map.Entry<Integer, HashMap<String, String>>> iterator = store.entrySet().iterator();
+        iterator.next();
+        store.set(5000, row(5000, "late"));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        store.free();
+        assertEquals(0, store.size());
+        assertNull(store.get(5000));
+        assertEquals(0, store.getArenaCount());
+    }
+
+    @Test
+    public void testHeapStoreKeepsIdOrder() {
+        Random random = new Random(11);
+        HeapRecordStore store = new HeapRecordStore();
+        TreeMap<Integer, HashMap<String, String>> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // Mostly ids in sequence, with the odd negative or far-off one that goes to the overflow map:
+            int id = switch (random.nextInt(50)) {
+                case 0 -> -random.nextInt(100);
+                case 1 -> 1_000_000 + random.nextInt(1_000_000);
+                default -> 1 + random.nextInt(3000);
+            };
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(id), store.delete(id));
+            } else {
+                HashMap<String, String> row = row(id, "name" + i);
+                expected.put(id, row);
+                store.set(id, row);
+                assertSame(row, store.get(id));
+            }
+        }
+        assertEquals(expected.size(), store.size());
+        assertEquals(expected, store);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(store.keySet()));
+        assertNull(store.get(-1000));
+        assertNull(store.get(Integer.MAX_VALUE));
+
+        // Removing through the iterator, from the array and the overflow map alike:
+        Iterator<Map.Entry<Integer, HashMap<String, String>>> iterator = store.entrySet().iterator();
+        while (iterator.hasNext()) if (iterator.next().getKey() % 2 == 0) iterator.remove();
+        expected.keySet().removeIf(id -> id % 2 == 0);
+        assertEquals(expected, store);
+
+        iterator = store.entrySet().iterator();
+        iterator.next();
+        store.delete(expected.lastKey());
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    public void testMemoryReportedPerTable() {
+        DBServer server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE people (name, mark);");
+        server.handleCommand("CREATE TABLE empty (name);");
+        for (int i = 0; i < 10; i++) server.handleCommand("INSERT INTO people VALUES ('Person" + i + "', " + i + ");");
+        String stats = server.handleCommand("SHOW STATS;");
+        assertTrue(stats.contains("memory_bytes"));
+        assertTrue(stats.matches("(?s).*\\| people +\\| (heap|offheap) +\\| 10 +\\| [1-9]\\d*\\s.*"), stats);
+
+        server.handleCommand("DROP TABLE people;");
+        assertFalse(server.handleCommand("SHOW STATS;").contains("| people"));
+    }
+}
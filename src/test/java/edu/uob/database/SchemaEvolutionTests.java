@@ -0,0 +1,130 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaEvolutionTests {
+    private DBServer server;
+    private DBManager manager;
+    private String databaseName;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        databaseName = "";
+        for (int i = 0; i < 10; i++) databaseName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + databaseName + ";");
+        server.handleCommand("USE " + databaseName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55);");
+        manager = DBManager.getInstance(Paths.get("databases").toAbsolutePath().toString());
+    }
+    private byte[] tableFile() throws IOException {
+        return Files.readAllBytes(Paths.get(manager.getDatabase().getTableFilePath("marks")));
+    }
+
+    @Test
+    public void testAlterLeavesFileForCompaction() throws IOException {
+        // Holding the lock keeps the background compactor away until the test asks for it:
+        synchronized (manager) {
+            byte[] before = tableFile();
+            assertFalse(server.handleCommand("ALTER TABLE marks ADD grade;").contains("[ERROR]"));
+            assertFalse(server.handleCommand("ALTER TABLE marks DROP mark;").contains("[ERROR]"));
+            assertArrayEquals(before, tableFile());
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get("marks");
+            assertEquals(2, metadata.getSchemaVersion());
+            assertEquals(2, metadata.getSchemaChanges().size());
+
+            String rows = server.handleCommand("SELECT * FROM marks;");
+            assertTrue(rows.contains("NULL"), rows);
+            assertFalse(rows.contains("65"), rows);
+            assertTrue(server.handleCommand("SELECT mark FROM marks;").contains("[ERROR]"));
+
+            // Read cold, straight from the file under the recorded changes:
+            server.handleCommand("CREATE DATABASE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + ";");
+            assertArrayEquals(before, tableFile());
+            rows = server.handleCommand("SELECT name, grade FROM marks WHERE name == 'Sion';");
+            assertTrue(rows.contains("Sion") && rows.contains("NULL") && !rows.contains("Simon"), rows);
+            // Added back, the attribute's old column stays dead:
+            server.handleCommand("ALTER TABLE marks ADD mark;");
+            rows = server.handleCommand("SELECT mark FROM marks WHERE name == 'Simon';");
+            assertTrue(rows.contains("NULL") && !rows.contains("65"), rows);
+
+            while (manager.compact()) { }
+            assertTrue(manager.getMetadata().getTables().get("marks").getSchemaChanges().isEmpty());
+            String header = Files.readAllLines(Paths.get(manager.getDatabase().getTableFilePath("marks"))).get(0);
+            assertEquals(List.of("id", "name", "grade", "mark"), List.of(header.replace(":dict", "").split("\t")));
+            assertFalse(server.handleCommand("SELECT * FROM marks;").contains("65"));
+        }
+    }
+
+    @Test
+    public void testLoadedRowsProjectedUntilCompacted() throws IOException {
+        synchronized (manager) {
+            Table table = manager.getDatabase().getTables().get("marks");
+            server.handleCommand("ALTER TABLE marks DROP mark;");
+            server.handleCommand("ALTER TABLE marks ADD mark;");
+            assertTrue(table.hasPendingAlter());
+            String rows = server.handleCommand("SELECT mark FROM marks;");
+            assertTrue(rows.contains("NULL") && !rows.contains("65"), rows);
+
+            server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Simon';");
+            assertTrue(server.handleCommand("SELECT mark FROM marks WHERE name == 'Simon';").contains("70"));
+            server.handleCommand("ALTER TABLE marks ADD pass;");
+            server.handleCommand("DELETE FROM marks WHERE name == 'Sion';");
+
+            while (manager.compact()) { }
+            assertFalse(table.hasPendingAlter());
+            assertEquals(Set.of("id", "name", "mark", "pass"), table.getRecords().get(1).keySet());
+            assertEquals("70", table.getRecords().get(1).get("mark"));
+            assertEquals("NULL", table.getRecords().get(1).get("pass"));
+        }
+    }
+
+    @Test
+    public void testRewriteKeepsAltersMadeMeanwhile() throws IOException {
+        synchronized (manager) {
+            server.handleCommand("ALTER TABLE marks ADD grade;");
+            Database database = manager.getDatabase();
+            // As the compactor does it, with commands, ALTERs included, going on while the file is written:
+            Database.Rewrite rewrite = database.startRewrite();
+            assertEquals("marks", rewrite.getTableName());
+            rewrite.run();
+            server.handleCommand("ALTER TABLE marks ADD pass;");
+            server.handleCommand("UPDATE marks SET pass = 1 WHERE name == 'Simon';");
+            server.handleCommand("INSERT INTO marks VALUES ('Chris', 20, 'C', 'no');");
+            assertTrue(database.finishRewrite(rewrite));
+            manager.saveDatabase();
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get("marks");
+            assertEquals(1, metadata.getSchemaChanges().size());
+            assertEquals("pass", metadata.getSchemaChanges().get(0).getAttribute());
+            String header = Files.readAllLines(Paths.get(database.getTableFilePath("marks"))).get(0);
+            assertEquals(List.of("id", "name", "mark", "grade"), List.of(header.replace(":dict", "").split("\t")));
+
+            server.handleCommand("CREATE DATABASE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + ";");
+            String rows = server.handleCommand("SELECT name, pass FROM marks WHERE pass == 1;");
+            assertTrue(rows.contains("Simon") && !rows.contains("Sion"), rows);
+            rows = server.handleCommand("SELECT * FROM marks WHERE name == 'Chris';");
+            assertTrue(rows.contains("20") && rows.contains("C") && rows.contains("no"), rows);
+
+            while (manager.compact()) { }
+            assertTrue(manager.getMetadata().getTables().get("marks").getSchemaChanges().isEmpty());
+            header = Files.readAllLines(Paths.get(manager.getDatabase().getTableFilePath("marks"))).get(0);
+            assertEquals(List.of("id", "name", "mark", "grade", "pass"), List.of(header.replace(":dict", "").split("\t")));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package edu.uob.database;
+
+import edu.uob.utils.Utils.CaseInsensitiveArrayList;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableStatisticsTests {
+    private static Table table(int rows) {
+        CaseInsensitiveArrayList<String> attributes = new CaseInsensitiveArrayList<>(List.of("id", "Name", "mark"));
+        Table table = new Table("marks", "id", 1, attributes);
+        for (int i = 1; i <= rows; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", "name" + (i % 10));
+            record.put("mark", i % 5 == 0 ? "NULL" : String.valueOf(i));
+            table.addRecord(record);
+        }
+        return table;
+    }
+
+    @Test
+    public void testColumnStatistics() {
+        TableStatistics statistics = TableStatistics.compute(table(100));
+        assertEquals(100, statistics.getRowCount());
+        TableStatistics.ColumnStatistics name = statistics.column("NAME");
+        assertEquals(0, name.getNullCount());
+        assertEquals(10, name.getDistinctCount());
+        assertNull(name.min());
+        TableStatistics.ColumnStatistics mark = statistics.column("mark");
+        assertEquals(20, mark.getNullCount());
+        assertEquals(80, mark.getNumericCount());
+        assertEquals(1.0, mark.min());
+        assertEquals(99.0, mark.max());
+        assertEquals(0.5, mark.fractionBelow(50), 0.05);
+        assertEquals(0, mark.fractionBelow(-1));
+        assertEquals(1, mark.fractionBelow(1000));
+    }
+
+    @Test
+    public void testDistinctEstimateForManyValues() {
+        TableStatistics.ColumnStatistics id = TableStatistics.compute(table(20000)).column("id");
+        assertEquals(20000, id.getDistinctCount(), 20000 * 0.1);
+    }
+}
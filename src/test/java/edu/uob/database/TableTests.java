@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -76,6 +77,25 @@ public class TableTests {
         }
     }
 
+    @Test
+    public void testLoadColumns() throws IOException {
+        manager.useDatabase("users");
+        Table table = new Table(manager.getMetadata().getTables().get("users"));
+        table.loadTable(dbPath + "users/users.tab", List.of("NAME"));
+        assertTrue(table.isLoaded(List.of("id", "name")));
+        assertFalse(table.isLoaded(List.of("email")));
+        assertFalse(table.isLoaded(null));
+        assertEquals(Set.of("id", "name"), table.getRecords().get(1).keySet());
+
+        // Loading the remaining attributes fills them into the same records:
+        HashMap<String, String> record = table.getRecords().get(1);
+        table.loadTable(dbPath + "users/users.tab", null);
+        assertTrue(table.isLoaded(null));
+        assertSame(record, table.getRecords().get(1));
+        assertEquals("bob@bob.net", record.get("email"));
+        assertEquals(3, table.getRecords().size());
+    }
+
     @Test
     public void testAddRecord() {
         Table table = null;
@@ -206,8 +226,8 @@ public class TableTests {
             fail("Failed to load table: " + e.getMessage());
         }
 
-        HashMap<Integer, HashMap<String, String>> originalRecords = table.getRecords();
-        HashMap<Integer, HashMap<String, String>> loadedRecords = loadedTable.getRecords();
+        RecordStore originalRecords = table.getRecords();
+        RecordStore loadedRecords = loadedTable.getRecords();
         assertEquals(originalRecords.size(), loadedRecords.size());
 
         for (Integer id : originalRecords.keySet()) {
@@ -254,7 +274,7 @@ public class TableTests {
         assertTrue(updatedAttributes.contains(newAttribute), "New attribute should be present in the list of attributes.");
 
         // Check if the new attribute has been added to existing records with default values
-        HashMap<Integer, HashMap<String, String>> records = table.getRecords();
+        RecordStore records = table.getRecords();
         for (HashMap<String, String> record : records.values()) {
             assertTrue(record.containsKey(newAttribute), "New attribute should be present in all records with default value.");
             assertEquals("", record.get(newAttribute), "Default value of new attribute should be empty string.");
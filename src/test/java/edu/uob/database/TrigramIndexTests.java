@@ -0,0 +1,104 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import edu.uob.utils.Utils.CaseInsensitiveArrayList;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTests {
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(8);
+        for (int i = 0; i < length; i++) word.append("abcAB".charAt(random.nextInt(5)));
+        return word.toString();
+    }
+    // Every record matching the pattern is a candidate:
+    private static void assertCandidatesCover(Table table, String pattern) {
+        HashSet<Integer> candidates = new HashSet<>();
+        for (int id : table.getTrigramIndex("name").candidates(pattern)) candidates.add(id);
+        for (HashMap.Entry<Integer, HashMap<String, String>> record : table.getRecords().entrySet()) {
+            if (record.getValue().get("name").toLowerCase().contains(pattern.toLowerCase())) {
+                assertTrue(candidates.contains(record.getKey()), pattern + " in " + record.getValue().get("name"));
+            }
+        }
+    }
+
+    @Test
+    public void testCandidatesKeptUpToDate() {
+        Random random = new Random(42);
+        Table table = new Table("marks", "id", 1, new CaseInsensitiveArrayList<>(List.of("id", "name")));
+        for (int i = 0; i < 500; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", randomWord(random));
+            table.addRecord(record);
+        }
+        table.createTrigramIndex("NAME");
+        assertThrows(RuntimeException.class, () -> table.createTrigramIndex("name"));
+        for (int i = 0; i < 300; i++) {
+            int id = 1 + random.nextInt(500);
+            if (!table.getRecords().containsKey(id)) continue;
+            if (i % 3 == 0) {
+                table.deleteRecords(new HashSet<>(List.of(id)));
+            } else {
+                HashMap<String, String> change = new HashMap<>();
+                change.put("name", randomWord(random));
+                table.updateRecord(id, change);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("name", randomWord(random));
+            table.addRecord(record);
+        }
+        for (String pattern : new String[] {"abc", "bca", "AAb", "cccc", "abcab", "xyz"}) assertCandidatesCover(table, pattern);
+        assertEquals(0, table.getTrigramIndex("name").candidates("xyz").length);
+        table.dropAttribute("name");
+        assertNull(table.getTrigramIndex("name"));
+    }
+
+    @Test
+    public void testLikeUsesIndex() {
+        DBServer server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE people (name, mark);");
+        for (int i = 0; i < 100; i++) server.handleCommand("INSERT INTO people VALUES ('Person" + i + "', " + i + ");");
+        server.handleCommand("INSERT INTO people VALUES ('Simon Lock', 65);");
+        String query = "SELECT name FROM people WHERE name LIKE 'mon lo';";
+        String before = server.handleCommand(query);
+        assertTrue(server.handleCommand("EXPLAIN " + query).contains("SeqScan"));
+
+        assertTrue(server.handleCommand("CREATE INDEX ON people (name) USING TRIGRAM;").contains("[OK]"));
+        assertEquals(before, server.handleCommand(query));
+        String explain = server.handleCommand("EXPLAIN ANALYZE " + query);
+        assertTrue(explain.contains("TrigramScan: people (name LIKE mon lo)"));
+        assertTrue(explain.contains("actual rows=1"));
+        // Too short to narrow down, and too unselective to be worth it:
+        assertTrue(server.handleCommand("EXPLAIN SELECT name FROM people WHERE name LIKE 'on';").contains("SeqScan"));
+        assertTrue(server.handleCommand("EXPLAIN SELECT name FROM people WHERE name LIKE 'person';").contains("SeqScan"));
+
+        server.handleCommand("UPDATE people SET name = 'Simon Lockwood' WHERE mark == 65;");
+        server.handleCommand("DELETE FROM people WHERE name == 'Person7';");
+        assertTrue(server.handleCommand(query).contains("Simon Lockwood"));
+        assertTrue(server.handleCommand("SELECT name FROM people WHERE name LIKE 'son7';").contains("Person77"));
+        assertFalse(server.handleCommand("SELECT name FROM people WHERE name LIKE 'son7' AND mark == 7;").contains("Person7"));
+
+        // The index is declared in the metadata and rebuilt when the table is next loaded:
+        server.handleCommand("USE " + randomName + ";");
+        assertTrue(server.handleCommand("EXPLAIN " + query).contains("TrigramScan"));
+        assertTrue(server.handleCommand("CREATE INDEX ON people (name) USING TRIGRAM;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("CREATE INDEX ON people (nosuch) USING TRIGRAM;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("CREATE INDEX ON people (mark) USING HASH;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("DROP INDEX ON people (name);").contains("[OK]"));
+        assertTrue(server.handleCommand("DROP INDEX ON people (name);").contains("[ERROR]"));
+        assertTrue(server.handleCommand("EXPLAIN " + query).contains("SeqScan"));
+    }
+}
@@ -0,0 +1,144 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import edu.uob.planner.PlanNode;
+import edu.uob.planner.Row;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VacuumTests {
+    private DBServer server;
+    private DBManager manager;
+    private String databaseName;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        databaseName = "";
+        for (int i = 0; i < 10; i++) databaseName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + databaseName + ";");
+        server.handleCommand("USE " + databaseName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark);");
+        manager = DBManager.getInstance(Paths.get("databases").toAbsolutePath().toString());
+    }
+    private Path file(String extension) {
+        return Paths.get(manager.getDatabase().getTableFilePath("marks").replace(".tab", extension));
+    }
+
+    @Test
+    public void testChangesLoggedNotRewritten() throws IOException {
+        // Holding the lock keeps the background compactor away:
+        synchronized (manager) {
+            server.handleCommand("INSERT INTO marks VALUES ('Simon', 65);");
+            server.handleCommand("INSERT INTO marks VALUES ('Sion', 55);");
+            server.handleCommand("INSERT INTO marks VALUES ('Rob', 35);");
+            byte[] before = Files.readAllBytes(file(".tab"));
+            server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Simon';");
+            server.handleCommand("DELETE FROM marks WHERE name == 'Sion';");
+            assertArrayEquals(before, Files.readAllBytes(file(".tab")));
+            List<String> log = Files.readAllLines(file(".log"));
+            assertEquals(5, log.size());
+            assertTrue(log.get(3).startsWith("+0\tid=1\t"), log.get(3));
+            assertEquals("-2", log.get(4));
+
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get("marks");
+            assertEquals(5, metadata.getFileRows());
+            assertEquals(3, metadata.getDeadRows());
+            assertEquals(5, metadata.getLogRows());
+
+            // Read back cold, and streamed with the logged rows merged in by id:
+            server.handleCommand("CREATE DATABASE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + ";");
+            String rows = server.handleCommand("SELECT * FROM marks;");
+            assertTrue(rows.contains("70") && rows.contains("Rob") && !rows.contains("Sion") && !rows.contains("65"), rows);
+            PlanNode scan = new PlanNode.FileScan("marks", manager.getDatabase().getTableFilePath("marks"),
+                    metadata.getAttributes(), null, null);
+            ArrayList<Integer> ids = new ArrayList<>();
+            for (Row row = scan.next(); row != null; row = scan.next()) ids.add(row.getId());
+            assertEquals(List.of(1, 3), ids);
+        }
+    }
+
+    @Test
+    public void testVacuumFoldsLogIntoFile() throws IOException {
+        synchronized (manager) {
+            server.handleCommand("INSERT INTO marks VALUES ('Simon', 65);");
+            server.handleCommand("INSERT INTO marks VALUES ('Sion', 55);");
+            server.handleCommand("DELETE FROM marks WHERE name == 'Sion';");
+            String response = server.handleCommand("VACUUM marks;");
+            assertTrue(response.contains("dead_rows: 2") && response.contains("reclaimed_bytes"), response);
+            assertFalse(Files.exists(file(".log")));
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get("marks");
+            assertEquals(1, metadata.getFileRows());
+            assertEquals(0, metadata.getDeadRows());
+            assertEquals(1, metadata.getVacuums());
+            assertTrue(server.handleCommand("SHOW STATS;").matches("(?s).*\\| marks +\\| 1 +\\| 0 +\\| 0 +\\| 1 +\\| \\d+\\s.*"));
+            assertTrue(server.handleCommand("SELECT * FROM marks;").contains("Simon"));
+            assertTrue(server.handleCommand("VACUUM nosuch;").contains("[ERROR]"));
+
+            // Enough dead rows for the compactor to vacuum unasked:
+            for (int i = 0; i < 1000; i++) server.handleCommand("INSERT INTO marks VALUES ('Person" + i + "', " + i + ");");
+            server.handleCommand("UPDATE marks SET mark = 1 WHERE mark >= 0;");
+            assertTrue(metadata.getDeadRows() >= 1000);
+            assertTrue(manager.compact());
+            assertEquals(2, metadata.getVacuums());
+            assertEquals(1001, metadata.getFileRows());
+            assertFalse(manager.compact());
+        }
+    }
+
+    @Test
+    public void testRewriteCarriesChangesMadeMeanwhile() throws IOException {
+        synchronized (manager) {
+            for (int i = 0; i < 10; i++) server.handleCommand("INSERT INTO marks VALUES ('Person" + i + "', " + i + ");");
+            server.handleCommand("UPDATE marks SET mark = 50 WHERE mark < 5;");
+            Database database = manager.getDatabase();
+            String before = database.getTableFilePath("marks");
+            // As the compactor does it: only the first and last steps need the lock, commands go on in between.
+            Database.Rewrite rewrite = database.startRewrite("marks");
+            rewrite.run();
+            server.handleCommand("UPDATE marks SET mark = 99 WHERE name == 'Person7';");
+            server.handleCommand("DELETE FROM marks WHERE name == 'Person8';");
+            server.handleCommand("INSERT INTO marks VALUES ('Late', 7);");
+            assertEquals(before, database.getTableFilePath("marks"));
+            assertTrue(database.finishRewrite(rewrite));
+            manager.saveDatabase();
+            assertNotEquals(before, database.getTableFilePath("marks"));
+            assertFalse(Files.exists(Paths.get(before)));
+            assertEquals(3, Files.readAllLines(file(".log")).size());
+            DBMetadata.Table metadata = manager.getMetadata().getTables().get("marks");
+            assertEquals(13, metadata.getFileRows());
+            assertEquals(3, metadata.getDeadRows());
+
+            server.handleCommand("CREATE DATABASE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + "x;");
+            server.handleCommand("USE " + databaseName + ";");
+            String rows = server.handleCommand("SELECT * FROM marks;");
+            assertTrue(rows.contains("99") && rows.contains("Late") && !rows.contains("Person8"), rows);
+            assertEquals(5, rows.split("50", -1).length - 1, rows);
+
+            // Overtaken by another rewrite of the table, a rewrite is dropped along with its files:
+            database = manager.getDatabase();
+            rewrite = database.startRewrite("marks");
+            rewrite.run();
+            server.handleCommand("VACUUM marks;");
+            String current = database.getTableFilePath("marks");
+            assertFalse(database.finishRewrite(rewrite));
+            assertEquals(current, database.getTableFilePath("marks"));
+            try (Stream<Path> files = Files.list(Paths.get("databases", databaseName))) {
+                assertEquals(1, files.filter(path -> path.toString().endsWith(".tab")).count());
+            }
+        }
+    }
+}
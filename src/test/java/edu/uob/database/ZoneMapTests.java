@@ -0,0 +1,136 @@
+package edu.uob.database;
+
+import edu.uob.DBServer;
+import edu.uob.parser.Condition;
+import edu.uob.planner.PlanNode;
+import edu.uob.planner.Predicate;
+import edu.uob.planner.Row;
+import edu.uob.utils.Utils.CaseInsensitiveArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZoneMapTests {
+    private static final int ROWS = 5000;
+
+    // Timestamps rising with the id and one batch name per thousand rows:
+    private static Table table() {
+        Table table = new Table("events", "id", 1, new CaseInsensitiveArrayList<>(List.of("id", "ts", "batch")));
+        for (int i = 0; i < ROWS; i++) {
+            HashMap<String, String> record = new HashMap<>();
+            record.put("ts", Integer.toString(100000 + i * 10));
+            record.put("batch", "batch" + i / 1000);
+            table.addRecord(record);
+        }
+        return table;
+    }
+    private static Predicate predicate(Table table, String attribute, Condition.Comparator comparator, String value) {
+        return Predicate.compile(new Condition.AttributeValueComparison(attribute, comparator, value), table, null);
+    }
+    private static int matchingBlocks(ZoneMap zoneMap, Predicate predicate) {
+        int blocks = 0;
+        for (ZoneMap.Block block : zoneMap.getBlocks()) if (predicate.mightMatch(block)) blocks++;
+        return blocks;
+    }
+
+    @Test
+    public void testBlocksRuledOut() {
+        Table table = table();
+        ZoneMap zoneMap = table.getZoneMap();
+        assertEquals(5, zoneMap.getBlocks().size());
+        assertEquals(1, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.GREATER_THAN, "148000")));
+        assertEquals(2, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.LESS_THAN_OR_EQUAL, "110240")));
+        assertEquals(1, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.EQUAL, "100000.0")));
+        assertEquals(0, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.LESS_THAN, "abc")));
+        assertEquals(5, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.NOT_EQUAL, "100000")));
+        assertEquals(5, matchingBlocks(zoneMap, predicate(table, "batch", Condition.Comparator.LIKE, "batch2")));
+        // Blocks of 1024 ids: batch2 spans ids 2001-3000, so blocks 1 and 2, give or take a false positive:
+        int batch = matchingBlocks(zoneMap, predicate(table, "batch", Condition.Comparator.EQUAL, "BATCH2"));
+        assertTrue(batch >= 2 && batch <= 3);
+        assertTrue(matchingBlocks(zoneMap, predicate(table, "batch", Condition.Comparator.EQUAL, "nosuch")) <= 1);
+        assertEquals(0, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.EQUAL, "1")));
+
+        // Writes widen the summaries of their block:
+        HashMap<String, String> change = new HashMap<>();
+        change.put("ts", "1");
+        table.updateRecord(4500, change);
+        assertEquals(1, matchingBlocks(zoneMap, predicate(table, "ts", Condition.Comparator.LESS_THAN, "50")));
+        HashMap<String, String> record = new HashMap<>();
+        record.put("ts", "999999");
+        record.put("batch", "late");
+        table.addRecord(record);
+        assertEquals(1, matchingBlocks(zoneMap, predicate(table, "batch", Condition.Comparator.EQUAL, "late")));
+        table.addAttribute("note");
+        assertEquals(5, matchingBlocks(zoneMap, predicate(table, "note", Condition.Comparator.EQUAL, "NULL")));
+        assertEquals(0, matchingBlocks(zoneMap, predicate(table, "note", Condition.Comparator.GREATER_THAN, "0")));
+    }
+
+    @Test
+    public void testFileScanSkipsBlocks(@TempDir File directory) throws IOException {
+        Table table = table();
+        String filePath = new File(directory, "events.tab").getPath();
+        table.saveTable(filePath);
+        assertTrue(new File(directory, "events.zones").exists());
+        ZoneMap stored = ZoneMap.read(ZoneMap.zoneFilePath(filePath), new File(filePath).length());
+        assertNotNull(stored);
+        assertEquals(5, stored.getBlocks().size());
+
+        Predicate late = predicate(table, "ts", Condition.Comparator.GREATER_THAN_OR_EQUAL, "149990");
+        PlanNode scan = new PlanNode.FileScan("events", filePath, table.getAttributes(), null, late);
+        Row row = scan.next();
+        assertEquals(5000, row.getId());
+        assertEquals("batch4", row.get(2));
+        assertNull(scan.next());
+        assertTrue(scan.describe().contains("4 blocks skipped"));
+
+        Predicate batch = Predicate.compile(new Condition.Expression(
+                new Condition.AttributeValueComparison("batch", Condition.Comparator.EQUAL, "batch1"),
+                Condition.BoolOperator.OR,
+                new Condition.AttributeValueComparison("ts", Condition.Comparator.LESS_THAN, "100020")), table, null);
+        scan = new PlanNode.FileScan("events", filePath, table.getAttributes(), null, batch);
+        int rows = 0;
+        for (row = scan.next(); row != null; row = scan.next()) rows++;
+        assertEquals(1002, rows);
+
+        // A file changed behind the zone map's back (batch is dictionary coded) is scanned in full:
+        try (FileWriter writer = new FileWriter(filePath, true)) { writer.write("5001\t999999\t4\n"); }
+        assertNull(ZoneMap.read(ZoneMap.zoneFilePath(filePath), new File(filePath).length()));
+        scan = new PlanNode.FileScan("events", filePath, table.getAttributes(), null, late);
+        rows = 0;
+        for (row = scan.next(); row != null; row = scan.next()) rows++;
+        assertEquals(2, rows);
+        assertFalse(scan.describe().contains("skipped"));
+    }
+
+    @Test
+    public void testPlannerScansMatchingBlocks() {
+        DBServer server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE readings (ts, level);");
+        for (int i = 0; i < 2100; i++) server.handleCommand("INSERT INTO readings VALUES (" + (1000 + i) + ", " + i % 7 + ");");
+        String query = "SELECT id FROM readings WHERE ts >= 3050 AND level == 3;";
+        String explain = server.handleCommand("EXPLAIN ANALYZE " + query);
+        assertTrue(explain.contains("ZoneScan: readings (1 of 3 blocks)"), explain);
+        String result = server.handleCommand(query);
+        // The first row at level 3 after ts 3050, and one before it:
+        assertTrue(result.contains("| 2055\n") && !result.contains("| 2048\n"));
+        assertTrue(server.handleCommand("EXPLAIN SELECT id FROM readings WHERE level == 3;").contains("SeqScan"));
+
+        server.handleCommand("UPDATE readings SET ts = 9999 WHERE id == 5;");
+        assertTrue(server.handleCommand("SELECT id FROM readings WHERE ts > 5000;").contains("| 5\n"));
+        // Reloaded from the file the summaries are rebuilt:
+        server.handleCommand("USE " + randomName + ";");
+        assertTrue(server.handleCommand("EXPLAIN " + query).contains("ZoneScan"));
+        assertEquals(result, server.handleCommand(query));
+    }
+}
@@ -0,0 +1,102 @@
+package edu.uob.interpreter;
+
+import edu.uob.DBServer;
+import edu.uob.database.DBManager;
+import edu.uob.parser.Parser;
+import edu.uob.planner.Plan;
+import edu.uob.planner.Planner;
+import edu.uob.tokenizer.Tokenizer;
+import edu.uob.utils.DBException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Chris', 20, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Dave', 45, TRUE);");
+    }
+
+    private Plan plan(String query) throws IOException {
+        return new Planner(DBManager.getInstance(null)).plan(new Parser().parse(Tokenizer.tokenize(query)));
+    }
+
+    @Test
+    public void testFetchPages() {
+        assertTrue(server.handleCommand("DECLARE page CURSOR FOR SELECT name FROM marks ORDER BY mark DESC;").contains("[OK]"));
+        String first = server.handleCommand("FETCH 2 FROM page;");
+        assertTrue(first.contains("Simon"));
+        assertTrue(first.contains("Sion"));
+        assertFalse(first.contains("Dave"));
+        String second = server.handleCommand("fetch 2 from PAGE;");
+        assertTrue(second.contains("Dave"));
+        assertTrue(second.contains("Rob"));
+        assertFalse(second.contains("Simon"));
+        assertTrue(server.handleCommand("FETCH 2 FROM page;").contains("Chris"));
+        String done = server.handleCommand("FETCH 2 FROM page;");
+        assertTrue(done.contains("[OK]"));
+        assertFalse(done.contains("Chris"));
+        assertTrue(server.handleCommand("CLOSE page;").contains("[OK]"));
+        assertTrue(server.handleCommand("FETCH 1 FROM page;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("CLOSE page;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("DECLARE bad CURSOR FOR DELETE FROM marks WHERE id == 1;").contains("[ERROR]"));
+        server.handleCommand("CREATE TABLE coursework (task, submission);");
+        server.handleCommand("INSERT INTO coursework VALUES ('OXO', 3);");
+        server.handleCommand("INSERT INTO coursework VALUES ('DB', 1);");
+        assertTrue(server.handleCommand("DECLARE j CURSOR FOR JOIN coursework AND marks ON submission AND id;").contains("[OK]"));
+        String joined = server.handleCommand("FETCH 1 FROM j;");
+        assertTrue(joined.contains("coursework.task"));
+        assertNotEquals(joined.contains("OXO"), joined.contains("DB"));
+    }
+
+    @Test
+    public void testCursorsBelongToSessions() {
+        assertTrue(server.handleCommand("DECLARE c CURSOR FOR SELECT * FROM marks;", "alice").contains("[OK]"));
+        assertTrue(server.handleCommand("FETCH 1 FROM c;", "bob").contains("[ERROR]"));
+        assertTrue(server.handleCommand("DECLARE c CURSOR FOR SELECT * FROM marks;", "bob").contains("[OK]"));
+        assertTrue(server.handleCommand("DECLARE c CURSOR FOR SELECT * FROM marks;", "bob").contains("[ERROR]"));
+        assertTrue(server.handleCommand("FETCH 5 FROM c;", "alice").contains("Chris"));
+        assertTrue(server.handleCommand("FETCH 5 FROM c;", "bob").contains("Chris"));
+    }
+
+    @Test
+    public void testChangedTableInvalidatesCursor() {
+        server.handleCommand("DECLARE c CURSOR FOR SELECT * FROM marks;");
+        assertTrue(server.handleCommand("FETCH 1 FROM c;").contains("[OK]"));
+        server.handleCommand("INSERT INTO marks VALUES ('Eve', 70, TRUE);");
+        assertTrue(server.handleCommand("FETCH 1 FROM c;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("FETCH 1 FROM c;").contains("CURSOR NOT FOUND"));
+    }
+
+    @Test
+    public void testTimeoutAndSessionCap() throws IOException {
+        Cursors cursors = new Cursors(1000, 2);
+        cursors.declare("a", "one", plan("SELECT * FROM marks;"), 0);
+        cursors.declare("a", "two", plan("SELECT * FROM marks;"), 500);
+        assertThrows(DBException.class, () -> cursors.declare("a", "three", plan("SELECT * FROM marks;"), 600));
+        cursors.declare("b", "three", plan("SELECT * FROM marks;"), 600);
+        // "one" has not been used for a second; using "two" keeps it open:
+        assertEquals(2, cursors.get("a", "two", 999).fetch(2).size());
+        assertThrows(DBException.class, () -> cursors.get("a", "one", 1000));
+        assertEquals(1, cursors.size("a"));
+        assertEquals(3, cursors.get("a", "two", 1500).fetch(10).size());
+        cursors.expire(2600);
+        assertEquals(0, cursors.size("a"));
+        assertEquals(0, cursors.size("b"));
+    }
+}
@@ -0,0 +1,120 @@
+package edu.uob.interpreter;
+
+import edu.uob.DBServer;
+import edu.uob.database.DBManager;
+import edu.uob.stats.QueryStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        server.handleCommand("CREATE TABLE coursework (task, submission);");
+        server.handleCommand("INSERT INTO coursework VALUES ('OXO', 3);");
+        server.handleCommand("RESET STATS;");
+    }
+
+    private long resultHits(String commandType) {
+        QueryStats.CommandStats stats = QueryStats.getInstance().get(commandType);
+        return stats == null ? 0 : stats.getResultCacheHits();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        // Room for four entries of this size but not five:
+        ResultCache cache = new ResultCache(4 * (128 + 2 * (1 + 40)));
+        String response = "x".repeat(40);
+        for (String key : new String[] {"a", "b", "c", "d"}) cache.put(key, response, 1);
+        assertEquals(response, cache.get("a").getResponse());
+        cache.put("e", response, 1);
+        assertEquals(4, cache.size());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("e"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        // Too large for the budget to be worth it:
+        cache.put("f", "x".repeat(1000), 1);
+        assertNull(cache.get("f"));
+        cache.clear();
+        assertEquals(0, cache.getSizeBytes());
+        assertFalse(new ResultCache(0).isEnabled());
+    }
+
+    @Test
+    public void testRepeatedSelectIsAHit() {
+        String first = server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+        assertEquals(first, server.handleCommand("SELECT  *  FROM marks WHERE mark > 50;"));
+        assertEquals(1, resultHits("SELECT"));
+        // Other tables changing leaves the entry alone:
+        server.handleCommand("INSERT INTO coursework VALUES ('DB', 1);");
+        server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+        assertEquals(2, resultHits("SELECT"));
+    }
+
+    @Test
+    public void testRepeatedExecuteIsAHit() {
+        server.handleCommand("PREPARE above AS SELECT * FROM marks WHERE mark > ?;");
+        String first = server.handleCommand("EXECUTE above (50);");
+        assertEquals(first, server.handleCommand("EXECUTE above (50);"));
+        assertEquals(1, resultHits("EXECUTE"));
+        // Other values, or the name prepared again as something else, are not the same query:
+        assertFalse(server.handleCommand("EXECUTE above (60);").contains("Sion"));
+        server.handleCommand("PREPARE above AS SELECT * FROM marks WHERE mark < ?;");
+        assertFalse(server.handleCommand("EXECUTE above (50);").contains("Simon"));
+        assertEquals(1, resultHits("EXECUTE"));
+    }
+
+    @Test
+    public void testMutationsInvalidate() {
+        String[] mutations = {
+                "INSERT INTO marks VALUES ('Chris', 60, FALSE);",
+                "UPDATE marks SET mark = 70 WHERE name == 'Rob';",
+                "DELETE FROM marks WHERE name == 'Sion';",
+                "ALTER TABLE marks ADD grade;"};
+        String before = server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+        for (String mutation : mutations) {
+            assertTrue(server.handleCommand(mutation).contains("[OK]"));
+            String after = server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+            assertNotEquals(before, after, mutation);
+            before = after;
+        }
+        assertEquals(0, resultHits("SELECT"));
+        // A dropped and recreated table starts from a new version:
+        server.handleCommand("DROP TABLE marks;");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        assertFalse(server.handleCommand("SELECT * FROM marks WHERE mark > 50;").contains("Simon"));
+    }
+
+    @Test
+    public void testJoinsAndReloads() {
+        String join = "JOIN coursework AND marks ON submission AND id;";
+        String first = server.handleCommand(join);
+        assertTrue(first.contains("Rob"));
+        assertEquals(first, server.handleCommand(join));
+        assertEquals(1, resultHits("JOIN"));
+        server.handleCommand("UPDATE marks SET name = 'Robert' WHERE name == 'Rob';");
+        assertTrue(server.handleCommand(join).contains("Robert"));
+        assertEquals(1, resultHits("JOIN"));
+
+        // Versions are saved with the metadata, so reopening the database keeps its entries valid:
+        String select = server.handleCommand("SELECT name FROM marks;");
+        server.handleCommand("USE " + DBManager.getInstance(null).getDatabaseName() + ";");
+        assertEquals(select, server.handleCommand("SELECT name FROM marks;"));
+        assertEquals(1, resultHits("SELECT"));
+    }
+}
@@ -0,0 +1,96 @@
+package edu.uob.parser;
+
+import edu.uob.DBServer;
+import edu.uob.tokenizer.Tokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedStatementTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT * FROM marks WHERE name == 'a   b';",
+                StatementCache.normalize("  SELECT   *\tFROM marks\n WHERE name == 'a   b';  "));
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsed() {
+        StatementCache cache = new StatementCache(2);
+        Parser parser = new Parser();
+        cache.put("a", parser.parse(Tokenizer.tokenize("USE a;")));
+        cache.put("b", parser.parse(Tokenizer.tokenize("USE b;")));
+        assertNotNull(cache.get("a"));
+        cache.put("c", parser.parse(Tokenizer.tokenize("USE c;")));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPreparedSelect() {
+        assertTrue(server.handleCommand("PREPARE passed AS SELECT name FROM marks WHERE mark > ? AND pass == ?;").contains("[OK]"));
+        String response = server.handleCommand("EXECUTE passed (50, TRUE);");
+        assertTrue(response.contains("Simon"));
+        assertTrue(response.contains("Sion"));
+        assertFalse(response.contains("Rob"));
+        response = server.handleCommand("EXECUTE passed (60, TRUE);");
+        assertTrue(response.contains("Simon"));
+        assertFalse(response.contains("Sion"));
+    }
+
+    @Test
+    public void testPreparedInsertAndUpdate() {
+        server.handleCommand("PREPARE addmark AS INSERT INTO marks VALUES (?, ?, FALSE);");
+        assertTrue(server.handleCommand("EXECUTE addmark ('Chris', 20);").contains("[OK]"));
+        server.handleCommand("PREPARE fix AS UPDATE marks SET mark = ?, pass = ? WHERE name == ?;");
+        assertTrue(server.handleCommand("EXECUTE fix (45, TRUE, 'Chris');").contains("[OK]"));
+        String response = server.handleCommand("SELECT * FROM marks WHERE name == 'Chris';");
+        assertTrue(response.contains("45"));
+        assertTrue(response.contains("TRUE"));
+    }
+
+    @Test
+    public void testPlaceholderErrors() {
+        assertTrue(server.handleCommand("SELECT * FROM marks WHERE mark > ?;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("EXECUTE missing (1);").contains("[ERROR]"));
+        server.handleCommand("PREPARE one AS DELETE FROM marks WHERE name == ?;");
+        assertTrue(server.handleCommand("EXECUTE one;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("EXECUTE one ('Rob', 'Sion');").contains("[ERROR]"));
+        assertTrue(server.handleCommand("EXECUTE one ('Rob');").contains("[OK]"));
+        assertFalse(server.handleCommand("SELECT * FROM marks;").contains("Rob"));
+    }
+
+    @Test
+    public void testStatementsBelongToTheirSession() {
+        server.handleCommand("PREPARE q AS SELECT name FROM marks WHERE mark > ?;", "a");
+        server.handleCommand("PREPARE q AS DELETE FROM marks WHERE name == ?;", "b");
+        // Neither replaces the other's q, and a third session has none:
+        String response = server.handleCommand("EXECUTE q (50);", "a");
+        assertTrue(response.contains("Simon") && response.contains("Sion"), response);
+        assertTrue(server.handleCommand("EXECUTE q ('Rob');", "b").contains("[OK]"));
+        assertTrue(server.handleCommand("EXECUTE q (50);", "c").contains("[ERROR]"));
+        assertFalse(server.handleCommand("SELECT * FROM marks;").contains("Rob"));
+        // Closing a session drops its statements only:
+        server.closeSession("b");
+        assertTrue(server.handleCommand("EXECUTE q ('Sion');", "b").contains("[ERROR]"));
+        assertTrue(server.handleCommand("EXECUTE q (60);", "a").contains("Simon"));
+    }
+}
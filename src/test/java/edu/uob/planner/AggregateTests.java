@@ -0,0 +1,95 @@
+package edu.uob.planner;
+
+import edu.uob.DBServer;
+import edu.uob.Utils;
+import edu.uob.parser.Aggregate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregateTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Chris', 20, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Dave', NULL, FALSE);");
+    }
+
+
+    @Test
+    public void testAggregatesWithoutGroupBy() {
+        String response = server.handleCommand("SELECT COUNT(*), count(mark), SUM(mark), AVG(mark), MIN(name), MAX(mark) FROM marks;");
+        assertTrue(response.contains("[OK]"));
+        assertTrue(response.contains("| COUNT(*)        | COUNT(mark)     | SUM(mark)       | AVG(mark)       | MIN(name)       | MAX(mark)"));
+        assertTrue(response.contains("| 5               | 4               | 175             | 43.75           | Chris           | 65"));
+        // An empty input still gives one row:
+        response = server.handleCommand("SELECT COUNT(*), SUM(mark) FROM marks WHERE mark > 100;");
+        assertTrue(response.contains("| 0               | NULL"));
+    }
+
+    @Test
+    public void testGroupBy() {
+        String response = server.handleCommand("SELECT pass, COUNT(*), AVG(mark) FROM marks WHERE name != 'Simon' GROUP BY pass;");
+        assertTrue(response.contains("| TRUE            | 1               | 55"));
+        assertTrue(response.contains("| FALSE           | 3               | 27.5"));
+        assertTrue(server.handleCommand("EXPLAIN SELECT pass, COUNT(*) FROM marks GROUP BY pass;")
+                .contains("HashAggregate: COUNT(*) GROUP BY pass"));
+        assertTrue(server.handleCommand("SELECT name, COUNT(*) FROM marks GROUP BY pass;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("SELECT * FROM marks GROUP BY pass;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("SELECT COUNT(nosuch) FROM marks;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("SELECT MEDIAN(mark) FROM marks;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("SELECT SUM(*) FROM marks;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testParallelAggregationMatchesSerial() {
+        // bucket, value:
+        ArrayList<String[]> input = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            input.add(new String[] {String.valueOf(i % 7), i % 10 == 0 ? "NULL" : (i % 3 == 0 ? i + ".5" : String.valueOf(i))});
+        }
+        ArrayList<Aggregate> aggregates = new ArrayList<>(List.of(new Aggregate(Aggregate.Function.COUNT, null),
+                new Aggregate(Aggregate.Function.COUNT, "value"), new Aggregate(Aggregate.Function.SUM, "value"),
+                new Aggregate(Aggregate.Function.MIN, "value"), new Aggregate(Aggregate.Function.MAX, "value")));
+        PlanNode aggregate = new PlanNode.HashAggregate(Utils.rows(input), new ArrayList<>(List.of("bucket")), new int[] {0},
+                aggregates, new int[] {-1, 1, 1, 1, 1});
+        // bucket, then each aggregate in turn:
+        HashMap<String, String[]> groups = new HashMap<>();
+        Row row;
+        while ((row = aggregate.next()) != null) groups.put(row.get(0), row.getValues());
+        assertEquals(7, groups.size());
+        for (int bucket = 0; bucket < 7; bucket++) {
+            PlanNode.Accumulator count = new PlanNode.Accumulator(Aggregate.Function.COUNT);
+            PlanNode.Accumulator sum = new PlanNode.Accumulator(Aggregate.Function.SUM);
+            PlanNode.Accumulator min = new PlanNode.Accumulator(Aggregate.Function.MIN);
+            PlanNode.Accumulator max = new PlanNode.Accumulator(Aggregate.Function.MAX);
+            for (String[] values : input) {
+                if (!values[0].equals(String.valueOf(bucket))) continue;
+                count.add(values[1]);
+                sum.add(values[1]);
+                min.add(values[1]);
+                max.add(values[1]);
+            }
+            String[] group = groups.get(String.valueOf(bucket));
+            assertEquals(count.result(), group[2]);
+            assertEquals(Double.parseDouble(sum.result()), Double.parseDouble(group[3]), 1e-3);
+            assertEquals(min.result(), group[4]);
+            assertEquals(max.result(), group[5]);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.uob.planner;
+
+import edu.uob.DBServer;
+import edu.uob.database.DBManager;
+import edu.uob.parser.Parser;
+import edu.uob.tokenizer.Tokenizer;
+import edu.uob.utils.DBException;
+import edu.uob.utils.ErrorType;
+import edu.uob.utils.Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinderTests {
+    private DBServer server;
+    private Binder binder;
+    private final Parser parser = new Parser();
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (Name, Mark, pass);");
+        server.handleCommand("CREATE TABLE courses (title, name);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        binder = new Binder(DBManager.getInstance(Paths.get("databases").toAbsolutePath().toString()));
+    }
+    private Binder.Binding bind(String command) throws Exception {
+        return binder.bind(parser.parse(Tokenizer.tokenize(command)));
+    }
+    private ErrorType bindError(String command) {
+        return assertThrows(DBException.class, () -> bind(command)).getErrorType();
+    }
+
+    @Test
+    public void testSelectResolvesKeys() throws Exception {
+        Binder.Binding binding = bind("SELECT NAME, mark FROM marks WHERE PASS == TRUE ORDER BY Mark DESC;");
+        assertEquals(List.of("NAME", "mark"), binding.getHeader());
+        assertEquals(List.of("name", "mark", "pass"), new ArrayList<>(binding.getColumns()));
+        assertArrayEquals(new int[] {1, 2}, binding.getHeaderOrdinals());
+        assertArrayEquals(new int[] {2}, binding.getSortOrdinals());
+        assertNull(bind("SELECT * FROM marks WHERE mark > 1;").getColumns());
+        Binder.Binding join = bind("JOIN marks AND courses ON NAME AND Name;");
+        assertEquals(1, join.getJoinOrdinal(0));
+        assertEquals(2, join.getJoinOrdinal(1));
+        assertNull(bind("SHOW STATS;"));
+    }
+
+    @Test
+    public void testErrorsFoundBeforeExecution() {
+        assertEquals(ErrorType.TABLE_NOT_FOUND_EXCEPTION, bindError("SELECT * FROM nosuch;"));
+        assertEquals(ErrorType.INVALID_ATTRIBUTE_EXCEPTION, bindError("SELECT nosuch FROM marks;"));
+        assertEquals(ErrorType.INVALID_ATTRIBUTE_EXCEPTION, bindError("DELETE FROM marks WHERE nosuch == 1;"));
+        assertEquals(ErrorType.INVALID_ATTRIBUTE_EXCEPTION, bindError("EXPLAIN SELECT * FROM marks ORDER BY nosuch;"));
+        assertEquals(ErrorType.INVALID_ATTRIBUTE_EXCEPTION, bindError("JOIN marks AND courses ON name AND nosuch;"));
+        assertEquals(ErrorType.GROUP_BY_EXCEPTION, bindError("SELECT name, COUNT(*) FROM marks GROUP BY pass;"));
+        assertEquals(ErrorType.INVALID_VALUE_EXCEPTION, bindError("INSERT INTO marks VALUES ('Sion', 55);"));
+        // Assignments are only checked against a matching row:
+        assertDoesNotThrow(() -> bind("UPDATE marks SET nosuch = 1 WHERE mark > 100;"));
+        // The binding follows the schema, not the statement cache:
+        assertTrue(server.handleCommand("SELECT mark FROM marks;").contains("| 65"));
+        server.handleCommand("ALTER TABLE marks DROP mark;");
+        assertTrue(server.handleCommand("SELECT mark FROM marks;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testCaseInsensitiveList() {
+        Utils.CaseInsensitiveArrayList<String> attributes = new Utils.CaseInsensitiveArrayList<>(List.of("id", "Name", "MARK"));
+        assertEquals(1, attributes.indexOf("name"));
+        assertEquals(2, attributes.indexOf("Mark"));
+        assertEquals(-1, attributes.indexOf("pass"));
+        assertArrayEquals(new String[] {"id", "name", "mark"}, attributes.keys());
+        assertTrue(attributes.remove("NAME"));
+        assertFalse(attributes.contains("name"));
+        assertEquals(1, attributes.indexOf("mark"));
+        assertArrayEquals(new String[] {"id", "mark"}, attributes.keys());
+    }
+}
@@ -0,0 +1,177 @@
+package edu.uob.planner;
+
+import edu.uob.DBServer;
+import edu.uob.Utils;
+import edu.uob.database.DBManager;
+import edu.uob.parser.Parser;
+import edu.uob.stats.QueryTrace;
+import edu.uob.tokenizer.Tokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderLimitTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Chris', 20, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Dave', NULL, FALSE);");
+    }
+
+    private static void assertInOrder(String response, String... values) {
+        for (int i = 1; i < values.length; i++) {
+            assertTrue(response.indexOf(values[i - 1]) < response.indexOf(values[i]), values[i - 1] + " before " + values[i]);
+        }
+    }
+
+    @Test
+    public void testOrderBy() {
+        String response = server.handleCommand("SELECT name FROM marks ORDER BY mark DESC;");
+        assertTrue(response.contains("[OK]"));
+        // NULL sorts last ascending, so first descending:
+        assertInOrder(response, "Dave", "Simon", "Sion", "Rob", "Chris");
+        response = server.handleCommand("SELECT name FROM marks ORDER BY pass, mark ASC;");
+        assertInOrder(response, "Chris", "Rob", "Dave", "Sion", "Simon");
+        assertTrue(server.handleCommand("EXPLAIN SELECT name FROM marks ORDER BY pass, mark;").contains("Sort: pass, mark"));
+        assertTrue(server.handleCommand("SELECT name FROM marks ORDER BY nosuch;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testLimitAndOffset() {
+        String response = server.handleCommand("SELECT name FROM marks WHERE name != 'Dave' ORDER BY mark LIMIT 2 OFFSET 1;");
+        assertInOrder(response, "Rob", "Sion");
+        assertFalse(response.contains("Chris"));
+        assertFalse(response.contains("Simon"));
+        String explain = server.handleCommand("EXPLAIN SELECT name FROM marks ORDER BY mark LIMIT 2 OFFSET 1;");
+        assertTrue(explain.contains("Limit: 2 OFFSET 1"));
+        assertTrue(explain.contains("TopK: mark (k = 3)"));
+        assertFalse(explain.contains("Sort"));
+        // Without ORDER BY the scan stops as soon as the limit is met:
+        explain = server.handleCommand("EXPLAIN ANALYZE SELECT * FROM marks LIMIT 2;");
+        assertTrue(explain.contains("SeqScan: marks  (estimated rows=5, actual rows=2"));
+        assertTrue(server.handleCommand("SELECT * FROM marks LIMIT 0;").contains("[OK]"));
+        assertTrue(server.handleCommand("SELECT * FROM marks LIMIT -1;").contains("[ERROR]"));
+        assertTrue(server.handleCommand("SELECT * FROM marks LIMIT 1 OFFSET;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testOrderByIdWalksPrimaryKey() {
+        String explain = server.handleCommand("EXPLAIN ANALYZE SELECT name FROM marks ORDER BY id DESC LIMIT 2;");
+        assertTrue(explain.contains("IndexRangeScan: marks (1 <= id <= 5, descending)  (estimated rows=5, actual rows=2"));
+        assertFalse(explain.contains("Sort"));
+        assertFalse(explain.contains("TopK"));
+        String response = server.handleCommand("SELECT name FROM marks WHERE id < 4 ORDER BY id DESC;");
+        assertInOrder(response, "Rob", "Sion", "Simon");
+        assertTrue(server.handleCommand("EXPLAIN SELECT name FROM marks WHERE id < 4 ORDER BY id;")
+                .contains("IndexRangeScan: marks (1 <= id <= 3)"));
+    }
+
+    @Test
+    public void testOrderAggregatesAndJoins() {
+        String response = server.handleCommand("SELECT pass, COUNT(*) FROM marks GROUP BY pass ORDER BY COUNT(*) DESC LIMIT 1;");
+        assertTrue(response.contains("| FALSE           | 3"));
+        assertFalse(response.contains("TRUE"));
+        assertTrue(server.handleCommand("SELECT pass, COUNT(*) FROM marks GROUP BY pass ORDER BY name;").contains("[ERROR]"));
+
+        server.handleCommand("CREATE TABLE coursework (task, submission);");
+        server.handleCommand("INSERT INTO coursework VALUES ('OXO', 3);");
+        server.handleCommand("INSERT INTO coursework VALUES ('DB', 1);");
+        server.handleCommand("INSERT INTO coursework VALUES ('STAG', 2);");
+        response = server.handleCommand("JOIN coursework AND marks ON submission AND id ORDER BY mark DESC LIMIT 2;");
+        assertInOrder(response, "Simon", "Sion");
+        assertFalse(response.contains("Rob"));
+        assertInOrder(server.handleCommand("JOIN coursework AND marks ON submission AND id ORDER BY task;"), "DB", "OXO", "STAG");
+        // "id" is the join result's own numbering rather than either table's:
+        assertTrue(server.handleCommand("JOIN coursework AND marks ON submission AND id ORDER BY id DESC;").contains("[OK]"));
+        assertTrue(server.handleCommand("JOIN coursework AND marks ON submission AND id ORDER BY nosuch;").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testTopKMatchesSort() {
+        Random random = new Random(38);
+        // mark, order:
+        ArrayList<String[]> input = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) input.add(new String[] {String.valueOf(random.nextInt(50)), String.valueOf(i)});
+        Comparator<Row> byMark = Comparator.comparingInt(row -> Integer.parseInt(row.get(0)));
+        for (int k : new int[] {0, 1, 7, 100, 5000}) {
+            PlanNode sort = new PlanNode.Sort(Utils.rows(input), byMark, "mark");
+            PlanNode topK = new PlanNode.TopK(Utils.rows(input), byMark, k, "mark");
+            for (int i = 0; i < Math.min(k, input.size()); i++) {
+                // Same rows in the same order, ties included:
+                assertEquals(sort.next().get(1), topK.next().get(1));
+            }
+            assertNull(topK.next());
+        }
+    }
+
+    @Test
+    public void testSortSpillsToDisk(@TempDir File spillDirectory) {
+        Random random = new Random(39);
+        // mark, order, note:
+        ArrayList<String[]> input = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            input.add(new String[] {String.valueOf(random.nextInt(50)), String.valueOf(i), i % 7 == 0 ? null : "row " + i});
+        }
+        Comparator<Row> byMark = Comparator.comparingInt(row -> Integer.parseInt(row.get(0)));
+        PlanNode inMemory = new PlanNode.Sort(Utils.rows(input), byMark, "mark");
+        // A budget of a few rows per run needs more runs than one merge can take:
+        PlanNode external = new PlanNode.Sort(Utils.rows(input), byMark, "mark", spillDirectory, 3000);
+        QueryTrace.begin();
+        try {
+            for (int i = 0; i < input.size(); i++) {
+                Row expected = inMemory.next(), actual = external.next();
+                assertEquals(expected.getId(), actual.getId());
+                assertArrayEquals(expected.getValues(), actual.getValues());
+            }
+            assertNull(external.next());
+            assertTrue(QueryTrace.current().getSortSpills() > 64);
+            assertTrue(QueryTrace.current().getSpillBytes() > 0);
+            assertTrue(external.describe().matches("Sort: mark \\(spilled \\d+ bytes\\)"));
+        } finally {
+            QueryTrace.end();
+        }
+        assertEquals(0, spillDirectory.listFiles().length);
+
+        // Closing part way through the merge removes the runs too:
+        external = new PlanNode.Sort(Utils.rows(input), byMark, "mark", spillDirectory, 3000);
+        external.next();
+        assertTrue(spillDirectory.listFiles().length > 0);
+        external.close();
+        assertEquals(0, spillDirectory.listFiles().length);
+    }
+
+    @Test
+    public void testOrderBySpillsThroughPlanner() throws Exception {
+        for (int i = 0; i < 200; i++) server.handleCommand("INSERT INTO marks VALUES ('Extra', " + (i * 37 % 101) + ", FALSE);");
+        Planner planner = new Planner(DBManager.getInstance(null), Long.MAX_VALUE, 2000);
+        Plan plan = planner.plan(new Parser().parse(Tokenizer.tokenize("SELECT mark FROM marks WHERE name == 'Extra' ORDER BY mark DESC;")));
+        plan.execute(false);
+        // Rows hold the one column selected:
+        ArrayList<String[]> result = new ArrayList<>(plan.getResult().values());
+        assertEquals(200, result.size());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(Integer.parseInt(result.get(i - 1)[0]) >= Integer.parseInt(result.get(i)[0]));
+        }
+        assertTrue(plan.explain(false).contains("spilled"));
+        File[] runs = new File(DBManager.getInstance(null).getDatabase().getPath()).listFiles((dir, name) -> name.endsWith(".run"));
+        assertEquals(0, runs.length);
+    }
+}
@@ -0,0 +1,146 @@
+package edu.uob.planner;
+
+import edu.uob.DBServer;
+import edu.uob.database.DBManager;
+import edu.uob.parser.Parser;
+import edu.uob.tokenizer.Tokenizer;
+import edu.uob.utils.DBException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlannerTests {
+    private DBServer server;
+    private String databaseName;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        databaseName = randomName;
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Chris', 20, FALSE);");
+    }
+
+    @Test
+    public void testExplainPrimaryKeyLookup() {
+        String response = server.handleCommand("EXPLAIN SELECT name FROM marks WHERE id == 2;");
+        assertTrue(response.contains("[OK]"));
+        assertTrue(response.contains("Project: name"));
+        assertTrue(response.contains("IndexLookup: marks (id == 2)  (estimated rows=1)"));
+        assertFalse(response.contains("SeqScan"));
+        assertFalse(response.contains("actual rows"));
+    }
+
+    @Test
+    public void testExplainAnalyzeReportsActualRows() {
+        String response = server.handleCommand("EXPLAIN ANALYZE SELECT * FROM marks WHERE pass == TRUE;");
+        assertTrue(response.contains("Filter: pass == TRUE"));
+        assertTrue(response.contains("SeqScan: marks  (estimated rows=4, actual rows=4, time="));
+        assertTrue(response.matches("(?s).*Filter: pass == TRUE  \\(estimated rows=\\d+, actual rows=2, time=.*"));
+    }
+
+    @Test
+    public void testExplainAnalyzeModifiesData() {
+        assertTrue(server.handleCommand("EXPLAIN DELETE FROM marks WHERE mark < 40;").contains("Delete"));
+        assertTrue(server.handleCommand("SELECT * FROM marks;").contains("Rob"));
+        assertTrue(server.handleCommand("EXPLAIN ANALYZE DELETE FROM marks WHERE mark < 40;").contains("actual rows=2"));
+        String response = server.handleCommand("SELECT * FROM marks;");
+        assertFalse(response.contains("Rob"));
+        assertFalse(response.contains("Chris"));
+        assertTrue(server.handleCommand("EXPLAIN INSERT INTO marks VALUES ('Dave', 1, FALSE);").contains("[ERROR]"));
+    }
+
+    @Test
+    public void testAnalyzeDrivesAccessPathAndConditionOrder() {
+        for (int i = 0; i < 40; i++) server.handleCommand("INSERT INTO marks VALUES ('Extra', " + (i % 4) + ", FALSE);");
+        String response = server.handleCommand("ANALYZE marks;");
+        assertTrue(response.contains("rows: 44"));
+        assertTrue(response.matches("(?s).*\\| mark +\\| 0 +\\| 8 +\\| 0 +\\| 65\n.*"));
+        assertTrue(server.handleCommand("ANALYZE missing;").contains("[ERROR]"));
+
+        // "name == 'Rob'" matches far fewer rows than "pass == FALSE", so it is checked first:
+        String explain = server.handleCommand("EXPLAIN SELECT * FROM marks WHERE pass == FALSE AND name == 'Rob';");
+        assertTrue(explain.contains("Filter: (name == Rob AND pass == FALSE)"));
+        explain = server.handleCommand("EXPLAIN SELECT * FROM marks WHERE id > 2 AND id <= 4;");
+        assertTrue(explain.contains("IndexRangeScan: marks (3 <= id <= 4)"));
+        String selected = server.handleCommand("SELECT name FROM marks WHERE id > 2 AND id <= 4;");
+        assertTrue(selected.contains("Rob"));
+        assertTrue(selected.contains("Chris"));
+        assertFalse(selected.contains("Sion"));
+        assertTrue(server.handleCommand("EXPLAIN SELECT * FROM marks WHERE id > 2;").contains("SeqScan"));
+    }
+
+    @Test
+    public void testColdTableLoadsOnlyReferencedAttributes() {
+        // Re-using the database drops the tables held in memory:
+        server.handleCommand("USE " + databaseName + ";");
+        String response = server.handleCommand("SELECT name FROM marks WHERE mark > 50;");
+        assertTrue(response.contains("Simon"));
+        assertFalse(response.contains("Rob"));
+        // Statements that change the table load the rest of it first, so nothing is lost when it is saved:
+        assertTrue(server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Sion';").contains("[OK]"));
+        server.handleCommand("USE " + databaseName + ";");
+        server.handleCommand("SELECT mark FROM marks;");
+        server.handleCommand("INSERT INTO marks VALUES ('Dave', 50, TRUE);");
+        server.handleCommand("USE " + databaseName + ";");
+        server.handleCommand("SELECT name FROM marks;");
+        server.handleCommand("USE " + databaseName + ";");
+        response = server.handleCommand("SELECT * FROM marks WHERE name == 'Sion' OR name == 'Dave';");
+        assertTrue(response.contains("| 2               | Sion            | 70              | TRUE"));
+        assertTrue(response.contains("| 5               | Dave            | 50              | TRUE"));
+    }
+
+    @Test
+    public void testColdTableStreamedFromFile() throws IOException {
+        server.handleCommand("USE " + databaseName + ";");
+        DBManager manager = DBManager.getInstance(null);
+        Planner planner = new Planner(manager, 0);
+        Parser parser = new Parser();
+        Plan plan = planner.plan(parser.parse(Tokenizer.tokenize("SELECT name FROM marks WHERE pass == true AND mark > 60;")));
+        assertTrue(plan.explain(false).contains("FileScan: marks ("));
+        plan.execute(false);
+        assertEquals(1, plan.getResult().size());
+        assertArrayEquals(new String[] {"Simon"}, plan.getResult().get(1));
+        // The rows were read straight from the file; the table itself was not loaded:
+        assertNull(manager.getDatabase().getTables().get("marks"));
+
+        plan = planner.plan(parser.parse(Tokenizer.tokenize("SELECT * FROM marks;")));
+        plan.execute(false);
+        assertEquals(4, plan.getResult().size());
+        assertEquals(4, plan.getResult().get(4).length);
+        assertThrows(DBException.class, () -> planner.plan(parser.parse(Tokenizer.tokenize("SELECT * FROM marks WHERE nosuch == 1;"))));
+        // Once the table is in memory it is scanned there instead:
+        server.handleCommand("SELECT * FROM marks WHERE id == 1;");
+        assertTrue(server.handleCommand("EXPLAIN SELECT * FROM marks WHERE pass == TRUE;").contains("SeqScan"));
+    }
+
+    @Test
+    public void testJoinAlgorithms() {
+        server.handleCommand("CREATE TABLE coursework (task, submission);");
+        server.handleCommand("INSERT INTO coursework VALUES ('OXO', 3);");
+        server.handleCommand("INSERT INTO coursework VALUES ('DB', 1);");
+        String explain = server.handleCommand("EXPLAIN JOIN coursework AND marks ON submission AND id;");
+        assertTrue(explain.contains("NestedLoopJoin: submission == id (build: coursework)"));
+        String small = server.handleCommand("JOIN coursework AND marks ON submission AND id;");
+        // Unmatched coursework rows make the smaller side too big for a nested loop without changing the result:
+        for (int i = 0; i < 10; i++) server.handleCommand("INSERT INTO coursework VALUES ('Extra', " + (100 + i) + ");");
+        for (int i = 0; i < 10; i++) server.handleCommand("INSERT INTO marks VALUES ('Extra', " + i + ", FALSE);");
+        explain = server.handleCommand("EXPLAIN JOIN coursework AND marks ON submission AND id;");
+        assertTrue(explain.contains("HashJoin: submission == id (build: coursework)"));
+        assertEquals(small, server.handleCommand("JOIN coursework AND marks ON submission AND id;"));
+        assertTrue(small.contains("| OXO             | Rob"));
+        assertTrue(small.contains("| DB              | Simon"));
+        assertTrue(small.contains("coursework.task"));
+        assertTrue(small.indexOf("coursework.task") < small.indexOf("marks.name"));
+    }
+}
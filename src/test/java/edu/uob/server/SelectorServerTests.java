@@ -0,0 +1,137 @@
+package edu.uob.server;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorServerTests {
+    // ============================================================================================================== //
+    //                                                SETUP                                                           //
+    // ============================================================================================================== //
+    private SelectorServer server;
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new SelectorServer((session, command) -> "[OK]\n" + command.toUpperCase(), 2, 4);
+        port = server.bind(0);
+        serverThread = new Thread(() -> {
+            try { server.serve(); } catch (IOException e) { fail("Server failed: " + e.getMessage()); }
+        });
+        serverThread.start();
+    }
+    @AfterEach
+    public void stopServer() throws InterruptedException {
+        server.stop();
+        serverThread.join(2000);
+    }
+
+    private static String readResponse(BufferedReader reader) throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null && !line.contains("" + SelectorServer.END_OF_TRANSMISSION)) {
+            response.append(line).append("\n");
+        }
+        return response.toString().trim();
+    }
+
+    // ============================================================================================================== //
+    //                                              TESTING                                                           //
+    // ============================================================================================================== //
+
+    @Test
+    public void testPartialFrames() throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("select * ".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(50);
+            out.write("from marks;\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("[OK]\nSELECT * FROM MARKS;", readResponse(reader));
+        }
+    }
+
+    @Test
+    public void testPipelinedCommandsAnsweredInOrder() throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < 50; i++) batch.append("command ").append(i).append("\n");
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            for (int i = 0; i < 50; i++) assertEquals("[OK]\nCOMMAND " + i, readResponse(reader));
+        }
+    }
+
+    @Test
+    public void testPipelinedCommandsAnsweredAfterHalfClose() throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // The last command has no newline: end of input terminates it, as it would for a blocking reader.
+            out.write("create database d;\nuse d;\ncreate table t (a);\ninsert into t values (1);".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            socket.shutdownOutput();
+            assertEquals("[OK]\nCREATE DATABASE D;", readResponse(reader));
+            assertEquals("[OK]\nUSE D;", readResponse(reader));
+            assertEquals("[OK]\nCREATE TABLE T (A);", readResponse(reader));
+            assertEquals("[OK]\nINSERT INTO T VALUES (1);", readResponse(reader));
+            // Only then does the server close its side:
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void testClosedSessionReported() throws Exception {
+        BlockingQueue<String> closed = new LinkedBlockingQueue<>();
+        SelectorServer reporting = new SelectorServer((session, command) -> "[OK]\n" + session, closed::add, 2, 4);
+        int reportingPort = reporting.bind(0);
+        Thread reportingThread = new Thread(() -> {
+            try { reporting.serve(); } catch (IOException e) { fail("Server failed: " + e.getMessage()); }
+        });
+        reportingThread.start();
+        try {
+            String session;
+            try (Socket socket = new Socket("localhost", reportingPort)) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                socket.getOutputStream().write("command\n".getBytes(StandardCharsets.UTF_8));
+                session = readResponse(reader).substring("[OK]\n".length());
+            }
+            assertEquals(session, closed.poll(2, TimeUnit.SECONDS));
+        } finally {
+            reporting.stop();
+            reportingThread.join(2000);
+        }
+    }
+
+    @Test
+    public void testManyConcurrentConnections() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) sockets.add(new Socket("localhost", port));
+            for (int i = 0; i < sockets.size(); i++) {
+                sockets.get(i).getOutputStream().write(("client " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(sockets.get(i).getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("[OK]\nCLIENT " + i, readResponse(reader));
+            }
+        } finally {
+            for (Socket socket : sockets) socket.close();
+        }
+    }
+}
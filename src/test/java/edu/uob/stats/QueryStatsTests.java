@@ -0,0 +1,94 @@
+package edu.uob.stats;
+
+import edu.uob.DBServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryStatsTests {
+    private DBServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new DBServer();
+        String randomName = "";
+        for (int i = 0; i < 10; i++) randomName += (char) (97 + (Math.random() * 25.0));
+        server.handleCommand("CREATE DATABASE " + randomName + ";");
+        server.handleCommand("USE " + randomName + ";");
+        server.handleCommand("CREATE TABLE marks (name, mark, pass);");
+        server.handleCommand("INSERT INTO marks VALUES ('Simon', 65, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Sion', 55, TRUE);");
+        server.handleCommand("INSERT INTO marks VALUES ('Rob', 35, FALSE);");
+        assertTrue(server.handleCommand("RESET STATS;").contains("[OK]"));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) histogram.record(i * 1000);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getPercentile(0.5), 500_000 * 0.07);
+        assertEquals(990_000, histogram.getPercentile(0.99), 990_000 * 0.07);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+            if (index > 0) assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void testNewKeywordsStillNames() {
+        assertTrue(server.handleCommand("CREATE TABLE stats (show, order, desc, limit, index);").contains("[OK]"));
+        assertTrue(server.handleCommand("INSERT INTO stats VALUES ('a', 2, 'x', 5, 1);").contains("[OK]"));
+        assertTrue(server.handleCommand("INSERT INTO stats VALUES ('b', 1, 'y', 5, 2);").contains("[OK]"));
+        assertTrue(server.handleCommand("UPDATE stats SET limit = 6 WHERE show == 'b';").contains("[OK]"));
+        String rows = server.handleCommand("SELECT show, desc FROM stats WHERE limit > 4 ORDER BY order DESC LIMIT 1;");
+        assertTrue(rows.contains("a") && rows.contains("x") && !rows.contains("y"), rows);
+        assertTrue(server.handleCommand("SELECT index, COUNT(*) FROM stats GROUP BY index ORDER BY index;").contains("[OK]"));
+        assertTrue(server.handleCommand("SHOW STATS;").contains("SELECT"));
+        assertTrue(server.handleCommand("ALTER TABLE stats DROP desc;").contains("[OK]"));
+        assertTrue(server.handleCommand("DROP TABLE stats;").contains("[OK]"));
+    }
+
+    @Test
+    public void testRowsAndErrorsCounted() {
+        server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+        server.handleCommand("SELECT * FROM marks WHERE mark > 50;");
+        server.handleCommand("SELECT * FROM missing;");
+        server.handleCommand("UPDATE marks SET mark = 40 WHERE name == 'Rob';");
+        QueryStats.CommandStats select = QueryStats.getInstance().get("SELECT");
+        assertEquals(3, select.getLatency().getCount());
+        assertEquals(1, select.getErrors());
+        assertEquals(1, select.getCacheHits());
+        // The repeat is answered from the result cache without a scan:
+        assertEquals(1, select.getResultCacheHits());
+        assertEquals(3, select.getRowsScanned());
+        assertEquals(4, select.getRowsReturned());
+        assertEquals(1, select.getLatency(Phase.FORMAT).getCount());
+        QueryStats.CommandStats update = QueryStats.getInstance().get("UPDATE");
+        assertEquals(1, update.getLatency(Phase.PERSIST).getCount());
+        assertTrue(update.getBytesWritten() > 0);
+    }
+
+    @Test
+    public void testShowAndResetStats() {
+        server.handleCommand("SELECT * FROM marks;");
+        String response = server.handleCommand("SHOW STATS;");
+        assertTrue(response.contains("[OK]"));
+        assertTrue(response.contains("p99_us"));
+        assertTrue(response.contains("SELECT"));
+        assertTrue(response.contains("INTERPRET"));
+        server.handleCommand("RESET STATS;");
+        assertFalse(server.handleCommand("show stats;").contains("SELECT"));
+    }
+}
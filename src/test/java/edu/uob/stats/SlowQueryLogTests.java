@@ -0,0 +1,70 @@
+package edu.uob.stats;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowQueryLogTests {
+    @TempDir
+    Path directory;
+
+    private static QueryTrace trace(String query) {
+        QueryTrace trace = QueryTrace.begin();
+        trace.setQuery(query);
+        trace.setSession("/127.0.0.1:5000");
+        trace.setCommandType("SELECT");
+        QueryTrace.record(Phase.PARSE, System.nanoTime() - 2000);
+        QueryTrace.addTable("marks", 3);
+        QueryTrace.addRowsScanned(3);
+        QueryTrace.addRowsReturned(1);
+        return QueryTrace.end();
+    }
+
+    @Test
+    public void testEntriesCarryQueryDetails() throws Exception {
+        Path file = directory.resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 0, 1 << 20, 2);
+        log.record(trace("SELECT * FROM marks WHERE name == 'Rob';"));
+        log.close();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        JsonNode entry = new ObjectMapper().readTree(lines.get(0));
+        assertEquals("SELECT * FROM marks WHERE name == 'Rob';", entry.get("query").asText());
+        assertEquals("/127.0.0.1:5000", entry.get("session").asText());
+        assertEquals(3, entry.get("tables").get("marks").asInt());
+        assertEquals(3, entry.get("rows_scanned").asLong());
+        assertEquals(1, entry.get("rows_returned").asLong());
+        assertTrue(entry.get("phases_us").has("parse"));
+    }
+
+    @Test
+    public void testFastQueriesAreSkipped() throws Exception {
+        Path file = directory.resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 60_000, 1 << 20, 2);
+        log.record(trace("SELECT * FROM marks;"));
+        log.close();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        Path file = directory.resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 0, 600, 2);
+        for (int i = 0; i < 20; i++) log.record(trace("SELECT * FROM marks WHERE id == " + i + ";"));
+        log.close();
+        assertTrue(Files.exists(file));
+        assertTrue(Files.exists(directory.resolve("slow.log.1")));
+        assertTrue(Files.exists(directory.resolve("slow.log.2")));
+        assertFalse(Files.exists(directory.resolve("slow.log.3")));
+        assertTrue(Files.size(file) <= 600);
+        List<String> newest = Files.readAllLines(file);
+        assertTrue(newest.get(newest.size() - 1).contains("id == 19"));
+    }
+}
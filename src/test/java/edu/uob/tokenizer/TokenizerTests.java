@@ -0,0 +1,55 @@
+package edu.uob.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizerTests {
+    private static void assertTokens(String query, TokenType... expected) {
+        ArrayList<Tokenizer.Token> tokens = Tokenizer.tokenize(query);
+        assertEquals(expected.length + 1, tokens.size(), "Unexpected token count for: " + query);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], tokens.get(i).getType(), "Token " + i + " (" + tokens.get(i).getValue() + ")");
+        }
+        assertEquals(TokenType.EOF, tokens.get(expected.length).getType());
+    }
+
+    @Test
+    public void testKeywordsAreCaseInsensitive() {
+        assertTokens("sElEcT * FrOm marks;", TokenType.SELECT_KEYWORD, TokenType.ASTRIX, TokenType.FROM_KEYWORD,
+                TokenType.IDENTIFIER, TokenType.SEMICOLON);
+        assertTokens("true FALSE null Like", TokenType.BOOLEAN_LITERAL, TokenType.BOOLEAN_LITERAL,
+                TokenType.NULL_LITERAL, TokenType.LIKE_OPERATOR);
+    }
+
+    @Test
+    public void testComparatorsNeedNoWhitespace() {
+        assertTokens("a==1 b!=2 c<=3 d>=4 e<5 f>6 g=7",
+                TokenType.IDENTIFIER, TokenType.EQUALS_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.NOT_EQUALS_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.LESS_THAN_OR_EQUAL_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.GREATER_THAN_OR_EQUAL_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.LESS_THAN_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.GREATER_THAN_OPERATOR, TokenType.INTEGER_LITERAL,
+                TokenType.IDENTIFIER, TokenType.ASSIGN_KEYWORD, TokenType.INTEGER_LITERAL);
+    }
+
+    @Test
+    public void testLiterals() {
+        ArrayList<Tokenizer.Token> tokens = Tokenizer.tokenize("VALUES('a, (b) == c',-12,+3.25,1.,x.y)");
+        assertEquals("'a, (b) == c'", tokens.get(2).getValue());
+        assertEquals(TokenType.STRING_LITERAL, tokens.get(2).getType());
+        assertEquals(TokenType.INTEGER_LITERAL, tokens.get(4).getType());
+        assertEquals(TokenType.FLOAT_LITERAL, tokens.get(6).getType());
+        assertEquals(TokenType.INVALID_TOKEN, tokens.get(8).getType());
+        assertEquals(TokenType.INVALID_TOKEN, tokens.get(10).getType());
+    }
+
+    @Test
+    public void testWhitespaceAndTabs() {
+        assertTokens("  CREATE\t\tDATABASE    marks ;  ", TokenType.CREATE_KEYWORD, TokenType.DATABASE_KEYWORD,
+                TokenType.IDENTIFIER, TokenType.SEMICOLON);
+    }
+}